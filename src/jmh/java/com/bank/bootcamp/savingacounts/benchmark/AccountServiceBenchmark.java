@@ -0,0 +1,77 @@
+package com.bank.bootcamp.savingacounts.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.bank.bootcamp.savingacounts.dto.AccountType;
+import com.bank.bootcamp.savingacounts.dto.BalanceDTO;
+import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.dto.TransferDTO;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.entity.Transfer;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountServiceBenchmark {
+
+  @Param({"1024"})
+  public int accounts;
+
+  private AccountServiceFixture fixture;
+
+  @State(Scope.Thread)
+  public static class Cursor {
+    private int next;
+
+    String nextAccountId(int accounts) {
+      next = (next + 1) % accounts;
+      return AccountServiceFixture.accountId(next);
+    }
+  }
+
+  // Fixture nuevo en cada iteración para que los movimientos guardados no crezcan sin límite
+  @Setup(Level.Iteration)
+  public void setup() {
+    fixture = new AccountServiceFixture(accounts, 100_000_000_000L);
+  }
+
+  @Benchmark
+  public Transaction createTransaction(Cursor cursor) {
+    var dto = new CreateTransactionDTO();
+    dto.setAccountId(cursor.nextAccountId(accounts));
+    dto.setAgent("benchmark");
+    dto.setDescription("Deposit");
+    dto.setAmount(1000L);
+    return fixture.accountService.createTransaction(dto).block();
+  }
+
+  @Benchmark
+  public Transfer transfer(Cursor cursor) {
+    var dto = new TransferDTO();
+    dto.setSourceAccountId(cursor.nextAccountId(accounts));
+    dto.setTargetAccountType(AccountType.SAVING);
+    dto.setTargetAccountId("target");
+    dto.setAmount(100L);
+    return fixture.accountService.transfer(dto).block();
+  }
+
+  @Benchmark
+  public BalanceDTO getBalanceByAccountId(Cursor cursor) {
+    return fixture.accountService.getBalanceByAccountId(cursor.nextAccountId(accounts)).block();
+  }
+
+}
@@ -0,0 +1,55 @@
+package com.bank.bootcamp.savingacounts.benchmark;
+
+import java.time.Duration;
+import org.springframework.mock.env.MockEnvironment;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.service.AccountCache;
+import com.bank.bootcamp.savingacounts.service.AccountExecutionLanes;
+import com.bank.bootcamp.savingacounts.service.AccountService;
+import com.bank.bootcamp.savingacounts.service.BalanceSnapshotService;
+import com.bank.bootcamp.savingacounts.service.CreditCheckCache;
+import com.bank.bootcamp.savingacounts.service.OperationMetrics;
+import com.bank.bootcamp.savingacounts.service.TransferDispatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * AccountService wired exactly as in production, but over in-memory repositories and stubbed
+ * web clients.
+ */
+public class AccountServiceFixture {
+
+  public final MockEnvironment env = new MockEnvironment();
+  public final InMemoryMonthlyAccountSummaryRepository monthlySummaryRepository = new InMemoryMonthlyAccountSummaryRepository();
+  public final InMemoryAccountRepository accountRepository = new InMemoryAccountRepository(monthlySummaryRepository);
+  public final InMemoryTransactionRepository transactionRepository = new InMemoryTransactionRepository();
+  public final InMemoryTransferRepository transferRepository = new InMemoryTransferRepository();
+  public final InMemoryBalanceSnapshotRepository balanceSnapshotRepository = new InMemoryBalanceSnapshotRepository();
+  public final AccountService accountService;
+  public final TransferDispatcher transferDispatcher;
+
+  public AccountServiceFixture(int accounts, long openingBalance) {
+    var registry = new SimpleMeterRegistry();
+    var accountCache = new AccountCache(accountRepository, env, registry);
+    var executionLanes = new AccountExecutionLanes(env, registry);
+    var nextSequenceService = new InMemoryNextSequenceService(env, Duration.ZERO);
+    var metrics = new OperationMetrics(registry);
+    accountService = new AccountService(accountRepository, accountCache, transactionRepository, monthlySummaryRepository,
+        nextSequenceService, env, new CreditCheckCache(new StubWebClients.StubCreditWebClient(metrics), env, registry), transferRepository,
+        new BalanceSnapshotService(accountRepository, transactionRepository, balanceSnapshotRepository, env), executionLanes, metrics);
+    transferDispatcher = new TransferDispatcher(transferRepository, transactionRepository, accountService,
+        new StubWebClients.StubAccountWebClient(metrics), executionLanes, metrics, env);
+    
+    for (int i = 0; i < accounts; i++) {
+      var account = new Account();
+      account.setId(accountId(i));
+      account.setCustomerId("customer-" + i);
+      account.setMonthlyMovementLimit(Integer.MAX_VALUE);
+      account.setBalance(openingBalance);
+      accountRepository.save(account).block();
+    }
+  }
+
+  public static String accountId(int index) {
+    return "account-" + index;
+  }
+}
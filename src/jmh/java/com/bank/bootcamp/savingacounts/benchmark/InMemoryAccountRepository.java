@@ -0,0 +1,81 @@
+package com.bank.bootcamp.savingacounts.benchmark;
+
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.Objects;
+import com.bank.bootcamp.savingacounts.dto.AccountBalanceView;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
+import com.bank.bootcamp.savingacounts.repository.AccountRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class InMemoryAccountRepository extends InMemoryRepository<Account> implements AccountRepository {
+
+  private final InMemoryMonthlyAccountSummaryRepository monthlySummaryRepository;
+
+  public InMemoryAccountRepository(InMemoryMonthlyAccountSummaryRepository monthlySummaryRepository) {
+    super(Account::getId, Account::setId);
+    this.monthlySummaryRepository = monthlySummaryRepository;
+  }
+
+  @Override
+  public Mono<Account> findByCustomerId(String customerId) {
+    return Flux.defer(() -> Flux.fromIterable(store.values()))
+        .filter(account -> Objects.equals(account.getCustomerId(), customerId))
+        .next();
+  }
+
+  @Override
+  public Flux<Account> findByCustomerIdIn(Collection<String> customerIds) {
+    return Flux.defer(() -> Flux.fromIterable(store.values()))
+        .filter(account -> customerIds.contains(account.getCustomerId()));
+  }
+
+  @Override
+  public Mono<Account> addToBalance(String accountId, long amount) {
+    // como findAndModify con returnNew: el documento devuelto es una copia nueva
+    return Mono.fromSupplier(() -> {
+      var updated = new boolean[1];
+      var account = store.computeIfPresent(accountId, (id, current) -> {
+        if (current.getBalance() == null || current.getBalance() + amount < 0)
+          return current;
+        updated[0] = true;
+        return copy(current, current.getBalance() + amount);
+      });
+      return updated[0] ? account : null;
+    });
+  }
+
+  @Override
+  public Mono<Account> initializeBalance(String accountId, long balance) {
+    return Mono.fromSupplier(() -> store.computeIfPresent(accountId,
+        (id, account) -> account.getBalance() == null ? copy(account, balance) : account));
+  }
+
+  @Override
+  public Flux<AccountBalanceView> findBalancesByCustomerId(String customerId, YearMonth yearMonth) {
+    return findByCustomerId(customerId).flux()
+        .flatMap(account -> monthlySummaryRepository.findById(MonthlyAccountSummary.idOf(account.getId(), yearMonth))
+            .map(MonthlyAccountSummary::getCount)
+            .defaultIfEmpty(0L)
+            .map(count -> {
+              var view = new AccountBalanceView();
+              view.setAccountId(account.getId());
+              view.setMonthlyMovementLimit(account.getMonthlyMovementLimit());
+              view.setBalance(account.getBalance());
+              view.setMonthlyMovements(count);
+              return view;
+            }));
+  }
+
+  private Account copy(Account account, long balance) {
+    var copy = new Account();
+    copy.setId(account.getId());
+    copy.setCustomerId(account.getCustomerId());
+    copy.setMonthlyMovementLimit(account.getMonthlyMovementLimit());
+    copy.setBalance(balance);
+    return copy;
+  }
+
+}
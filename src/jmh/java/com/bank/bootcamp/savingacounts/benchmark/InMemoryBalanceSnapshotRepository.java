@@ -0,0 +1,11 @@
+package com.bank.bootcamp.savingacounts.benchmark;
+
+import com.bank.bootcamp.savingacounts.entity.BalanceSnapshot;
+import com.bank.bootcamp.savingacounts.repository.BalanceSnapshotRepository;
+
+public class InMemoryBalanceSnapshotRepository extends InMemoryRepository<BalanceSnapshot> implements BalanceSnapshotRepository {
+
+  public InMemoryBalanceSnapshotRepository() {
+    super(BalanceSnapshot::getAccountId, BalanceSnapshot::setAccountId);
+  }
+}
@@ -0,0 +1,88 @@
+package com.bank.bootcamp.savingacounts.benchmark;
+
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.Objects;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
+import com.bank.bootcamp.savingacounts.repository.MonthlyAccountSummaryRepository;
+import reactor.core.publisher.Mono;
+
+public class InMemoryMonthlyAccountSummaryRepository extends InMemoryRepository<MonthlyAccountSummary> implements MonthlyAccountSummaryRepository {
+
+  public InMemoryMonthlyAccountSummaryRepository() {
+    super(MonthlyAccountSummary::getId, MonthlyAccountSummary::setId);
+  }
+
+  @Override
+  public Mono<Long> deleteByAccountIdAndIdNotIn(String accountId, Collection<String> ids) {
+    return Mono.fromSupplier(() -> {
+      var before = store.size();
+      store.values().removeIf(summary -> Objects.equals(summary.getAccountId(), accountId) && !ids.contains(summary.getId()));
+      return (long) (before - store.size());
+    });
+  }
+
+  @Override
+  public Mono<MonthlyAccountSummary> incrementIfBelow(String accountId, YearMonth yearMonth, int limit) {
+    if (limit <= 0)
+      return Mono.empty();
+    return Mono.fromSupplier(() -> {
+      var updated = new boolean[1];
+      var counter = store.compute(MonthlyAccountSummary.idOf(accountId, yearMonth), (id, current) -> {
+        var count = current == null ? 0L : current.getCount();
+        if (count >= limit)
+          return current;
+        updated[0] = true;
+        return counter(accountId, yearMonth, current, 1);
+      });
+      return updated[0] ? counter : null;
+    });
+  }
+
+  @Override
+  public Mono<MonthlyAccountSummary> increment(String accountId, YearMonth yearMonth, int delta) {
+    return Mono.fromSupplier(() -> store.compute(MonthlyAccountSummary.idOf(accountId, yearMonth),
+        (id, current) -> counter(accountId, yearMonth, current, delta)));
+  }
+
+  @Override
+  public Mono<MonthlyAccountSummary> compareAndIncrement(String accountId, YearMonth yearMonth, long expectedCount, int delta) {
+    return Mono.fromSupplier(() -> {
+      var updated = new boolean[1];
+      var counter = store.compute(MonthlyAccountSummary.idOf(accountId, yearMonth), (id, current) -> {
+        if ((current == null ? 0L : current.getCount()) != expectedCount)
+          return current;
+        updated[0] = true;
+        return counter(accountId, yearMonth, current, delta);
+      });
+      return updated[0] ? counter : null;
+    });
+  }
+
+  @Override
+  public Mono<MonthlyAccountSummary> record(String accountId, YearMonth yearMonth, int count, long credits, long debits, long comissions, Long closingBalance) {
+    return Mono.fromSupplier(() -> store.compute(MonthlyAccountSummary.idOf(accountId, yearMonth), (id, current) -> {
+      var summary = counter(accountId, yearMonth, current, count);
+      summary.setCredits(summary.getCredits() + credits);
+      summary.setDebits(summary.getDebits() + debits);
+      summary.setComissions(summary.getComissions() + comissions);
+      if (closingBalance != null)
+        summary.setClosingBalance(closingBalance);
+      return summary;
+    }));
+  }
+
+  private MonthlyAccountSummary counter(String accountId, YearMonth yearMonth, MonthlyAccountSummary current, int delta) {
+    var counter = new MonthlyAccountSummary();
+    counter.setId(MonthlyAccountSummary.idOf(accountId, yearMonth));
+    counter.setAccountId(accountId);
+    counter.setYearMonth(yearMonth.toString());
+    counter.setCount((current == null ? 0L : current.getCount()) + delta);
+    counter.setCredits(current == null || current.getCredits() == null ? 0L : current.getCredits());
+    counter.setDebits(current == null || current.getDebits() == null ? 0L : current.getDebits());
+    counter.setComissions(current == null || current.getComissions() == null ? 0L : current.getComissions());
+    counter.setClosingBalance(current == null ? null : current.getClosingBalance());
+    return counter;
+  }
+
+}
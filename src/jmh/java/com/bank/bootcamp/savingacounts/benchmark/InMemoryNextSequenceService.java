@@ -0,0 +1,31 @@
+package com.bank.bootcamp.savingacounts.benchmark;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.core.env.Environment;
+import com.bank.bootcamp.savingacounts.service.NextSequenceService;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sequence counters kept in memory. {@code roundTrip} delays every reservation so the per-call
+ * and block paths can be compared with something close to a Mongo round trip.
+ */
+public class InMemoryNextSequenceService extends NextSequenceService {
+
+  private final Map<String, AtomicInteger> counters = new ConcurrentHashMap<>();
+  private final Duration roundTrip;
+
+  public InMemoryNextSequenceService(Environment env, Duration roundTrip) {
+    super(null, env);
+    this.roundTrip = roundTrip;
+  }
+
+  @Override
+  public Mono<Integer> reserve(String seqName, int count) {
+    var counter = Mono.fromSupplier(() -> counters.computeIfAbsent(seqName, name -> new AtomicInteger()).addAndGet(count));
+    return roundTrip.isZero() ? counter : Mono.delay(roundTrip).then(counter);
+  }
+
+}
@@ -0,0 +1,180 @@
+package com.bank.bootcamp.savingacounts.benchmark;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import org.reactivestreams.Publisher;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.data.repository.query.FluentQuery;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Map backed stand-in for a reactive Mongo repository. Only the CRUD operations the services use
+ * are implemented; query by example is not.
+ */
+public abstract class InMemoryRepository<T> implements ReactiveMongoRepository<T, String> {
+
+  protected final Map<String, T> store = new ConcurrentHashMap<>();
+  private final Function<T, String> getId;
+  private final BiConsumer<T, String> setId;
+
+  protected InMemoryRepository(Function<T, String> getId, BiConsumer<T, String> setId) {
+    this.getId = getId;
+    this.setId = setId;
+  }
+
+  public void clear() {
+    store.clear();
+  }
+
+  @Override
+  public <S extends T> Mono<S> save(S entity) {
+    return Mono.fromSupplier(() -> {
+      if (getId.apply(entity) == null)
+        setId.accept(entity, UUID.randomUUID().toString());
+      store.put(getId.apply(entity), entity);
+      return entity;
+    });
+  }
+
+  @Override
+  public <S extends T> Flux<S> saveAll(Iterable<S> entities) {
+    return Flux.fromIterable(entities).concatMap(this::save);
+  }
+
+  @Override
+  public <S extends T> Flux<S> saveAll(Publisher<S> entityStream) {
+    return Flux.from(entityStream).concatMap(this::save);
+  }
+
+  @Override
+  public <S extends T> Mono<S> insert(S entity) {
+    return save(entity);
+  }
+
+  @Override
+  public <S extends T> Flux<S> insert(Iterable<S> entities) {
+    return saveAll(entities);
+  }
+
+  @Override
+  public <S extends T> Flux<S> insert(Publisher<S> entities) {
+    return saveAll(entities);
+  }
+
+  @Override
+  public Mono<T> findById(String id) {
+    return Mono.fromSupplier(() -> store.get(id));
+  }
+
+  @Override
+  public Mono<T> findById(Publisher<String> id) {
+    return Mono.from(id).flatMap(this::findById);
+  }
+
+  @Override
+  public Mono<Boolean> existsById(String id) {
+    return Mono.fromSupplier(() -> store.containsKey(id));
+  }
+
+  @Override
+  public Mono<Boolean> existsById(Publisher<String> id) {
+    return Mono.from(id).flatMap(this::existsById);
+  }
+
+  @Override
+  public Flux<T> findAll() {
+    return Flux.defer(() -> Flux.fromIterable(store.values()));
+  }
+
+  @Override
+  public Flux<T> findAll(Sort sort) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Flux<T> findAllById(Iterable<String> ids) {
+    return Flux.fromIterable(ids).concatMap(this::findById);
+  }
+
+  @Override
+  public Flux<T> findAllById(Publisher<String> idStream) {
+    return Flux.from(idStream).concatMap(this::findById);
+  }
+
+  @Override
+  public Mono<Long> count() {
+    return Mono.fromSupplier(() -> (long) store.size());
+  }
+
+  @Override
+  public Mono<Void> deleteById(String id) {
+    return Mono.fromRunnable(() -> store.remove(id));
+  }
+
+  @Override
+  public Mono<Void> deleteById(Publisher<String> id) {
+    return Mono.from(id).flatMap(this::deleteById);
+  }
+
+  @Override
+  public Mono<Void> delete(T entity) {
+    return deleteById(getId.apply(entity));
+  }
+
+  @Override
+  public Mono<Void> deleteAllById(Iterable<? extends String> ids) {
+    return Flux.fromIterable(ids).concatMap(this::deleteById).then();
+  }
+
+  @Override
+  public Mono<Void> deleteAll(Iterable<? extends T> entities) {
+    return Flux.fromIterable(entities).concatMap(this::delete).then();
+  }
+
+  @Override
+  public Mono<Void> deleteAll(Publisher<? extends T> entityStream) {
+    return Flux.from(entityStream).concatMap(this::delete).then();
+  }
+
+  @Override
+  public Mono<Void> deleteAll() {
+    return Mono.fromRunnable(store::clear);
+  }
+
+  @Override
+  public <S extends T> Mono<S> findOne(Example<S> example) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public <S extends T> Flux<S> findAll(Example<S> example) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public <S extends T> Flux<S> findAll(Example<S> example, Sort sort) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public <S extends T> Mono<Long> count(Example<S> example) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public <S extends T> Mono<Boolean> exists(Example<S> example) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public <S extends T, R, P extends Publisher<R>> P findBy(Example<S> example, Function<FluentQuery.ReactiveFluentQuery<S>, P> queryFunction) {
+    throw new UnsupportedOperationException();
+  }
+
+}
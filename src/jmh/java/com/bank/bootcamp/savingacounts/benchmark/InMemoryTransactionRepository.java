@@ -0,0 +1,89 @@
+package com.bank.bootcamp.savingacounts.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Objects;
+import com.bank.bootcamp.savingacounts.dto.BalanceDelta;
+import com.bank.bootcamp.savingacounts.dto.MovementCursor;
+import com.bank.bootcamp.savingacounts.entity.BalanceSnapshot;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.repository.TransactionRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class InMemoryTransactionRepository extends InMemoryRepository<Transaction> implements TransactionRepository {
+
+  public InMemoryTransactionRepository() {
+    super(Transaction::getId, Transaction::setId);
+  }
+
+  @Override
+  public Flux<Transaction> findByAccountId(String accountId) {
+    return findAll().filter(tx -> Objects.equals(tx.getAccountId(), accountId));
+  }
+
+  @Override
+  public Flux<Transaction> findByAccountIdAndRegisterDateBetween(String accountId, LocalDateTime from, LocalDateTime to) {
+    return findByAccountId(accountId)
+        .filter(tx -> tx.getRegisterDate().isAfter(from) && tx.getRegisterDate().isBefore(to));
+  }
+
+  @Override
+  public Flux<Transaction> findByAccountIdOrderByRegisterDateAscOperationNumberAsc(String accountId) {
+    return findByAccountId(accountId)
+        .sort(Comparator.comparing(Transaction::getRegisterDate).thenComparing(Transaction::getOperationNumber));
+  }
+
+  @Override
+  public Flux<Transaction> findAllByOrderByAccountIdAscRegisterDateAscOperationNumberAsc() {
+    return findAll()
+        .sort(Comparator.comparing(Transaction::getAccountId).thenComparing(Transaction::getRegisterDate).thenComparing(Transaction::getOperationNumber));
+  }
+
+  @Override
+  public Mono<Transaction> findByTransferId(String transferId) {
+    return findAll().filter(tx -> Objects.equals(tx.getTransferId(), transferId)).next();
+  }
+
+  @Override
+  public Mono<Long> getBalanceByAccountId(String accountId) {
+    return findByAccountId(accountId).map(Transaction::getAmount).reduce(Long::sum);
+  }
+
+  @Override
+  public Mono<BalanceDelta> sumAfter(String accountId, BalanceSnapshot after, LocalDateTime until) {
+    return findByAccountIdOrderByRegisterDateAscOperationNumberAsc(accountId)
+        .filter(tx -> until == null || tx.getRegisterDate().isBefore(until))
+        .filter(tx -> after == null || tx.getRegisterDate().isAfter(after.getAsOfRegisterDate())
+            || (tx.getRegisterDate().isEqual(after.getAsOfRegisterDate()) && tx.getOperationNumber() > after.getAsOfOperationNumber()))
+        .reduce(new BalanceDelta(), (delta, tx) -> {
+          delta.setAmount((delta.getAmount() == null ? 0L : delta.getAmount()) + tx.getAmount());
+          delta.setTransactions((delta.getTransactions() == null ? 0L : delta.getTransactions()) + 1);
+          delta.setLastRegisterDate(tx.getRegisterDate());
+          delta.setLastOperationNumber(tx.getOperationNumber());
+          return delta;
+        })
+        .filter(delta -> delta.getTransactions() != null);
+  }
+
+  @Override
+  public Flux<Transaction> findPageByAccountIdAndPeriod(String accountId, LocalDateTime from, LocalDateTime to, MovementCursor after, int limit) {
+    return findByAccountId(accountId)
+        .filter(tx -> !tx.getRegisterDate().isBefore(from) && tx.getRegisterDate().isBefore(to))
+        .filter(tx -> after == null || tx.getRegisterDate().isAfter(after.getRegisterDate())
+            || (tx.getRegisterDate().isEqual(after.getRegisterDate()) && tx.getOperationNumber() > after.getOperationNumber()))
+        .sort(Comparator.comparing(Transaction::getRegisterDate).thenComparing(Transaction::getOperationNumber))
+        .take(limit);
+  }
+
+  @Override
+  public Flux<Transaction> streamByPeriod(LocalDateTime from, LocalDateTime to, int batchSize) {
+    return findAll().filter(tx -> !tx.getRegisterDate().isBefore(from) && tx.getRegisterDate().isBefore(to));
+  }
+
+  @Override
+  public Mono<Boolean> removeById(String id) {
+    return Mono.fromSupplier(() -> store.remove(id) != null);
+  }
+
+}
@@ -0,0 +1,85 @@
+package com.bank.bootcamp.savingacounts.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.function.Consumer;
+import com.bank.bootcamp.savingacounts.dto.TransferStatus;
+import com.bank.bootcamp.savingacounts.entity.Transfer;
+import com.bank.bootcamp.savingacounts.repository.TransferRepository;
+import reactor.core.publisher.Mono;
+
+public class InMemoryTransferRepository extends InMemoryRepository<Transfer> implements TransferRepository {
+
+  public InMemoryTransferRepository() {
+    super(Transfer::getId, Transfer::setId);
+  }
+
+  @Override
+  public Mono<Transfer> claimNext(LocalDateTime now, LocalDateTime leaseUntil) {
+    return Mono.fromSupplier(() -> {
+      synchronized (this) {
+        var next = store.values().stream()
+            .filter(transfer -> transfer.getStatus() == TransferStatus.DEBITING || transfer.getStatus() == TransferStatus.PENDING)
+            .filter(transfer -> !transfer.getNextAttemptAt().isAfter(now))
+            .min(Comparator.comparing(Transfer::getNextAttemptAt));
+        next.ifPresent(transfer -> {
+          transfer.setAttempts(transfer.getAttempts() + 1);
+          transfer.setNextAttemptAt(leaseUntil);
+        });
+        return next.orElse(null);
+      }
+    });
+  }
+
+  @Override
+  public Mono<Transfer> markDebited(String transferId, String sourceTransactionId, Integer sourceOperationNumber, LocalDateTime nextAttemptAt) {
+    return transition(transferId, TransferStatus.DEBITING, transfer -> {
+      transfer.setStatus(TransferStatus.PENDING);
+      transfer.setSourceTransactionId(sourceTransactionId);
+      transfer.setSourceOperationNumber(sourceOperationNumber);
+      transfer.setNextAttemptAt(nextAttemptAt);
+    });
+  }
+
+  @Override
+  public Mono<Transfer> markSettled(String transferId, Integer targetOperationNumber, LocalDateTime settledAt) {
+    return transition(transferId, TransferStatus.PENDING, transfer -> {
+      transfer.setStatus(TransferStatus.SETTLED);
+      transfer.setTargetOperationNumber(targetOperationNumber);
+      transfer.setClosedAt(settledAt);
+      transfer.setLastError(null);
+      transfer.setNextAttemptAt(null);
+    });
+  }
+
+  @Override
+  public Mono<Transfer> scheduleRetry(String transferId, TransferStatus status, String error, LocalDateTime nextAttemptAt) {
+    return transition(transferId, status, transfer -> {
+      transfer.setLastError(error);
+      transfer.setNextAttemptAt(nextAttemptAt);
+    });
+  }
+
+  @Override
+  public Mono<Transfer> close(String transferId, TransferStatus from, TransferStatus to, String error, LocalDateTime closedAt) {
+    return transition(transferId, from, transfer -> {
+      transfer.setStatus(to);
+      transfer.setLastError(error);
+      transfer.setClosedAt(closedAt);
+      transfer.setNextAttemptAt(null);
+    });
+  }
+
+  private Mono<Transfer> transition(String transferId, TransferStatus from, Consumer<Transfer> change) {
+    return Mono.fromSupplier(() -> {
+      synchronized (this) {
+        var transfer = store.get(transferId);
+        if (transfer == null || transfer.getStatus() != from)
+          return null;
+        change.accept(transfer);
+        return transfer;
+      }
+    });
+  }
+
+}
@@ -0,0 +1,71 @@
+package com.bank.bootcamp.savingacounts.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.bank.bootcamp.savingacounts.dto.CreateAccountDTO;
+import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.mapper.EntityMapper;
+
+/**
+ * The conversions AccountService does on every account opening and transaction, with the
+ * ModelMapper calls it used before as reference.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+
+  private final ModelMapper mapper = new ModelMapper();
+  private CreateAccountDTO createAccountDTO;
+  private CreateTransactionDTO createTransactionDTO;
+
+  @Setup
+  public void setup() {
+    createAccountDTO = new CreateAccountDTO();
+    createAccountDTO.setCustomerId("customer-1");
+    createAccountDTO.setMonthlyMovementLimit(10);
+    createAccountDTO.setOpeningAmount(10000L);
+    
+    createTransactionDTO = new CreateTransactionDTO();
+    createTransactionDTO.setAccountId("account-1");
+    createTransactionDTO.setAgent("benchmark");
+    createTransactionDTO.setDescription("Deposit");
+    createTransactionDTO.setAmount(1000L);
+  }
+
+  @Benchmark
+  public Account createAccountDTOToAccount() {
+    return EntityMapper.toAccount(createAccountDTO);
+  }
+
+  @Benchmark
+  public Transaction createTransactionDTOToTransaction() {
+    return EntityMapper.toTransaction(createTransactionDTO);
+  }
+
+  @Benchmark
+  public Account modelMapperCreateAccountDTOToAccount() {
+    return mapper.map(createAccountDTO, Account.class);
+  }
+
+  @Benchmark
+  public Transaction modelMapperCreateTransactionDTOToTransaction() {
+    return mapper.map(createTransactionDTO, Transaction.class);
+  }
+
+}
@@ -0,0 +1,51 @@
+package com.bank.bootcamp.savingacounts.benchmark;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.env.MockEnvironment;
+import com.bank.bootcamp.savingacounts.entity.TransactionSequences;
+import com.bank.bootcamp.savingacounts.service.NextSequenceService;
+
+/**
+ * Per-call reservation ({@code blockSize = 1}) against block reservation, with and without a
+ * simulated round trip to the sequence document.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NextSequenceBenchmark {
+
+  @Param({"1", "100"})
+  public int blockSize;
+
+  @Param({"0", "200"})
+  public long roundTripMicros;
+
+  private NextSequenceService nextSequenceService;
+
+  @Setup
+  public void setup() {
+    var env = new MockEnvironment().withProperty("sequence.block-size", String.valueOf(blockSize));
+    nextSequenceService = new InMemoryNextSequenceService(env, Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros)));
+  }
+
+  @Benchmark
+  public Integer getNextSequence() {
+    return nextSequenceService.getNextSequence(TransactionSequences.class.getSimpleName()).block();
+  }
+
+}
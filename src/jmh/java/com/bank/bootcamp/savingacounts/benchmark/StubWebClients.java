@@ -0,0 +1,55 @@
+package com.bank.bootcamp.savingacounts.benchmark;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.mock.env.MockEnvironment;
+import com.bank.bootcamp.savingacounts.dto.AccountType;
+import com.bank.bootcamp.savingacounts.dto.BalanceDTO;
+import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.service.OperationMetrics;
+import com.bank.bootcamp.savingacounts.webclient.AccountWebClient;
+import com.bank.bootcamp.savingacounts.webclient.CreditWebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Local answers for the calls to the other product services, so the benchmarks measure only this
+ * service's pipelines.
+ */
+public final class StubWebClients {
+
+  private static final Environment ENV = new MockEnvironment().withProperty("gateway.url", "http://localhost");
+
+  private StubWebClients() {
+  }
+
+  public static class StubAccountWebClient extends AccountWebClient {
+
+    private final AtomicInteger operationNumber = new AtomicInteger();
+
+    public StubAccountWebClient(OperationMetrics metrics) {
+      super(new ReactiveResilience4JCircuitBreakerFactory(), ENV, metrics);
+    }
+
+    @Override
+    public Mono<Integer> createTransaction(AccountType accountType, CreateTransactionDTO dto, String idempotencyKey) {
+      return Mono.fromSupplier(operationNumber::incrementAndGet);
+    }
+  }
+
+  public static class StubCreditWebClient extends CreditWebClient {
+
+    public StubCreditWebClient(OperationMetrics metrics) {
+      super(new ReactiveResilience4JCircuitBreakerFactory(), ENV, metrics);
+    }
+
+    @Override
+    public Flux<BalanceDTO> getAllBalances(String customerId) {
+      var balance = new BalanceDTO();
+      balance.setAccountId(customerId);
+      balance.setAmount(0L);
+      return Flux.just(balance);
+    }
+  }
+}
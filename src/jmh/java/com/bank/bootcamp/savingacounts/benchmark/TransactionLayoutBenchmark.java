@@ -0,0 +1,113 @@
+package com.bank.bootcamp.savingacounts.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import org.springframework.mock.env.MockEnvironment;
+import com.bank.bootcamp.savingacounts.config.MongoIndexInitializer;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.repository.BucketedTransactionRepository;
+import com.bank.bootcamp.savingacounts.repository.TransactionRepository;
+import com.bank.bootcamp.savingacounts.repository.TransactionRepositoryCustomImpl;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import reactor.core.publisher.Mono;
+
+/**
+ * One document per movement against account-month buckets, on a real MongoDB with the same
+ * history loaded in both layouts. Needs a disposable server:
+ * {@code -Djmh.args="TransactionLayoutBenchmark -jvmArgs -Dmongodb.benchmark.uri=mongodb://localhost:27017"}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionLayoutBenchmark {
+
+  private static final String DATABASE = "saving-accounts-layout-benchmark";
+  private static final int ACCOUNTS = 100;
+  private static final int MONTHS = 12;
+  private static final LocalDateTime START = LocalDateTime.now().minusMonths(MONTHS).withDayOfMonth(1);
+
+  @Param({"documents", "buckets"})
+  public String layout;
+
+  @Param({"60"})
+  public int movementsPerMonth;
+
+  private final AtomicInteger operationNumber = new AtomicInteger();
+  private MongoClient client;
+  private TransactionRepository transactionRepository;
+
+  @Setup
+  public void setup() {
+    client = MongoClients.create(System.getProperty("mongodb.benchmark.uri", "mongodb://localhost:27017"));
+    var mongoTemplate = new ReactiveMongoTemplate(client, DATABASE);
+    mongoTemplate.getMongoDatabase().flatMap(db -> Mono.from(db.drop())).block();
+    if ("buckets".equals(layout)) {
+      BucketedTransactionRepository.ensureIndexes(mongoTemplate).block();
+      transactionRepository = new BucketedTransactionRepository(mongoTemplate, new MockEnvironment());
+    } else {
+      new MongoIndexInitializer(mongoTemplate).ensureIndexes().block();
+      transactionRepository = new ReactiveMongoRepositoryFactory(mongoTemplate)
+          .getRepository(TransactionRepository.class, new TransactionRepositoryCustomImpl(mongoTemplate));
+    }
+    for (var account = 0; account < ACCOUNTS; account++) {
+      var history = new ArrayList<Transaction>();
+      for (var month = 0; month < MONTHS; month++)
+        for (var movement = 0; movement < movementsPerMonth; movement++)
+          history.add(transaction(account, START.plusMonths(month).plusMinutes(movement)));
+      transactionRepository.saveAll(history).then().block();
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    client.close();
+  }
+
+  private Transaction transaction(int account, LocalDateTime registerDate) {
+    var transaction = new Transaction();
+    transaction.setAccountId("SA-" + account);
+    transaction.setRegisterDate(registerDate);
+    transaction.setOperationNumber(operationNumber.incrementAndGet());
+    transaction.setAmount(ThreadLocalRandom.current().nextBoolean() ? 1000L : -500L);
+    return transaction;
+  }
+
+  @Benchmark
+  public Transaction addMovement() {
+    return transactionRepository.save(transaction(ThreadLocalRandom.current().nextInt(ACCOUNTS), LocalDateTime.now())).block();
+  }
+
+  @Benchmark
+  public List<Transaction> monthStatement() {
+    var from = START.plusMonths(ThreadLocalRandom.current().nextInt(MONTHS));
+    return transactionRepository.findByAccountIdAndRegisterDateBetween("SA-" + ThreadLocalRandom.current().nextInt(ACCOUNTS),
+        from.minusNanos(1), from.plusMonths(1)).collectList().block();
+  }
+
+  @Benchmark
+  public Long balance() {
+    return transactionRepository.getBalanceByAccountId("SA-" + ThreadLocalRandom.current().nextInt(ACCOUNTS)).block();
+  }
+}
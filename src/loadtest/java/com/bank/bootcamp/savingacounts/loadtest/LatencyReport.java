@@ -0,0 +1,149 @@
+package com.bank.bootcamp.savingacounts.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import com.bank.bootcamp.savingacounts.loadtest.LoadMix.Operation;
+
+/**
+ * Latency of every request from the moment it was scheduled to be sent, so a slow server is not
+ * hidden by requests that went out late, plus errors and requests that could not be sent.
+ * Latencies are recorded in microseconds and reported in milliseconds.
+ */
+public class LatencyReport {
+
+  private static final String[] PERCENTILES = {"p50", "p99", "p999"};
+
+  private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+  private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+  private final AtomicLong missed = new AtomicLong();
+  private final Map<Operation, Histogram> histograms = new EnumMap<>(Operation.class);
+  private long elapsedNanos;
+
+  public LatencyReport(List<Operation> operations) {
+    for (var operation : operations) {
+      recorders.put(operation, new Recorder(3));
+      errors.put(operation, new AtomicLong());
+    }
+  }
+
+  public void record(Operation operation, long latencyNanos, boolean failed) {
+    recorders.get(operation).recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+    if (failed)
+      errors.get(operation).incrementAndGet();
+  }
+
+  public void missed() {
+    missed.incrementAndGet();
+  }
+
+  /** Closes the measurement, taking what was recorded since the report was created. */
+  public LatencyReport finish(long elapsedNanos) {
+    this.elapsedNanos = elapsedNanos;
+    recorders.forEach((operation, recorder) -> histograms.put(operation, recorder.getIntervalHistogram()));
+    return this;
+  }
+
+  public Properties results() {
+    var results = new Properties();
+    var seconds = elapsedNanos / 1e9;
+    histograms.forEach((operation, histogram) -> {
+      var name = operation.name().toLowerCase();
+      results.setProperty(name + ".count", String.valueOf(histogram.getTotalCount()));
+      results.setProperty(name + ".errors", String.valueOf(errors.get(operation).get()));
+      results.setProperty(name + ".throughput", format(histogram.getTotalCount() / seconds));
+      results.setProperty(name + ".p50", millis(histogram.getValueAtPercentile(50)));
+      results.setProperty(name + ".p99", millis(histogram.getValueAtPercentile(99)));
+      results.setProperty(name + ".p999", millis(histogram.getValueAtPercentile(99.9)));
+      results.setProperty(name + ".max", millis(histogram.getMaxValue()));
+    });
+    results.setProperty("missed", String.valueOf(missed.get()));
+    return results;
+  }
+
+  public void print(PrintStream out) {
+    var results = results();
+    out.printf("%-12s %10s %8s %10s %10s %10s %10s %10s%n", "operation", "count", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+    for (var operation : histograms.keySet()) {
+      var name = operation.name().toLowerCase();
+      out.printf("%-12s %10s %8s %10s %10s %10s %10s %10s%n", name,
+          results.get(name + ".count"), results.get(name + ".errors"), results.get(name + ".throughput"),
+          results.get(name + ".p50"), results.get(name + ".p99"), results.get(name + ".p999"), results.get(name + ".max"));
+    }
+    if (missed.get() > 0)
+      out.printf("%d requests could not be sent on time (max in flight reached)%n", missed.get());
+  }
+
+  /** Writes the results and the full distribution of every operation into the directory. */
+  public void write(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    store(results(), directory.resolve("result.properties"));
+    for (var entry : histograms.entrySet())
+      try (var out = new PrintStream(directory.resolve(entry.getKey().name().toLowerCase() + ".hgrm").toFile())) {
+        entry.getValue().outputPercentileDistribution(out, 1000.0);
+      }
+  }
+
+  /**
+   * Regressions against a stored baseline: a percentile slower or a throughput lower than the
+   * baseline by more than the tolerance (0.2 is 20 %). Operations the baseline does not have are
+   * not compared.
+   */
+  public List<String> regressions(Properties baseline, double tolerance) {
+    var regressions = new ArrayList<String>();
+    var results = results();
+    for (var operation : histograms.keySet()) {
+      var name = operation.name().toLowerCase();
+      for (var percentile : PERCENTILES) {
+        var key = name + "." + percentile;
+        if (baseline.containsKey(key) && value(results, key) > value(baseline, key) * (1 + tolerance))
+          regressions.add(String.format("%s %s ms, baseline %s ms", key, results.get(key), baseline.get(key)));
+      }
+      var key = name + ".throughput";
+      if (baseline.containsKey(key) && value(results, key) < value(baseline, key) * (1 - tolerance))
+        regressions.add(String.format("%s %s req/s, baseline %s req/s", key, results.get(key), baseline.get(key)));
+      if (errors.get(operation).get() > 0)
+        regressions.add(String.format("%s had %d failed requests", name, errors.get(operation).get()));
+    }
+    return regressions;
+  }
+
+  public static Properties load(Path file) throws IOException {
+    var properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(file)) {
+      properties.load(reader);
+    }
+    return properties;
+  }
+
+  public static void store(Properties properties, Path file) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(file)) {
+      properties.store(writer, "Load test latencies in ms, throughput in req/s");
+    }
+  }
+
+  private static double value(Properties properties, String key) {
+    return Double.parseDouble(properties.getProperty(key));
+  }
+
+  private static String millis(long micros) {
+    return format(micros / 1000.0);
+  }
+
+  private static String format(double value) {
+    return String.format(Locale.ROOT, "%.3f", value);
+  }
+}
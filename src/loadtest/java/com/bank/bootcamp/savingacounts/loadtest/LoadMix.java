@@ -0,0 +1,95 @@
+package com.bank.bootcamp.savingacounts.loadtest;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClient;
+import com.bank.bootcamp.savingacounts.dto.AccountType;
+import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.dto.TransferDTO;
+import reactor.core.publisher.Mono;
+
+/**
+ * Weighted choice of the requests sent to {@code AccountController}, written as
+ * {@code transaction:50,transfer:10,balance:30,movements:10}.
+ */
+public class LoadMix {
+
+  public enum Operation {
+
+    TRANSACTION, TRANSFER, BALANCE, MOVEMENTS;
+
+    /** Sends the request for a random account and completes with the response status. */
+    Mono<HttpStatus> call(WebClient client, List<String> accountIds) {
+      var accountId = accountIds.get(ThreadLocalRandom.current().nextInt(accountIds.size()));
+      switch (this) {
+        case TRANSACTION:
+          var transaction = new CreateTransactionDTO();
+          transaction.setAccountId(accountId);
+          transaction.setAgent("load-test");
+          transaction.setDescription("Deposit");
+          transaction.setAmount(100L);
+          return exchange(client.post().uri("/savingAccounts/transaction").bodyValue(transaction));
+        case TRANSFER:
+          var transfer = new TransferDTO();
+          transfer.setSourceAccountId(accountId);
+          transfer.setTargetAccountType(AccountType.FIXED_TERM);
+          transfer.setTargetAccountId("FT-" + accountId);
+          transfer.setAmount(100L);
+          return exchange(client.post().uri("/savingAccounts/transfer").bodyValue(transfer));
+        case BALANCE:
+          return exchange(client.get().uri("/savingAccounts/balance/{accountId}", accountId));
+        default:
+          var month = YearMonth.now();
+          return exchange(client.get().uri("/savingAccounts/movements/{accountId}/{year}/{month}", accountId, month.getYear(), month.getMonthValue()));
+      }
+    }
+
+    private static Mono<HttpStatus> exchange(WebClient.RequestHeadersSpec<?> request) {
+      return request.exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode()));
+    }
+  }
+
+  private final Map<Operation, Integer> weights = new LinkedHashMap<>();
+  private final List<Operation> operations = new ArrayList<>();
+  private final int[] cumulative;
+
+  public LoadMix(String mix) {
+    for (var entry : mix.split(",")) {
+      var parts = entry.trim().split(":");
+      var weight = Integer.parseInt(parts[1].trim());
+      if (weight > 0)
+        weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), weight);
+    }
+    if (weights.isEmpty())
+      throw new IllegalArgumentException("The load mix has no operations: " + mix);
+    cumulative = new int[weights.size()];
+    var total = 0;
+    for (var entry : weights.entrySet()) {
+      total += entry.getValue();
+      cumulative[operations.size()] = total;
+      operations.add(entry.getKey());
+    }
+  }
+
+  public List<Operation> operations() {
+    return operations;
+  }
+
+  public Operation next() {
+    var pick = ThreadLocalRandom.current().nextInt(cumulative[cumulative.length - 1]);
+    var index = 0;
+    while (cumulative[index] <= pick)
+      index++;
+    return operations.get(index);
+  }
+
+  @Override
+  public String toString() {
+    return weights.toString();
+  }
+}
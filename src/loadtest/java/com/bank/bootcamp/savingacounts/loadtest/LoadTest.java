@@ -0,0 +1,148 @@
+package com.bank.bootcamp.savingacounts.loadtest;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import com.bank.bootcamp.savingacounts.SavingAcountsApplication;
+import com.bank.bootcamp.savingacounts.dto.CreateAccountDTO;
+import com.mongodb.ConnectionString;
+import com.mongodb.reactivestreams.client.MongoClients;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Starts the application against a throwaway local MongoDB database and a {@link StubGateway},
+ * with config server and Eureka off, opens {@code loadtest.accounts} accounts and sends the
+ * {@code loadtest.mix} of requests at {@code loadtest.rate} requests per second. After
+ * {@code loadtest.warmup-seconds} it measures for {@code loadtest.duration-seconds}, writes the
+ * results to {@code target/load-test} and compares them with {@code loadtest.baseline}; it exits
+ * with 1 on a regression or when there is no baseline to compare with.
+ * {@code loadtest.update-baseline=true} stores the results as the new baseline instead; the
+ * committed {@code src/loadtest/baseline.properties} is regenerated that way on the machine that
+ * runs the comparison.
+ * <p>
+ * {@code mvn -Pload-test test-compile exec:exec [-Dloadtest.rate=500 -Dloadtest.mix=transaction:80,balance:20]}
+ * <br>
+ * {@code mvn -Pload-test test-compile exec:exec -Dloadtest.update-baseline=true}
+ */
+public class LoadTest {
+
+  public static void main(String[] args) throws Exception {
+    var mongoUri = property("loadtest.mongodb.uri", "mongodb://localhost:27017/saving-accounts-load-test");
+    var rate = Integer.parseInt(property("loadtest.rate", "200"));
+    var warmup = Duration.ofSeconds(Long.parseLong(property("loadtest.warmup-seconds", "20")));
+    var duration = Duration.ofSeconds(Long.parseLong(property("loadtest.duration-seconds", "60")));
+    var maxInFlight = Integer.parseInt(property("loadtest.max-in-flight", "512"));
+    var accounts = Integer.parseInt(property("loadtest.accounts", "200"));
+    var mix = new LoadMix(property("loadtest.mix", "transaction:50,transfer:10,balance:30,movements:10"));
+    var baseline = Path.of(property("loadtest.baseline", "src/loadtest/baseline.properties"));
+    var tolerance = Double.parseDouble(property("loadtest.tolerance", "0.25"));
+    var output = Path.of(property("loadtest.output", "target/load-test"));
+
+    dropDatabase(mongoUri);
+    var exitCode = 0;
+    try (var gateway = new StubGateway(Duration.ofMillis(Long.parseLong(property("loadtest.gateway-latency-ms", "5"))));
+        var context = start(mongoUri, gateway)) {
+      var client = client(context, maxInFlight);
+      var accountIds = openAccounts(client, accounts);
+      System.out.printf("Sending %s at %d req/s: %s warm-up, %s measured%n", mix, rate, warmup, duration);
+      run(client, accountIds, mix, rate, warmup, maxInFlight);
+      var report = run(client, accountIds, mix, rate, duration, maxInFlight);
+      report.print(System.out);
+      report.write(output);
+
+      if (Boolean.parseBoolean(property("loadtest.update-baseline", "false"))) {
+        LatencyReport.store(report.results(), baseline);
+        System.out.printf("Baseline stored in %s%n", baseline);
+      } else if (Files.exists(baseline)) {
+        var regressions = report.regressions(LatencyReport.load(baseline), tolerance);
+        regressions.forEach(regression -> System.out.printf("REGRESSION %s%n", regression));
+        exitCode = regressions.isEmpty() ? 0 : 1;
+      } else {
+        System.out.printf("No baseline in %s, store one with -Dloadtest.update-baseline=true%n", baseline);
+        exitCode = 1;
+      }
+    }
+    System.exit(exitCode);
+  }
+
+  private static String property(String name, String defaultValue) {
+    return Optional.ofNullable(System.getProperty(name)).filter(value -> !value.isBlank()).orElse(defaultValue);
+  }
+
+  private static void dropDatabase(String mongoUri) {
+    var connectionString = new ConnectionString(mongoUri);
+    try (var mongoClient = MongoClients.create(connectionString)) {
+      Mono.from(mongoClient.getDatabase(connectionString.getDatabase()).drop()).block();
+    }
+  }
+
+  private static ConfigurableApplicationContext start(String mongoUri, StubGateway gateway) {
+    // el contexto bootstrap lee bootstrap.properties antes que las propiedades de la aplicación
+    System.setProperty("spring.cloud.config.enabled", "false");
+    System.setProperty("spring.devtools.restart.enabled", "false");
+    return new SpringApplicationBuilder(SavingAcountsApplication.class)
+        .properties(
+            "server.port=0",
+            "eureka.client.enabled=false",
+            "spring.data.mongodb.uri=" + mongoUri,
+            "gateway.url=" + gateway.url(),
+            "logging.level.root=WARN")
+        .run();
+  }
+
+  private static WebClient client(ConfigurableApplicationContext context, int maxInFlight) {
+    var connections = ConnectionProvider.builder("load-test").maxConnections(maxInFlight).pendingAcquireMaxCount(-1).build();
+    return WebClient.builder()
+        .baseUrl("http://localhost:" + context.getEnvironment().getProperty("local.server.port"))
+        .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+        .build();
+  }
+
+  private static List<String> openAccounts(WebClient client, int accounts) {
+    var run = Long.toString(System.currentTimeMillis(), 36);
+    return Flux.range(0, accounts)
+        .flatMap(index -> {
+          var account = new CreateAccountDTO();
+          account.setCustomerId("load-" + run + "-" + index);
+          account.setOpeningAmount(100_000_000_000L);
+          account.setMonthlyMovementLimit(Integer.MAX_VALUE);
+          return client.post().uri("/savingAccounts").bodyValue(account).retrieve().bodyToMono(String.class);
+        }, 16)
+        .collectList()
+        .block();
+  }
+
+  /**
+   * Open loop: request {@code n} is due at {@code n / rate} seconds whatever happened to the
+   * previous ones, and its latency counts from then. Requests that find {@code maxInFlight}
+   * requests still running are not sent and are reported as missed.
+   */
+  private static LatencyReport run(WebClient client, List<String> accountIds, LoadMix mix, int rate, Duration duration, int maxInFlight) {
+    var period = Duration.ofNanos(1_000_000_000L / rate);
+    var report = new LatencyReport(mix.operations());
+    var start = System.nanoTime();
+    Flux.interval(period, Schedulers.parallel())
+        .take(duration.toNanos() / period.toNanos())
+        .onBackpressureDrop(tick -> report.missed())
+        .flatMap(tick -> {
+          var due = start + (tick + 1) * period.toNanos();
+          var operation = mix.next();
+          return operation.call(client, accountIds)
+              .map(status -> status.is2xxSuccessful())
+              .onErrorReturn(false)
+              .doOnNext(succeeded -> report.record(operation, System.nanoTime() - due, !succeeded));
+        }, maxInFlight)
+        .blockLast();
+    return report.finish(System.nanoTime() - start);
+  }
+}
@@ -0,0 +1,43 @@
+package com.bank.bootcamp.savingacounts.loadtest;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * Answers the calls this service makes through {@code gateway.url}: the credit balances checked
+ * for VIP accounts and the credits of transfers to other account types, after a fixed delay that
+ * stands for the network and the other service.
+ */
+public class StubGateway implements AutoCloseable {
+
+  private final AtomicInteger operationNumber = new AtomicInteger();
+  private final DisposableServer server;
+
+  public StubGateway(Duration latency) {
+    server = HttpServer.create()
+        .host("localhost")
+        .port(0)
+        .route(routes -> routes
+            .get("/credits/balanceByCustomer/{customerId}/{creditType}", (request, response) -> response
+                .header("Content-Type", "application/json")
+                .sendString(Mono.just("[{\"accountId\":\"CR-" + request.param("customerId") + "\",\"amount\":0.0}]").delayElement(latency)))
+            .post("/{resource}/transaction", (request, response) -> request.receive().then()
+                .then(response
+                    .header("Content-Type", "application/json")
+                    .sendString(Mono.fromSupplier(() -> String.valueOf(operationNumber.incrementAndGet())).delayElement(latency))
+                    .then())))
+        .bindNow();
+  }
+
+  public String url() {
+    return "http://localhost:" + server.port();
+  }
+
+  @Override
+  public void close() {
+    server.disposeNow();
+  }
+}
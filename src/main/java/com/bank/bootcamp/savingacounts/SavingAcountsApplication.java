@@ -10,7 +10,10 @@ public class SavingAcountsApplication {
 
   public static void main(String[] args) {
     System.setProperty("jdk.tls.client.protocols", "TLSv1.2");
-    SpringApplication.run(SavingAcountsApplication.class, args);
+    var context = SpringApplication.run(SavingAcountsApplication.class, args);
+    // una exportación termina cuando TransactionExportRunner acaba de escribir el fichero
+    if (context.getEnvironment().containsProperty("export.file"))
+      System.exit(SpringApplication.exit(context));
   }
 
 }
@@ -0,0 +1,371 @@
+package com.bank.bootcamp.savingacounts.config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Sheds load before it reaches Mongo, enabled with {@code admission.enabled=true}. Every request
+ * to {@code /savingAccounts} takes one of {@code admission.max-in-flight} slots for as long as it
+ * runs. Transactions and transfers are also charged to the token bucket of their account and, for
+ * transactions, of their {@code agent}, read from the body before it is handed on. Batches are
+ * not held: their rows are charged the same way as they stream through to the controller, and
+ * they take one more slot for every {@code admission.batch.rows-per-slot} rows estimated from
+ * their {@code Content-Length}. A request that finds no slot or an empty bucket gets {@code 429}
+ * with {@code Retry-After}; a body over the size limit gets {@code 413}.
+ */
+@Component
+@ConditionalOnProperty(name = "admission.enabled", havingValue = "true")
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class AdmissionControlFilter implements WebFilter {
+
+  static final String ACCOUNT = "account";
+  static final String AGENT = "agent";
+  static final String CONCURRENCY = "concurrency";
+
+  private static final String PREFIX = "/savingAccounts";
+  private static final List<String> SINGLE_WRITES = List.of(PREFIX + "/transaction", PREFIX + "/transfer");
+  private static final List<String> BATCH_WRITES = List.of(PREFIX + "/transactions/batch", PREFIX + "/batch");
+  private static final int MAX_BODY_BYTES = 256 * 1024;
+
+  private final ObjectMapper objectMapper;
+  private final int maxInFlight;
+  private final int maxBatchBodyBytes;
+  private final int rowsPerSlot;
+  private final int bytesPerRow;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final TokenBuckets accountBuckets;
+  private final TokenBuckets agentBuckets;
+  private final Map<String, Counter> rejections;
+
+  @Autowired
+  public AdmissionControlFilter(ObjectMapper objectMapper, Environment env, MeterRegistry meterRegistry) {
+    this(objectMapper, env, meterRegistry, System::nanoTime);
+  }
+
+  public AdmissionControlFilter(ObjectMapper objectMapper, Environment env, MeterRegistry meterRegistry, LongSupplier nanoTime) {
+    this.objectMapper = objectMapper;
+    this.maxInFlight = Integer.parseInt(Optional.ofNullable(env.getProperty("admission.max-in-flight")).orElse("256"));
+    this.maxBatchBodyBytes = Integer.parseInt(Optional.ofNullable(env.getProperty("admission.batch.max-body-bytes")).orElse(String.valueOf(16 * 1024 * 1024)));
+    this.rowsPerSlot = Integer.parseInt(Optional.ofNullable(env.getProperty("admission.batch.rows-per-slot")).orElse("50"));
+    this.bytesPerRow = Integer.parseInt(Optional.ofNullable(env.getProperty("admission.batch.bytes-per-row")).orElse("100"));
+    var maximumKeys = Long.parseLong(Optional.ofNullable(env.getProperty("admission.maximum-keys")).orElse("1000000"));
+    var idle = Duration.ofSeconds(Long.parseLong(Optional.ofNullable(env.getProperty("admission.idle-seconds")).orElse("60")));
+    this.accountBuckets = new TokenBuckets(
+        Double.parseDouble(Optional.ofNullable(env.getProperty("admission.account.rate-per-second")).orElse("10")),
+        Integer.parseInt(Optional.ofNullable(env.getProperty("admission.account.burst")).orElse("20")),
+        maximumKeys, idle, nanoTime);
+    this.agentBuckets = new TokenBuckets(
+        Double.parseDouble(Optional.ofNullable(env.getProperty("admission.agent.rate-per-second")).orElse("200")),
+        Integer.parseInt(Optional.ofNullable(env.getProperty("admission.agent.burst")).orElse("400")),
+        maximumKeys, idle, nanoTime);
+    this.rejections = Map.of(
+        ACCOUNT, rejectionCounter(meterRegistry, ACCOUNT),
+        AGENT, rejectionCounter(meterRegistry, AGENT),
+        CONCURRENCY, rejectionCounter(meterRegistry, CONCURRENCY));
+    Gauge.builder("account.admission.in-flight", inFlight, AtomicInteger::get).register(meterRegistry);
+    Gauge.builder("account.admission.buckets", accountBuckets, TokenBuckets::size).tag("bucket", ACCOUNT).register(meterRegistry);
+    Gauge.builder("account.admission.buckets", agentBuckets, TokenBuckets::size).tag("bucket", AGENT).register(meterRegistry);
+  }
+
+  private static Counter rejectionCounter(MeterRegistry meterRegistry, String bucket) {
+    return Counter.builder("account.admission.rejections").tag("bucket", bucket).register(meterRegistry);
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    var path = exchange.getRequest().getPath().pathWithinApplication().value();
+    if (!path.startsWith(PREFIX))
+      return chain.filter(exchange);
+    if (!takeSlots(1))
+      return reject(exchange, CONCURRENCY, TimeUnit.SECONDS.toNanos(1));
+    var slots = new AtomicInteger(1);
+    var post = HttpMethod.POST.equals(exchange.getRequest().getMethod());
+    Mono<Void> admitted;
+    if (post && SINGLE_WRITES.contains(path))
+      admitted = admitBody(exchange, chain, MAX_BODY_BYTES, this::charge);
+    else if (post && BATCH_WRITES.contains(path))
+      admitted = admitRows(exchange, chain, slots);
+    else
+      admitted = chain.filter(exchange);
+    return admitted.doFinally(signal -> inFlight.addAndGet(-slots.get()));
+  }
+
+  private boolean takeSlots(int slots) {
+    if (inFlight.addAndGet(slots) <= maxInFlight)
+      return true;
+    inFlight.addAndGet(-slots);
+    return false;
+  }
+
+  /**
+   * Reads the body, up to {@code maxBytes}, and hands it on when {@code admit} finds no bucket
+   * to reject it.
+   */
+  private Mono<Void> admitBody(ServerWebExchange exchange, WebFilterChain chain, int maxBytes,
+      Function<List<JsonNode>, Optional<Map.Entry<String, Long>>> admit) {
+    return DataBufferUtils.join(exchange.getRequest().getBody(), maxBytes)
+        .flatMap(body -> {
+          var wait = admit.apply(rows(body));
+          if (wait.isPresent()) {
+            DataBufferUtils.release(body);
+            return reject(exchange, wait.get().getKey(), wait.get().getValue());
+          }
+          var request = new ServerHttpRequestDecorator(exchange.getRequest()) {
+            @Override
+            public Flux<DataBuffer> getBody() {
+              return Flux.just(body);
+            }
+          };
+          return chain.filter(exchange.mutate().request(request).build());
+        })
+        .switchIfEmpty(Mono.defer(() -> chain.filter(exchange)))
+        .onErrorResume(DataBufferLimitException.class, e -> tooLarge(exchange));
+  }
+
+  /**
+   * Hands the batch on as it arrives and charges every row to its buckets once the scanner has
+   * read it, so the body is neither held nor parsed before the controller reads it. A row that
+   * finds an empty bucket ends the body; the rows before it were already handed on and keep
+   * their tokens. The error becomes a {@code 429} unless the first results were already sent.
+   */
+  private Mono<Void> admitRows(ServerWebExchange exchange, WebFilterChain chain, AtomicInteger slots) {
+    var length = exchange.getRequest().getHeaders().getContentLength();
+    if (length > maxBatchBodyBytes)
+      return tooLarge(exchange);
+    if (length > 0) {
+      // un lote grande ocupa más cupos, como las peticiones que reemplaza
+      var rows = (length + bytesPerRow - 1) / bytesPerRow;
+      var extra = (int) Math.min((rows + rowsPerSlot - 1) / rowsPerSlot, Math.max(1, maxInFlight / 2)) - 1;
+      if (extra > 0) {
+        if (!takeSlots(extra))
+          return reject(exchange, CONCURRENCY, TimeUnit.SECONDS.toNanos(1));
+        slots.addAndGet(extra);
+      }
+    }
+    var scanner = new RowScanner();
+    var request = new ServerHttpRequestDecorator(exchange.getRequest()) {
+      @Override
+      public Flux<DataBuffer> getBody() {
+        return super.getBody().handle((buffer, sink) -> {
+          try {
+            scanner.scan(buffer);
+            sink.next(buffer);
+          } catch (RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            sink.error(e);
+          }
+        });
+      }
+    };
+    var response = exchange.getResponse();
+    return chain.filter(exchange.mutate().request(request).build())
+        .onErrorResume(RowRejectedException.class, e -> response.isCommitted() ? Mono.error(e) : reject(exchange, e.bucket, e.waitNanos))
+        .onErrorResume(DataBufferLimitException.class, e -> response.isCommitted() ? Mono.error(e) : tooLarge(exchange));
+  }
+
+  /** The objects of the body: itself, the items of an array or the lines of NDJSON. */
+  private List<JsonNode> rows(DataBuffer body) {
+    var rows = new ArrayList<JsonNode>();
+    try (MappingIterator<JsonNode> values = objectMapper.readerFor(JsonNode.class).readValues(body.asInputStream(false))) {
+      while (values.hasNextValue()) {
+        var value = values.nextValue();
+        if (value.isArray())
+          value.forEach(rows::add);
+        else
+          rows.add(value);
+      }
+    } catch (IOException | RuntimeException e) {
+      // un cuerpo que no se puede leer lo rechaza el controlador
+    }
+    return rows;
+  }
+
+  /**
+   * Charges the rows to the buckets of their accounts and agents. Returns the bucket that
+   * rejected them and the nanoseconds to wait, if one did; the tokens already taken for the
+   * rejected request are given back.
+   */
+  private Optional<Map.Entry<String, Long>> charge(List<JsonNode> rows) {
+    var accounts = new LinkedHashMap<String, Integer>();
+    var agents = new LinkedHashMap<String, Integer>();
+    for (var json : rows) {
+      Optional.ofNullable(json.get("accountId")).or(() -> Optional.ofNullable(json.get("sourceAccountId")))
+          .filter(JsonNode::isTextual).map(JsonNode::asText)
+          .ifPresent(accountId -> accounts.merge(accountId, 1, Integer::sum));
+      Optional.ofNullable(json.get("agent")).filter(JsonNode::isTextual).map(JsonNode::asText)
+          .ifPresent(agent -> agents.merge(agent, 1, Integer::sum));
+    }
+    var charged = new ArrayList<Runnable>();
+    var wait = charge(accountBuckets, accounts, charged).map(nanos -> Map.entry(ACCOUNT, nanos))
+        .or(() -> charge(agentBuckets, agents, charged).map(nanos -> Map.entry(AGENT, nanos)));
+    if (wait.isPresent())
+      charged.forEach(Runnable::run);
+    return wait;
+  }
+
+  private static Optional<Long> charge(TokenBuckets buckets, Map<String, Integer> permits, List<Runnable> charged) {
+    for (var entry : permits.entrySet()) {
+      var wait = buckets.tryAcquire(entry.getKey(), entry.getValue());
+      if (wait > 0)
+        return Optional.of(wait);
+      charged.add(() -> buckets.release(entry.getKey(), entry.getValue()));
+    }
+    return Optional.empty();
+  }
+
+  private static Mono<Void> tooLarge(ServerWebExchange exchange) {
+    exchange.getResponse().setStatusCode(HttpStatus.PAYLOAD_TOO_LARGE);
+    return exchange.getResponse().setComplete();
+  }
+
+  private Mono<Void> reject(ServerWebExchange exchange, String bucket, long waitNanos) {
+    rejections.get(bucket).increment();
+    var response = exchange.getResponse();
+    response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+    response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L)));
+    return response.setComplete();
+  }
+
+  /**
+   * Follows the rows of a batch, the items of a JSON array or the lines of NDJSON, through a
+   * non-blocking parser fed with the buffers on their way to the controller, and charges each row
+   * to its account and agent when its object closes. Counts the bytes against the batch limit.
+   */
+  private class RowScanner {
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private long read;
+    private boolean unreadable;
+    private int depth;
+    private int rowDepth;
+    private String field;
+    private String accountId;
+    private String agent;
+
+    RowScanner() {
+      try {
+        parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    void scan(DataBuffer buffer) {
+      read += buffer.readableByteCount();
+      if (read > maxBatchBodyBytes)
+        throw new DataBufferLimitException("Batch body over " + maxBatchBodyBytes + " bytes");
+      if (unreadable)
+        return;
+      var bytes = new byte[buffer.readableByteCount()];
+      buffer.asByteBuffer().get(bytes);
+      try {
+        feeder.feedInput(bytes, 0, bytes.length);
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE)
+          next(token);
+      } catch (IOException e) {
+        // un cuerpo que no se puede leer lo rechaza el controlador
+        unreadable = true;
+      }
+    }
+
+    private void next(JsonToken token) throws IOException {
+      switch (token) {
+        case START_ARRAY:
+        case START_OBJECT:
+          if (depth == 0)
+            rowDepth = token == JsonToken.START_ARRAY ? 1 : 0;
+          if (depth == rowDepth && token == JsonToken.START_OBJECT) {
+            accountId = null;
+            agent = null;
+          }
+          depth++;
+          break;
+        case END_ARRAY:
+        case END_OBJECT:
+          depth--;
+          if (depth == rowDepth && token == JsonToken.END_OBJECT)
+            charge(accountId, agent);
+          break;
+        case FIELD_NAME:
+          field = parser.getCurrentName();
+          break;
+        case VALUE_STRING:
+          if (depth == rowDepth + 1) {
+            if ("accountId".equals(field) || ("sourceAccountId".equals(field) && accountId == null))
+              accountId = parser.getText();
+            else if (AGENT.equals(field))
+              agent = parser.getText();
+          }
+          break;
+        default:
+      }
+    }
+
+    private void charge(String accountId, String agent) {
+      var wait = accountId == null ? 0 : accountBuckets.tryAcquire(accountId, 1);
+      if (wait > 0)
+        throw new RowRejectedException(ACCOUNT, wait);
+      wait = agent == null ? 0 : agentBuckets.tryAcquire(agent, 1);
+      if (wait > 0) {
+        if (accountId != null)
+          accountBuckets.release(accountId, 1);
+        throw new RowRejectedException(AGENT, wait);
+      }
+    }
+  }
+
+  /** A batch row that found an empty bucket; stops the body it was read from. */
+  private static class RowRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String bucket;
+    private final long waitNanos;
+
+    RowRejectedException(String bucket, long waitNanos) {
+      super(bucket + " bucket is empty", null, false, false);
+      this.bucket = bucket;
+      this.waitNanos = waitNanos;
+    }
+  }
+}
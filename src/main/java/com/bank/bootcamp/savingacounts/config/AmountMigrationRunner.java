@@ -0,0 +1,26 @@
+package com.bank.bootcamp.savingacounts.config;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import com.bank.bootcamp.savingacounts.service.AmountMigration;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Runs {@link AmountMigration} while the context starts, once every bean exists and before the
+ * web server is started, so the new version never takes a write while a double is left. Once it
+ * has finished it is recorded and the next startups only read that record. It is on unless
+ * {@code amounts.migrate-on-startup=false}; a failed migration stops the startup.
+ */
+@Component
+@ConditionalOnProperty(name = "amounts.migrate-on-startup", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class AmountMigrationRunner implements SmartInitializingSingleton {
+
+  private final AmountMigration amountMigration;
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    amountMigration.migrateOnce().block();
+  }
+}
@@ -0,0 +1,46 @@
+package com.bank.bootcamp.savingacounts.config;
+
+import java.util.List;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.stereotype.Component;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.IdempotencyRecord;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.entity.Transfer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Builds the indexes of the entities while the context starts, once every bean exists and before
+ * the web server is started, so no request runs against a collection whose indexes are missing.
+ * A failed build stops the startup.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexInitializer implements SmartInitializingSingleton {
+
+  public static final List<Class<?>> INDEXED_ENTITIES = List.of(Account.class, Transaction.class, MonthlyAccountSummary.class, Transfer.class,
+      IdempotencyRecord.class);
+
+  private final ReactiveMongoTemplate mongoTemplate;
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    ensureIndexes().block();
+  }
+
+  public Mono<Void> ensureIndexes() {
+    var resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+    return Flux.fromIterable(INDEXED_ENTITIES)
+        .concatMap(entity -> Flux.fromIterable(resolver.resolveIndexFor(entity))
+            .concatMap(index -> mongoTemplate.indexOps(entity).ensureIndex(index))
+            .doOnNext(index -> log.info("Index {} ready on {}", index, mongoTemplate.getCollectionName(entity))))
+        .then();
+  }
+}
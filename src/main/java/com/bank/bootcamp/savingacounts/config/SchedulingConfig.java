@@ -0,0 +1,16 @@
+package com.bank.bootcamp.savingacounts.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Turns the scheduled jobs on, except for an offline export ({@code --export.file}): that run
+ * only writes its file and stops, and must not start rebuilding summaries or sweeping keys
+ * against the live database meanwhile.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnExpression("'${export.file:}'.isEmpty()")
+public class SchedulingConfig {
+}
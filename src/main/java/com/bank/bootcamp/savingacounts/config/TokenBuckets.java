@@ -0,0 +1,70 @@
+package com.bank.bootcamp.savingacounts.config;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * One token bucket per key, kept as a single theoretical arrival time (GCRA): a request is
+ * admitted when moving the time forward by one emission interval leaves it no more than
+ * {@code burst} intervals ahead of now. The time is updated with compare-and-set, so
+ * admission takes no lock. Keys are kept in a bounded Caffeine cache and dropped after being
+ * idle; an idle bucket has refilled by then, so dropping it changes nothing.
+ */
+public class TokenBuckets {
+
+  private final long emissionInterval;
+  private final long tolerance;
+  private final LongSupplier nanoTime;
+  private final Cache<String, AtomicLong> buckets;
+
+  public TokenBuckets(double ratePerSecond, int burst, long maximumKeys, Duration idle, LongSupplier nanoTime) {
+    this.emissionInterval = (long) (1_000_000_000L / ratePerSecond);
+    this.tolerance = emissionInterval * burst;
+    this.nanoTime = nanoTime;
+    this.buckets = Caffeine.newBuilder()
+        .maximumSize(maximumKeys)
+        .expireAfterAccess(Duration.ofNanos(Math.max(idle.toNanos(), tolerance)))
+        .ticker(nanoTime::getAsLong)
+        .build();
+  }
+
+  /**
+   * Takes a token from the bucket of the key. Returns 0 when admitted, or the nanoseconds until
+   * the request would be.
+   */
+  public long tryAcquire(String key) {
+    return tryAcquire(key, 1);
+  }
+
+  /**
+   * Takes {@code permits} tokens from the bucket of the key. The request is admitted as soon as
+   * one token is available and the rest is owed, so a request larger than the burst is not
+   * refused forever: the requests after it wait until the debt is paid at the bucket rate.
+   */
+  public long tryAcquire(String key, int permits) {
+    var arrival = buckets.get(key, k -> new AtomicLong(Long.MIN_VALUE));
+    while (true) {
+      var now = nanoTime.getAsLong();
+      var current = arrival.get();
+      var start = Math.max(current, now);
+      if (start + emissionInterval - now > tolerance)
+        return start + emissionInterval - now - tolerance;
+      if (arrival.compareAndSet(current, start + emissionInterval * permits))
+        return 0;
+    }
+  }
+
+  /** Gives back tokens taken for a request that was rejected afterwards. */
+  public void release(String key, int permits) {
+    var arrival = buckets.getIfPresent(key);
+    if (arrival != null)
+      arrival.addAndGet(-emissionInterval * permits);
+  }
+
+  public long size() {
+    return buckets.estimatedSize();
+  }
+}
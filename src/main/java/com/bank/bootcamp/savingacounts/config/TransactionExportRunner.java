@@ -0,0 +1,45 @@
+package com.bank.bootcamp.savingacounts.config;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Optional;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import com.bank.bootcamp.savingacounts.dto.ExportFormat;
+import com.bank.bootcamp.savingacounts.service.TransactionExportService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Offline export: when started with {@code --export.file}, writes the movements of
+ * {@code export.from} to {@code export.to} (both days included) into the file; the application
+ * stops once it is written, without running the scheduled jobs. The format is
+ * {@code export.format} (NDJSON by default) and the file is gzipped when its name ends in
+ * {@code .gz}. Run it without the web server and Eureka:
+ * {@code java -jar saving-accounts.jar --spring.main.web-application-type=none
+ * --eureka.client.enabled=false --export.from=2022-05-01 --export.to=2022-05-01 --export.format=CSV
+ * --export.file=/data/transactions-2022-05-01.csv.gz}.
+ */
+@Component
+@ConditionalOnProperty("export.file")
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionExportRunner implements ApplicationRunner {
+
+  private final TransactionExportService transactionExportService;
+  private final Environment env;
+
+  @Override
+  public void run(ApplicationArguments args) {
+    var file = Path.of(env.getProperty("export.file"));
+    var from = LocalDate.parse(env.getRequiredProperty("export.from"));
+    var to = LocalDate.parse(Optional.ofNullable(env.getProperty("export.to")).orElse(from.toString()));
+    var format = ExportFormat.valueOf(Optional.ofNullable(env.getProperty("export.format")).orElse("NDJSON").toUpperCase());
+    var gzip = file.getFileName().toString().endsWith(".gz");
+    var exported = transactionExportService.exportTo(file, from.atStartOfDay(), to.plusDays(1).atStartOfDay(), format, gzip).block();
+    log.info("Exported {} movements into {}", exported, file);
+  }
+}
@@ -1,18 +1,43 @@
 package com.bank.bootcamp.savingacounts.controller;
 
 import java.time.LocalDate;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import com.bank.bootcamp.savingacounts.dto.BalanceDTO;
+import com.bank.bootcamp.savingacounts.dto.BalanceDriftDTO;
+import com.bank.bootcamp.savingacounts.dto.BatchAccountResultDTO;
+import com.bank.bootcamp.savingacounts.dto.BatchTransactionResultDTO;
 import com.bank.bootcamp.savingacounts.dto.CreateAccountDTO;
 import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.dto.ExportFormat;
+import com.bank.bootcamp.savingacounts.dto.MovementPageItemDTO;
+import com.bank.bootcamp.savingacounts.dto.TransferDTO;
 import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
 import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.entity.Transfer;
+import com.bank.bootcamp.savingacounts.service.AccountBatchService;
 import com.bank.bootcamp.savingacounts.service.AccountService;
+import com.bank.bootcamp.savingacounts.service.AmountMigration;
+import com.bank.bootcamp.savingacounts.service.BalanceReadModel;
+import com.bank.bootcamp.savingacounts.service.BalanceReconciliationService;
+import com.bank.bootcamp.savingacounts.service.BalanceSnapshotService;
+import com.bank.bootcamp.savingacounts.service.IdempotencyService;
+import com.bank.bootcamp.savingacounts.service.MonthlySummaryService;
+import com.bank.bootcamp.savingacounts.service.TransactionBatchService;
+import com.bank.bootcamp.savingacounts.service.TransactionBucketMigration;
+import com.bank.bootcamp.savingacounts.service.TransactionExportService;
+import com.bank.bootcamp.savingacounts.webclient.AccountWebClient;
 import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -23,25 +48,67 @@ import reactor.core.publisher.Mono;
 public class AccountController {
 
   private final AccountService accountService;
+  private final BalanceReconciliationService balanceReconciliationService;
+  private final TransactionBatchService transactionBatchService;
+  private final MonthlySummaryService monthlySummaryService;
+  private final BalanceReadModel balanceReadModel;
+  private final BalanceSnapshotService balanceSnapshotService;
+  private final TransactionBucketMigration transactionBucketMigration;
+  private final TransactionExportService transactionExportService;
+  private final IdempotencyService idempotencyService;
+  private final AmountMigration amountMigration;
+  private final AccountBatchService accountBatchService;
   
   @GetMapping("/balance/{accountId}")
   public Mono<BalanceDTO> getBalanceByAccountId(@PathVariable("accountId") String accountId) {
-    return accountService.getBalanceByAccountId(accountId);
+    return Mono.justOrEmpty(balanceReadModel.getBalance(accountId))
+        .switchIfEmpty(Mono.defer(() -> accountService.getBalanceByAccountId(accountId)));
   }
   
   @GetMapping("/balance/byCustomer/{customerId}")
   public Flux<BalanceDTO> getBalancesByCustomerId(@PathVariable("customerId") String customerId) {
-    return accountService.getBalancesByCustomerId(customerId);
+    return Mono.justOrEmpty(balanceReadModel.getBalanceByCustomerId(customerId)).flux()
+        .switchIfEmpty(Flux.defer(() -> accountService.getBalancesByCustomerId(customerId)));
   }
   
   @PostMapping
-  public Mono<String> createAccount(@RequestBody CreateAccountDTO dto) {
-    return accountService.createAccount(dto).map(Account::getId);
+  public Mono<String> createAccount(@RequestBody CreateAccountDTO dto,
+      @RequestHeader(name = AccountWebClient.IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+    return idempotencyService.execute("createAccount", idempotencyKey, dto,
+        () -> accountService.createAccount(dto).map(Account::getId));
+  }
+  
+  @PostMapping("/batch")
+  public Flux<BatchAccountResultDTO> createAccounts(@RequestBody Flux<CreateAccountDTO> accounts) {
+    return accountBatchService.createAccounts(accounts);
   }
   
   @PostMapping("/transaction")
-  public Mono<Integer> createTransaction(@RequestBody CreateTransactionDTO dto) {
-    return accountService.createTransaction(dto).map(Transaction::getOperationNumber);
+  public Mono<Integer> createTransaction(@RequestBody CreateTransactionDTO dto,
+      @RequestHeader(name = AccountWebClient.IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+    return idempotencyService.execute("createTransaction", idempotencyKey, dto,
+        () -> accountService.createTransaction(dto).map(transaction -> String.valueOf(transaction.getOperationNumber())))
+        .map(Integer::valueOf);
+  }
+  
+  @PostMapping("/transactions/batch")
+  public Flux<BatchTransactionResultDTO> createTransactions(@RequestBody Flux<CreateTransactionDTO> transactions) {
+    return transactionBatchService.createTransactions(transactions);
+  }
+  
+  @PostMapping("/transfer")
+  public Mono<Transfer> transfer(@RequestBody TransferDTO dto,
+      @RequestHeader(name = AccountWebClient.IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+    if (idempotencyKey == null)
+      return accountService.transfer(dto);
+    // una repetición devuelve la transferencia original en su estado actual
+    return idempotencyService.execute("transfer", idempotencyKey, dto, () -> accountService.transfer(dto).map(Transfer::getId))
+        .flatMap(accountService::getTransfer);
+  }
+  
+  @GetMapping("/transfer/{transferId}")
+  public Mono<Transfer> getTransfer(@PathVariable("transferId") String transferId) {
+    return accountService.getTransfer(transferId);
   }
   
   @GetMapping("/byCustomer/{customerId}")
@@ -56,4 +123,64 @@ public class AccountController {
     return accountService.getTransactionsByAccountIdAndPeriod(accountId, LocalDate.of(year, month, 1));
   }
   
+  @GetMapping(value = "movements/{accountId}/{year}/{month}/page", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Flux<MovementPageItemDTO> getMovementPageByAccountAndPeriod(
+      @PathVariable("accountId") String accountId,
+      @PathVariable("year") Integer year, @PathVariable("month") Integer month,
+      @RequestParam(name = "cursor", required = false) String cursor,
+      @RequestParam(name = "size", defaultValue = "100") Integer size) {
+    return accountService.getTransactionPageByAccountIdAndPeriod(accountId, LocalDate.of(year, month, 1), cursor, size);
+  }
+  
+  @GetMapping("summary/{accountId}/{year}/{month}")
+  public Mono<MonthlyAccountSummary> getMonthlySummary(
+      @PathVariable("accountId") String accountId,
+      @PathVariable("year") Integer year, @PathVariable("month") Integer month) {
+    return monthlySummaryService.getSummary(accountId, year, month);
+  }
+  
+  @PostMapping("/summary/rebuild")
+  public Flux<MonthlyAccountSummary> rebuildMonthlySummaries(@RequestParam(name = "accountId", required = false) String accountId) {
+    return monthlySummaryService.rebuild(accountId);
+  }
+  
+  @GetMapping("/reconciliation")
+  public Flux<BalanceDriftDTO> reconcileBalances() {
+    return balanceReconciliationService.reconcile();
+  }
+  
+  @PostMapping("/balance/snapshots")
+  public Mono<Long> compactBalanceSnapshots() {
+    return balanceSnapshotService.compact();
+  }
+  
+  @GetMapping("/balance/snapshots/verification")
+  public Flux<BalanceDriftDTO> verifyBalanceSnapshots() {
+    return balanceSnapshotService.verify();
+  }
+  
+  @PostMapping("/transactions/buckets/migration")
+  public Mono<Long> migrateTransactionBuckets(@RequestParam(name = "accountId", required = false) String accountId) {
+    return transactionBucketMigration.migrate(accountId);
+  }
+  
+  @PostMapping("/amounts/migration")
+  public Mono<Long> migrateAmounts() {
+    return amountMigration.migrate();
+  }
+  
+  /** Movements registered from the start of {@code from} to the end of {@code to}, as a download. */
+  @GetMapping("/export")
+  public Mono<Void> exportTransactions(
+      @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+      @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+      @RequestParam(name = "format", defaultValue = "NDJSON") ExportFormat format,
+      @RequestParam(name = "gzip", defaultValue = "false") boolean gzip,
+      ServerHttpResponse response) {
+    var fileName = String.format("transactions-%s-%s.%s%s", from, to, format.getExtension(), gzip ? ".gz" : "");
+    response.getHeaders().setContentType(MediaType.parseMediaType(gzip ? "application/gzip" : format.getContentType()));
+    response.getHeaders().setContentDisposition(ContentDisposition.attachment().filename(fileName).build());
+    return response.writeWith(transactionExportService.export(from.atStartOfDay(), to.plusDays(1).atStartOfDay(), format, gzip, response.bufferFactory()));
+  }
+  
 }
\ No newline at end of file
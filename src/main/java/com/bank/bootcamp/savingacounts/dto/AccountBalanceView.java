@@ -0,0 +1,11 @@
+package com.bank.bootcamp.savingacounts.dto;
+
+import lombok.Data;
+
+@Data
+public class AccountBalanceView {
+  private String accountId;
+  private Integer monthlyMovementLimit;
+  private Long balance;
+  private Long monthlyMovements;
+}
@@ -1,5 +1,6 @@
 package com.bank.bootcamp.savingacounts.dto;
 
+import com.bank.bootcamp.savingacounts.mapper.DecimalAmount;
 import lombok.Data;
 
 @Data
@@ -7,7 +8,10 @@ public class BalanceDTO {
   private String accountId;
   private String type;
   private Integer accountNumber;
-  private Double amount;
+  @DecimalAmount
+  private Long amount;
   private Integer monthlyMovementLimit;
   private Long monthlyMovementsAvailable;
+  /** How old the balance may be; 0 when read from the database. */
+  private Long stalenessMs;
 }
\ No newline at end of file
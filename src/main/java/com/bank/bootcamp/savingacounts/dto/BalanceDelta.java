@@ -0,0 +1,12 @@
+package com.bank.bootcamp.savingacounts.dto;
+
+import java.time.LocalDateTime;
+import lombok.Data;
+
+@Data
+public class BalanceDelta {
+  private Long amount;
+  private Long transactions;
+  private LocalDateTime lastRegisterDate;
+  private Integer lastOperationNumber;
+}
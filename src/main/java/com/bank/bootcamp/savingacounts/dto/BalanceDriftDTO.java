@@ -0,0 +1,15 @@
+package com.bank.bootcamp.savingacounts.dto;
+
+import com.bank.bootcamp.savingacounts.mapper.DecimalAmount;
+import lombok.Data;
+
+@Data
+public class BalanceDriftDTO {
+  private String accountId;
+  @DecimalAmount
+  private Long storedBalance;
+  @DecimalAmount
+  private Long computedBalance;
+  @DecimalAmount
+  private Long drift;
+}
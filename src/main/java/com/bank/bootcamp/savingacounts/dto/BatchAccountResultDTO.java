@@ -0,0 +1,12 @@
+package com.bank.bootcamp.savingacounts.dto;
+
+import lombok.Data;
+
+@Data
+public class BatchAccountResultDTO {
+  private Long index;
+  private String customerId;
+  private String accountId;
+  private Integer operationNumber;
+  private String error;
+}
@@ -0,0 +1,13 @@
+package com.bank.bootcamp.savingacounts.dto;
+
+/** What a row of a batch came to, so the caller knows whether it may send it again. */
+public enum BatchResultStatus {
+
+  REGISTERED,
+  /** Refused by a business rule; sending it again gives the same answer. */
+  REJECTED,
+  /** Not registered, nothing was kept; it can be sent again. */
+  RETRY,
+  /** It may or may not have been registered; check before sending it again. */
+  UNKNOWN;
+}
@@ -0,0 +1,12 @@
+package com.bank.bootcamp.savingacounts.dto;
+
+import lombok.Data;
+
+@Data
+public class BatchTransactionResultDTO {
+  private Long index;
+  private String accountId;
+  private Integer operationNumber;
+  private BatchResultStatus status;
+  private String error;
+}
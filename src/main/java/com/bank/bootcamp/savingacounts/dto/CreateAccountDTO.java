@@ -1,5 +1,6 @@
 package com.bank.bootcamp.savingacounts.dto;
 
+import com.bank.bootcamp.savingacounts.mapper.DecimalAmount;
 import lombok.Data;
 
 @Data
@@ -7,6 +8,7 @@ public class CreateAccountDTO {
 
   private String customerId;
   private Integer monthlyMovementLimit;
-  private Double openingAmount;
+  @DecimalAmount
+  private Long openingAmount;
   private String profile;
 }
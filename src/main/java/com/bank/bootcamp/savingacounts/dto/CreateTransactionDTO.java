@@ -1,5 +1,6 @@
 package com.bank.bootcamp.savingacounts.dto;
 
+import com.bank.bootcamp.savingacounts.mapper.DecimalAmount;
 import lombok.Data;
 
 @Data
@@ -8,7 +9,8 @@ public class CreateTransactionDTO {
   private String accountId;
   private String agent;
   private String description;
-  private Double amount;
+  @DecimalAmount
+  private Long amount;
   private Boolean createByComission;
   
 }
@@ -0,0 +1,25 @@
+package com.bank.bootcamp.savingacounts.dto;
+
+public enum ExportFormat {
+
+  /** One JSON object per line, as the movements endpoints render a transaction. */
+  NDJSON("application/x-ndjson", "ndjson"),
+  /** Header line plus one row per movement, RFC 4180 quoting. */
+  CSV("text/csv", "csv");
+  
+  private String contentType;
+  private String extension;
+  
+  private ExportFormat(String contentType, String extension) {
+    this.contentType = contentType;
+    this.extension = extension;
+  }
+  
+  public String getContentType() {
+    return this.contentType;
+  }
+  
+  public String getExtension() {
+    return this.extension;
+  }
+}
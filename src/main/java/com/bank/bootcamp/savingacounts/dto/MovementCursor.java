@@ -0,0 +1,35 @@
+package com.bank.bootcamp.savingacounts.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.exception.BankValidationException;
+import lombok.Value;
+
+@Value
+public class MovementCursor {
+
+  LocalDateTime registerDate;
+  Integer operationNumber;
+
+  public static MovementCursor of(Transaction transaction) {
+    return new MovementCursor(transaction.getRegisterDate(), transaction.getOperationNumber());
+  }
+
+  public String encode() {
+    var raw = registerDate + "|" + operationNumber;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public static MovementCursor decode(String token) throws BankValidationException {
+    try {
+      var raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      var separator = raw.lastIndexOf('|');
+      return new MovementCursor(LocalDateTime.parse(raw.substring(0, separator)), Integer.valueOf(raw.substring(separator + 1)));
+    } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+      throw new BankValidationException("Invalid cursor", e);
+    }
+  }
+}
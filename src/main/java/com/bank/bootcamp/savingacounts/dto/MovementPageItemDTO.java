@@ -0,0 +1,10 @@
+package com.bank.bootcamp.savingacounts.dto;
+
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import lombok.Data;
+
+@Data
+public class MovementPageItemDTO {
+  private String cursor;
+  private Transaction transaction;
+}
@@ -1,5 +1,6 @@
 package com.bank.bootcamp.savingacounts.dto;
 
+import com.bank.bootcamp.savingacounts.mapper.DecimalAmount;
 import lombok.Data;
 
 @Data
@@ -8,6 +9,7 @@ public class TransferDTO {
   private String sourceAccountId;
   private AccountType targetAccountType;
   private String targetAccountId;
-  private Double amount;
+  @DecimalAmount
+  private Long amount;
 
 }
@@ -0,0 +1,16 @@
+package com.bank.bootcamp.savingacounts.dto;
+
+public enum TransferStatus {
+
+  /** Registered, the debit on the source account is being written. */
+  DEBITING,
+  /** Debited, waiting for the target account to register the credit. */
+  PENDING,
+  SETTLED,
+  /** The debit was not registered; nothing to undo. */
+  REJECTED,
+  /** The target rejected the credit and the debit was reversed. */
+  REVERSED,
+  /** The outcome of the credit was still unknown after the last attempt; left for manual review. */
+  FAILED;
+}
@@ -1,7 +1,9 @@
 package com.bank.bootcamp.savingacounts.entity;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import com.bank.bootcamp.savingacounts.mapper.DecimalAmount;
 import lombok.Data;
 
 @Document("Accounts")
@@ -11,6 +13,9 @@ public class Account {
   @Id
   private String id;
   
+  @Indexed(unique = true)
   private String customerId;
   private Integer monthlyMovementLimit;
+  @DecimalAmount
+  private Long balance;
 }
@@ -0,0 +1,25 @@
+package com.bank.bootcamp.savingacounts.entity;
+
+import java.time.LocalDateTime;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import com.bank.bootcamp.savingacounts.mapper.DecimalAmount;
+import lombok.Data;
+
+/**
+ * Balance of an account up to and including its movement at (asOfRegisterDate,
+ * asOfOperationNumber). The balance at any later time is this one plus the movements after it.
+ */
+@Document("BalanceSnapshots")
+@Data
+public class BalanceSnapshot {
+
+  @Id
+  private String accountId;
+  private LocalDateTime asOfRegisterDate;
+  private Integer asOfOperationNumber;
+  @DecimalAmount
+  private Long balance;
+  private Long transactions;
+  private LocalDateTime createdAt;
+}
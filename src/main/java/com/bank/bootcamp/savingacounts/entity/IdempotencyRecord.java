@@ -0,0 +1,31 @@
+package com.bank.bootcamp.savingacounts.entity;
+
+import java.time.LocalDateTime;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+
+/**
+ * Outcome of a request sent with an {@code Idempotency-Key}, by operation and key. It is written
+ * without a result when the operation starts, so only one request runs it, and completed with the
+ * result it returned. Mongo deletes it at {@code expiresAt}: shortly after starting if it never
+ * completes, after the retention period once it does.
+ */
+@Document("IdempotencyKeys")
+@Data
+public class IdempotencyRecord {
+
+  @Id
+  private String id;
+  private String operation;
+  private String fingerprint;
+  private String result;
+  private LocalDateTime createdAt;
+  @Indexed(expireAfterSeconds = 0)
+  private LocalDateTime expiresAt;
+
+  public static String idOf(String operation, String key) {
+    return operation + ":" + key;
+  }
+}
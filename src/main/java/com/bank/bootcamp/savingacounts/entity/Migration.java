@@ -0,0 +1,17 @@
+package com.bank.bootcamp.savingacounts.entity;
+
+import java.time.LocalDateTime;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+
+/** Marks a data migration as finished, so it is not run again on the next startup. */
+@Document("Migrations")
+@Data
+public class Migration {
+
+  @Id
+  private String id;
+  private Long converted;
+  private LocalDateTime completedAt;
+}
@@ -0,0 +1,36 @@
+package com.bank.bootcamp.savingacounts.entity;
+
+import java.time.YearMonth;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import com.bank.bootcamp.savingacounts.mapper.DecimalAmount;
+import lombok.Data;
+
+/**
+ * Rollup of the movements of an account in one month, kept up to date on every write. The count
+ * doubles as the monthly movement limit gate; amounts are absolute values in cents.
+ */
+@Document("MonthlyAccountSummary")
+@Data
+public class MonthlyAccountSummary {
+
+  @Id
+  private String id;
+  @Indexed
+  private String accountId;
+  private String yearMonth;
+  private Long count;
+  @DecimalAmount
+  private Long credits;
+  @DecimalAmount
+  private Long debits;
+  @DecimalAmount
+  private Long comissions;
+  @DecimalAmount
+  private Long closingBalance;
+  
+  public static String idOf(String accountId, YearMonth yearMonth) {
+    return accountId + ":" + yearMonth;
+  }
+}
@@ -2,20 +2,29 @@ package com.bank.bootcamp.savingacounts.entity;
 
 import java.time.LocalDateTime;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import com.bank.bootcamp.savingacounts.mapper.DecimalAmount;
 import lombok.Data;
 
 @Document("Transactions")
+@CompoundIndex(name = "accountId_registerDate_operationNumber", def = "{ 'accountId': 1, 'registerDate': 1, 'operationNumber': 1 }")
 @Data
 public class Transaction {
 
   @Id
   private String id;
+  @Indexed(unique = true)
   private Integer operationNumber;
+  @Indexed
   private LocalDateTime registerDate;
   private String accountId;
   private String agent;
   private String description;
-  private Double amount;
+  @DecimalAmount
+  private Long amount;
+  @Indexed(sparse = true)
+  private String transferId;
   
 }
\ No newline at end of file
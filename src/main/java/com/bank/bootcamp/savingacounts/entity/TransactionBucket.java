@@ -0,0 +1,30 @@
+package com.bank.bootcamp.savingacounts.entity;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import lombok.Data;
+
+/**
+ * Movements of one account in one month, embedded in registration order of arrival. A month
+ * with more movements than {@code transaction.bucket.max-size} takes several buckets. The count
+ * and total are kept with the same update that pushes a movement, so they always match it.
+ * <p>
+ * Not annotated with indexes: the resolver would copy the ones of {@link Transaction} under
+ * {@code transactions.}; see {@code BucketedTransactionRepository#ensureIndexes}.
+ */
+@Document("TransactionBuckets")
+@Data
+public class TransactionBucket {
+
+  @Id
+  private String id;
+  private String accountId;
+  private String yearMonth;
+  private Integer count;
+  private Long total;
+  private LocalDateTime firstRegisterDate;
+  private LocalDateTime lastRegisterDate;
+  private List<Transaction> transactions;
+}
@@ -0,0 +1,39 @@
+package com.bank.bootcamp.savingacounts.entity;
+
+import java.time.LocalDateTime;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+import com.bank.bootcamp.savingacounts.dto.AccountType;
+import com.bank.bootcamp.savingacounts.dto.TransferStatus;
+import com.bank.bootcamp.savingacounts.mapper.DecimalAmount;
+import lombok.Data;
+
+/**
+ * A transfer to another account, written before the debit. It is both the outbox entry the
+ * dispatcher delivers to the target account and the status reported to the caller.
+ * {@code nextAttemptAt} is when the dispatcher may pick it up again: claiming it moves the time
+ * forward, so a dispatcher that dies mid delivery only delays it.
+ */
+@Document("Transfers")
+@CompoundIndex(name = "status_nextAttemptAt", def = "{ 'status': 1, 'nextAttemptAt': 1 }")
+@Data
+public class Transfer {
+
+  @Id
+  private String id;
+  private String sourceAccountId;
+  private AccountType targetAccountType;
+  private String targetAccountId;
+  @DecimalAmount
+  private Long amount;
+  private TransferStatus status;
+  private String sourceTransactionId;
+  private Integer sourceOperationNumber;
+  private Integer targetOperationNumber;
+  private Integer attempts;
+  private String lastError;
+  private LocalDateTime createdAt;
+  private LocalDateTime nextAttemptAt;
+  private LocalDateTime closedAt;
+}
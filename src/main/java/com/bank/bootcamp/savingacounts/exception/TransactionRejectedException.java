@@ -0,0 +1,19 @@
+package com.bank.bootcamp.savingacounts.exception;
+
+/**
+ * The account service of another product answered a transaction with a definitive rejection, so
+ * the transaction is known not to be registered there.
+ */
+public class TransactionRejectedException extends Exception {
+
+  private static final long serialVersionUID = 1L;
+
+  public TransactionRejectedException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  public TransactionRejectedException(String message) {
+    super(message);
+  }
+
+}
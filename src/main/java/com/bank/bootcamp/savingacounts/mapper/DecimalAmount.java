@@ -0,0 +1,20 @@
+package com.bank.bootcamp.savingacounts.mapper;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import com.fasterxml.jackson.annotation.JacksonAnnotationsInside;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * A {@code Long} amount in cents that is exchanged in JSON as a decimal, see {@link MinorUnits}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.FIELD, ElementType.METHOD })
+@JacksonAnnotationsInside
+@JsonSerialize(using = MinorUnits.Serializer.class)
+@JsonDeserialize(using = MinorUnits.Deserializer.class)
+public @interface DecimalAmount {
+}
@@ -0,0 +1,33 @@
+package com.bank.bootcamp.savingacounts.mapper;
+
+import com.bank.bootcamp.savingacounts.dto.CreateAccountDTO;
+import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+
+/**
+ * Field by field copies from the request DTOs to the entities. The IDs are left for Mongo to
+ * assign: ModelMapper used to match {@code customerId} and {@code accountId} to {@code id} as
+ * well, which made every transaction of an account replace the previous one on save.
+ */
+public final class EntityMapper {
+
+  private EntityMapper() {
+  }
+
+  public static Account toAccount(CreateAccountDTO dto) {
+    var account = new Account();
+    account.setCustomerId(dto.getCustomerId());
+    account.setMonthlyMovementLimit(dto.getMonthlyMovementLimit());
+    return account;
+  }
+
+  public static Transaction toTransaction(CreateTransactionDTO dto) {
+    var transaction = new Transaction();
+    transaction.setAccountId(dto.getAccountId());
+    transaction.setAgent(dto.getAgent());
+    transaction.setDescription(dto.getDescription());
+    transaction.setAmount(dto.getAmount());
+    return transaction;
+  }
+}
@@ -0,0 +1,66 @@
+package com.bank.bootcamp.savingacounts.mapper;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Amounts are kept as a {@code long} count of cents, so balances add up exactly and the ledger
+ * arithmetic does not box. The decimal form only exists in JSON: fields marked with
+ * {@link DecimalAmount} are read and written as decimals with up to {@link #SCALE} places.
+ */
+public final class MinorUnits {
+
+  public static final int SCALE = 2;
+
+  private MinorUnits() {
+  }
+
+  /** The amount in cents; an amount with fractions of a cent is rejected. */
+  public static long of(BigDecimal amount) {
+    return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+  }
+
+  public static BigDecimal toDecimal(long minorUnits) {
+    return BigDecimal.valueOf(minorUnits, SCALE);
+  }
+
+  public static class Serializer extends StdSerializer<Long> {
+
+    private static final long serialVersionUID = 1L;
+
+    public Serializer() {
+      super(Long.class);
+    }
+
+    @Override
+    public void serialize(Long value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+      gen.writeNumber(toDecimal(value));
+    }
+  }
+
+  public static class Deserializer extends StdDeserializer<Long> {
+
+    private static final long serialVersionUID = 1L;
+
+    public Deserializer() {
+      super(Long.class);
+    }
+
+    @Override
+    public Long deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+      var amount = p.getDecimalValue();
+      try {
+        return of(amount);
+      } catch (ArithmeticException e) {
+        throw ctxt.weirdNumberException(amount, Long.class, String.format("amounts have at most %s decimals", SCALE));
+      }
+    }
+  }
+}
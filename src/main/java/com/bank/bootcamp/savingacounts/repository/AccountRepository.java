@@ -1,11 +1,14 @@
 package com.bank.bootcamp.savingacounts.repository;
 
+import java.util.Collection;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import com.bank.bootcamp.savingacounts.entity.Account;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-public interface AccountRepository extends ReactiveMongoRepository<Account, String> {
+public interface AccountRepository extends ReactiveMongoRepository<Account, String>, AccountRepositoryCustom {
 
   Mono<Account> findByCustomerId(String customerId);
+  Flux<Account> findByCustomerIdIn(Collection<String> customerIds);
 
 }
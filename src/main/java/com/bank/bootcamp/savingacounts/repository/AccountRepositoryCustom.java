@@ -0,0 +1,29 @@
+package com.bank.bootcamp.savingacounts.repository;
+
+import java.time.YearMonth;
+import com.bank.bootcamp.savingacounts.dto.AccountBalanceView;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface AccountRepositoryCustom {
+
+  /**
+   * Atomically adds the amount to the running balance of the account.
+   * Completes empty when the account does not exist or the balance would become negative.
+   */
+  Mono<Account> addToBalance(String accountId, long amount);
+
+  /**
+   * Sets the running balance only when the account does not have one yet (accounts created
+   * before the balance was materialized).
+   */
+  Mono<Account> initializeBalance(String accountId, long balance);
+
+  /**
+   * Balance and movement count of the given month for every account of the customer, in a
+   * single aggregation over Accounts joined with MonthlyAccountSummary.
+   */
+  Flux<AccountBalanceView> findBalancesByCustomerId(String customerId, YearMonth yearMonth);
+
+}
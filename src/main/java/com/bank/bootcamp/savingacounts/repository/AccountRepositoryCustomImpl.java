@@ -0,0 +1,73 @@
+package com.bank.bootcamp.savingacounts.repository;
+
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.time.YearMonth;
+import java.util.List;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Update;
+import com.bank.bootcamp.savingacounts.dto.AccountBalanceView;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+public class AccountRepositoryCustomImpl implements AccountRepositoryCustom {
+
+  private final ReactiveMongoTemplate mongoTemplate;
+
+  @Override
+  public Mono<Account> addToBalance(String accountId, long amount) {
+    var criteria = where("_id").is(accountId).and("balance").ne(null);
+    if (amount < 0)
+      criteria = criteria.gte(-amount);
+    return mongoTemplate.findAndModify(
+        query(criteria),
+        new Update().inc("balance", amount),
+        options().returnNew(true),
+        Account.class);
+  }
+
+  @Override
+  public Mono<Account> initializeBalance(String accountId, long balance) {
+    return mongoTemplate.findAndModify(
+        query(where("_id").is(accountId).and("balance").is(null)),
+        new Update().set("balance", balance),
+        options().returnNew(true),
+        Account.class)
+        .switchIfEmpty(mongoTemplate.findById(accountId, Account.class));
+  }
+
+  @Override
+  public Flux<AccountBalanceView> findBalancesByCustomerId(String customerId, YearMonth yearMonth) {
+    // El contador del mes se busca por su _id (accountId:yyyy-MM), así el join usa el índice de _id
+    AggregationOperation lookupMovements = context -> new Document("$lookup", new Document()
+        .append("from", mongoTemplate.getCollectionName(MonthlyAccountSummary.class))
+        .append("let", new Document("accountId", new Document("$toString", "$_id")))
+        .append("pipeline", List.of(
+            new Document("$match", new Document("$expr", new Document("$eq", List.of("$_id",
+                new Document("$concat", List.of("$$accountId", MonthlyAccountSummary.idOf("", yearMonth))))))),
+            new Document("$project", new Document("count", 1))))
+        .append("as", "movements"));
+    AggregationOperation project = context -> new Document("$project", new Document()
+        .append("_id", 0)
+        .append("accountId", new Document("$toString", "$_id"))
+        .append("monthlyMovementLimit", 1)
+        .append("balance", 1)
+        .append("monthlyMovements", new Document("$ifNull", List.of(
+            new Document("$arrayElemAt", List.of("$movements.count", 0)), 0L))));
+    
+    var aggregation = Aggregation.newAggregation(
+        Aggregation.match(where("customerId").is(customerId)),
+        lookupMovements,
+        project);
+    return mongoTemplate.aggregate(aggregation, mongoTemplate.getCollectionName(Account.class), AccountBalanceView.class);
+  }
+
+}
@@ -0,0 +1,389 @@
+package com.bank.bootcamp.savingacounts.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+import com.bank.bootcamp.savingacounts.dto.BalanceDelta;
+import com.bank.bootcamp.savingacounts.dto.MovementCursor;
+import com.bank.bootcamp.savingacounts.entity.BalanceSnapshot;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.entity.TransactionBucket;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link TransactionRepository} over {@link TransactionBucket}s instead of one document per
+ * movement, enabled with {@code transaction.storage.layout=bucketed}. A movement is added with a
+ * single upsert that pushes it to the open bucket of its account and month and increments the
+ * bucket count and total; a full bucket no longer matches, so the upsert opens a new one. Reads
+ * load whole months and return the movements in (registerDate, operationNumber) order, as the
+ * document layout does. The bucket indexes are built before the web server is started.
+ * <p>
+ * Movements are copied from {@code Transactions} with {@code TransactionBucketMigration} before
+ * the layout is switched.
+ */
+@Repository
+@Primary
+@ConditionalOnProperty(name = "transaction.storage.layout", havingValue = "bucketed")
+public class BucketedTransactionRepository implements TransactionRepository, SmartInitializingSingleton {
+
+  static final Comparator<Transaction> ORDER = Comparator
+      .comparing(Transaction::getRegisterDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+      .thenComparing(Transaction::getOperationNumber, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final int maxSize;
+
+  public BucketedTransactionRepository(ReactiveMongoTemplate mongoTemplate, Environment env) {
+    this.mongoTemplate = mongoTemplate;
+    this.maxSize = maxSize(env);
+  }
+
+  public static int maxSize(Environment env) {
+    return Integer.parseInt(Optional.ofNullable(env.getProperty("transaction.bucket.max-size")).orElse("200"));
+  }
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    ensureIndexes(mongoTemplate).block();
+  }
+
+  public static Mono<Void> ensureIndexes(ReactiveMongoTemplate mongoTemplate) {
+    var indexOps = mongoTemplate.indexOps(TransactionBucket.class);
+    return Flux.just(
+          new Index().on("accountId", Sort.Direction.ASC).on("yearMonth", Sort.Direction.ASC).named("accountId_yearMonth"),
+          new Index().on("transactions._id", Sort.Direction.ASC).named("transactions_id"),
+          new Index().on("transactions.transferId", Sort.Direction.ASC).sparse().named("transactions_transferId"),
+          new Index().on("lastRegisterDate", Sort.Direction.ASC).named("lastRegisterDate"))
+        .concatMap(indexOps::ensureIndex)
+        .then();
+  }
+
+  @Override
+  public <S extends Transaction> Mono<S> save(S transaction) {
+    return saveAll(List.of(transaction)).next();
+  }
+
+  @Override
+  public <S extends Transaction> Flux<S> saveAll(Iterable<S> transactions) {
+    return Flux.defer(() -> {
+      var replaced = new ArrayList<String>();
+      var months = new LinkedHashMap<String, List<S>>();
+      for (var transaction : transactions) {
+        if (transaction.getId() == null)
+          transaction.setId(new ObjectId().toHexString());
+        else
+          replaced.add(transaction.getId());
+        months.computeIfAbsent(transaction.getAccountId() + ":" + yearMonth(transaction), key -> new ArrayList<>()).add(transaction);
+      }
+      // un movimiento que ya existía se quita de su bucket y se vuelve a agregar
+      return Flux.fromIterable(replaced).concatMap(this::deleteById)
+          .thenMany(Flux.fromIterable(months.values()))
+          .concatMap(month -> Flux.range(0, (month.size() + maxSize - 1) / maxSize)
+              .concatMap(chunk -> push(month.subList(chunk * maxSize, Math.min(month.size(), (chunk + 1) * maxSize)))))
+          .thenMany(Flux.fromIterable(transactions));
+    });
+  }
+
+  @Override
+  public <S extends Transaction> Flux<S> saveAll(Publisher<S> transactions) {
+    return Flux.from(transactions).collectList().flatMapMany(this::saveAll);
+  }
+
+  /** Movements of one account and month, at most a bucket of them. */
+  private Mono<Void> push(List<? extends Transaction> movements) {
+    var first = movements.get(0);
+    var update = new Update()
+        .push("transactions").each(movements.toArray())
+        .inc("count", movements.size())
+        .inc("total", movements.stream().mapToLong(Transaction::getAmount).sum())
+        .min("firstRegisterDate", movements.stream().map(Transaction::getRegisterDate).min(Comparator.naturalOrder()).get())
+        .max("lastRegisterDate", movements.stream().map(Transaction::getRegisterDate).max(Comparator.naturalOrder()).get());
+    // solo coincide un bucket con espacio para todos; si no hay ninguno, el upsert abre otro
+    var openBucket = query(where("accountId").is(first.getAccountId())
+        .and("yearMonth").is(yearMonth(first))
+        .and("count").lte(maxSize - movements.size()));
+    return mongoTemplate.upsert(openBucket, update, TransactionBucket.class).then();
+  }
+
+  @Override
+  public <S extends Transaction> Mono<S> insert(S transaction) {
+    return save(transaction);
+  }
+
+  @Override
+  public <S extends Transaction> Flux<S> insert(Iterable<S> transactions) {
+    return saveAll(transactions);
+  }
+
+  @Override
+  public <S extends Transaction> Flux<S> insert(Publisher<S> transactions) {
+    return saveAll(transactions);
+  }
+
+  @Override
+  public Mono<Transaction> findById(String id) {
+    return mongoTemplate.findOne(query(where("transactions._id").is(storedId(id))), TransactionBucket.class)
+        .flatMap(bucket -> Mono.justOrEmpty(movement(bucket, transaction -> id.equals(transaction.getId()))));
+  }
+
+  @Override
+  public Mono<Transaction> findById(Publisher<String> id) {
+    return Mono.from(id).flatMap(this::findById);
+  }
+
+  @Override
+  public Mono<Boolean> existsById(String id) {
+    return findById(id).hasElement();
+  }
+
+  @Override
+  public Mono<Boolean> existsById(Publisher<String> id) {
+    return Mono.from(id).flatMap(this::existsById);
+  }
+
+  @Override
+  public Mono<Transaction> findByTransferId(String transferId) {
+    return mongoTemplate.findOne(query(where("transactions.transferId").is(transferId)), TransactionBucket.class)
+        .flatMap(bucket -> Mono.justOrEmpty(movement(bucket, transaction -> transferId.equals(transaction.getTransferId()))));
+  }
+
+  @Override
+  public Flux<Transaction> findAll() {
+    return movements(new Criteria());
+  }
+
+  @Override
+  public Flux<Transaction> findAllById(Iterable<String> ids) {
+    return Flux.fromIterable(ids).concatMap(this::findById);
+  }
+
+  @Override
+  public Flux<Transaction> findAllById(Publisher<String> ids) {
+    return Flux.from(ids).concatMap(this::findById);
+  }
+
+  @Override
+  public Flux<Transaction> findByAccountId(String accountId) {
+    return movements(where("accountId").is(accountId));
+  }
+
+  @Override
+  public Flux<Transaction> findByAccountIdAndRegisterDateBetween(String accountId, LocalDateTime from, LocalDateTime to) {
+    return movements(where("accountId").is(accountId).and("yearMonth").gte(YearMonth.from(from).toString()).lte(YearMonth.from(to).toString()))
+        .filter(transaction -> transaction.getRegisterDate().isAfter(from) && transaction.getRegisterDate().isBefore(to));
+  }
+
+  @Override
+  public Flux<Transaction> findByAccountIdOrderByRegisterDateAscOperationNumberAsc(String accountId) {
+    return findByAccountId(accountId);
+  }
+
+  @Override
+  public Flux<Transaction> findAllByOrderByAccountIdAscRegisterDateAscOperationNumberAsc() {
+    return findAll();
+  }
+
+  @Override
+  public Mono<Long> getBalanceByAccountId(String accountId) {
+    var aggregation = Aggregation.newAggregation(
+        Aggregation.match(where("accountId").is(accountId)),
+        Aggregation.group().sum("total").as("total"));
+    return mongoTemplate.aggregate(aggregation, TransactionBucket.class, Document.class)
+        .next()
+        .map(result -> result.get("total", Number.class).longValue());
+  }
+
+  /**
+   * Starts at the month of the cursor and leaves Mongo to unwind, filter and sort the movements
+   * of the page, so only {@code limit} of them come back however long the period is.
+   */
+  @Override
+  public Flux<Transaction> findPageByAccountIdAndPeriod(String accountId, LocalDateTime from, LocalDateTime to, MovementCursor after, int limit) {
+    var start = after == null || after.getRegisterDate().isBefore(from) ? from : after.getRegisterDate();
+    var movements = where("transactions.registerDate").gte(from).lt(to);
+    if (after != null)
+      movements = movements.orOperator(
+          where("transactions.registerDate").gt(after.getRegisterDate()),
+          where("transactions.registerDate").is(after.getRegisterDate()).and("transactions.operationNumber").gt(after.getOperationNumber()));
+    var aggregation = Aggregation.newAggregation(
+        Aggregation.match(where("accountId").is(accountId).and("yearMonth").gte(YearMonth.from(start).toString()).lte(YearMonth.from(to).toString())),
+        Aggregation.unwind("transactions"),
+        Aggregation.match(movements),
+        Aggregation.sort(Sort.by(Sort.Order.asc("transactions.registerDate"), Sort.Order.asc("transactions.operationNumber"))),
+        Aggregation.limit(limit),
+        Aggregation.replaceRoot("transactions"));
+    return mongoTemplate.aggregate(aggregation, TransactionBucket.class, Transaction.class);
+  }
+
+  @Override
+  public Mono<BalanceDelta> sumAfter(String accountId, BalanceSnapshot after, LocalDateTime until) {
+    var criteria = where("accountId").is(accountId);
+    if (after != null && until != null)
+      criteria = criteria.and("yearMonth").gte(YearMonth.from(after.getAsOfRegisterDate()).toString()).lte(YearMonth.from(until).toString());
+    else if (after != null)
+      criteria = criteria.and("yearMonth").gte(YearMonth.from(after.getAsOfRegisterDate()).toString());
+    else if (until != null)
+      criteria = criteria.and("yearMonth").lte(YearMonth.from(until).toString());
+    return movements(criteria)
+        .filter(transaction -> until == null || transaction.getRegisterDate().isBefore(until))
+        .filter(transaction -> after == null || transaction.getRegisterDate().isAfter(after.getAsOfRegisterDate())
+            || (transaction.getRegisterDate().isEqual(after.getAsOfRegisterDate()) && transaction.getOperationNumber() > after.getAsOfOperationNumber()))
+        .reduce(new BalanceDelta(), (delta, transaction) -> {
+          delta.setAmount((delta.getAmount() == null ? 0L : delta.getAmount()) + transaction.getAmount());
+          delta.setTransactions((delta.getTransactions() == null ? 0L : delta.getTransactions()) + 1);
+          delta.setLastRegisterDate(transaction.getRegisterDate());
+          delta.setLastOperationNumber(transaction.getOperationNumber());
+          return delta;
+        })
+        .filter(delta -> delta.getTransactions() != null);
+  }
+
+  @Override
+  public Flux<Transaction> streamByPeriod(LocalDateTime from, LocalDateTime to, int batchSize) {
+    var period = query(where("lastRegisterDate").gte(from).and("firstRegisterDate").lt(to));
+    period.cursorBatchSize(Math.max(1, batchSize / maxSize));
+    return mongoTemplate.find(period, TransactionBucket.class)
+        .filter(bucket -> bucket.getTransactions() != null)
+        .concatMapIterable(bucket -> bucket.getTransactions().stream()
+            .filter(transaction -> !transaction.getRegisterDate().isBefore(from) && transaction.getRegisterDate().isBefore(to))
+            .collect(Collectors.toList()));
+  }
+
+  @Override
+  public Mono<Long> count() {
+    var aggregation = Aggregation.newAggregation(Aggregation.group().sum("count").as("count"));
+    return mongoTemplate.aggregate(aggregation, TransactionBucket.class, Document.class)
+        .next()
+        .map(result -> result.get("count", Number.class).longValue())
+        .defaultIfEmpty(0L);
+  }
+
+  @Override
+  public Mono<Void> deleteById(String id) {
+    return removeById(id).then();
+  }
+
+  /**
+   * Pulls the movement from its bucket and takes it out of the count and total in the same
+   * update; the update only matches while the movement is still there.
+   */
+  @Override
+  public Mono<Boolean> removeById(String id) {
+    return mongoTemplate.findOne(query(where("transactions._id").is(storedId(id))), TransactionBucket.class)
+        .flatMap(bucket -> Mono.justOrEmpty(movement(bucket, transaction -> id.equals(transaction.getId())))
+            .flatMap(transaction -> mongoTemplate.updateFirst(
+                query(where("id").is(bucket.getId()).and("transactions._id").is(storedId(id))),
+                new Update()
+                    .pull("transactions", new Document("_id", storedId(id)))
+                    .inc("count", -1)
+                    .inc("total", -transaction.getAmount()),
+                TransactionBucket.class)))
+        .map(result -> result.getModifiedCount() > 0)
+        .defaultIfEmpty(false);
+  }
+
+  @Override
+  public Mono<Void> deleteById(Publisher<String> id) {
+    return Mono.from(id).flatMap(this::deleteById);
+  }
+
+  @Override
+  public Mono<Void> delete(Transaction transaction) {
+    return deleteById(transaction.getId());
+  }
+
+  @Override
+  public Mono<Void> deleteAllById(Iterable<? extends String> ids) {
+    return Flux.fromIterable(ids).concatMap(this::deleteById).then();
+  }
+
+  @Override
+  public Mono<Void> deleteAll(Iterable<? extends Transaction> transactions) {
+    return Flux.fromIterable(transactions).concatMap(this::delete).then();
+  }
+
+  @Override
+  public Mono<Void> deleteAll(Publisher<? extends Transaction> transactions) {
+    return Flux.from(transactions).concatMap(this::delete).then();
+  }
+
+  @Override
+  public Mono<Void> deleteAll() {
+    return mongoTemplate.remove(new org.springframework.data.mongodb.core.query.Query(), TransactionBucket.class).then();
+  }
+
+  /** Movements of the buckets matching the criteria, month by month and ordered within each. */
+  private Flux<Transaction> movements(Criteria buckets) {
+    return mongoTemplate.find(query(buckets).with(Sort.by("accountId", "yearMonth")), TransactionBucket.class)
+        .bufferUntilChanged(bucket -> bucket.getAccountId() + ":" + bucket.getYearMonth())
+        .concatMapIterable(month -> month.stream()
+            .filter(bucket -> bucket.getTransactions() != null)
+            .flatMap(bucket -> bucket.getTransactions().stream())
+            .sorted(ORDER)
+            .collect(Collectors.toList()));
+  }
+
+  private static Optional<Transaction> movement(TransactionBucket bucket, java.util.function.Predicate<Transaction> matches) {
+    return Optional.ofNullable(bucket.getTransactions()).stream()
+        .flatMap(List::stream)
+        .filter(Objects::nonNull)
+        .filter(matches)
+        .findFirst();
+  }
+
+  /** The ID as Mongo stores it: String IDs that are valid ObjectIds are written as ObjectIds. */
+  private static Object storedId(String id) {
+    return ObjectId.isValid(id) ? new ObjectId(id) : id;
+  }
+
+  static String yearMonth(Transaction transaction) {
+    return YearMonth.from(transaction.getRegisterDate()).toString();
+  }
+
+  /**
+   * The order of the buckets, by account, date and operation number, is streamed; any other
+   * order is sorted in memory.
+   */
+  @Override
+  public Flux<Transaction> findAll(Sort sort) {
+    if (sort.isUnsorted() || sort.equals(Sort.by("accountId", "registerDate", "operationNumber")))
+      return movements(new Criteria());
+    return movements(new Criteria()).sort(comparator(sort));
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static Comparator<Transaction> comparator(Sort sort) {
+    Comparator<Transaction> comparator = (a, b) -> 0;
+    for (var order : sort) {
+      Comparator<Transaction> byProperty = Comparator.comparing(
+          transaction -> (Comparable) new BeanWrapperImpl(transaction).getPropertyValue(order.getProperty()),
+          Comparator.nullsFirst(Comparator.naturalOrder()));
+      comparator = comparator.thenComparing(order.isAscending() ? byProperty : byProperty.reversed());
+    }
+    return comparator;
+  }
+}
@@ -0,0 +1,8 @@
+package com.bank.bootcamp.savingacounts.repository;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import com.bank.bootcamp.savingacounts.entity.IdempotencyRecord;
+
+public interface IdempotencyRecordRepository extends ReactiveMongoRepository<IdempotencyRecord, String> {
+
+}
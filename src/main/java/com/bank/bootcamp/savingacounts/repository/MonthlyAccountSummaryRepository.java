@@ -0,0 +1,12 @@
+package com.bank.bootcamp.savingacounts.repository;
+
+import java.util.Collection;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
+import reactor.core.publisher.Mono;
+
+public interface MonthlyAccountSummaryRepository extends ReactiveMongoRepository<MonthlyAccountSummary, String>, MonthlyAccountSummaryRepositoryCustom {
+
+  Mono<Long> deleteByAccountIdAndIdNotIn(String accountId, Collection<String> ids);
+
+}
@@ -0,0 +1,29 @@
+package com.bank.bootcamp.savingacounts.repository;
+
+import java.time.YearMonth;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
+import reactor.core.publisher.Mono;
+
+public interface MonthlyAccountSummaryRepositoryCustom {
+
+  /**
+   * Atomically counts one more movement for the account in the month, only while the counter is
+   * below the limit. Completes empty when the limit was already reached.
+   */
+  Mono<MonthlyAccountSummary> incrementIfBelow(String accountId, YearMonth yearMonth, int limit);
+
+  Mono<MonthlyAccountSummary> increment(String accountId, YearMonth yearMonth, int delta);
+
+  /**
+   * Adds {@code delta} only if the counter still holds {@code expectedCount}. Completes empty when
+   * another writer changed it in between.
+   */
+  Mono<MonthlyAccountSummary> compareAndIncrement(String accountId, YearMonth yearMonth, long expectedCount, int delta);
+
+  /**
+   * Adds the movements to the month: {@code count} more rows, and the credit, debit and
+   * commission amounts. {@code closingBalance} replaces the stored one when it is not null.
+   */
+  Mono<MonthlyAccountSummary> record(String accountId, YearMonth yearMonth, int count, long credits, long debits, long comissions, Long closingBalance);
+
+}
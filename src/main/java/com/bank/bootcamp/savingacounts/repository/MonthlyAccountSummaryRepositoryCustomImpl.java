@@ -0,0 +1,73 @@
+package com.bank.bootcamp.savingacounts.repository;
+
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.time.YearMonth;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+public class MonthlyAccountSummaryRepositoryCustomImpl implements MonthlyAccountSummaryRepositoryCustom {
+
+  private final ReactiveMongoTemplate mongoTemplate;
+
+  @Override
+  public Mono<MonthlyAccountSummary> incrementIfBelow(String accountId, YearMonth yearMonth, int limit) {
+    if (limit <= 0)
+      return Mono.empty();
+    // si el contador ya llegó al límite el filtro no coincide y el upsert choca con el _id existente
+    return mongoTemplate.findAndModify(
+        query(where("_id").is(MonthlyAccountSummary.idOf(accountId, yearMonth)).and("count").lt(limit)),
+        counterUpdate(accountId, yearMonth, 1),
+        options().returnNew(true).upsert(true),
+        MonthlyAccountSummary.class)
+        .onErrorResume(DuplicateKeyException.class, e -> Mono.empty());
+  }
+
+  @Override
+  public Mono<MonthlyAccountSummary> increment(String accountId, YearMonth yearMonth, int delta) {
+    return mongoTemplate.findAndModify(
+        query(where("_id").is(MonthlyAccountSummary.idOf(accountId, yearMonth))),
+        counterUpdate(accountId, yearMonth, delta),
+        options().returnNew(true).upsert(true),
+        MonthlyAccountSummary.class);
+  }
+
+  @Override
+  public Mono<MonthlyAccountSummary> compareAndIncrement(String accountId, YearMonth yearMonth, long expectedCount, int delta) {
+    return mongoTemplate.findAndModify(
+        query(where("_id").is(MonthlyAccountSummary.idOf(accountId, yearMonth)).and("count").is(expectedCount)),
+        counterUpdate(accountId, yearMonth, delta),
+        options().returnNew(true).upsert(expectedCount == 0),
+        MonthlyAccountSummary.class)
+        .onErrorResume(DuplicateKeyException.class, e -> Mono.empty());
+  }
+
+  @Override
+  public Mono<MonthlyAccountSummary> record(String accountId, YearMonth yearMonth, int count, long credits, long debits, long comissions, Long closingBalance) {
+    var update = counterUpdate(accountId, yearMonth, count)
+        .inc("credits", credits)
+        .inc("debits", debits)
+        .inc("comissions", comissions);
+    if (closingBalance != null)
+      update.set("closingBalance", closingBalance);
+    return mongoTemplate.findAndModify(
+        query(where("_id").is(MonthlyAccountSummary.idOf(accountId, yearMonth))),
+        update,
+        options().returnNew(true).upsert(true),
+        MonthlyAccountSummary.class);
+  }
+
+  private Update counterUpdate(String accountId, YearMonth yearMonth, int delta) {
+    return new Update()
+        .inc("count", delta)
+        .setOnInsert("accountId", accountId)
+        .setOnInsert("yearMonth", yearMonth.toString());
+  }
+
+}
@@ -1,21 +1,33 @@
 package com.bank.bootcamp.savingacounts.repository;
 
 import java.time.LocalDateTime;
+import org.reactivestreams.Publisher;
 import org.springframework.data.mongodb.repository.Aggregation;
-import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.data.repository.reactive.ReactiveSortingRepository;
 import com.bank.bootcamp.savingacounts.entity.Transaction;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-public interface TransactionRepository extends ReactiveMongoRepository<Transaction, String> {
+/**
+ * CRUD and the inserts of a Mongo repository, without query by example: the movements are not
+ * always stored one per document, see {@link BucketedTransactionRepository}.
+ */
+public interface TransactionRepository extends ReactiveSortingRepository<Transaction, String>, TransactionRepositoryCustom {
+
+  <S extends Transaction> Mono<S> insert(S transaction);
+  <S extends Transaction> Flux<S> insert(Iterable<S> transactions);
+  <S extends Transaction> Flux<S> insert(Publisher<S> transactions);
 
   Flux<Transaction> findByAccountId(String accountId);
   Flux<Transaction> findByAccountIdAndRegisterDateBetween(String accountId, LocalDateTime from, LocalDateTime to);
+  Flux<Transaction> findByAccountIdOrderByRegisterDateAscOperationNumberAsc(String accountId);
+  Flux<Transaction> findAllByOrderByAccountIdAscRegisterDateAscOperationNumberAsc();
+  Mono<Transaction> findByTransferId(String transferId);
   
   @Aggregation(pipeline = {
       "{ $match: { accountId: ?0 }}",
       "{ $group: { _id: '', total: {$sum: $amount }}}"
   })
-  public Mono<Double> getBalanceByAccountId(String accountId);
+  public Mono<Long> getBalanceByAccountId(String accountId);
   
 }
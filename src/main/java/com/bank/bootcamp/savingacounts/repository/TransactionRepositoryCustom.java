@@ -0,0 +1,38 @@
+package com.bank.bootcamp.savingacounts.repository;
+
+import java.time.LocalDateTime;
+import com.bank.bootcamp.savingacounts.dto.BalanceDelta;
+import com.bank.bootcamp.savingacounts.dto.MovementCursor;
+import com.bank.bootcamp.savingacounts.entity.BalanceSnapshot;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface TransactionRepositoryCustom {
+
+  /**
+   * Movements of the account registered in {@code [from, to)}, ordered by (registerDate,
+   * operationNumber) and starting right after {@code after} when it is given.
+   */
+  Flux<Transaction> findPageByAccountIdAndPeriod(String accountId, LocalDateTime from, LocalDateTime to, MovementCursor after, int limit);
+
+  /**
+   * Sum, count and last position of the movements of the account after the snapshot (all of
+   * them without one) and registered before {@code until} when it is given. Empty when there
+   * are none.
+   */
+  Mono<BalanceDelta> sumAfter(String accountId, BalanceSnapshot after, LocalDateTime until);
+
+  /**
+   * Movements of every account registered in {@code [from, to)}, in no particular order, read
+   * through a single cursor that fetches {@code batchSize} movements at a time as they are requested.
+   */
+  Flux<Transaction> streamByPeriod(LocalDateTime from, LocalDateTime to, int batchSize);
+
+  /**
+   * Deletes the movement, and answers whether this call removed it: false when it was already
+   * gone, for instance removed by a concurrent call.
+   */
+  Mono<Boolean> removeById(String id);
+
+}
@@ -0,0 +1,69 @@
+package com.bank.bootcamp.savingacounts.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.time.LocalDateTime;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import com.bank.bootcamp.savingacounts.dto.BalanceDelta;
+import com.bank.bootcamp.savingacounts.dto.MovementCursor;
+import com.bank.bootcamp.savingacounts.entity.BalanceSnapshot;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+public class TransactionRepositoryCustomImpl implements TransactionRepositoryCustom {
+
+  private final ReactiveMongoTemplate mongoTemplate;
+
+  @Override
+  public Flux<Transaction> findPageByAccountIdAndPeriod(String accountId, LocalDateTime from, LocalDateTime to, MovementCursor after, int limit) {
+    var criteria = where("accountId").is(accountId).and("registerDate").gte(from).lt(to);
+    if (after != null)
+      criteria = criteria.orOperator(
+          where("registerDate").gt(after.getRegisterDate()),
+          where("registerDate").is(after.getRegisterDate()).and("operationNumber").gt(after.getOperationNumber()));
+    var page = query(criteria)
+        .with(Sort.by(Sort.Order.asc("registerDate"), Sort.Order.asc("operationNumber")))
+        .limit(limit);
+    page.cursorBatchSize(Math.min(limit, 500));
+    return mongoTemplate.find(page, Transaction.class);
+  }
+
+  @Override
+  public Mono<BalanceDelta> sumAfter(String accountId, BalanceSnapshot after, LocalDateTime until) {
+    var criteria = where("accountId").is(accountId);
+    if (until != null)
+      criteria = criteria.and("registerDate").lt(until);
+    if (after != null)
+      criteria = criteria.orOperator(
+          where("registerDate").gt(after.getAsOfRegisterDate()),
+          where("registerDate").is(after.getAsOfRegisterDate()).and("operationNumber").gt(after.getAsOfOperationNumber()));
+    var aggregation = Aggregation.newAggregation(
+        Aggregation.match(criteria),
+        Aggregation.sort(Sort.by(Sort.Order.asc("registerDate"), Sort.Order.asc("operationNumber"))),
+        Aggregation.group()
+            .sum("amount").as("amount")
+            .count().as("transactions")
+            .last("registerDate").as("lastRegisterDate")
+            .last("operationNumber").as("lastOperationNumber"));
+    return mongoTemplate.aggregate(aggregation, mongoTemplate.getCollectionName(Transaction.class), BalanceDelta.class).next();
+  }
+
+  @Override
+  public Flux<Transaction> streamByPeriod(LocalDateTime from, LocalDateTime to, int batchSize) {
+    var period = query(where("registerDate").gte(from).lt(to));
+    period.cursorBatchSize(batchSize);
+    return mongoTemplate.find(period, Transaction.class);
+  }
+
+  @Override
+  public Mono<Boolean> removeById(String id) {
+    return mongoTemplate.remove(query(where("id").is(id)), Transaction.class)
+        .map(result -> result.getDeletedCount() > 0);
+  }
+
+}
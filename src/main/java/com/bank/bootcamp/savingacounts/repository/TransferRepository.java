@@ -0,0 +1,8 @@
+package com.bank.bootcamp.savingacounts.repository;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import com.bank.bootcamp.savingacounts.entity.Transfer;
+
+public interface TransferRepository extends ReactiveMongoRepository<Transfer, String>, TransferRepositoryCustom {
+
+}
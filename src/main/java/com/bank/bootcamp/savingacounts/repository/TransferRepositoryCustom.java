@@ -0,0 +1,28 @@
+package com.bank.bootcamp.savingacounts.repository;
+
+import java.time.LocalDateTime;
+import com.bank.bootcamp.savingacounts.dto.TransferStatus;
+import com.bank.bootcamp.savingacounts.entity.Transfer;
+import reactor.core.publisher.Mono;
+
+/**
+ * Status changes of a transfer. Each one only applies from the expected status and completes
+ * empty when another writer moved the transfer first.
+ */
+public interface TransferRepositoryCustom {
+
+  /**
+   * Takes the next DEBITING or PENDING transfer due at {@code now}, counting one more attempt and
+   * hiding it from other dispatchers until {@code leaseUntil}.
+   */
+  Mono<Transfer> claimNext(LocalDateTime now, LocalDateTime leaseUntil);
+
+  Mono<Transfer> markDebited(String transferId, String sourceTransactionId, Integer sourceOperationNumber, LocalDateTime nextAttemptAt);
+
+  Mono<Transfer> markSettled(String transferId, Integer targetOperationNumber, LocalDateTime settledAt);
+
+  Mono<Transfer> scheduleRetry(String transferId, TransferStatus status, String error, LocalDateTime nextAttemptAt);
+
+  Mono<Transfer> close(String transferId, TransferStatus from, TransferStatus to, String error, LocalDateTime closedAt);
+
+}
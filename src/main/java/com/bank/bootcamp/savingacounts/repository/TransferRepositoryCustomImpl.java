@@ -0,0 +1,74 @@
+package com.bank.bootcamp.savingacounts.repository;
+
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+import com.bank.bootcamp.savingacounts.dto.TransferStatus;
+import com.bank.bootcamp.savingacounts.entity.Transfer;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+public class TransferRepositoryCustomImpl implements TransferRepositoryCustom {
+
+  private final ReactiveMongoTemplate mongoTemplate;
+
+  @Override
+  public Mono<Transfer> claimNext(LocalDateTime now, LocalDateTime leaseUntil) {
+    return mongoTemplate.findAndModify(
+        query(where("status").in(List.of(TransferStatus.DEBITING, TransferStatus.PENDING)).and("nextAttemptAt").lte(now))
+            .with(Sort.by("nextAttemptAt")),
+        new Update().inc("attempts", 1).set("nextAttemptAt", leaseUntil),
+        options().returnNew(true),
+        Transfer.class);
+  }
+
+  @Override
+  public Mono<Transfer> markDebited(String transferId, String sourceTransactionId, Integer sourceOperationNumber, LocalDateTime nextAttemptAt) {
+    return transition(transferId, TransferStatus.DEBITING, new Update()
+        .set("status", TransferStatus.PENDING)
+        .set("sourceTransactionId", sourceTransactionId)
+        .set("sourceOperationNumber", sourceOperationNumber)
+        .set("nextAttemptAt", nextAttemptAt));
+  }
+
+  @Override
+  public Mono<Transfer> markSettled(String transferId, Integer targetOperationNumber, LocalDateTime settledAt) {
+    return transition(transferId, TransferStatus.PENDING, new Update()
+        .set("status", TransferStatus.SETTLED)
+        .set("targetOperationNumber", targetOperationNumber)
+        .set("closedAt", settledAt)
+        .unset("lastError")
+        .unset("nextAttemptAt"));
+  }
+
+  @Override
+  public Mono<Transfer> scheduleRetry(String transferId, TransferStatus status, String error, LocalDateTime nextAttemptAt) {
+    return transition(transferId, status, new Update()
+        .set("lastError", error)
+        .set("nextAttemptAt", nextAttemptAt));
+  }
+
+  @Override
+  public Mono<Transfer> close(String transferId, TransferStatus from, TransferStatus to, String error, LocalDateTime closedAt) {
+    return transition(transferId, from, new Update()
+        .set("status", to)
+        .set("lastError", error)
+        .set("closedAt", closedAt)
+        .unset("nextAttemptAt"));
+  }
+
+  private Mono<Transfer> transition(String transferId, TransferStatus from, Update update) {
+    return mongoTemplate.findAndModify(
+        query(where("_id").is(transferId).and("status").is(from)),
+        update,
+        options().returnNew(true),
+        Transfer.class);
+  }
+
+}
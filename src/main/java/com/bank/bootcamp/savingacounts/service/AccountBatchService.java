@@ -0,0 +1,246 @@
+package com.bank.bootcamp.savingacounts.service;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.bson.types.ObjectId;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
+import com.bank.bootcamp.savingacounts.dto.BatchAccountResultDTO;
+import com.bank.bootcamp.savingacounts.dto.CreateAccountDTO;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.entity.TransactionSequences;
+import com.bank.bootcamp.savingacounts.mapper.EntityMapper;
+import com.bank.bootcamp.savingacounts.mapper.MinorUnits;
+import com.bank.bootcamp.savingacounts.repository.AccountRepository;
+import com.bank.bootcamp.savingacounts.repository.MonthlyAccountSummaryRepository;
+import com.bank.bootcamp.savingacounts.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+/**
+ * Opens accounts in bulk for migrations. The rows are validated like single openings, but each
+ * chunk looks up its customers with one query, takes its operation numbers as one range and
+ * inserts its accounts, opening transactions and summaries with one write per collection.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AccountBatchService {
+
+  static final String ALREADY_HAS_ACCOUNT = "Customer already has an saving account";
+
+  private final AccountService accountService;
+  private final AccountRepository accountRepository;
+  private final TransactionRepository transactionRepository;
+  private final MonthlyAccountSummaryRepository monthlySummaryRepository;
+  private final NextSequenceService nextSequenceService;
+  private final CreditCheckCache creditCheckCache;
+  private final Environment env;
+
+  public Flux<BatchAccountResultDTO> createAccounts(Flux<CreateAccountDTO> accounts) {
+    var batchSize = Integer.parseInt(Optional.ofNullable(env.getProperty("account.batch.size")).orElse("500"));
+    var concurrency = Integer.parseInt(Optional.ofNullable(env.getProperty("account.batch.concurrency")).orElse("4"));
+    var creditConcurrency = Integer.parseInt(Optional.ofNullable(env.getProperty("account.batch.credit-concurrency")).orElse("8"));
+    var minimumOpeningAmount = accountService.minimumOpeningAmount();
+    return accounts
+        .index()
+        .buffer(batchSize)
+        .flatMap(chunk -> {
+          var rows = new ArrayList<Row>(chunk.size());
+          var customers = new HashSet<String>();
+          chunk.forEach(item -> {
+            var row = new Row(item);
+            row.error = validate(item.getT2(), minimumOpeningAmount);
+            // el indice unico solo ve las filas de otros chunks
+            if (row.error == null && !customers.add(item.getT2().getCustomerId()))
+              row.error = ALREADY_HAS_ACCOUNT;
+            rows.add(row);
+          });
+          return processChunk(rows, creditConcurrency)
+              .thenMany(Flux.fromIterable(rows).map(Row::result));
+        }, concurrency);
+  }
+
+  private String validate(CreateAccountDTO dto, long minimumOpeningAmount) {
+    if (dto == null)
+      return "Account has not data";
+    if (ObjectUtils.isEmpty(dto.getCustomerId()))
+      return "Customer ID is required";
+    if (ObjectUtils.isEmpty(dto.getOpeningAmount()))
+      return "Opening amount is required";
+    if (dto.getOpeningAmount() < minimumOpeningAmount)
+      return String.format("The minimum opening amount is %s", MinorUnits.toDecimal(minimumOpeningAmount));
+    return null;
+  }
+
+  private Mono<Void> processChunk(List<Row> rows, int creditConcurrency) {
+    var customerIds = pending(rows).stream().map(Row::customerId).collect(Collectors.toList());
+    if (customerIds.isEmpty())
+      return Mono.empty();
+    return accountRepository.findByCustomerIdIn(customerIds)
+        .map(Account::getCustomerId)
+        .collect(Collectors.toSet())
+        .doOnNext(existing -> pending(rows).stream()
+            .filter(row -> existing.contains(row.customerId()))
+            .forEach(row -> row.error = ALREADY_HAS_ACCOUNT))
+        .thenMany(Flux.fromStream(() -> pending(rows).stream().filter(Row::isVip)))
+        .flatMap(row -> creditCheckCache.getAllBalances(row.customerId())
+            .hasElements()
+            .doOnNext(hasCredit -> {
+              if (!hasCredit)
+                row.error = "Customer has not credit product for VIP account";
+            })
+            .onErrorResume(e -> {
+              log.warn("Credit products of customer {} could not be checked", row.customerId(), e);
+              row.error = "The credit products of the customer could not be checked";
+              return Mono.empty();
+            }), creditConcurrency)
+        .then(Mono.defer(() -> insertAccounts(pending(rows))))
+        .then(Mono.defer(() -> open(pending(rows))));
+  }
+
+  /**
+   * The IDs are assigned here so that, when the bulk insert hits a customer opened meanwhile, the
+   * accounts it already wrote can be told apart from the other ones.
+   */
+  private Mono<Void> insertAccounts(List<Row> rows) {
+    if (rows.isEmpty())
+      return Mono.empty();
+    rows.forEach(row -> {
+      var dto = row.item.getT2();
+      dto.setMonthlyMovementLimit(Optional.ofNullable(dto.getMonthlyMovementLimit()).orElse(AccountService.DEFAULT_MONTHLY_MOVEMENT_LIMIT));
+      row.account = EntityMapper.toAccount(dto);
+      row.account.setId(new ObjectId().toHexString());
+      row.account.setBalance(dto.getOpeningAmount());
+    });
+    return accountRepository.insert(rows.stream().map(row -> row.account).collect(Collectors.toList()))
+        .then()
+        .onErrorResume(DuplicateKeyException.class, e -> accountRepository.findByCustomerIdIn(rows.stream().map(Row::customerId).collect(Collectors.toList()))
+            .collectMap(Account::getCustomerId, Account::getId)
+            .flatMapMany(stored -> Flux.fromIterable(rows)
+                .filter(row -> !row.account.getId().equals(stored.get(row.customerId())))
+                .concatMap(row -> stored.containsKey(row.customerId())
+                    ? Mono.fromRunnable(() -> row.reject(ALREADY_HAS_ACCOUNT))
+                    : accountRepository.insert(row.account)
+                        .onErrorResume(DuplicateKeyException.class, duplicate -> Mono.fromRunnable(() -> row.reject(ALREADY_HAS_ACCOUNT)))))
+            .then())
+        .onErrorResume(e -> {
+          log.error("Accounts of a batch could not be inserted", e);
+          return rollback(rows);
+        });
+  }
+
+  private Mono<Void> open(List<Row> rows) {
+    if (rows.isEmpty())
+      return Mono.empty();
+    var registerDate = LocalDateTime.now();
+    var yearMonth = YearMonth.from(registerDate);
+    return nextSequenceService.reserve(TransactionSequences.class.getSimpleName(), rows.size())
+        .flatMap(last -> {
+          var operationNumber = last - rows.size() + 1;
+          var transactions = new ArrayList<Transaction>(rows.size());
+          for (var row : rows) {
+            var transaction = accountService.openingTransaction(row.account.getId(), row.account.getBalance(), operationNumber++, registerDate);
+            transactions.add(transaction);
+            row.operationNumber = transaction.getOperationNumber();
+          }
+          return transactionRepository.insert(transactions).then();
+        })
+        .then(Mono.defer(() -> monthlySummaryRepository.insert(rows.stream().map(row -> summary(row.account, yearMonth)).collect(Collectors.toList()))
+            .then()
+            .onErrorResume(e -> {
+              log.warn("Monthly summaries of {} opened accounts could not be written", rows.size(), e);
+              return Mono.empty();
+            })))
+        .onErrorResume(e -> {
+          log.error("Opening transactions of a batch could not be written", e);
+          return rollback(rows);
+        });
+  }
+
+  /**
+   * What a failed write may have left is removed, so every reported error can be retried. The
+   * accounts are new, so all their transactions are the opening ones of this batch.
+   */
+  private Mono<Void> rollback(List<Row> rows) {
+    var opened = pending(rows);
+    var accountIds = opened.stream().map(row -> row.account.getId()).collect(Collectors.toList());
+    return Flux.fromIterable(accountIds)
+        .concatMap(transactionRepository::findByAccountId)
+        .map(Transaction::getId)
+        .collectList()
+        .flatMap(transactionRepository::deleteAllById)
+        .then(accountRepository.deleteAllById(accountIds))
+        .onErrorResume(e -> {
+          log.error("A failed batch of {} accounts could not be rolled back", opened.size(), e);
+          return Mono.empty();
+        })
+        .then(Mono.fromRunnable(() -> opened.forEach(row -> row.reject("The operation could not be completed"))));
+  }
+
+  private static MonthlyAccountSummary summary(Account account, YearMonth yearMonth) {
+    var summary = new MonthlyAccountSummary();
+    summary.setId(MonthlyAccountSummary.idOf(account.getId(), yearMonth));
+    summary.setAccountId(account.getId());
+    summary.setYearMonth(yearMonth.toString());
+    summary.setCount(1L);
+    summary.setCredits(account.getBalance());
+    summary.setDebits(0L);
+    summary.setComissions(0L);
+    summary.setClosingBalance(account.getBalance());
+    return summary;
+  }
+
+  private static List<Row> pending(List<Row> rows) {
+    return rows.stream().filter(row -> row.error == null).collect(Collectors.toList());
+  }
+
+  private static class Row {
+    private final Tuple2<Long, CreateAccountDTO> item;
+    private Account account;
+    private Integer operationNumber;
+    private String error;
+
+    private Row(Tuple2<Long, CreateAccountDTO> item) {
+      this.item = item;
+    }
+
+    private String customerId() {
+      return item.getT2().getCustomerId();
+    }
+
+    private boolean isVip() {
+      return "VIP".equalsIgnoreCase(item.getT2().getProfile());
+    }
+
+    private void reject(String error) {
+      this.error = error;
+      this.account = null;
+      this.operationNumber = null;
+    }
+
+    private BatchAccountResultDTO result() {
+      var result = new BatchAccountResultDTO();
+      result.setIndex(item.getT1());
+      result.setCustomerId(Optional.ofNullable(item.getT2()).map(CreateAccountDTO::getCustomerId).orElse(null));
+      if (error == null) {
+        result.setAccountId(account.getId());
+        result.setOperationNumber(operationNumber);
+      }
+      result.setError(error);
+      return result;
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package com.bank.bootcamp.savingacounts.service;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.repository.AccountRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+/**
+ * Bounded cache in front of {@link AccountRepository#findById}. Unknown IDs are cached for a
+ * shorter time, concurrent lookups of the same ID share one query, and every write made through
+ * this class replaces the cached copy with the document Mongo returned.
+ */
+@Component
+public class AccountCache {
+
+  private final AccountRepository accountRepository;
+  private final AsyncCache<String, Optional<Account>> cache;
+
+  public AccountCache(AccountRepository accountRepository, Environment env, MeterRegistry meterRegistry) {
+    this.accountRepository = accountRepository;
+    var maximumSize = Long.parseLong(Optional.ofNullable(env.getProperty("account.cache.maximum-size")).orElse("100000"));
+    var ttl = Duration.ofSeconds(Long.parseLong(Optional.ofNullable(env.getProperty("account.cache.ttl-seconds")).orElse("300")));
+    var negativeTtl = Duration.ofSeconds(Long.parseLong(Optional.ofNullable(env.getProperty("account.cache.negative-ttl-seconds")).orElse("10")));
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfter(new Expiry<String, Optional<Account>>() {
+          @Override
+          public long expireAfterCreate(String key, Optional<Account> value, long currentTime) {
+            return (value.isPresent() ? ttl : negativeTtl).toNanos();
+          }
+
+          @Override
+          public long expireAfterUpdate(String key, Optional<Account> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+          }
+
+          @Override
+          public long expireAfterRead(String key, Optional<Account> value, long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .recordStats()
+        .buildAsync();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "accounts");
+  }
+
+  public Mono<Account> findById(String accountId) {
+    return Mono.defer(() -> Mono.fromFuture(cache.get(accountId, (id, executor) -> accountRepository.findById(id)
+            .map(Optional::of)
+            .defaultIfEmpty(Optional.empty())
+            .toFuture())
+        // cada suscriptor espera su propia etapa para que una cancelación no cancele la consulta compartida
+        .thenApply(Function.identity())))
+        .flatMap(Mono::justOrEmpty);
+  }
+
+  public Mono<Account> refresh(String accountId) {
+    return accountRepository.findById(accountId)
+        .doOnNext(this::put)
+        .switchIfEmpty(Mono.fromRunnable(() -> cache.put(accountId, CompletableFuture.completedFuture(Optional.empty()))));
+  }
+
+  public Mono<Account> save(Account account) {
+    return accountRepository.save(account).doOnNext(this::put);
+  }
+
+  public Mono<Account> addToBalance(String accountId, long amount) {
+    return accountRepository.addToBalance(accountId, amount).doOnNext(this::put);
+  }
+
+  public Mono<Account> initializeBalance(String accountId, long balance) {
+    return accountRepository.initializeBalance(accountId, balance).doOnNext(this::put);
+  }
+
+  public void invalidateAll() {
+    cache.synchronous().invalidateAll();
+  }
+
+  private void put(Account account) {
+    cache.put(account.getId(), CompletableFuture.completedFuture(Optional.of(account)));
+  }
+}
@@ -0,0 +1,102 @@
+package com.bank.bootcamp.savingacounts.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import com.bank.bootcamp.savingacounts.exception.BankValidationException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+/**
+ * Runs the work submitted for an account one at a time, in arrival order. Accounts are striped
+ * over a fixed number of serial lanes, so different accounts only wait for each other when they
+ * share a lane. When a task runs longer than {@code account.execution-lanes.task-timeout-ms} its
+ * caller gets a timeout and the lane moves on, so one hung call does not stall it; the task itself
+ * is not cancelled, since stopping a write halfway would skip its compensations. A lane already
+ * holding {@code account.execution-lanes.max-depth} tasks rejects new ones.
+ * <p>
+ * Tasks are opaque to the lane and are not merged: each single write answers its own caller with
+ * its own operation number or error, in order. The writes that pile up behind a hot account are
+ * applied as one bulk write by submitting them together, as the batch endpoint does.
+ */
+@Component
+public class AccountExecutionLanes {
+
+  private final Lane[] lanes;
+  private final Duration taskTimeout;
+  private final int depthLimit;
+
+  public AccountExecutionLanes(Environment env, MeterRegistry meterRegistry) {
+    var count = Integer.parseInt(Optional.ofNullable(env.getProperty("account.execution-lanes"))
+        .orElse(String.valueOf(Runtime.getRuntime().availableProcessors() * 8)));
+    taskTimeout = Duration.ofMillis(Long.parseLong(Optional.ofNullable(env.getProperty("account.execution-lanes.task-timeout-ms")).orElse("10000")));
+    depthLimit = Integer.parseInt(Optional.ofNullable(env.getProperty("account.execution-lanes.max-depth")).orElse("1000"));
+    lanes = new Lane[count];
+    for (int i = 0; i < count; i++)
+      lanes[i] = new Lane();
+    Gauge.builder("account.lanes.queued", this, AccountExecutionLanes::queued)
+        .description("Operations waiting or running in the account execution lanes")
+        .register(meterRegistry);
+    Gauge.builder("account.lanes.max.depth", this, AccountExecutionLanes::maxDepth)
+        .description("Depth of the busiest account execution lane")
+        .register(meterRegistry);
+  }
+
+  public <T> Mono<T> submit(String accountId, Supplier<Mono<T>> work) {
+    return Mono.create(sink -> lanes[Math.floorMod(accountId.hashCode(), lanes.length)].enqueue(work, sink));
+  }
+
+  public int queued() {
+    return Arrays.stream(lanes).mapToInt(lane -> lane.depth.get()).sum();
+  }
+
+  public int maxDepth() {
+    return Arrays.stream(lanes).mapToInt(lane -> lane.depth.get()).max().orElse(0);
+  }
+
+  private final class Lane {
+    private final Sinks.Many<Mono<Void>> tasks = Sinks.many().unicast().onBackpressureBuffer(Queues.<Mono<Void>>unboundedMultiproducer().get());
+    private final AtomicInteger depth = new AtomicInteger();
+
+    private Lane() {
+      tasks.asFlux().concatMap(task -> task, 1).subscribe();
+    }
+
+    private <T> void enqueue(Supplier<Mono<T>> work, MonoSink<T> sink) {
+      if (depth.incrementAndGet() > depthLimit) {
+        depth.decrementAndGet();
+        sink.error(new BankValidationException("Too many operations pending on the account, retry later"));
+        return;
+      }
+      var task = Mono.defer(() -> {
+        var done = Sinks.empty();
+        // la tarea no se cancela: sus compensaciones tienen que llegar a ejecutarse
+        Mono.defer(work)
+            .doOnEach(signal -> {
+              if (signal.isOnNext())
+                sink.success(signal.get());
+              else if (signal.isOnError())
+                sink.error(signal.getThrowable());
+              else if (signal.isOnComplete())
+                sink.success();
+            })
+            .doFinally(signal -> done.tryEmitEmpty())
+            .subscribe(value -> { }, e -> { });
+        return done.asMono().timeout(taskTimeout, Mono.fromRunnable(() -> sink.error(
+            new TimeoutException(String.format("The operation did not finish within %s ms", taskTimeout.toMillis())))));
+      })
+          .doFinally(signal -> depth.decrementAndGet())
+          .then();
+      tasks.emitNext(task, (signal, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+    }
+  }
+}
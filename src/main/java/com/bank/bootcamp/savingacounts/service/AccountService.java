@@ -1,60 +1,88 @@
 package com.bank.bootcamp.savingacounts.service;
 
+import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.YearMonth;
 import java.util.Optional;
 import java.util.function.Predicate;
-import org.modelmapper.ModelMapper;
 import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.util.ObjectUtils;
 import com.bank.bootcamp.savingacounts.dto.BalanceDTO;
 import com.bank.bootcamp.savingacounts.dto.CreateAccountDTO;
 import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.dto.MovementCursor;
+import com.bank.bootcamp.savingacounts.dto.MovementPageItemDTO;
 import com.bank.bootcamp.savingacounts.dto.TransferDTO;
-import com.bank.bootcamp.savingacounts.dto.TransferOperation;
+import com.bank.bootcamp.savingacounts.dto.TransferStatus;
 import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
 import com.bank.bootcamp.savingacounts.entity.Transaction;
 import com.bank.bootcamp.savingacounts.entity.TransactionSequences;
+import com.bank.bootcamp.savingacounts.entity.Transfer;
 import com.bank.bootcamp.savingacounts.exception.BankValidationException;
+import com.bank.bootcamp.savingacounts.mapper.EntityMapper;
+import com.bank.bootcamp.savingacounts.mapper.MinorUnits;
 import com.bank.bootcamp.savingacounts.repository.AccountRepository;
+import com.bank.bootcamp.savingacounts.repository.MonthlyAccountSummaryRepository;
 import com.bank.bootcamp.savingacounts.repository.TransactionRepository;
-import com.bank.bootcamp.savingacounts.webclient.AccountWebClient;
-import com.bank.bootcamp.savingacounts.webclient.CreditWebClient;
+import com.bank.bootcamp.savingacounts.repository.TransferRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuples;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class AccountService {
   
   private final AccountRepository accountRepository;
+  private final AccountCache accountCache;
   private final TransactionRepository transactionRepository;
+  private final MonthlyAccountSummaryRepository monthlySummaryRepository;
   private final NextSequenceService nextSequenceService;
   private final Environment env;
-  private final CreditWebClient creditWebClient;
-  private final AccountWebClient accountWebClient;
+  private final CreditCheckCache creditCheckCache;
+  private final TransferRepository transferRepository;
+  private final BalanceSnapshotService balanceSnapshotService;
+  private final AccountExecutionLanes executionLanes;
+  private final OperationMetrics metrics;
   
-  private ModelMapper mapper = new ModelMapper();
+  private static final String CREATE_ACCOUNT = "createAccount";
+  private static final String CREATE_TRANSACTION = "createTransaction";
+  private static final String TRANSFER = "transfer";
+  static final String COMISSION_DESCRIPTION = "Maintenance comission by limit transactions";
+  static final int DEFAULT_MONTHLY_MOVEMENT_LIMIT = 5;
+  
+  // meses ya sembrados en esta instancia, para no consultarlos en cada movimiento
+  private final Cache<String, Boolean> seededMonths = Caffeine.newBuilder()
+      .maximumSize(100_000)
+      .expireAfterWrite(Duration.ofHours(1))
+      .build();
 
   public Mono<Account> createAccount(CreateAccountDTO dto) {
-    var minimumOpeningAmount = Double.parseDouble(Optional.ofNullable(env.getProperty("account.minimum-opening-amount")).orElse("0"));
-    return Mono.just(dto)
+    var minimumOpeningAmount = minimumOpeningAmount();
+    return metrics.operation(CREATE_ACCOUNT, metrics.stage(CREATE_ACCOUNT, "validation", Mono.just(dto)
         .then(check(dto, acc -> Optional.of(acc).isEmpty(), "Account has not data"))
         .then(check(dto, acc -> ObjectUtils.isEmpty(acc.getCustomerId()), "Customer ID is required"))
         .then(check(dto, acc -> ObjectUtils.isEmpty(acc.getOpeningAmount()), "Opening amount is required"))
-        .then(check(dto, acc -> acc.getOpeningAmount() < minimumOpeningAmount, String.format("The minimum opening amount is %s", minimumOpeningAmount)))
-        .then(accountRepository.findByCustomerId(dto.getCustomerId())
+        .then(check(dto, acc -> acc.getOpeningAmount() < minimumOpeningAmount, String.format("The minimum opening amount is %s", MinorUnits.toDecimal(minimumOpeningAmount)))))
+        .then(metrics.stage(CREATE_ACCOUNT, "customer-lookup", accountRepository.findByCustomerId(dto.getCustomerId()))
             .<CreateAccountDTO>handle((record, sink) -> sink.error(new BankValidationException("Customer already has an saving account")))
         )
         .switchIfEmpty(Mono.just(dto))
         .flatMap(createAccountDTO -> {
             if(!ObjectUtils.isEmpty(dto.getProfile()) && "VIP".equalsIgnoreCase(dto.getProfile())) {
-              return creditWebClient.getAllBalances(dto.getCustomerId())
+              return metrics.stage(CREATE_ACCOUNT, "credit-check", creditCheckCache.getAllBalances(dto.getCustomerId())
                   .switchIfEmpty(Mono.error(new BankValidationException("Customer has not credit product for VIP account")))
-                  .count()
+                  .count())
                   .map(count -> createAccountDTO);
             } else {
               return Mono.just(createAccountDTO);
@@ -62,26 +90,35 @@ public class AccountService {
         })
         .flatMap(accountDTO -> {
           
-            var acc = mapper.map(accountDTO, Account.class); 
-            accountDTO.setMonthlyMovementLimit(Optional.ofNullable(accountDTO.getMonthlyMovementLimit()).orElse(5)); // maximo movimientos mensuales
-            return accountRepository.save(acc)
+            accountDTO.setMonthlyMovementLimit(Optional.ofNullable(accountDTO.getMonthlyMovementLimit()).orElse(DEFAULT_MONTHLY_MOVEMENT_LIMIT)); // maximo movimientos mensuales
+            var acc = EntityMapper.toAccount(accountDTO);
+            acc.setBalance(accountDTO.getOpeningAmount());
+            return metrics.stage(CREATE_ACCOUNT, "save", accountCache.save(acc))
                 .flatMap(savedAccount -> {
-                  return nextSequenceService.getNextSequence(TransactionSequences.class.getSimpleName())
-                      .map(nextSeq -> {
-                        var openingTransaction = new Transaction();
-                        openingTransaction.setAccountId(savedAccount.getId());
-                        openingTransaction.setAgent("-");
-                        openingTransaction.setAmount(accountDTO.getOpeningAmount());
-                        openingTransaction.setDescription("Opening account");
-                        openingTransaction.setOperationNumber(nextSeq);
-                        openingTransaction.setRegisterDate(LocalDateTime.now());
-                        return openingTransaction;
-                      })
+                  return metrics.stage(CREATE_ACCOUNT, "sequence", nextSequenceService.getNextSequence(TransactionSequences.class.getSimpleName()))
+                      .map(nextSeq -> openingTransaction(savedAccount.getId(), accountDTO.getOpeningAmount(), nextSeq, LocalDateTime.now()))
                       .flatMap(tx -> {
-                        return transactionRepository.save(tx).map(tt -> savedAccount);
+                        return metrics.stage(CREATE_ACCOUNT, "opening-transaction", transactionRepository.save(tx)
+                            .flatMap(tt -> recordMovement(tt, YearMonth.from(tt.getRegisterDate()), 1, false, savedAccount.getBalance())))
+                            .thenReturn(savedAccount);
                       });
             });
-         });
+         }));
+  }
+  
+  long minimumOpeningAmount() {
+    return MinorUnits.of(new BigDecimal(Optional.ofNullable(env.getProperty("account.minimum-opening-amount")).orElse("0")));
+  }
+  
+  Transaction openingTransaction(String accountId, Long openingAmount, Integer operationNumber, LocalDateTime registerDate) {
+    var openingTransaction = new Transaction();
+    openingTransaction.setAccountId(accountId);
+    openingTransaction.setAgent("-");
+    openingTransaction.setAmount(openingAmount);
+    openingTransaction.setDescription("Opening account");
+    openingTransaction.setOperationNumber(operationNumber);
+    openingTransaction.setRegisterDate(registerDate);
+    return openingTransaction;
   }
   
   private <T> Mono<Void> check(T customer, Predicate<T> predicate, String messageForException) {
@@ -95,124 +132,250 @@ public class AccountService {
     });
   }
   
-  private Mono<Transaction> persistTransaction(CreateTransactionDTO createTransactionDTO) {
-    return nextSequenceService.getNextSequence(TransactionSequences.class.getSimpleName()).<Transaction>flatMap(nextSeq -> {
-      var transaction = mapper.map(createTransactionDTO, Transaction.class);
-      transaction.setOperationNumber(nextSeq);
-      transaction.setRegisterDate(LocalDateTime.now());
-      return transactionRepository.save(transaction);
-    });
+  /**
+   * Applies the amount to the balance and saves the transaction, then adds it to the monthly
+   * summary. {@code count} is how many movements the summary still has to count for it: the
+   * regular transactions were already counted by the limit gate.
+   */
+  private Mono<Transaction> persistTransaction(CreateTransactionDTO createTransactionDTO, YearMonth yearMonth, int count, String transferId) {
+    return metrics.stage(CREATE_TRANSACTION, "balance-update", accountCache.addToBalance(createTransactionDTO.getAccountId(), createTransactionDTO.getAmount()))
+        .switchIfEmpty(Mono.error(new BankValidationException("Insuficient balance")))
+        .flatMap(account -> metrics.stage(CREATE_TRANSACTION, "sequence", nextSequenceService.getNextSequence(TransactionSequences.class.getSimpleName())).<Transaction>flatMap(nextSeq -> {
+          var transaction = toTransaction(createTransactionDTO, nextSeq, LocalDateTime.now());
+          transaction.setTransferId(transferId);
+          return metrics.stage(CREATE_TRANSACTION, "save", transactionRepository.save(transaction));
+        })
+        .onErrorResume(e -> accountCache.addToBalance(createTransactionDTO.getAccountId(), -createTransactionDTO.getAmount())
+            .then(Mono.error(e)))
+        .flatMap(tx -> metrics.stage(CREATE_TRANSACTION, "summary", recordMovement(tx, yearMonth, count, false, account.getBalance()))
+            .thenReturn(tx)));
+  }
+  
+  /**
+   * Adds one transaction to its monthly summary, or takes it out when {@code reversal} is set.
+   */
+  private Mono<Void> recordMovement(Transaction transaction, YearMonth yearMonth, int count, boolean reversal, Long closingBalance) {
+    long amount = transaction.getAmount();
+    var sign = reversal ? -1L : 1L;
+    if (isComission(transaction))
+      return recordSummary(transaction.getAccountId(), yearMonth, count, 0L, 0L, sign * Math.abs(amount), closingBalance);
+    return recordSummary(transaction.getAccountId(), yearMonth, count,
+        amount > 0 ? sign * amount : 0L, amount < 0 ? sign * -amount : 0L, 0L, closingBalance);
+  }
+  
+  /**
+   * The transaction is already persisted when the summary is written, so a failure here is only
+   * logged: the summary can be rebuilt from the transactions.
+   */
+  Mono<Void> recordSummary(String accountId, YearMonth yearMonth, int count, long credits, long debits, long comissions, Long closingBalance) {
+    return monthlySummaryRepository.record(accountId, yearMonth, count, credits, debits, comissions, closingBalance)
+        .onErrorResume(e -> {
+          log.warn("Monthly summary {} of account {} could not be updated", yearMonth, accountId, e);
+          return Mono.empty();
+        })
+        .then();
+  }
+  
+  /**
+   * Transactions do not store how they were created; commissions are told apart by their fixed
+   * description, the same way the summary rebuild does.
+   */
+  static boolean isComission(Transaction transaction) {
+    return COMISSION_DESCRIPTION.equals(transaction.getDescription());
+  }
+  
+  Transaction toTransaction(CreateTransactionDTO createTransactionDTO, Integer operationNumber, LocalDateTime registerDate) {
+    var transaction = EntityMapper.toTransaction(createTransactionDTO);
+    transaction.setOperationNumber(operationNumber);
+    transaction.setRegisterDate(registerDate);
+    return transaction;
+  }
+  
+  CreateTransactionDTO comissionTransaction(String accountId, long amount) {
+    var comissionTxDTO = new CreateTransactionDTO();
+    comissionTxDTO.setAccountId(accountId);
+    comissionTxDTO.setAgent("-");
+    comissionTxDTO.setAmount(amountWithComission(amount));
+    comissionTxDTO.setCreateByComission(Boolean.TRUE);
+    comissionTxDTO.setDescription(COMISSION_DESCRIPTION);
+    return comissionTxDTO;
+  }
+  
+  /**
+   * The debit of a commission transaction: the amount plus its commission, rounded half up to the
+   * cent, as a negative number of cents.
+   */
+  static long amountWithComission(long amount) {
+    var comissionBasisPoints = 50L; // TODO: Este valor está en duro, no especificaron el monto, por ahora es 0.5 %
+    var principal = Math.abs(amount);
+    return -(principal + (principal * comissionBasisPoints + 5_000L) / 10_000L);
+  }
+  
+  int maxTransactionsWithFreeComission() {
+    return Integer.parseInt(Optional.ofNullable(env.getProperty("account.comission-free-maximum-transactions")).orElse("99"));
+  }
+  
+  /**
+   * Deletes the transaction and undoes it on the balance and the summary. Only the call that
+   * actually removed it undoes it, so two concurrent reversals refund it once.
+   */
+  Mono<Void> reverseTransaction(Transaction transaction) {
+    return transactionRepository.removeById(transaction.getId())
+        .filter(removed -> removed)
+        .flatMap(removed -> accountCache.addToBalance(transaction.getAccountId(), -transaction.getAmount())
+            .map(account -> Optional.ofNullable(account.getBalance()))
+            .defaultIfEmpty(Optional.empty())
+            .flatMap(balance -> recordMovement(transaction, YearMonth.from(transaction.getRegisterDate()), -1, true, balance.orElse(null))));
+  }
+  
+  /**
+   * Makes sure the summary of the month exists before its counter gates a movement. A month
+   * without a summary, such as the current one of the accounts that existed before the counter,
+   * is seeded with the movements already in the ledger; if another writer seeded it first, that
+   * one is kept.
+   */
+  Mono<Void> seedMonth(String accountId, YearMonth yearMonth) {
+    var id = MonthlyAccountSummary.idOf(accountId, yearMonth);
+    if (seededMonths.getIfPresent(id) != null)
+      return Mono.empty();
+    return monthlySummaryRepository.existsById(id)
+        .filter(exists -> !exists)
+        .flatMap(missing -> transactionRepository.findByAccountIdAndRegisterDateBetween(accountId,
+                yearMonth.atDay(1).atStartOfDay().minusNanos(1), yearMonth.plusMonths(1).atDay(1).atStartOfDay())
+            .collect(() -> MonthlySummaryService.emptySummary(accountId, yearMonth), AccountService::addToSummary)
+            .flatMap(summary -> monthlySummaryRepository.insert(summary)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty())))
+        .doOnSuccess(seeded -> seededMonths.put(id, Boolean.TRUE))
+        .then();
+  }
+  
+  private static void addToSummary(MonthlyAccountSummary summary, Transaction transaction) {
+    long amount = transaction.getAmount();
+    summary.setCount(summary.getCount() + 1);
+    if (isComission(transaction))
+      summary.setComissions(summary.getComissions() + Math.abs(amount));
+    else if (amount > 0)
+      summary.setCredits(summary.getCredits() + amount);
+    else
+      summary.setDebits(summary.getDebits() - amount);
+  }
+  
+  Mono<Long> currentBalance(Account account) {
+    if (account.getBalance() != null)
+      return Mono.just(account.getBalance());
+    return balanceSnapshotService.getBalance(account.getId())
+        .flatMap(balance -> accountCache.initializeBalance(account.getId(), balance))
+        .map(Account::getBalance);
   }
 
   public Mono<Transaction> createTransaction(CreateTransactionDTO createTransactionDTO) {
-    
-    var maxTransactionsWithFreeComission = Integer.parseInt(Optional.ofNullable(env.getProperty("account.comission-free-maximum-transactions")).orElse("99"));
-    
-    return Mono.just(createTransactionDTO)
+    return createTransaction(createTransactionDTO, null);
+  }
+  
+  private Mono<Transaction> createTransaction(CreateTransactionDTO createTransactionDTO, String transferId) {
+    return metrics.operation(CREATE_TRANSACTION, metrics.stage(CREATE_TRANSACTION, "validation", Mono.just(createTransactionDTO)
         .then(check(createTransactionDTO, dto -> Optional.of(dto).isEmpty(), "No data for create transaction"))
         .then(check(createTransactionDTO, dto -> ObjectUtils.isEmpty(dto.getAccountId()), "Account ID is required"))
         .then(check(createTransactionDTO, dto -> ObjectUtils.isEmpty(dto.getAgent()), "Agent is required"))
         .then(check(createTransactionDTO, dto -> ObjectUtils.isEmpty(dto.getAmount()), "Amount is required"))
-        .then(check(createTransactionDTO, dto -> ObjectUtils.isEmpty(dto.getDescription()), "Description is required"))
-        .then(accountRepository.findById(createTransactionDTO.getAccountId())
-            .switchIfEmpty(Mono.error(new BankValidationException("Account not found")))
-            .flatMap(acc -> {
-              var yearMonth = YearMonth.from(LocalDateTime.now());
-              var currentMonthStart = yearMonth.atDay(1).atStartOfDay();
-              var currentMonthEnd = yearMonth.atEndOfMonth().atTime(23, 59, 59);
-              return transactionRepository.findByAccountIdAndRegisterDateBetween(acc.getId(), currentMonthStart, currentMonthEnd)
-                  .count()
-                  .<Long>handle((register, sink) -> {
-                    if (register >= acc.getMonthlyMovementLimit()) 
-                      sink.error(new BankValidationException(String.format("You can only register a maximum of %s monthly movements", acc.getMonthlyMovementLimit())));
-                    else
-                      sink.next(register);
-                  });
-            })
-        )
-        .then(transactionRepository.getBalanceByAccountId(createTransactionDTO.getAccountId()).switchIfEmpty(Mono.just(0d)))
-        .flatMap(balance -> {
-          if (balance + createTransactionDTO.getAmount() < 0)
-            return Mono.error(new BankValidationException("Insuficient balance"));
-          else {
-         // Agregamos la validación de la comisión, y si esta puede aplicarse
-            var comissionPercentage = 0.005; // TODO: Este valor está en duro, no especificaron el monto, por ahora es 0.5 %
-            var newAmountWithComissionApply = (Math.abs(createTransactionDTO.getAmount()) * (1d + comissionPercentage)) * -1d;
-            
-            var yearMonth = YearMonth.from(LocalDateTime.now());
-            var currentMonthStart = yearMonth.atDay(1).atStartOfDay();
-            var currentMonthEnd = yearMonth.atEndOfMonth().atTime(23, 59, 59);
-            
-            return transactionRepository.findByAccountIdAndRegisterDateBetween(createTransactionDTO.getAccountId(), currentMonthStart, currentMonthEnd)
-                .count()
-                .<Boolean>handle((transactionCount, sink) -> {                  
-                  if (transactionCount >= maxTransactionsWithFreeComission) {
-                    if (balance + newAmountWithComissionApply < 0) {
-                      sink.error(new BankValidationException("Insuficient balance, can not apply the comission"));
+        .then(check(createTransactionDTO, dto -> ObjectUtils.isEmpty(dto.getDescription()), "Description is required")))
+        .then(executionLanes.submit(createTransactionDTO.getAccountId(), () -> registerTransaction(createTransactionDTO, transferId))));
+  }
+  
+  private Mono<Transaction> registerTransaction(CreateTransactionDTO createTransactionDTO, String transferId) {
+    
+    var maxTransactionsWithFreeComission = maxTransactionsWithFreeComission();
+    
+    return metrics.stage(CREATE_TRANSACTION, "account-lookup", accountCache.findById(createTransactionDTO.getAccountId()))
+        .switchIfEmpty(Mono.error(new BankValidationException("Account not found")))
+        .flatMap(acc -> {
+          var yearMonth = YearMonth.from(LocalDateTime.now());
+          // Agregamos la validación de la comisión, y si esta puede aplicarse
+          long amount = createTransactionDTO.getAmount();
+          var newAmountWithComissionApply = amountWithComission(amount);
+          
+          return metrics.stage(CREATE_TRANSACTION, "monthly-counter", seedMonth(acc.getId(), yearMonth)
+                  .then(Mono.defer(() -> monthlySummaryRepository.incrementIfBelow(acc.getId(), yearMonth, acc.getMonthlyMovementLimit()))))
+              .switchIfEmpty(Mono.error(new BankValidationException(String.format("You can only register a maximum of %s monthly movements", acc.getMonthlyMovementLimit()))))
+              .flatMap(movements -> metrics.stage(CREATE_TRANSACTION, "balance", currentBalance(acc)
+                  .flatMap(balance -> {
+                    // el saldo en caché puede estar desactualizado: antes de rechazar se vuelve a leer
+                    var comission = movements.getCount() > maxTransactionsWithFreeComission;
+                    if (balance + amount < 0 || (comission && balance + amount + newAmountWithComissionApply < 0))
+                      return accountCache.refresh(acc.getId()).flatMap(this::currentBalance);
+                    return Mono.just(balance);
+                  }))
+                  .<Boolean>handle((balance, sink) -> {
+                    if (balance + amount < 0) {
+                      sink.error(new BankValidationException("Insuficient balance"));
+                    } else if (movements.getCount() > maxTransactionsWithFreeComission) {
+                      // el movimiento y su comisión se descuentan juntos, como en TransactionBatchService.plan
+                      if (balance + amount + newAmountWithComissionApply < 0) {
+                        sink.error(new BankValidationException("Insuficient balance, can not apply the comission"));
+                      } else {
+                        sink.next(Boolean.TRUE);
+                      }
                     } else {
-                      sink.next(Boolean.TRUE);
+                      sink.next(Boolean.FALSE);
                     }
-                  } else {
-                    sink.next(Boolean.FALSE);
-                  }
-                })
-                .flatMap(persistComission -> {
-                  return persistTransaction(createTransactionDTO)
-                      .flatMap(tx -> {
-                        var monoTx = Mono.just(tx);
-                        if (persistComission) {
-                          var comissionTxDTO = new CreateTransactionDTO();
-                          comissionTxDTO.setAccountId(tx.getAccountId());
-                          comissionTxDTO.setAgent("-");
-                          comissionTxDTO.setAmount(newAmountWithComissionApply);
-                          comissionTxDTO.setCreateByComission(Boolean.TRUE);
-                          comissionTxDTO.setDescription("Maintenance comission by limit transactions");
-                          monoTx = persistTransaction(comissionTxDTO).map(ct -> tx);
-                        }
-                        return monoTx;
-                      })
-                      ;
-                });
-            
-          }
+                  })
+                  .flatMap(persistComission -> persistTransaction(createTransactionDTO, yearMonth, 0, transferId).map(tx -> Tuples.of(tx, persistComission)))
+                  .onErrorResume(e -> monthlySummaryRepository.increment(acc.getId(), yearMonth, -1).then(Mono.error(e))))
+              .flatMap(persisted -> {
+                var tx = persisted.getT1();
+                if (!persisted.getT2())
+                  return Mono.just(tx);
+                // sin su comisión el movimiento no se registra: se revierte y se descuenta del contador
+                return metrics.stage(CREATE_TRANSACTION, "comission", persistTransaction(comissionTransaction(tx.getAccountId(), amount), yearMonth, 1, null))
+                    .map(comission -> tx)
+                    .onErrorResume(e -> reverseTransaction(tx).then(Mono.error(e)));
+              });
         });
   }
 
   public Mono<BalanceDTO> getBalanceByAccountId(String accountId) {
     return Mono.just(accountId)
     .switchIfEmpty(Mono.error(new BankValidationException("Account Id is required")))
-    .flatMap(accId -> accountRepository.findById(accId))
+    .flatMap(accId -> accountCache.refresh(accId))
     .switchIfEmpty(Mono.error(new BankValidationException("Account not found")))
     .flatMap(account -> {
-      var x = transactionRepository.getBalanceByAccountId(account.getId()).switchIfEmpty(Mono.just(0d))
+      var x = currentBalance(account)
           .flatMap(balance -> {
             var yearMonth = YearMonth.from(LocalDateTime.now());
-            var currentMonthStart = yearMonth.atDay(1).atStartOfDay();
-            var currentMonthEnd = yearMonth.atEndOfMonth().atTime(23, 59, 59);
             
-            return transactionRepository.findByAccountIdAndRegisterDateBetween(accountId, currentMonthStart, currentMonthEnd)
-                .count().switchIfEmpty(Mono.just(0L))
-                .map(qty -> {
-                  var balanceDTO = new BalanceDTO();
-                  balanceDTO.setAccountId(account.getId());
-                  balanceDTO.setMonthlyMovementLimit(account.getMonthlyMovementLimit());
-                  balanceDTO.setMonthlyMovementsAvailable(account.getMonthlyMovementLimit() - qty);
-                  //balanceDTO.setAccountNumber(account.getAccountNumber());
-                  balanceDTO.setType("Saving Account");
-                  balanceDTO.setAmount(balance);
-                  return balanceDTO;
-                });
+            return monthlySummaryRepository.findById(MonthlyAccountSummary.idOf(account.getId(), yearMonth))
+                .map(MonthlyAccountSummary::getCount).switchIfEmpty(Mono.just(0L))
+                .map(qty -> toBalanceDTO(account.getId(), account.getMonthlyMovementLimit(), balance, qty));
           });
       return x;
     });
   }
-
+  
   public Flux<BalanceDTO> getBalancesByCustomerId(String customerId) {
-    return Mono.just(customerId)
+    return Mono.justOrEmpty(customerId)
     .switchIfEmpty(Mono.error(new BankValidationException("Customer ID is required")))
-    .flatMap(custId -> accountRepository.findByCustomerId(custId)
-        .flatMap(account -> getBalanceByAccountId(account.getId())))
-    .flux();
+    .flatMapMany(custId -> accountRepository.findBalancesByCustomerId(custId, YearMonth.from(LocalDateTime.now())))
+    .concatMap(view -> {
+      if (view.getBalance() != null)
+        return Mono.just(toBalanceDTO(view.getAccountId(), view.getMonthlyMovementLimit(), view.getBalance(), view.getMonthlyMovements()));
+      // Cuentas antiguas sin saldo materializado
+      var account = new Account();
+      account.setId(view.getAccountId());
+      return currentBalance(account)
+          .map(balance -> toBalanceDTO(view.getAccountId(), view.getMonthlyMovementLimit(), balance, view.getMonthlyMovements()));
+    });
+  }
+  
+  private BalanceDTO toBalanceDTO(String accountId, Integer monthlyMovementLimit, Long balance, Long monthlyMovements) {
+    var balanceDTO = new BalanceDTO();
+    balanceDTO.setAccountId(accountId);
+    balanceDTO.setMonthlyMovementLimit(monthlyMovementLimit);
+    balanceDTO.setMonthlyMovementsAvailable(monthlyMovementLimit - monthlyMovements);
+    //balanceDTO.setAccountNumber(account.getAccountNumber());
+    balanceDTO.setType("Saving Account");
+    balanceDTO.setAmount(balance);
+    balanceDTO.setStalenessMs(0L);
+    return balanceDTO;
   }
 
   public Flux<Account> getAccountsByCustomer(String customerId) {
@@ -240,44 +403,80 @@ public class AccountService {
         });
   }
   
-  public Mono<Integer> transfer(TransferDTO transferDTO) {
-    var transferOperation = new TransferOperation();
-    return Mono.just(transferDTO)
+  public Flux<MovementPageItemDTO> getTransactionPageByAccountIdAndPeriod(String accountId, LocalDate period, String cursor, Integer size) {
+    var maxPageSize = Integer.parseInt(Optional.ofNullable(env.getProperty("movements.page.max-size")).orElse("1000"));
+    return check(accountId, accId -> ObjectUtils.isEmpty(accId), "Account Id is required")
+        .then(check(period, p -> Optional.ofNullable(p).isEmpty(), "Period is required"))
+        .then(check(size, s -> s == null || s < 1 || s > maxPageSize, String.format("The page size must be between 1 and %s", maxPageSize)))
+        .then(Mono.fromCallable(() -> ObjectUtils.isEmpty(cursor) ? Optional.<MovementCursor>empty() : Optional.of(MovementCursor.decode(cursor))))
+        .flatMapMany(after -> {
+          var yearMonth = YearMonth.from(period);
+          return transactionRepository.findPageByAccountIdAndPeriod(accountId,
+              yearMonth.atDay(1).atStartOfDay(), yearMonth.plusMonths(1).atDay(1).atStartOfDay(), after.orElse(null), size);
+        })
+        .map(tx -> {
+          var item = new MovementPageItemDTO();
+          item.setCursor(MovementCursor.of(tx).encode());
+          item.setTransaction(tx);
+          return item;
+        });
+  }
+  
+  /**
+   * Registers the transfer and debits the source account. The credit on the target account is
+   * delivered afterwards by the {@link TransferDispatcher}; the returned transfer is PENDING.
+   */
+  public Mono<Transfer> transfer(TransferDTO transferDTO) {
+    var debitTimeout = Long.parseLong(Optional.ofNullable(env.getProperty("transfer.debit-timeout-seconds")).orElse("30"));
+    return metrics.operation(TRANSFER, metrics.stage(TRANSFER, "validation", Mono.just(transferDTO)
         .switchIfEmpty(Mono.error(new BankValidationException("Transfer has not data")))
         .then(check(transferDTO, dto -> ObjectUtils.isEmpty(dto), "Transfer has not data"))
         .then(check(transferDTO, dto -> ObjectUtils.isEmpty(dto.getAmount()), "Transfer amount is required"))
         .then(check(transferDTO, dto -> dto.getAmount() < 0, "Transfer amount must be greater than zero"))
         .then(check(transferDTO, dto -> ObjectUtils.isEmpty(dto.getSourceAccountId()), "Transfer source account ID is required"))
         .then(check(transferDTO, dto -> ObjectUtils.isEmpty(dto.getTargetAccountType()), "Transfer account type is required"))
-        .then(check(transferDTO, dto -> ObjectUtils.isEmpty(dto.getTargetAccountId()), "Transfer account ID is required"))
-        .then(accountRepository.findById(transferDTO.getSourceAccountId()).switchIfEmpty(Mono.error(new BankValidationException("Source account not found"))))
+        .then(check(transferDTO, dto -> ObjectUtils.isEmpty(dto.getTargetAccountId()), "Transfer account ID is required")))
+        .then(metrics.stage(TRANSFER, "source-lookup", accountCache.findById(transferDTO.getSourceAccountId())).switchIfEmpty(Mono.error(new BankValidationException("Source account not found"))))
         .flatMap(sourceAccount -> {
+          // se registra antes del débito: si el proceso cae a mitad, el despachador lo encuentra
+          var now = LocalDateTime.now();
+          var transfer = new Transfer();
+          transfer.setSourceAccountId(transferDTO.getSourceAccountId());
+          transfer.setTargetAccountType(transferDTO.getTargetAccountType());
+          transfer.setTargetAccountId(transferDTO.getTargetAccountId());
+          transfer.setAmount(transferDTO.getAmount());
+          transfer.setStatus(TransferStatus.DEBITING);
+          transfer.setAttempts(0);
+          transfer.setCreatedAt(now);
+          transfer.setNextAttemptAt(now.plusSeconds(debitTimeout));
+          return metrics.stage(TRANSFER, "outbox", transferRepository.save(transfer));
+        })
+        .flatMap(transfer -> {
           var transactionDTO = new CreateTransactionDTO();
           transactionDTO.setAccountId(transferDTO.getSourceAccountId());
           transactionDTO.setAgent("-");
           transactionDTO.setDescription("Transfer sent");
-          transactionDTO.setAmount(transferDTO.getAmount() * -1);
+          transactionDTO.setAmount(-transferDTO.getAmount());
           
-          return createTransaction(transactionDTO)
-              .map(tx -> {
-                transferOperation.setSourceTransactionId(tx.getId());
-                return tx.getOperationNumber();
-              });
-        })
-        .flatMap(operationNumberTarget -> {
-          
-          var transactionDTO = new CreateTransactionDTO();
-          transactionDTO.setAccountId(transferDTO.getTargetAccountId());
-          transactionDTO.setAgent("-");
-          transactionDTO.setDescription("Transfer incoming " + operationNumberTarget);
-          transactionDTO.setAmount(transferDTO.getAmount());
-          
-          return accountWebClient.createTransaction(transferDTO.getTargetAccountType(), transactionDTO)
-              .onErrorResume(Exception.class, e -> {
-                transactionRepository.deleteById(transferOperation.getSourceTransactionId());
-                return Mono.error(new BankValidationException("The operation could not be completed"));
-              });
-        })
-        ;
+          return metrics.stage(TRANSFER, "debit", createTransaction(transactionDTO, transfer.getId()))
+              .onErrorResume(e -> transferRepository.close(transfer.getId(), TransferStatus.DEBITING, TransferStatus.REJECTED, e.getMessage(), LocalDateTime.now())
+                  .then(Mono.error(e)))
+              .flatMap(tx -> metrics.stage(TRANSFER, "outbox-debited", transferRepository.markDebited(transfer.getId(), tx.getId(), tx.getOperationNumber(), LocalDateTime.now()))
+                  .switchIfEmpty(Mono.defer(() -> transferRepository.findById(transfer.getId()))
+                      .flatMap(current -> {
+                        if (current.getStatus() != TransferStatus.REJECTED)
+                          return Mono.just(current);
+                        // el despachador no encontró el débito a tiempo y dio la transferencia por rechazada
+                        return executionLanes.submit(tx.getAccountId(), () -> reverseTransaction(tx))
+                            .then(Mono.error(new BankValidationException("The operation could not be completed")));
+                      })));
+        }));
+  }
+  
+  public Mono<Transfer> getTransfer(String transferId) {
+    return Mono.justOrEmpty(transferId)
+        .switchIfEmpty(Mono.error(new BankValidationException("Transfer ID is required")))
+        .flatMap(transferRepository::findById)
+        .switchIfEmpty(Mono.error(new BankValidationException("Transfer not found")));
   }
 }
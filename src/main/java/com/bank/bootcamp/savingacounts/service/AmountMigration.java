@@ -0,0 +1,108 @@
+package com.bank.bootcamp.savingacounts.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject.Type;
+import org.springframework.stereotype.Service;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.BalanceSnapshot;
+import com.bank.bootcamp.savingacounts.entity.Migration;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.entity.TransactionBucket;
+import com.bank.bootcamp.savingacounts.entity.Transfer;
+import com.bank.bootcamp.savingacounts.mapper.MinorUnits;
+import com.mongodb.client.result.UpdateResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Rewrites the amounts stored as decimal doubles, from before amounts were kept in cents, as
+ * {@code long} cents. Each update runs on the server and only matches documents that still hold a
+ * double, so the migration can be repeated or resumed. A double left in place would be read as
+ * cents, so it must run before the new version takes writes: {@code AmountMigrationRunner} runs it
+ * on startup, before the web server is started. A finished run is recorded in {@code Migrations}
+ * and later startups skip it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AmountMigration {
+
+  static final String ID = "amounts-in-cents";
+
+  private final ReactiveMongoTemplate mongoTemplate;
+
+  /**
+   * Converts every collection unless a finished run is recorded, and records this one. Empty when
+   * it was already done.
+   */
+  public Mono<Long> migrateOnce() {
+    return mongoTemplate.findById(ID, Migration.class)
+        .doOnNext(done -> log.info("Amount migration already finished at {}, skipped", done.getCompletedAt()))
+        .map(done -> Optional.<Long>empty())
+        .switchIfEmpty(Mono.defer(() -> migrate()
+            .flatMap(converted -> {
+              var done = new Migration();
+              done.setId(ID);
+              done.setConverted(converted);
+              done.setCompletedAt(LocalDateTime.now());
+              return mongoTemplate.save(done).thenReturn(Optional.of(converted));
+            })))
+        .flatMap(Mono::justOrEmpty);
+  }
+
+  /** Converts every collection and returns how many documents were rewritten. */
+  public Mono<Long> migrate() {
+    return Flux.concat(
+            convert(Transaction.class, "amount"),
+            convert(Account.class, "balance"),
+            convert(Transfer.class, "amount"),
+            convert(MonthlyAccountSummary.class, "credits", "debits", "comissions", "closingBalance"),
+            convert(BalanceSnapshot.class, "balance"),
+            convertBuckets())
+        .reduce(0L, Long::sum)
+        .doOnNext(converted -> log.info("Amount migration finished, {} documents converted to cents", converted));
+  }
+
+  private Mono<Long> convert(Class<?> entity, String... fields) {
+    var set = new Document();
+    Arrays.stream(fields).forEach(field -> set.append(field, cents("$" + field)));
+    var doubles = Arrays.stream(fields).map(field -> where(field).type(Type.DOUBLE)).toArray(Criteria[]::new);
+    return update(entity, new Criteria().orOperator(doubles), set);
+  }
+
+  /** The movements embedded in the buckets are converted together with the bucket total. */
+  private Mono<Long> convertBuckets() {
+    var movement = new Document("$mergeObjects", List.of("$$transaction", new Document("amount", cents("$$transaction.amount"))));
+    var set = new Document("total", cents("$total"))
+        .append("transactions", new Document("$map", new Document("input", "$transactions").append("as", "transaction").append("in", movement)));
+    return update(TransactionBucket.class, new Criteria().orOperator(where("total").type(Type.DOUBLE), where("transactions.amount").type(Type.DOUBLE)), set);
+  }
+
+  private Mono<Long> update(Class<?> entity, Criteria criteria, Document set) {
+    AggregationOperation stage = context -> new Document("$set", set);
+    return mongoTemplate.updateMulti(query(criteria), AggregationUpdate.from(List.of(stage)), entity)
+        .map(UpdateResult::getModifiedCount)
+        .doOnNext(converted -> log.info("{} documents of {} converted to cents", converted, mongoTemplate.getCollectionName(entity)));
+  }
+
+  /** The value in cents when it is a double, unchanged otherwise. */
+  private static Document cents(String value) {
+    var converted = new Document("$toLong", new Document("$round", List.of(
+        new Document("$multiply", List.of(value, MinorUnits.of(BigDecimal.ONE))), 0)));
+    return new Document("$cond", List.of(new Document("$eq", List.of(new Document("$type", value), "double")), converted, value));
+  }
+}
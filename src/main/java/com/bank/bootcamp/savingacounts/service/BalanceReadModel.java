@@ -0,0 +1,395 @@
+package com.bank.bootcamp.savingacounts.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ChangeStreamOptions.ChangeStreamOptionsBuilder;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import com.bank.bootcamp.savingacounts.dto.BalanceDTO;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
+import com.mongodb.MongoException;
+import com.mongodb.client.model.changestream.FullDocument;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Balances and current-month movement counts of every account, kept in memory from a change
+ * stream on {@code Accounts} and {@code MonthlyAccountSummary}; both already hold the values the
+ * balance endpoints return, so the stream only copies them. Enabled with
+ * {@code balance.read-model.enabled=true}.
+ * <p>
+ * Every {@code balance.read-model.heartbeat-ms} this instance writes a heartbeat with its clock
+ * and saves the resume token of the last applied change. When the heartbeat comes back through
+ * the stream, every write committed before it has been applied, so the age of the last heartbeat
+ * received is the staleness bound reported with each balance. Reads fall back to Mongo while the
+ * bound is above {@code balance.read-model.max-staleness-ms} or the account is not in memory.
+ * Heartbeats expire after {@code balance.read-model.heartbeat-ttl-seconds}, so instances that are
+ * gone leave nothing behind.
+ * <p>
+ * After a restart the stream resumes from the saved token without reloading the collections:
+ * each account is read from Mongo the first time it is asked for, and whatever the stream has
+ * already applied to it wins over that read. Only without a token, or when it is no longer in
+ * the oplog, are the collections loaded in full.
+ */
+@Component
+@Slf4j
+public class BalanceReadModel implements DisposableBean {
+
+  public static final String CHECKPOINTS = "ReadModelCheckpoints";
+  private static final String CHECKPOINT_ID = "balanceReadModel";
+  // ChangeStreamHistoryLost, ChangeStreamFatalError: el token ya no está en el oplog
+  private static final Set<Integer> HISTORY_LOST = Set.of(286, 280);
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final boolean enabled;
+  private final long maxStalenessMillis;
+  private final String accounts;
+  private final String summaries;
+  private final String heartbeatId = "heartbeat:" + UUID.randomUUID();
+  private final Duration heartbeatTtl;
+  private final Set<String> warming = ConcurrentHashMap.newKeySet();
+
+  private volatile ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+  private volatile ConcurrentHashMap<String, String> accountsByCustomer = new ConcurrentHashMap<>();
+  private volatile long appliedUpTo;
+  private volatile boolean loaded;
+  private volatile boolean resumed;
+  private volatile BsonValue resumeToken;
+  private volatile BsonValue savedToken;
+  private volatile Disposable subscription;
+
+  public BalanceReadModel(ReactiveMongoTemplate mongoTemplate, Environment env, MeterRegistry meterRegistry) {
+    this.mongoTemplate = mongoTemplate;
+    this.enabled = Boolean.parseBoolean(Optional.ofNullable(env.getProperty("balance.read-model.enabled")).orElse("false"));
+    this.maxStalenessMillis = Long.parseLong(Optional.ofNullable(env.getProperty("balance.read-model.max-staleness-ms")).orElse("2000"));
+    this.heartbeatTtl = Duration.ofSeconds(Long.parseLong(Optional.ofNullable(env.getProperty("balance.read-model.heartbeat-ttl-seconds")).orElse("600")));
+    this.accounts = mongoTemplate.getCollectionName(Account.class);
+    this.summaries = mongoTemplate.getCollectionName(MonthlyAccountSummary.class);
+    Gauge.builder("account.balance.read-model.staleness", this, model -> model.stalenessMillis() / 1000d)
+        .baseUnit("seconds")
+        .description("Age of the last write known to be applied to the in-memory balances")
+        .register(meterRegistry);
+    Gauge.builder("account.balance.read-model.accounts", this, model -> model.entries.size())
+        .register(meterRegistry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    if (!enabled || subscription != null)
+      return;
+    subscription = mongoTemplate.indexOps(CHECKPOINTS).ensureIndex(new Index("expiresAt", Direction.ASC).expire(0))
+        .onErrorResume(e -> {
+          log.warn("Balance read model heartbeats have no TTL index: {}", e.getMessage());
+          return Mono.empty();
+        })
+        .then(mongoTemplate.findById(CHECKPOINT_ID, Document.class, CHECKPOINTS))
+        .mapNotNull(checkpoint -> checkpoint.getString("resumeToken"))
+        .doOnNext(token -> {
+          resumeToken = savedToken = new BsonDocument("_data", new BsonString(token));
+          resumed = true;
+        })
+        .onErrorResume(e -> Mono.empty())
+        .thenMany(follow())
+        .subscribe(this::apply, e -> log.error("Balance read model stopped", e));
+  }
+
+  @Override
+  public void destroy() {
+    if (subscription != null)
+      subscription.dispose();
+  }
+
+  @Scheduled(fixedDelayString = "${balance.read-model.heartbeat-ms:500}")
+  public void scheduledHeartbeat() {
+    if (enabled && subscription != null)
+      heartbeat().onErrorResume(e -> {
+        log.warn("Balance read model heartbeat failed: {}", e.getMessage());
+        return Mono.empty();
+      }).block();
+  }
+
+  public Mono<Void> heartbeat() {
+    var token = resumeToken;
+    var saveToken = token == null || token.equals(savedToken)
+        ? Mono.<Void>empty()
+        : mongoTemplate.upsert(Query.query(Criteria.where("_id").is(CHECKPOINT_ID)),
+            Update.update("resumeToken", token.asDocument().getString("_data").getValue()).set("savedAt", System.currentTimeMillis()), CHECKPOINTS)
+            .doOnNext(result -> savedToken = token)
+            .then();
+    var now = System.currentTimeMillis();
+    return saveToken.then(mongoTemplate.upsert(Query.query(Criteria.where("_id").is(heartbeatId)),
+        Update.update("sentAt", now).set("expiresAt", new Date(now + heartbeatTtl.toMillis())), CHECKPOINTS).then());
+  }
+
+  public Optional<BalanceDTO> getBalance(String accountId) {
+    if (accountId == null)
+      return Optional.empty();
+    var entry = entries.get(accountId);
+    if (entry == null || !entry.known || entry.yearMonth < 0)
+      warm(Query.query(Criteria.where("_id").is(accountId)), accountId);
+    return serve(entry, accountId);
+  }
+
+  /** A customer has one saving account, so the answer is that account or nothing. */
+  public Optional<BalanceDTO> getBalanceByCustomerId(String customerId) {
+    if (customerId == null)
+      return Optional.empty();
+    var accountId = accountsByCustomer.get(customerId);
+    if (accountId == null)
+      warm(Query.query(Criteria.where("customerId").is(customerId)), "customer:" + customerId);
+    return accountId == null ? Optional.empty() : getBalance(accountId);
+  }
+
+  /**
+   * Reads an account the resumed model has not seen yet, in the background; the caller is
+   * answered from Mongo meanwhile. What the stream applied in between is newer and is kept.
+   */
+  private void warm(Query account, String key) {
+    if (!resumed || loaded || !warming.add(key))
+      return;
+    var currentMonth = YearMonth.now();
+    mongoTemplate.findOne(account, Account.class)
+        .flatMap(found -> mongoTemplate.findById(MonthlyAccountSummary.idOf(found.getId(), currentMonth), MonthlyAccountSummary.class)
+            .map(summary -> Optional.ofNullable(summary.getCount()).orElse(0L))
+            .defaultIfEmpty(0L)
+            .doOnNext(count -> {
+              var read = Entry.EMPTY.withAccount(found.getMonthlyMovementLimit(), found.getBalance()).withMovements(monthIndex(currentMonth), count);
+              entries.compute(found.getId(), (id, applied) -> applied == null ? read : Entry.merge(read, applied));
+              if (found.getCustomerId() != null)
+                accountsByCustomer.putIfAbsent(found.getCustomerId(), found.getId());
+            }))
+        .doFinally(signal -> warming.remove(key))
+        .subscribe(count -> { }, e -> log.warn("Balance read model could not read {}: {}", key, e.getMessage()));
+  }
+
+  /** Milliseconds since the last write known to be applied, or -1 while nothing is loaded. */
+  public long stalenessMillis() {
+    var upTo = appliedUpTo;
+    return upTo == 0 ? -1 : Math.max(0, System.currentTimeMillis() - upTo);
+  }
+
+  private Optional<BalanceDTO> serve(Entry entry, String accountId) {
+    var staleness = stalenessMillis();
+    if (entry == null || !entry.known || !entry.materialized || staleness < 0 || staleness > maxStalenessMillis)
+      return Optional.empty();
+    // sin la carga completa, una cuenta sin mes conocido aún no tiene su contador
+    if (!loaded && entry.yearMonth < 0)
+      return Optional.empty();
+    var movements = entry.yearMonth == monthIndex(YearMonth.now()) ? entry.monthlyMovements : 0;
+    var balanceDTO = new BalanceDTO();
+    balanceDTO.setAccountId(accountId);
+    balanceDTO.setMonthlyMovementLimit(entry.monthlyMovementLimit);
+    balanceDTO.setMonthlyMovementsAvailable(entry.monthlyMovementLimit - movements);
+    balanceDTO.setType("Saving Account");
+    balanceDTO.setAmount(entry.balance);
+    balanceDTO.setStalenessMs(staleness);
+    return Optional.of(balanceDTO);
+  }
+
+  private Flux<ChangeStreamEvent<Document>> follow() {
+    return Flux.defer(() -> {
+          if ((loaded || resumed) && resumeToken != null)
+            return changes(ChangeStreamOptions.builder().resumeAfter(resumeToken));
+          // sin datos en memoria: se carga todo y se siguen los cambios desde antes de la carga
+          return startingPoint().flatMapMany(start -> loadSnapshot().thenMany(changes(start)));
+        })
+        .doOnError(e -> {
+          log.warn("Balance read model stream interrupted: {}", e.getMessage());
+          if (historyLost(e)) {
+            resumeToken = null;
+            resumed = false;
+            loaded = false;
+            appliedUpTo = 0;
+          }
+        })
+        .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)));
+  }
+
+  private Mono<ChangeStreamOptionsBuilder> startingPoint() {
+    if (resumeToken != null)
+      return Mono.just(ChangeStreamOptions.builder().resumeAfter(resumeToken));
+    return mongoTemplate.executeCommand(new Document("hello", 1))
+        .map(hello -> {
+          var operationTime = hello.get("operationTime", BsonTimestamp.class);
+          return operationTime == null
+              ? ChangeStreamOptions.builder().resumeAt(Instant.now())
+              : ChangeStreamOptions.builder().resumeAt(operationTime);
+        });
+  }
+
+  private Flux<ChangeStreamEvent<Document>> changes(ChangeStreamOptionsBuilder options) {
+    var filter = new Document("$match", new Document("$or", List.of(
+        new Document("ns.coll", new Document("$in", List.of(accounts, summaries))),
+        new Document("ns.coll", CHECKPOINTS).append("documentKey._id", heartbeatId))));
+    return mongoTemplate.changeStream(null, null, options.filter(filter).fullDocumentLookup(FullDocument.UPDATE_LOOKUP).build(), Document.class);
+  }
+
+  private Mono<Void> loadSnapshot() {
+    var startedAt = System.currentTimeMillis();
+    var currentMonth = YearMonth.now();
+    var loading = new ConcurrentHashMap<String, Entry>();
+    var customers = new ConcurrentHashMap<String, String>();
+    return mongoTemplate.findAll(Account.class)
+        .doOnNext(account -> {
+          loading.merge(account.getId(), Entry.EMPTY.withAccount(account.getMonthlyMovementLimit(), account.getBalance()), Entry::merge);
+          if (account.getCustomerId() != null)
+            customers.put(account.getCustomerId(), account.getId());
+        })
+        .thenMany(mongoTemplate.find(Query.query(Criteria.where("yearMonth").is(currentMonth.toString())), MonthlyAccountSummary.class))
+        .doOnNext(summary -> loading.merge(summary.getAccountId(),
+            Entry.EMPTY.withMovements(monthIndex(currentMonth), Optional.ofNullable(summary.getCount()).orElse(0L)), Entry::merge))
+        .then(Mono.fromRunnable(() -> {
+          entries = loading;
+          accountsByCustomer = customers;
+          loaded = true;
+          appliedUpTo = startedAt;
+          log.info("Balance read model loaded {} accounts in {} ms", loading.size(), System.currentTimeMillis() - startedAt);
+        }));
+  }
+
+  private void apply(ChangeStreamEvent<Document> event) {
+    var raw = event.getRaw();
+    var collection = event.getCollectionName();
+    var document = raw == null ? null : raw.getFullDocument();
+    var key = raw == null || raw.getDocumentKey() == null ? null : raw.getDocumentKey().get("_id");
+    if (accounts.equals(collection)) {
+      if (document != null)
+        applyAccount(document);
+      else if (key != null)
+        removeAccount(idOf(key));
+    } else if (summaries.equals(collection)) {
+      if (document != null)
+        applySummary(document.getString("accountId"), document.getString("yearMonth"), document.get("count", Number.class));
+      else if (key != null && idOf(key).contains(":")) {
+        // el resumen fue borrado: el mes queda sin movimientos
+        var id = idOf(key);
+        applySummary(id.substring(0, id.lastIndexOf(':')), id.substring(id.lastIndexOf(':') + 1), 0);
+      }
+    } else if (document != null && heartbeatId.equals(document.get("_id"))) {
+      var sentAt = document.get("sentAt", Number.class);
+      if (sentAt != null && sentAt.longValue() > appliedUpTo)
+        appliedUpTo = sentAt.longValue();
+    }
+    if (event.getResumeToken() != null)
+      resumeToken = event.getResumeToken();
+  }
+
+  private void applyAccount(Document document) {
+    var accountId = idOf(document.get("_id"));
+    var balance = document.get("balance", Number.class);
+    var limit = document.get("monthlyMovementLimit", Number.class);
+    entries.merge(accountId, Entry.EMPTY.withAccount(limit == null ? null : limit.intValue(), balance == null ? null : balance.longValue()), Entry::merge);
+    var customerId = document.getString("customerId");
+    if (customerId != null)
+      accountsByCustomer.put(customerId, accountId);
+  }
+
+  private void removeAccount(String accountId) {
+    entries.remove(accountId);
+    accountsByCustomer.values().remove(accountId);
+  }
+
+  private void applySummary(String accountId, String yearMonth, Number count) {
+    if (accountId == null || yearMonth == null)
+      return;
+    var month = monthIndex(YearMonth.parse(yearMonth));
+    // solo interesa el mes en curso; un mes anterior nunca reemplaza al actual
+    entries.compute(accountId, (id, entry) -> {
+      var current = entry == null ? Entry.EMPTY : entry;
+      if (month < current.yearMonth)
+        return entry;
+      return current.withMovements(month, count == null ? 0 : count.longValue());
+    });
+  }
+
+  private static String idOf(Object id) {
+    if (id instanceof BsonValue) {
+      var value = (BsonValue) id;
+      if (value.isObjectId())
+        return value.asObjectId().getValue().toHexString();
+      if (value.isString())
+        return value.asString().getValue();
+    }
+    return String.valueOf(id);
+  }
+
+  private static int monthIndex(YearMonth yearMonth) {
+    return yearMonth.getYear() * 12 + yearMonth.getMonthValue() - 1;
+  }
+
+  private static boolean historyLost(Throwable e) {
+    for (var cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof MongoException && HISTORY_LOST.contains(((MongoException) cause).getCode()))
+        return true;
+    }
+    return false;
+  }
+
+  /** One account, with primitive fields so the model stays small. Replaced, never mutated. */
+  private static final class Entry {
+    private static final Entry EMPTY = new Entry(false, false, 0, 0L, -1, 0L);
+
+    private final boolean known;
+    private final boolean materialized;
+    private final int monthlyMovementLimit;
+    private final long balance;
+    private final int yearMonth;
+    private final long monthlyMovements;
+
+    private Entry(boolean known, boolean materialized, int monthlyMovementLimit, long balance, int yearMonth, long monthlyMovements) {
+      this.known = known;
+      this.materialized = materialized;
+      this.monthlyMovementLimit = monthlyMovementLimit;
+      this.balance = balance;
+      this.yearMonth = yearMonth;
+      this.monthlyMovements = monthlyMovements;
+    }
+
+    private Entry withAccount(Integer monthlyMovementLimit, Long balance) {
+      // cuentas antiguas sin saldo materializado o sin límite se siguen leyendo de Mongo
+      var complete = monthlyMovementLimit != null && balance != null;
+      return new Entry(true, complete, complete ? monthlyMovementLimit : 0, complete ? balance : 0L, yearMonth, monthlyMovements);
+    }
+
+    private Entry withMovements(int yearMonth, long monthlyMovements) {
+      return new Entry(known, materialized, monthlyMovementLimit, balance, yearMonth, monthlyMovements);
+    }
+
+    /** Keeps the account fields of the newer entry and the latest month of either. */
+    private static Entry merge(Entry current, Entry update) {
+      var account = update.known ? update : current;
+      var movements = update.yearMonth >= current.yearMonth ? update : current;
+      return new Entry(account.known, account.materialized, account.monthlyMovementLimit, account.balance, movements.yearMonth, movements.monthlyMovements);
+    }
+  }
+}
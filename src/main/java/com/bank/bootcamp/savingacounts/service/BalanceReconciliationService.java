@@ -0,0 +1,68 @@
+package com.bank.bootcamp.savingacounts.service;
+
+import java.util.Optional;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import com.bank.bootcamp.savingacounts.dto.BalanceDriftDTO;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.repository.AccountRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Compares the stored balance of every account with the one computed from its movements. Both
+ * are read inside the execution lane of the account, so a movement of this instance is never
+ * half applied between the two reads, and a drift is read again before it is reported, since a
+ * movement taken by another instance can still land between them.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceReconciliationService {
+
+  private final AccountRepository accountRepository;
+  private final AccountCache accountCache;
+  private final BalanceSnapshotService balanceSnapshotService;
+  private final AccountExecutionLanes executionLanes;
+  private final Environment env;
+
+  public Flux<BalanceDriftDTO> reconcile() {
+    var concurrency = Integer.parseInt(Optional.ofNullable(env.getProperty("account.balance-reconciliation.concurrency")).orElse("4"));
+    return accountRepository.findAll()
+        .flatMap(account -> check(account.getId())
+            .flatMap(drift -> check(account.getId()).filter(again -> again.getDrift().equals(drift.getDrift()))), concurrency)
+        .doOnNext(drift -> log.warn("Balance drift on account {}: stored {} computed {}",
+            drift.getAccountId(), drift.getStoredBalance(), drift.getComputedBalance()));
+  }
+
+  private Mono<BalanceDriftDTO> check(String accountId) {
+    return executionLanes.submit(accountId, () -> accountRepository.findById(accountId)
+        .flatMap(account -> balanceSnapshotService.getBalance(accountId)
+            .flatMap(computedBalance -> compare(account, computedBalance))));
+  }
+
+  private Mono<BalanceDriftDTO> compare(Account account, long computedBalance) {
+    if (account.getBalance() == null) {
+      // cuentas anteriores al saldo materializado: se inicializa con el saldo del historial
+      return accountCache.initializeBalance(account.getId(), computedBalance).then(Mono.empty());
+    }
+    if (account.getBalance() == computedBalance)
+      return Mono.empty();
+    var drift = new BalanceDriftDTO();
+    drift.setAccountId(account.getId());
+    drift.setStoredBalance(account.getBalance());
+    drift.setComputedBalance(computedBalance);
+    drift.setDrift(account.getBalance() - computedBalance);
+    return Mono.just(drift);
+  }
+
+  @Scheduled(cron = "${account.balance-reconciliation.cron:0 0 3 * * *}")
+  public void scheduledReconciliation() {
+    reconcile().count().subscribe(
+        drifts -> log.info("Balance reconciliation finished, {} accounts with drift", drifts),
+        e -> log.error("Balance reconciliation failed", e));
+  }
+}
@@ -0,0 +1,119 @@
+package com.bank.bootcamp.savingacounts.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import com.bank.bootcamp.savingacounts.dto.BalanceDelta;
+import com.bank.bootcamp.savingacounts.dto.BalanceDriftDTO;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.BalanceSnapshot;
+import com.bank.bootcamp.savingacounts.repository.AccountRepository;
+import com.bank.bootcamp.savingacounts.repository.BalanceSnapshotRepository;
+import com.bank.bootcamp.savingacounts.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Balances computed from the history of an account as its latest {@link BalanceSnapshot} plus the
+ * movements registered after it. Snapshots only cover movements older than
+ * {@code balance.snapshot.settle-hours}, after which a movement is no longer inserted late or
+ * deleted by a reversal, so the delta is always the recent part of the history.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BalanceSnapshotService {
+
+  private final AccountRepository accountRepository;
+  private final TransactionRepository transactionRepository;
+  private final BalanceSnapshotRepository balanceSnapshotRepository;
+  private final Environment env;
+
+  public Mono<Long> getBalance(String accountId) {
+    return balanceSnapshotRepository.findById(accountId)
+        .map(Optional::of)
+        .defaultIfEmpty(Optional.empty())
+        .flatMap(snapshot -> transactionRepository.sumAfter(accountId, snapshot.orElse(null), null)
+            .map(BalanceDelta::getAmount)
+            .defaultIfEmpty(0L)
+            .map(delta -> snapshot.map(BalanceSnapshot::getBalance).orElse(0L) + delta));
+  }
+
+  /**
+   * Moves the snapshot of every account forward to the settled part of its history. Accounts go
+   * in chunks of {@code balance.snapshot.chunk-size}, with {@code balance.snapshot.concurrency}
+   * chunks at a time; each snapshot starts from the previous one, so a run only reads the
+   * movements since the last run. Returns how many snapshots were written.
+   */
+  public Mono<Long> compact() {
+    var chunkSize = Integer.parseInt(Optional.ofNullable(env.getProperty("balance.snapshot.chunk-size")).orElse("500"));
+    var concurrency = Integer.parseInt(Optional.ofNullable(env.getProperty("balance.snapshot.concurrency")).orElse("4"));
+    var settle = Duration.ofHours(Long.parseLong(Optional.ofNullable(env.getProperty("balance.snapshot.settle-hours")).orElse("24")));
+    var until = LocalDateTime.now().minus(settle);
+    return accountRepository.findAll()
+        .map(Account::getId)
+        .buffer(chunkSize)
+        .flatMap(accountIds -> compact(accountIds, until), concurrency)
+        .reduce(0L, Long::sum);
+  }
+
+  private Mono<Long> compact(List<String> accountIds, LocalDateTime until) {
+    return balanceSnapshotRepository.findAllById(accountIds)
+        .collectMap(BalanceSnapshot::getAccountId)
+        .flatMapMany(snapshots -> Flux.fromIterable(accountIds)
+            .concatMap(accountId -> advance(accountId, snapshots, until)))
+        .collectList()
+        .flatMap(snapshots -> snapshots.isEmpty() ? Mono.just(0L) : balanceSnapshotRepository.saveAll(snapshots).count());
+  }
+
+  private Mono<BalanceSnapshot> advance(String accountId, Map<String, BalanceSnapshot> snapshots, LocalDateTime until) {
+    var previous = snapshots.get(accountId);
+    // sin movimientos nuevos el snapshot anterior sigue valiendo
+    return transactionRepository.sumAfter(accountId, previous, until)
+        .map(delta -> {
+          var snapshot = new BalanceSnapshot();
+          snapshot.setAccountId(accountId);
+          snapshot.setAsOfRegisterDate(delta.getLastRegisterDate());
+          snapshot.setAsOfOperationNumber(delta.getLastOperationNumber());
+          snapshot.setBalance((previous == null ? 0L : previous.getBalance()) + delta.getAmount());
+          snapshot.setTransactions((previous == null ? 0L : previous.getTransactions()) + delta.getTransactions());
+          snapshot.setCreatedAt(LocalDateTime.now());
+          return snapshot;
+        });
+  }
+
+  /**
+   * Compares snapshot plus delta with the sum of the whole history of every account and returns
+   * the accounts where they differ, with the snapshot-based balance as the stored one.
+   */
+  public Flux<BalanceDriftDTO> verify() {
+    var concurrency = Integer.parseInt(Optional.ofNullable(env.getProperty("balance.snapshot.concurrency")).orElse("4"));
+    return accountRepository.findAll()
+        .flatMap(account -> Mono.zip(getBalance(account.getId()),
+                transactionRepository.getBalanceByAccountId(account.getId()).defaultIfEmpty(0L))
+            .filter(balances -> !balances.getT1().equals(balances.getT2()))
+            .map(balances -> {
+              var drift = new BalanceDriftDTO();
+              drift.setAccountId(account.getId());
+              drift.setStoredBalance(balances.getT1());
+              drift.setComputedBalance(balances.getT2());
+              drift.setDrift(balances.getT1() - balances.getT2());
+              return drift;
+            }), concurrency)
+        .doOnNext(drift -> log.warn("Balance snapshot drift on account {}: snapshot {} computed {}",
+            drift.getAccountId(), drift.getStoredBalance(), drift.getComputedBalance()));
+  }
+
+  @Scheduled(cron = "${balance.snapshot.cron:0 0 2 * * *}")
+  public void scheduledCompaction() {
+    var written = compact().block();
+    log.info("Balance snapshot compaction finished, {} snapshots written", written);
+  }
+}
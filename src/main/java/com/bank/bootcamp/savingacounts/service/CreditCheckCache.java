@@ -0,0 +1,75 @@
+package com.bank.bootcamp.savingacounts.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ObjectUtils;
+import com.bank.bootcamp.savingacounts.dto.BalanceDTO;
+import com.bank.bootcamp.savingacounts.webclient.CreditWebClient;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Credit products of a customer, as used by the VIP check. Concurrent checks of the same customer
+ * share one call to the credits service; answers are kept for {@code credit.cache.ttl-seconds},
+ * customers without credits for the shorter {@code credit.cache.negative-ttl-seconds}, and a
+ * failed call is not kept at all. Every hit of the {@code creditChecks} cache metrics is a call
+ * that did not reach the credits service.
+ */
+@Component
+public class CreditCheckCache {
+
+  private final CreditWebClient creditWebClient;
+  private final AsyncCache<String, List<BalanceDTO>> cache;
+
+  public CreditCheckCache(CreditWebClient creditWebClient, Environment env, MeterRegistry meterRegistry) {
+    this.creditWebClient = creditWebClient;
+    var maximumSize = Long.parseLong(Optional.ofNullable(env.getProperty("credit.cache.maximum-size")).orElse("10000"));
+    var ttl = Duration.ofSeconds(Long.parseLong(Optional.ofNullable(env.getProperty("credit.cache.ttl-seconds")).orElse("60")));
+    var negativeTtl = Duration.ofSeconds(Long.parseLong(Optional.ofNullable(env.getProperty("credit.cache.negative-ttl-seconds")).orElse("5")));
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfter(new Expiry<String, List<BalanceDTO>>() {
+          @Override
+          public long expireAfterCreate(String key, List<BalanceDTO> value, long currentTime) {
+            return (value.isEmpty() ? negativeTtl : ttl).toNanos();
+          }
+
+          @Override
+          public long expireAfterUpdate(String key, List<BalanceDTO> value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+          }
+
+          @Override
+          public long expireAfterRead(String key, List<BalanceDTO> value, long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .recordStats()
+        .buildAsync();
+    CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "creditChecks");
+  }
+
+  public Flux<BalanceDTO> getAllBalances(String customerId) {
+    if (ObjectUtils.isEmpty(customerId))
+      return creditWebClient.getAllBalances(customerId);
+    return Mono.defer(() -> Mono.fromFuture(cache.get(customerId, (id, executor) -> creditWebClient.getAllBalances(id)
+            .collectList()
+            .toFuture())
+        // igual que en AccountCache: cada suscriptor espera su propia etapa
+        .thenApply(Function.identity())))
+        .flatMapIterable(Function.identity());
+  }
+
+  public void invalidateAll() {
+    cache.synchronous().invalidateAll();
+  }
+}
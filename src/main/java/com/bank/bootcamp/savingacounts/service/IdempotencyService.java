@@ -0,0 +1,111 @@
+package com.bank.bootcamp.savingacounts.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.function.Supplier;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.ObjectUtils;
+import com.bank.bootcamp.savingacounts.entity.IdempotencyRecord;
+import com.bank.bootcamp.savingacounts.exception.BankValidationException;
+import com.bank.bootcamp.savingacounts.repository.IdempotencyRecordRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs an operation once per {@code Idempotency-Key} and answers repeated keys with its first
+ * result. Recent keys are answered from memory; concurrent requests with the same key in this
+ * instance share one in-flight future, and across instances the first to insert the key in
+ * {@code IdempotencyKeys} runs the operation while the others wait for its result. A failed
+ * operation, or one that returns nothing, frees the key, so the client can retry it.
+ */
+@Service
+public class IdempotencyService {
+
+  private final IdempotencyRecordRepository idempotencyRecordRepository;
+  private final AsyncCache<String, IdempotencyRecord> recentKeys;
+  private final Duration retention;
+  private final Duration pendingTimeout;
+  private final Duration waitTimeout;
+
+  public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository, Environment env, MeterRegistry meterRegistry) {
+    this.idempotencyRecordRepository = idempotencyRecordRepository;
+    var maximumSize = Long.parseLong(Optional.ofNullable(env.getProperty("idempotency.cache.maximum-size")).orElse("100000"));
+    var ttl = Duration.ofSeconds(Long.parseLong(Optional.ofNullable(env.getProperty("idempotency.cache.ttl-seconds")).orElse("600")));
+    this.retention = Duration.ofHours(Long.parseLong(Optional.ofNullable(env.getProperty("idempotency.retention-hours")).orElse("24")));
+    this.pendingTimeout = Duration.ofSeconds(Long.parseLong(Optional.ofNullable(env.getProperty("idempotency.pending-timeout-seconds")).orElse("60")));
+    this.waitTimeout = Duration.ofSeconds(Long.parseLong(Optional.ofNullable(env.getProperty("idempotency.wait-seconds")).orElse("10")));
+    this.recentKeys = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(ttl)
+        .recordStats()
+        .buildAsync();
+    CaffeineCacheMetrics.monitor(meterRegistry, recentKeys.synchronous(), "idempotencyKeys");
+  }
+
+  /**
+   * Result of the operation for the key: the one it returned the first time, or the one
+   * {@code operation} returns now if the key is new. Without a key the operation just runs. A key
+   * already used with a different request is rejected.
+   */
+  public Mono<String> execute(String operation, String key, Object request, Supplier<Mono<String>> action) {
+    if (ObjectUtils.isEmpty(key))
+      return Mono.defer(action);
+    var id = IdempotencyRecord.idOf(operation, key);
+    var fingerprint = DigestUtils.md5DigestAsHex(String.valueOf(request).getBytes(StandardCharsets.UTF_8));
+    return Mono.defer(() -> Mono.fromFuture(recentKeys.get(id, (k, executor) -> resolve(id, operation, fingerprint, action).toFuture())))
+        .flatMap(record -> fingerprint.equals(record.getFingerprint())
+            ? Mono.just(record.getResult())
+            : Mono.error(new BankValidationException("The Idempotency-Key was already used with a different request")));
+  }
+
+  private Mono<IdempotencyRecord> resolve(String id, String operation, String fingerprint, Supplier<Mono<String>> action) {
+    var now = LocalDateTime.now();
+    var pending = new IdempotencyRecord();
+    pending.setId(id);
+    pending.setOperation(operation);
+    pending.setFingerprint(fingerprint);
+    pending.setCreatedAt(now);
+    pending.setExpiresAt(now.plus(pendingTimeout));
+    return idempotencyRecordRepository.insert(pending)
+        .map(Optional::of)
+        .onErrorResume(DuplicateKeyException.class, e -> Mono.just(Optional.empty()))
+        .flatMap(started -> started.isEmpty() ? awaitResult(id, operation, fingerprint, action) : run(started.get(), action));
+  }
+
+  private Mono<IdempotencyRecord> run(IdempotencyRecord started, Supplier<Mono<String>> action) {
+    return action.get()
+        .switchIfEmpty(Mono.error(new IllegalStateException("The operation returned no result")))
+        .flatMap(result -> {
+          started.setResult(result);
+          started.setExpiresAt(LocalDateTime.now().plus(retention));
+          return idempotencyRecordRepository.save(started);
+        })
+        .onErrorResume(e -> idempotencyRecordRepository.deleteById(started.getId())
+            .onErrorResume(deleteError -> Mono.empty())
+            .then(Mono.error(e)));
+  }
+
+  /**
+   * The key is taken by another instance: its record gets the result when that operation ends.
+   * If the record disappears, the operation failed and freed the key, so it is taken again.
+   */
+  private Mono<IdempotencyRecord> awaitResult(String id, String operation, String fingerprint, Supplier<Mono<String>> action) {
+    var attempts = waitTimeout.toMillis() / 100;
+    return idempotencyRecordRepository.findById(id)
+        .map(Optional::of)
+        .defaultIfEmpty(Optional.empty())
+        .flatMap(record -> record.isEmpty()
+            ? resolve(id, operation, fingerprint, action)
+            : Mono.justOrEmpty(record.filter(found -> found.getResult() != null)))
+        .repeatWhenEmpty((int) Math.min(Integer.MAX_VALUE, attempts), repeat -> repeat.delayElements(Duration.ofMillis(100)))
+        .switchIfEmpty(Mono.error(new BankValidationException("The operation with this Idempotency-Key is still in progress, retry later")));
+  }
+}
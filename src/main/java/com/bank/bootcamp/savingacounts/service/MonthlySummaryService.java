@@ -0,0 +1,105 @@
+package com.bank.bootcamp.savingacounts.service;
+
+import java.time.DateTimeException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.stream.Collectors;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.exception.BankValidationException;
+import com.bank.bootcamp.savingacounts.repository.MonthlyAccountSummaryRepository;
+import com.bank.bootcamp.savingacounts.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MonthlySummaryService {
+
+  private final MonthlyAccountSummaryRepository monthlySummaryRepository;
+  private final TransactionRepository transactionRepository;
+  private final AccountExecutionLanes executionLanes;
+
+  /**
+   * The summary of the account in the month; a month without movements has an empty summary.
+   */
+  public Mono<MonthlyAccountSummary> getSummary(String accountId, Integer year, Integer month) {
+    if (ObjectUtils.isEmpty(accountId))
+      return Mono.error(new BankValidationException("Account Id is required"));
+    return Mono.fromCallable(() -> YearMonth.of(year, month))
+        .onErrorMap(DateTimeException.class, e -> new BankValidationException("Invalid period"))
+        .flatMap(yearMonth -> monthlySummaryRepository.findById(MonthlyAccountSummary.idOf(accountId, yearMonth))
+            .defaultIfEmpty(emptySummary(accountId, yearMonth)));
+  }
+
+  /**
+   * Recomputes the summaries of one account, or of every account when none is given, from the
+   * transactions, replacing the stored ones. Each account is read and replaced in its execution
+   * lane, so the movements this instance registers on it wait for the replace instead of being
+   * overwritten by it; it is still meant for backfills and repairs.
+   */
+  public Flux<MonthlyAccountSummary> rebuild(String accountId) {
+    var accountIds = ObjectUtils.isEmpty(accountId)
+        ? transactionRepository.findAllByOrderByAccountIdAscRegisterDateAscOperationNumberAsc()
+            .map(Transaction::getAccountId)
+            .distinctUntilChanged()
+        : Flux.just(accountId);
+    return accountIds
+        .concatMap(id -> executionLanes.submit(id, () -> rebuildAccount(id).collectList()).flatMapIterable(summaries -> summaries))
+        .doOnComplete(() -> log.info("Monthly summaries rebuilt for {}", ObjectUtils.isEmpty(accountId) ? "all accounts" : accountId));
+  }
+
+  private Flux<MonthlyAccountSummary> rebuildAccount(String accountId) {
+    return transactionRepository.findByAccountIdOrderByRegisterDateAscOperationNumberAsc(accountId)
+        .collect(AccountRollup::new, AccountRollup::add)
+        .filter(rollup -> !rollup.summaries.isEmpty())
+        .flatMapMany(rollup -> replace(new ArrayList<>(rollup.summaries.values())));
+  }
+
+  private Flux<MonthlyAccountSummary> replace(ArrayList<MonthlyAccountSummary> summaries) {
+    var accountId = summaries.get(0).getAccountId();
+    var ids = summaries.stream().map(MonthlyAccountSummary::getId).collect(Collectors.toList());
+    return monthlySummaryRepository.saveAll(summaries)
+        .concatWith(monthlySummaryRepository.deleteByAccountIdAndIdNotIn(accountId, ids).then(Mono.empty()));
+  }
+
+  static MonthlyAccountSummary emptySummary(String accountId, YearMonth yearMonth) {
+    var summary = new MonthlyAccountSummary();
+    summary.setId(MonthlyAccountSummary.idOf(accountId, yearMonth));
+    summary.setAccountId(accountId);
+    summary.setYearMonth(yearMonth.toString());
+    summary.setCount(0L);
+    summary.setCredits(0L);
+    summary.setDebits(0L);
+    summary.setComissions(0L);
+    return summary;
+  }
+
+  /**
+   * The summaries of one account, filled in registration order with the running balance.
+   */
+  private static class AccountRollup {
+    private final LinkedHashMap<YearMonth, MonthlyAccountSummary> summaries = new LinkedHashMap<>();
+    private long balance;
+
+    private void add(Transaction transaction) {
+      long amount = transaction.getAmount();
+      var summary = summaries.computeIfAbsent(YearMonth.from(transaction.getRegisterDate()), ym -> emptySummary(transaction.getAccountId(), ym));
+      summary.setCount(summary.getCount() + 1);
+      if (AccountService.isComission(transaction))
+        summary.setComissions(summary.getComissions() + Math.abs(amount));
+      else if (amount > 0)
+        summary.setCredits(summary.getCredits() + amount);
+      else
+        summary.setDebits(summary.getDebits() - amount);
+      balance += amount;
+      summary.setClosingBalance(balance);
+    }
+  }
+}
@@ -3,24 +3,46 @@ package com.bank.bootcamp.savingacounts.service;
 import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 import static org.springframework.data.mongodb.core.query.Query.query;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.core.env.Environment;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import com.bank.bootcamp.savingacounts.entity.Sequence;
-import lombok.RequiredArgsConstructor;
 import reactor.core.publisher.Mono;
 
 @Service
-@RequiredArgsConstructor
 public class NextSequenceService {
 
   private final ReactiveMongoTemplate mongoTemplate;
+  private final int blockSize;
+  private final Map<String, SequenceBlockAllocator> allocators = new ConcurrentHashMap<>();
+
+  public NextSequenceService(ReactiveMongoTemplate mongoTemplate, Environment env) {
+    this.mongoTemplate = mongoTemplate;
+    this.blockSize = Integer.parseInt(Optional.ofNullable(env.getProperty("sequence.block-size")).orElse("1"));
+  }
 
   public <T extends Sequence> Mono<Integer> getNextSequence(String seqName)
+  {
+      if (blockSize <= 1)
+        return reserve(seqName, 1);
+      return allocators
+          .computeIfAbsent(seqName, name -> new SequenceBlockAllocator(size -> reserve(name, size), blockSize))
+          .next();
+  }
+
+  /**
+   * Advances the sequence by {@code count} in a single round trip and emits its new value; the
+   * caller owns the numbers from {@code value - count + 1} to {@code value}.
+   */
+  public Mono<Integer> reserve(String seqName, int count)
   {
       var counter = mongoTemplate.findAndModify(
           query(where("_id").is(seqName)),
-          new Update().inc("seq",1),
+          new Update().inc("seq", count),
           options().returnNew(true).upsert(true),
           Sequence.class);
       return counter.map(seq -> seq.getSeq());
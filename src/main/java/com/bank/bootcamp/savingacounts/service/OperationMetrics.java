@@ -0,0 +1,246 @@
+package com.bank.bootcamp.savingacounts.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.regex.Pattern;
+import org.reactivestreams.Subscription;
+import org.springframework.stereotype.Component;
+import com.bank.bootcamp.savingacounts.exception.BankValidationException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoOperator;
+import reactor.core.publisher.SignalType;
+import reactor.util.context.Context;
+
+/**
+ * Timers for the account operations, their stages and the calls to other products. Tags are kept
+ * to a bounded set: operation, stage, outcome and, for rejections, the validation message with
+ * its numbers removed. Meters are resolved once and reused, so the hot path only pays for
+ * {@code System.nanoTime()} and one extra subscriber per stage.
+ */
+@Component
+public class OperationMetrics {
+
+  private static final Pattern NUMBERS = Pattern.compile("-?\\d+(\\.\\d+)?");
+
+  public enum Outcome {
+    SUCCESS, EMPTY, ERROR, REJECTED, FALLBACK, CIRCUIT_OPEN, TIMEOUT, CANCELLED;
+
+    private final String tag = name().toLowerCase();
+  }
+
+  private final MeterRegistry meterRegistry;
+  private final Map<String, Timers> operationTimers = new ConcurrentHashMap<>();
+  private final Map<String, Map<String, Timers>> stageTimers = new ConcurrentHashMap<>();
+  private final Map<String, Map<String, Timers>> remoteTimers = new ConcurrentHashMap<>();
+  private final Map<String, Map<String, Counter>> rejections = new ConcurrentHashMap<>();
+
+  public OperationMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Times the whole operation. A {@link BankValidationException} is recorded as rejected and
+   * counted by reason; any other error as error.
+   */
+  public <T> Mono<T> operation(String operation, Mono<T> mono) {
+    var timers = operationTimers.get(operation);
+    if (timers == null)
+      timers = operationTimers.computeIfAbsent(operation, op -> timers("account.operation", "operation", op));
+    return new TimedMono<>(mono, timers, operation);
+  }
+
+  public <T> Mono<T> stage(String operation, String stage, Mono<T> mono) {
+    return new TimedMono<>(mono, stageTimers(operation, stage), null);
+  }
+
+  /**
+   * Starts timing one call to another product. The circuit breaker fallback reports why it ran
+   * with {@link Sample#fallback(Throwable)}.
+   */
+  public Sample remoteCall(String client, String call) {
+    var byCall = remoteTimers.get(client);
+    if (byCall == null)
+      byCall = remoteTimers.computeIfAbsent(client, c -> new ConcurrentHashMap<>());
+    var timers = byCall.get(call);
+    if (timers == null)
+      timers = byCall.computeIfAbsent(call, c -> timers("account.remote.call", "client", client, "call", c));
+    return new Sample(timers);
+  }
+
+  static String reason(Throwable e) {
+    return e.getMessage() == null ? "unknown" : NUMBERS.matcher(e.getMessage()).replaceAll("N");
+  }
+
+  private Timers stageTimers(String operation, String stage) {
+    var byStage = stageTimers.get(operation);
+    if (byStage == null)
+      byStage = stageTimers.computeIfAbsent(operation, op -> new ConcurrentHashMap<>());
+    var timers = byStage.get(stage);
+    if (timers == null)
+      timers = byStage.computeIfAbsent(stage, st -> timers("account.operation.stage", "operation", operation, "stage", st));
+    return timers;
+  }
+
+  private Counter rejection(String operation, String reason) {
+    return rejections.computeIfAbsent(operation, op -> new ConcurrentHashMap<>())
+        .computeIfAbsent(reason, r -> Counter.builder("account.operation.rejections")
+            .description("Operations rejected by a business validation")
+            .tag("operation", operation)
+            .tag("reason", r)
+            .register(meterRegistry));
+  }
+
+  private Timers timers(String name, String... tags) {
+    return new Timers(name, tags);
+  }
+
+  /**
+   * The timers of one operation, stage or call, registered on first use of each outcome.
+   */
+  private final class Timers {
+    private final String name;
+    private final String[] tags;
+    private final Timer[] byOutcome = new Timer[Outcome.values().length];
+
+    private Timers(String name, String[] tags) {
+      this.name = name;
+      this.tags = tags;
+    }
+
+    private Timer get(Outcome outcome) {
+      var timer = byOutcome[outcome.ordinal()];
+      if (timer == null) {
+        // registrar dos veces devuelve el mismo medidor, la carrera es inofensiva
+        timer = Timer.builder(name).tags(tags).tag("outcome", outcome.tag).register(meterRegistry);
+        byOutcome[outcome.ordinal()] = timer;
+      }
+      return timer;
+    }
+  }
+
+  /**
+   * Times each subscription to the source with a single subscriber, instead of the three or four
+   * operators that doOnNext/doOnError/doFinally would stack on every stage.
+   */
+  private final class TimedMono<T> extends MonoOperator<T, T> {
+    private final Timers timers;
+    private final String operation;
+
+    private TimedMono(Mono<? extends T> source, Timers timers, String operation) {
+      super(source);
+      this.timers = timers;
+      this.operation = operation;
+    }
+
+    @Override
+    public void subscribe(CoreSubscriber<? super T> actual) {
+      source.subscribe(new TimedSubscriber<>(actual, timers, operation));
+    }
+  }
+
+  private final class TimedSubscriber<T> extends Sample implements CoreSubscriber<T>, Subscription {
+    private final CoreSubscriber<? super T> actual;
+    private final String operation;
+    private Subscription subscription;
+
+    private TimedSubscriber(CoreSubscriber<? super T> actual, Timers timers, String operation) {
+      super(timers);
+      this.actual = actual;
+      this.operation = operation;
+    }
+
+    @Override
+    public Context currentContext() {
+      return actual.currentContext();
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+      actual.onSubscribe(this);
+    }
+
+    @Override
+    public void onNext(T value) {
+      succeeded();
+      actual.onNext(value);
+    }
+
+    @Override
+    public void onError(Throwable e) {
+      if (operation != null && e instanceof BankValidationException) {
+        if (finish(Outcome.REJECTED))
+          rejection(operation, reason(e)).increment();
+      } else {
+        finish(Outcome.ERROR);
+      }
+      actual.onError(e);
+    }
+
+    @Override
+    public void onComplete() {
+      stop(SignalType.ON_COMPLETE);
+      actual.onComplete();
+    }
+
+    @Override
+    public void request(long n) {
+      subscription.request(n);
+    }
+
+    @Override
+    public void cancel() {
+      stop(SignalType.CANCEL);
+      subscription.cancel();
+    }
+  }
+
+  /**
+   * One timed execution, recorded once. The outcome is the last one reported; a publisher that
+   * ends without reporting one completed empty or was cancelled.
+   */
+  public static class Sample {
+    private static final AtomicIntegerFieldUpdater<Sample> STOPPED = AtomicIntegerFieldUpdater.newUpdater(Sample.class, "stopped");
+    private final Timers timers;
+    private final long start = System.nanoTime();
+    private volatile Outcome outcome;
+    private volatile int stopped;
+
+    private Sample(Timers timers) {
+      this.timers = timers;
+    }
+
+    public void succeeded() {
+      outcome = Outcome.SUCCESS;
+    }
+
+    public void fallback(Throwable e) {
+      if (e instanceof CallNotPermittedException)
+        outcome = Outcome.CIRCUIT_OPEN;
+      else if (e instanceof TimeoutException)
+        outcome = Outcome.TIMEOUT;
+      else
+        outcome = Outcome.FALLBACK;
+    }
+
+    public void stop(SignalType signal) {
+      var result = outcome;
+      finish(result != null ? result : signal == SignalType.CANCEL ? Outcome.CANCELLED : Outcome.EMPTY);
+    }
+
+    boolean finish(Outcome outcome) {
+      if (!STOPPED.compareAndSet(this, 0, 1))
+        return false;
+      timers.get(outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      return true;
+    }
+  }
+}
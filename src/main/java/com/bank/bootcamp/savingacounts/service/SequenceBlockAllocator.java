@@ -0,0 +1,85 @@
+package com.bank.bootcamp.savingacounts.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * Hands out sequence numbers from blocks reserved in advance (hi/lo). {@code reserve} must
+ * atomically advance the shared sequence by the requested size and emit its new value, so two
+ * allocators over the same sequence never get overlapping blocks.
+ */
+public class SequenceBlockAllocator {
+
+  private final IntFunction<Mono<Integer>> reserve;
+  private final int blockSize;
+  private final int prefetchThreshold;
+  private final AtomicReference<Block> current = new AtomicReference<>(new Block(1, 0));
+  private final AtomicReference<CompletableFuture<Block>> pending = new AtomicReference<>();
+
+  public SequenceBlockAllocator(IntFunction<Mono<Integer>> reserve, int blockSize) {
+    this(reserve, blockSize, Math.max(1, blockSize / 4));
+  }
+
+  public SequenceBlockAllocator(IntFunction<Mono<Integer>> reserve, int blockSize, int prefetchThreshold) {
+    if (blockSize < 1 || prefetchThreshold >= blockSize)
+      throw new IllegalArgumentException("Block size must be greater than the prefetch threshold");
+    this.reserve = reserve;
+    this.blockSize = blockSize;
+    this.prefetchThreshold = prefetchThreshold;
+  }
+
+  public Mono<Integer> next() {
+    return Mono.defer(() -> {
+      var block = current.get();
+      var value = block.cursor.getAndIncrement();
+      if (value <= block.end) {
+        if (block.end - value == prefetchThreshold)
+          nextBlock();
+        return Mono.just(value);
+      }
+      var fetch = nextBlock();
+      return Mono.fromFuture(fetch).flatMap(fetched -> {
+        if (current.compareAndSet(block, fetched))
+          pending.compareAndSet(fetch, null);
+        return next();
+      });
+    });
+  }
+
+  private CompletableFuture<Block> nextBlock() {
+    for (;;) {
+      var fetch = pending.get();
+      if (fetch != null)
+        return fetch;
+      var created = new CompletableFuture<Block>();
+      if (pending.compareAndSet(null, created)) {
+        reserve.apply(blockSize).subscribe(
+            hi -> created.complete(new Block(hi - blockSize + 1, hi)),
+            e -> {
+              pending.compareAndSet(created, null);
+              created.completeExceptionally(e);
+            },
+            () -> {
+              if (!created.isDone()) {
+                pending.compareAndSet(created, null);
+                created.completeExceptionally(new IllegalStateException("Sequence block could not be reserved"));
+              }
+            });
+        return created;
+      }
+    }
+  }
+
+  private static final class Block {
+    private final AtomicInteger cursor;
+    private final int end;
+
+    private Block(int start, int end) {
+      this.cursor = new AtomicInteger(start);
+      this.end = end;
+    }
+  }
+}
@@ -0,0 +1,276 @@
+package com.bank.bootcamp.savingacounts.service;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
+import com.bank.bootcamp.savingacounts.dto.BatchResultStatus;
+import com.bank.bootcamp.savingacounts.dto.BatchTransactionResultDTO;
+import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.entity.TransactionSequences;
+import com.bank.bootcamp.savingacounts.exception.BankValidationException;
+import com.bank.bootcamp.savingacounts.repository.MonthlyAccountSummaryRepository;
+import com.bank.bootcamp.savingacounts.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionBatchService {
+
+  private static final int MAX_ATTEMPTS = 3;
+  private static final String UNKNOWN_OUTCOME = "The outcome of the operation is unknown, check the movements before retrying";
+
+  private final AccountService accountService;
+  private final AccountCache accountCache;
+  private final TransactionRepository transactionRepository;
+  private final MonthlyAccountSummaryRepository monthlySummaryRepository;
+  private final NextSequenceService nextSequenceService;
+  private final AccountExecutionLanes executionLanes;
+  private final Environment env;
+
+  public Flux<BatchTransactionResultDTO> createTransactions(Flux<CreateTransactionDTO> transactions) {
+    var batchSize = Integer.parseInt(Optional.ofNullable(env.getProperty("transaction.batch.size")).orElse("500"));
+    var concurrency = Integer.parseInt(Optional.ofNullable(env.getProperty("transaction.batch.concurrency")).orElse("8"));
+    return transactions
+        .index()
+        .buffer(batchSize)
+        .concatMap(chunk -> {
+          var rejected = new ArrayList<BatchTransactionResultDTO>();
+          var byAccount = new LinkedHashMap<String, List<Tuple2<Long, CreateTransactionDTO>>>();
+          chunk.forEach(item -> {
+            var error = validate(item.getT2());
+            if (error != null)
+              rejected.add(result(item, null, BatchResultStatus.REJECTED, error));
+            else
+              byAccount.computeIfAbsent(item.getT2().getAccountId(), id -> new ArrayList<>()).add(item);
+          });
+          return Flux.fromIterable(rejected)
+              .concatWith(Flux.fromIterable(byAccount.entrySet())
+                  .flatMap(group -> executionLanes.submit(group.getKey(), () -> processAccount(group.getKey(), group.getValue(), 1).collectList())
+                      .onErrorResume(e -> Flux.fromIterable(group.getValue())
+                          .map(item -> e instanceof BankValidationException
+                              ? result(item, null, BatchResultStatus.RETRY, e.getMessage())
+                              : result(item, null, BatchResultStatus.UNKNOWN, UNKNOWN_OUTCOME))
+                          .collectList())
+                      .flatMapIterable(results -> results), concurrency));
+        });
+  }
+
+  private String validate(CreateTransactionDTO dto) {
+    if (dto == null)
+      return "No data for create transaction";
+    if (ObjectUtils.isEmpty(dto.getAccountId()))
+      return "Account ID is required";
+    if (ObjectUtils.isEmpty(dto.getAgent()))
+      return "Agent is required";
+    if (ObjectUtils.isEmpty(dto.getAmount()))
+      return "Amount is required";
+    if (ObjectUtils.isEmpty(dto.getDescription()))
+      return "Description is required";
+    return null;
+  }
+
+  private Flux<BatchTransactionResultDTO> processAccount(String accountId, List<Tuple2<Long, CreateTransactionDTO>> items, int attempt) {
+    var yearMonth = YearMonth.from(LocalDateTime.now());
+    return (attempt == 1 ? accountCache.findById(accountId) : accountCache.refresh(accountId))
+        .flatMap(account -> accountService.seedMonth(accountId, yearMonth).thenReturn(account))
+        .flatMap(account -> accountService.currentBalance(account)
+            .zipWith(monthlySummaryRepository.findById(MonthlyAccountSummary.idOf(accountId, yearMonth))
+                .map(MonthlyAccountSummary::getCount)
+                .switchIfEmpty(Mono.just(0L)))
+            .map(state -> plan(account, state.getT1(), state.getT2(), items)))
+        .flatMapMany(plan -> {
+          if (plan.rows.isEmpty())
+            return Flux.fromIterable(plan.results);
+          return monthlySummaryRepository.compareAndIncrement(accountId, yearMonth, plan.initialCount, plan.rows.size())
+              .flatMap(movements -> accountCache.addToBalance(accountId, plan.total)
+                  .switchIfEmpty(Mono.defer(() -> monthlySummaryRepository.increment(accountId, yearMonth, plan.rows.size() * -1).then(Mono.empty()))))
+              .flatMapMany(updated -> write(accountId, yearMonth, plan, updated.getBalance()))
+              .switchIfEmpty(Flux.defer(() -> attempt < MAX_ATTEMPTS
+                  ? processAccount(accountId, items, attempt + 1)
+                  : Flux.fromIterable(items).map(item -> result(item, null, BatchResultStatus.RETRY, "The account was modified concurrently, retry the operation"))));
+        })
+        .switchIfEmpty(Flux.fromIterable(items).map(item -> result(item, null, BatchResultStatus.REJECTED, "Account not found")));
+  }
+
+  private Flux<BatchTransactionResultDTO> write(String accountId, YearMonth yearMonth, AccountPlan plan, Long closingBalance) {
+    var registerDate = LocalDateTime.now();
+    var transactions = new ArrayList<Transaction>(plan.rows.size());
+    return nextSequenceService.reserve(TransactionSequences.class.getSimpleName(), plan.rows.size())
+        .flatMapMany(last -> {
+          var operationNumber = last - plan.rows.size() + 1;
+          for (var row : plan.rows) {
+            var transaction = accountService.toTransaction(row, operationNumber++, registerDate);
+            transactions.add(transaction);
+          }
+          return transactionRepository.saveAll(transactions)
+              .then(Mono.defer(() -> accountService.recordSummary(accountId, yearMonth, 0, plan.credits, plan.debits, plan.comissions, closingBalance)))
+              .thenMany(Flux.defer(() -> results(plan, transactions, null)));
+        })
+        .onErrorResume(e -> {
+          log.warn("Transactions of account {} could not be written", accountId, e);
+          return stored(accountId, registerDate, transactions)
+              .flatMapMany(stored -> compensate(accountId, yearMonth, plan, transactions, stored, closingBalance))
+              .onErrorResume(lookup -> {
+                // sin saber qué filas quedaron no se compensa nada: la conciliación corrige el saldo
+                log.error("Transactions of account {} could not be checked after a failed write", accountId, lookup);
+                return results(plan, transactions, Set.of(), BatchResultStatus.UNKNOWN, UNKNOWN_OUTCOME);
+              });
+        });
+  }
+
+  /**
+   * The operation numbers of the rows the failed write stored. The bulk insert is ordered, so
+   * it may have stored the first rows before failing; they are found by account and date.
+   */
+  private Mono<Set<Integer>> stored(String accountId, LocalDateTime registerDate, List<Transaction> transactions) {
+    if (transactions.isEmpty())
+      return Mono.just(Set.of());
+    var reserved = transactions.stream().map(Transaction::getOperationNumber).collect(Collectors.toSet());
+    return transactionRepository.findByAccountIdAndRegisterDateBetween(accountId, registerDate.minusSeconds(1), registerDate.plusSeconds(1))
+        .map(Transaction::getOperationNumber)
+        .filter(reserved::contains)
+        .collect(Collectors.toSet());
+  }
+
+  /** Only the rows that were not stored are taken out of the balance and the monthly count. */
+  private Flux<BatchTransactionResultDTO> compensate(String accountId, YearMonth yearMonth, AccountPlan plan, List<Transaction> transactions,
+      Set<Integer> stored, Long closingBalance) {
+    long missingTotal = 0;
+    int missing = 0;
+    long credits = 0;
+    long debits = 0;
+    long comissions = 0;
+    for (var i = 0; i < plan.rows.size(); i++) {
+      long amount = plan.rows.get(i).getAmount();
+      if (i >= transactions.size() || !stored.contains(transactions.get(i).getOperationNumber())) {
+        missingTotal += amount;
+        missing++;
+      } else if (AccountService.isComission(transactions.get(i)))
+        comissions -= amount;
+      else if (amount > 0)
+        credits += amount;
+      else
+        debits -= amount;
+    }
+    var reversal = missing == 0 ? Mono.<Void>empty()
+        : accountCache.addToBalance(accountId, -missingTotal).then(monthlySummaryRepository.increment(accountId, yearMonth, missing * -1)).then();
+    var summary = stored.isEmpty() ? Mono.<Void>empty()
+        : accountService.recordSummary(accountId, yearMonth, 0, credits, debits, comissions, closingBalance - missingTotal);
+    return reversal
+        .then(summary)
+        .thenMany(Flux.defer(() -> results(plan, transactions, stored)));
+  }
+
+  private Flux<BatchTransactionResultDTO> results(AccountPlan plan, List<Transaction> transactions, Set<Integer> stored) {
+    return results(plan, transactions, stored, BatchResultStatus.RETRY, "The operation could not be completed");
+  }
+
+  /** Every accepted row gets its operation number, or the error when it is not in {@code stored}. */
+  private Flux<BatchTransactionResultDTO> results(AccountPlan plan, List<Transaction> transactions, Set<Integer> stored,
+      BatchResultStatus status, String error) {
+    return Flux.range(0, plan.results.size()).map(i -> {
+      var result = plan.results.get(i);
+      var row = plan.rowOfResult.get(i);
+      if (row != null) {
+        var operationNumber = row < transactions.size() ? transactions.get(row).getOperationNumber() : null;
+        if (stored == null || operationNumber != null && stored.contains(operationNumber)) {
+          result.setOperationNumber(operationNumber);
+          result.setStatus(BatchResultStatus.REGISTERED);
+        } else {
+          result.setStatus(status);
+          result.setError(error);
+        }
+      }
+      return result;
+    });
+  }
+
+  private AccountPlan plan(Account account, long balance, long count, List<Tuple2<Long, CreateTransactionDTO>> items) {
+    var plan = new AccountPlan(count);
+    var maxTransactionsWithFreeComission = accountService.maxTransactionsWithFreeComission();
+    for (var item : items) {
+      var dto = item.getT2();
+      long amount = dto.getAmount();
+      if (count >= account.getMonthlyMovementLimit()) {
+        plan.reject(item, String.format("You can only register a maximum of %s monthly movements", account.getMonthlyMovementLimit()));
+        continue;
+      }
+      if (balance + amount < 0) {
+        plan.reject(item, "Insuficient balance");
+        continue;
+      }
+      var comission = count >= maxTransactionsWithFreeComission;
+      var comissionAmount = comission ? AccountService.amountWithComission(amount) : 0L;
+      if (comission && balance + amount + comissionAmount < 0) {
+        plan.reject(item, "Insuficient balance, can not apply the comission");
+        continue;
+      }
+      plan.accept(item, dto);
+      count++;
+      if (comission) {
+        plan.rows.add(accountService.comissionTransaction(account.getId(), amount));
+        count++;
+      }
+      balance += amount + comissionAmount;
+      plan.total += amount + comissionAmount;
+      if (amount > 0)
+        plan.credits += amount;
+      else
+        plan.debits -= amount;
+      plan.comissions -= comissionAmount;
+    }
+    return plan;
+  }
+
+  private static BatchTransactionResultDTO result(Tuple2<Long, CreateTransactionDTO> item, Integer operationNumber, BatchResultStatus status, String error) {
+    var result = new BatchTransactionResultDTO();
+    result.setIndex(item.getT1());
+    result.setAccountId(Optional.ofNullable(item.getT2()).map(CreateTransactionDTO::getAccountId).orElse(null));
+    result.setOperationNumber(operationNumber);
+    result.setStatus(status);
+    result.setError(error);
+    return result;
+  }
+
+  private static class AccountPlan {
+    private final long initialCount;
+    private final List<CreateTransactionDTO> rows = new ArrayList<>();
+    private final List<BatchTransactionResultDTO> results = new ArrayList<>();
+    private final List<Integer> rowOfResult = new ArrayList<>();
+    private long total;
+    private long credits;
+    private long debits;
+    private long comissions;
+
+    private AccountPlan(long initialCount) {
+      this.initialCount = initialCount;
+    }
+
+    private void reject(Tuple2<Long, CreateTransactionDTO> item, String error) {
+      results.add(result(item, null, BatchResultStatus.REJECTED, error));
+      rowOfResult.add(null);
+    }
+
+    private void accept(Tuple2<Long, CreateTransactionDTO> item, CreateTransactionDTO row) {
+      results.add(result(item, null, null, null));
+      rowOfResult.add(rows.size());
+      rows.add(row);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.bank.bootcamp.savingacounts.service;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.entity.TransactionBucket;
+import com.bank.bootcamp.savingacounts.repository.BucketedTransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Copies {@code Transactions} into {@link TransactionBucket}s, account by account, so the layout
+ * can be switched with {@code transaction.storage.layout=bucketed}. The buckets of an account are
+ * replaced on every run, so it must not receive movements while it is copied.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionBucketMigration {
+
+  private final ReactiveMongoTemplate mongoTemplate;
+  private final Environment env;
+
+  /**
+   * Copies the movements of one account, or of every account when none is given, and returns how
+   * many were copied.
+   */
+  public Mono<Long> migrate(String accountId) {
+    var maxSize = BucketedTransactionRepository.maxSize(env);
+    var criteria = ObjectUtils.isEmpty(accountId) ? new Criteria() : where("accountId").is(accountId);
+    var transactions = mongoTemplate.find(query(criteria).with(Sort.by("accountId", "registerDate", "operationNumber")), Transaction.class);
+    return BucketedTransactionRepository.ensureIndexes(mongoTemplate)
+        .thenMany(transactions.windowUntilChanged(Transaction::getAccountId)
+            .concatMap(account -> account
+                .bufferUntilChanged(transaction -> YearMonth.from(transaction.getRegisterDate()))
+                .concatMapIterable(month -> buckets(month, maxSize))
+                .collectList()
+                .flatMap(this::replace)))
+        .reduce(0L, Long::sum)
+        .doOnNext(copied -> log.info("Transaction bucket migration finished, {} movements copied", copied));
+  }
+
+  private static List<TransactionBucket> buckets(List<Transaction> month, int maxSize) {
+    var buckets = new ArrayList<TransactionBucket>();
+    for (var from = 0; from < month.size(); from += maxSize) {
+      var movements = new ArrayList<>(month.subList(from, Math.min(month.size(), from + maxSize)));
+      var bucket = new TransactionBucket();
+      bucket.setAccountId(movements.get(0).getAccountId());
+      bucket.setYearMonth(YearMonth.from(movements.get(0).getRegisterDate()).toString());
+      bucket.setCount(movements.size());
+      bucket.setTotal(movements.stream().mapToLong(Transaction::getAmount).sum());
+      bucket.setFirstRegisterDate(movements.get(0).getRegisterDate());
+      bucket.setLastRegisterDate(movements.get(movements.size() - 1).getRegisterDate());
+      bucket.setTransactions(movements);
+      buckets.add(bucket);
+    }
+    return buckets;
+  }
+
+  private Mono<Long> replace(List<TransactionBucket> buckets) {
+    var accountId = buckets.get(0).getAccountId();
+    return mongoTemplate.remove(query(where("accountId").is(accountId)), TransactionBucket.class)
+        .thenMany(Flux.defer(() -> mongoTemplate.insertAll(buckets)))
+        .map(bucket -> (long) bucket.getCount())
+        .reduce(0L, Long::sum);
+  }
+}
@@ -0,0 +1,165 @@
+package com.bank.bootcamp.savingacounts.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Service;
+import com.bank.bootcamp.savingacounts.dto.ExportFormat;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.exception.BankValidationException;
+import com.bank.bootcamp.savingacounts.mapper.MinorUnits;
+import com.bank.bootcamp.savingacounts.repository.TransactionRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Every movement of a period, encoded as it is read from one cursor. Rows are grouped into
+ * buffers of {@code export.rows-per-buffer} and only requested from the cursor as the consumer
+ * takes buffers, so an export holds a few buffers in memory whatever its size.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransactionExportService {
+
+  private static final String CSV_HEADER = "id,accountId,operationNumber,registerDate,amount,agent,description,transferId\n";
+
+  private final TransactionRepository transactionRepository;
+  private final ObjectMapper objectMapper;
+  private final Environment env;
+
+  public Flux<DataBuffer> export(LocalDateTime from, LocalDateTime to, ExportFormat format, boolean gzip, DataBufferFactory bufferFactory) {
+    return export(from, to, format, gzip, bufferFactory, new AtomicLong());
+  }
+
+  private Flux<DataBuffer> export(LocalDateTime from, LocalDateTime to, ExportFormat format, boolean gzip, DataBufferFactory bufferFactory,
+      AtomicLong exported) {
+    if (!from.isBefore(to))
+      return Flux.error(new BankValidationException("The export period is empty"));
+    var batchSize = Integer.parseInt(Optional.ofNullable(env.getProperty("export.batch-size")).orElse("1000"));
+    var rowsPerBuffer = Integer.parseInt(Optional.ofNullable(env.getProperty("export.rows-per-buffer")).orElse("500"));
+    var rows = transactionRepository.streamByPeriod(from, to, batchSize)
+        .doOnNext(transaction -> exported.incrementAndGet())
+        .map(transaction -> format == ExportFormat.CSV ? csv(transaction) : ndjson(transaction))
+        .buffer(rowsPerBuffer)
+        .map(TransactionExportService::concat);
+    var content = format == ExportFormat.CSV ? rows.startWith(CSV_HEADER.getBytes(StandardCharsets.UTF_8)) : rows;
+    return (gzip ? gzip(content) : content).map(bufferFactory::wrap);
+  }
+
+  /**
+   * Writes the export to a file through an asynchronous file channel, replacing it, and returns
+   * how many movements were written.
+   */
+  public Mono<Long> exportTo(Path file, LocalDateTime from, LocalDateTime to, ExportFormat format, boolean gzip) {
+    return Mono.defer(() -> {
+          var exported = new AtomicLong();
+          var rows = export(from, to, format, gzip, DefaultDataBufferFactory.sharedInstance, exported);
+          return DataBufferUtils.write(rows, file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)
+              .then(Mono.fromSupplier(exported::get));
+        })
+        .doOnSubscribe(subscription -> log.info("Exporting movements from {} to {} into {}", from, to, file));
+  }
+
+  private byte[] ndjson(Transaction transaction) {
+    try {
+      var json = objectMapper.writeValueAsBytes(transaction);
+      var line = new byte[json.length + 1];
+      System.arraycopy(json, 0, line, 0, json.length);
+      line[json.length] = '\n';
+      return line;
+    } catch (JsonProcessingException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static byte[] csv(Transaction transaction) {
+    var row = new StringBuilder(128)
+        .append(field(transaction.getId())).append(',')
+        .append(field(transaction.getAccountId())).append(',')
+        .append(field(transaction.getOperationNumber())).append(',')
+        .append(field(transaction.getRegisterDate())).append(',')
+        .append(field(transaction.getAmount() == null ? null : MinorUnits.toDecimal(transaction.getAmount()))).append(',')
+        .append(field(transaction.getAgent())).append(',')
+        .append(field(transaction.getDescription())).append(',')
+        .append(field(transaction.getTransferId())).append('\n');
+    return row.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String field(Object value) {
+    if (value == null)
+      return "";
+    var text = value.toString();
+    if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0)
+      return text;
+    return '"' + text.replace("\"", "\"\"") + '"';
+  }
+
+  private static byte[] concat(List<byte[]> rows) {
+    var out = new ByteArrayOutputStream(rows.stream().mapToInt(row -> row.length).sum());
+    rows.forEach(out::writeBytes);
+    return out.toByteArray();
+  }
+
+  /** Compresses the chunks as one gzip member, emitting what the deflater has produced so far. */
+  private static Flux<byte[]> gzip(Flux<byte[]> chunks) {
+    return Flux.using(Gzip::new,
+        gzip -> chunks.map(gzip::write).concatWith(Mono.fromCallable(gzip::finish)).filter(chunk -> chunk.length > 0),
+        Gzip::close);
+  }
+
+  private static class Gzip {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final GZIPOutputStream gzip;
+
+    Gzip() throws IOException {
+      gzip = new GZIPOutputStream(out, 64 * 1024);
+    }
+
+    byte[] write(byte[] chunk) {
+      try {
+        gzip.write(chunk);
+        return drain();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    byte[] finish() throws IOException {
+      gzip.finish();
+      return drain();
+    }
+
+    private byte[] drain() {
+      var compressed = out.toByteArray();
+      out.reset();
+      return compressed;
+    }
+
+    void close() {
+      try {
+        gzip.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
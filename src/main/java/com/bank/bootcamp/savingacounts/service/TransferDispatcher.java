@@ -0,0 +1,144 @@
+package com.bank.bootcamp.savingacounts.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.dto.TransferStatus;
+import com.bank.bootcamp.savingacounts.entity.Transfer;
+import com.bank.bootcamp.savingacounts.exception.BankValidationException;
+import com.bank.bootcamp.savingacounts.exception.TransactionRejectedException;
+import com.bank.bootcamp.savingacounts.repository.TransactionRepository;
+import com.bank.bootcamp.savingacounts.repository.TransferRepository;
+import com.bank.bootcamp.savingacounts.webclient.AccountWebClient;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Delivers the debited transfers to the target account. Transfers are claimed one at a time from
+ * the collection, so several instances can run it; the credit carries the transfer ID as its
+ * idempotency key, so a delivery repeated after a lost response is registered once. A transfer
+ * the target rejects is reversed; one whose credit is still in doubt after
+ * {@code transfer.dispatcher.max-attempts} is left FAILED, since the target may have registered it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TransferDispatcher {
+
+  private static final String SETTLE_TRANSFER = "settleTransfer";
+
+  private final TransferRepository transferRepository;
+  private final TransactionRepository transactionRepository;
+  private final AccountService accountService;
+  private final AccountWebClient accountWebClient;
+  private final AccountExecutionLanes executionLanes;
+  private final OperationMetrics metrics;
+  private final Environment env;
+
+  @Scheduled(fixedDelayString = "${transfer.dispatcher.delay-ms:500}")
+  public void scheduledDispatch() {
+    var delivered = dispatch().block();
+    if (delivered > 0)
+      log.debug("{} transfers dispatched", delivered);
+  }
+
+  /**
+   * Processes the transfers due now, up to {@code transfer.dispatcher.batch-size}, with at most
+   * {@code transfer.dispatcher.concurrency} in flight. Returns how many were processed.
+   */
+  public Mono<Long> dispatch() {
+    var batchSize = Integer.parseInt(Optional.ofNullable(env.getProperty("transfer.dispatcher.batch-size")).orElse("100"));
+    var concurrency = Integer.parseInt(Optional.ofNullable(env.getProperty("transfer.dispatcher.concurrency")).orElse("8"));
+    var lease = Long.parseLong(Optional.ofNullable(env.getProperty("transfer.dispatcher.lease-seconds")).orElse("60"));
+    // cada transferencia reclamada pide la siguiente; se detiene cuando no queda ninguna pendiente
+    return claimNext(lease)
+        .expand(claimed -> claimNext(lease))
+        .take(batchSize)
+        .flatMap(transfer -> process(transfer).thenReturn(transfer), concurrency)
+        .count();
+  }
+
+  private Mono<Transfer> claimNext(long lease) {
+    return Mono.defer(() -> {
+      var now = LocalDateTime.now();
+      return transferRepository.claimNext(now, now.plusSeconds(lease));
+    });
+  }
+
+  private Mono<Void> process(Transfer transfer) {
+    return (transfer.getStatus() == TransferStatus.DEBITING ? recoverDebit(transfer) : settle(transfer))
+        .onErrorResume(e -> {
+          // queda reservada hasta que venza el plazo y entonces se vuelve a intentar
+          log.error("Transfer {} could not be processed", transfer.getId(), e);
+          return Mono.empty();
+        });
+  }
+
+  /**
+   * The caller did not confirm the debit in time: it either died after writing the transaction
+   * or never wrote it.
+   */
+  private Mono<Void> recoverDebit(Transfer transfer) {
+    return metrics.stage(SETTLE_TRANSFER, "debit-lookup", transactionRepository.findByTransferId(transfer.getId()))
+        .flatMap(tx -> transferRepository.markDebited(transfer.getId(), tx.getId(), tx.getOperationNumber(), LocalDateTime.now()))
+        .flatMap(debited -> settle(debited).thenReturn(debited))
+        .switchIfEmpty(Mono.defer(() -> transferRepository.close(transfer.getId(), TransferStatus.DEBITING, TransferStatus.REJECTED,
+            "The debit was not registered", LocalDateTime.now())))
+        .then();
+  }
+
+  /**
+   * Only a credit the target rejected is reversed; a timeout, a 5xx or an open circuit may hide a
+   * registered credit, so it is retried with the same key. Once the target registered it, an
+   * error saving the result leaves the transfer to be delivered again when the lease ends, which
+   * the idempotency key makes harmless.
+   */
+  private Mono<Void> settle(Transfer transfer) {
+    var transactionDTO = new CreateTransactionDTO();
+    transactionDTO.setAccountId(transfer.getTargetAccountId());
+    transactionDTO.setAgent("-");
+    transactionDTO.setDescription("Transfer incoming " + transfer.getSourceOperationNumber());
+    transactionDTO.setAmount(transfer.getAmount());
+
+    return metrics.operation(SETTLE_TRANSFER, metrics.stage(SETTLE_TRANSFER, "credit", accountWebClient.createTransaction(transfer.getTargetAccountType(), transactionDTO, transfer.getId()))
+        .switchIfEmpty(Mono.error(new BankValidationException("Target account did not register the transaction"))))
+        .onErrorResume(e -> (e instanceof TransactionRejectedException ? reverse(transfer, e.getMessage()) : retryOrPark(transfer, e.getMessage()))
+            .then(Mono.<Integer>empty()))
+        .flatMap(operationNumber -> transferRepository.markSettled(transfer.getId(), operationNumber, LocalDateTime.now()))
+        .then();
+  }
+
+  private Mono<Transfer> retryOrPark(Transfer transfer, String error) {
+    var maxAttempts = Integer.parseInt(Optional.ofNullable(env.getProperty("transfer.dispatcher.max-attempts")).orElse("8"));
+    if (transfer.getAttempts() >= maxAttempts) {
+      log.error("Credit of transfer {} to {} {} still unknown after {} attempts, left for manual review", transfer.getId(),
+          transfer.getTargetAccountType(), transfer.getTargetAccountId(), transfer.getAttempts());
+      return transferRepository.close(transfer.getId(), TransferStatus.PENDING, TransferStatus.FAILED, error, LocalDateTime.now());
+    }
+    return transferRepository.scheduleRetry(transfer.getId(), TransferStatus.PENDING, error,
+        LocalDateTime.now().plus(Duration.ofMillis(backoff(transfer.getAttempts()))));
+  }
+
+  /**
+   * Exponential backoff from {@code transfer.dispatcher.backoff-ms}, capped at
+   * {@code transfer.dispatcher.max-backoff-ms}.
+   */
+  private long backoff(int attempts) {
+    var base = Long.parseLong(Optional.ofNullable(env.getProperty("transfer.dispatcher.backoff-ms")).orElse("1000"));
+    var max = Long.parseLong(Optional.ofNullable(env.getProperty("transfer.dispatcher.max-backoff-ms")).orElse("300000"));
+    return Math.min(max, base << Math.min(Math.max(attempts - 1, 0), 20));
+  }
+
+  private Mono<Transfer> reverse(Transfer transfer, String error) {
+    log.warn("Transfer {} rejected by {} {}: {}, reversing the debit", transfer.getId(),
+        transfer.getTargetAccountType(), transfer.getTargetAccountId(), error);
+    return metrics.stage(SETTLE_TRANSFER, "reversal", transactionRepository.findById(transfer.getSourceTransactionId())
+        .flatMap(tx -> executionLanes.submit(tx.getAccountId(), () -> accountService.reverseTransaction(tx)))
+        .then(Mono.defer(() -> transferRepository.close(transfer.getId(), TransferStatus.PENDING, TransferStatus.REVERSED, error, LocalDateTime.now()))));
+  }
+}
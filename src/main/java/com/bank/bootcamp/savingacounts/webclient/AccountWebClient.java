@@ -1,29 +1,72 @@
 package com.bank.bootcamp.savingacounts.webclient;
 
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory;
 import org.springframework.cloud.client.circuitbreaker.ReactiveCircuitBreaker;
 import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import com.bank.bootcamp.savingacounts.dto.AccountType;
 import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.exception.TransactionRejectedException;
+import com.bank.bootcamp.savingacounts.service.OperationMetrics;
 import reactor.core.publisher.Mono;
 
 @Service
 public class AccountWebClient {
-  private final ReactiveCircuitBreaker reactiveCircuitBreaker;
-  private WebClient webClient;
+  public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+  /** Client errors that do not mean the target refused the transaction; they are retried. */
+  private static final List<HttpStatus> NOT_A_REJECTION = List.of(
+      HttpStatus.REQUEST_TIMEOUT, HttpStatus.CONFLICT, HttpStatus.TOO_EARLY, HttpStatus.TOO_MANY_REQUESTS);
   
-  public AccountWebClient(ReactiveResilience4JCircuitBreakerFactory reactiveCircuitBreakerFactory, Environment env) {
+  protected final ReactiveCircuitBreaker reactiveCircuitBreaker;
+  protected final OperationMetrics metrics;
+  protected final WebClient webClient;
+  
+  @Autowired
+  public AccountWebClient(ReactiveResilience4JCircuitBreakerFactory reactiveCircuitBreakerFactory, Environment env, OperationMetrics metrics) {
+    this(reactiveCircuitBreakerFactory, WebClient.create(env.getProperty("gateway.url")), metrics);
+  }
+  
+  public AccountWebClient(ReactiveResilience4JCircuitBreakerFactory reactiveCircuitBreakerFactory, WebClient webClient, OperationMetrics metrics) {
     this.reactiveCircuitBreaker = reactiveCircuitBreakerFactory.create("products");
-    webClient = WebClient.create(env.getProperty("gateway.url"));
+    this.metrics = metrics;
+    this.webClient = webClient;
   }
   
-  public Mono<Integer> createTransaction(AccountType accountType, CreateTransactionDTO dto) {
+  /**
+   * Registers the transaction on the account of another product. Retries of the same transaction
+   * send the same {@code idempotencyKey}, so the target can register it only once. Fails with
+   * {@link TransactionRejectedException} when the target refused it; any other error, like a
+   * timeout, a 5xx or an open circuit, leaves the outcome unknown.
+   */
+  public Mono<Integer> createTransaction(AccountType accountType, CreateTransactionDTO dto, String idempotencyKey) {
 
-    return webClient.post()
-        .uri(String.format("/%s/transaction", accountType.getResource()))
-        .bodyValue(dto).retrieve().bodyToMono(Integer.class)
-        .transform(balance -> reactiveCircuitBreaker.run(balance, throwable -> Mono.empty()));
+    return Mono.defer(() -> {
+      var call = metrics.remoteCall(accountType.getResource(), "createTransaction");
+      return webClient.post()
+          .uri(String.format("/%s/transaction", accountType.getResource()))
+          .header(IDEMPOTENCY_KEY, idempotencyKey)
+          .bodyValue(dto).retrieve().bodyToMono(Integer.class)
+          .doOnNext(operationNumber -> call.succeeded())
+          .transform(balance -> reactiveCircuitBreaker.run(balance, throwable -> {
+            call.fallback(throwable);
+            return Mono.error(classify(throwable));
+          }))
+          .doFinally(call::stop);
+    });
+  }
+  
+  /** A 4xx answer is a rejection; everything else is passed on as it is. */
+  protected static Throwable classify(Throwable throwable) {
+    if (throwable instanceof WebClientResponseException) {
+      var response = (WebClientResponseException) throwable;
+      if (response.getStatusCode().is4xxClientError() && !NOT_A_REJECTION.contains(response.getStatusCode()))
+        return new TransactionRejectedException(String.format("%s %s", response.getRawStatusCode(), response.getResponseBodyAsString()), throwable);
+    }
+    return throwable;
   }
 }
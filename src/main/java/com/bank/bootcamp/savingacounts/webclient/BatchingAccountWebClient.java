@@ -0,0 +1,178 @@
+package com.bank.bootcamp.savingacounts.webclient;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import com.bank.bootcamp.savingacounts.dto.AccountType;
+import com.bank.bootcamp.savingacounts.dto.BatchResultStatus;
+import com.bank.bootcamp.savingacounts.dto.BatchTransactionResultDTO;
+import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.exception.TransactionRejectedException;
+import com.bank.bootcamp.savingacounts.service.OperationMetrics;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Sends the credits to each account type in batches: the credits requested within
+ * {@code transfer.credit-batching.window-ms}, up to {@code transfer.credit-batching.max-size},
+ * go in one POST to {@code /{resource}/transactions/batch}, with the idempotency key of each item
+ * in the {@code Idempotency-Keys} header, in the same order. Each caller gets the result of its
+ * own item: only an item the peer answered as {@link BatchResultStatus#REJECTED} is a rejection;
+ * any other error, an item it did not answer or a batch that failed leaves the outcome unknown. A peer that answers 404, 405, 415 or 501 does not batch; its credits are sent one by
+ * one for {@code transfer.credit-batching.retry-after-seconds} before batching is tried again.
+ * Enabled with {@code transfer.credit-batching.enabled=true}.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "transfer.credit-batching.enabled", havingValue = "true")
+@Slf4j
+public class BatchingAccountWebClient extends AccountWebClient implements DisposableBean {
+
+  public static final String IDEMPOTENCY_KEYS = "Idempotency-Keys";
+  private static final List<HttpStatus> BATCH_NOT_SUPPORTED = List.of(
+      HttpStatus.NOT_FOUND, HttpStatus.METHOD_NOT_ALLOWED, HttpStatus.UNSUPPORTED_MEDIA_TYPE, HttpStatus.NOT_IMPLEMENTED);
+
+  private final Map<AccountType, Sinks.Many<PendingCredit>> queues = new EnumMap<>(AccountType.class);
+  private final Map<AccountType, Instant> singleCallsUntil = new ConcurrentHashMap<>();
+  private final Duration retryAfter;
+  private final Disposable.Composite subscriptions = Disposables.composite();
+
+  @Autowired
+  public BatchingAccountWebClient(ReactiveResilience4JCircuitBreakerFactory reactiveCircuitBreakerFactory, Environment env, OperationMetrics metrics) {
+    this(reactiveCircuitBreakerFactory, WebClient.create(env.getProperty("gateway.url")), env, metrics);
+  }
+
+  public BatchingAccountWebClient(ReactiveResilience4JCircuitBreakerFactory reactiveCircuitBreakerFactory, WebClient webClient, Environment env, OperationMetrics metrics) {
+    super(reactiveCircuitBreakerFactory, webClient, metrics);
+    var maxSize = Integer.parseInt(Optional.ofNullable(env.getProperty("transfer.credit-batching.max-size")).orElse("50"));
+    var window = Duration.ofMillis(Long.parseLong(Optional.ofNullable(env.getProperty("transfer.credit-batching.window-ms")).orElse("20")));
+    var concurrency = Integer.parseInt(Optional.ofNullable(env.getProperty("transfer.credit-batching.concurrency")).orElse("4"));
+    this.retryAfter = Duration.ofSeconds(Long.parseLong(Optional.ofNullable(env.getProperty("transfer.credit-batching.retry-after-seconds")).orElse("600")));
+    for (var accountType : AccountType.values()) {
+      Sinks.Many<PendingCredit> queue = Sinks.many().unicast().onBackpressureBuffer();
+      queues.put(accountType, queue);
+      subscriptions.add(queue.asFlux()
+          .bufferTimeout(maxSize, window)
+          .flatMap(batch -> send(accountType, batch), concurrency)
+          .subscribe());
+    }
+  }
+
+  @Override
+  public Mono<Integer> createTransaction(AccountType accountType, CreateTransactionDTO dto, String idempotencyKey) {
+    var until = singleCallsUntil.get(accountType);
+    if (until != null && Instant.now().isBefore(until))
+      return super.createTransaction(accountType, dto, idempotencyKey);
+    return Mono.defer(() -> {
+      var credit = new PendingCredit(dto, idempotencyKey);
+      // varios hilos pueden encolar a la vez: se reintenta mientras otro esté emitiendo
+      queues.get(accountType).emitNext(credit, (signal, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+      return credit.result.asMono();
+    });
+  }
+
+  private Mono<Void> send(AccountType accountType, List<PendingCredit> batch) {
+    var call = metrics.remoteCall(accountType.getResource(), "createTransactions");
+    return webClient.post()
+        .uri(String.format("/%s/transactions/batch", accountType.getResource()))
+        .header(IDEMPOTENCY_KEYS, batch.stream().map(credit -> String.valueOf(credit.idempotencyKey)).collect(Collectors.joining(",")))
+        .bodyValue(batch.stream().map(credit -> credit.dto).collect(Collectors.toList()))
+        .retrieve()
+        .bodyToFlux(BatchTransactionResultDTO.class)
+        .collectList()
+        .doOnNext(results -> {
+          call.succeeded();
+          complete(batch, results);
+        })
+        .transform(results -> reactiveCircuitBreaker.run(results, throwable -> {
+          call.fallback(throwable);
+          if (throwable instanceof WebClientResponseException
+              && BATCH_NOT_SUPPORTED.contains(((WebClientResponseException) throwable).getStatusCode())) {
+            log.info("{} does not accept batches, sending single credits for {}", accountType.getResource(), retryAfter);
+            singleCallsUntil.put(accountType, Instant.now().plus(retryAfter));
+            return Flux.fromIterable(batch)
+                .flatMap(credit -> super.createTransaction(accountType, credit.dto, credit.idempotencyKey)
+                    .doOnSuccess(credit::complete)
+                    .onErrorResume(e -> {
+                      credit.fail(e);
+                      return Mono.empty();
+                    }))
+                .then(Mono.empty());
+          }
+          // aunque sea un 4xx, el rechazo es del lote y no de cada abono: el despachador reintenta
+          batch.forEach(credit -> credit.fail(throwable));
+          return Mono.empty();
+        }))
+        .doFinally(call::stop)
+        .then();
+  }
+
+  private static void complete(List<PendingCredit> batch, List<BatchTransactionResultDTO> results) {
+    var answers = new ArrayList<BatchTransactionResultDTO>(batch.size());
+    for (int i = 0; i < batch.size(); i++)
+      answers.add(null);
+    for (var result : results) {
+      if (result.getIndex() != null && result.getIndex() >= 0 && result.getIndex() < batch.size())
+        answers.set(result.getIndex().intValue(), result);
+    }
+    for (int i = 0; i < batch.size(); i++) {
+      var answer = answers.get(i);
+      if (answer == null)
+        batch.get(i).fail(new IllegalStateException("The batch response has no result for the credit"));
+      else if (answer.getStatus() == BatchResultStatus.REJECTED)
+        batch.get(i).fail(new TransactionRejectedException(answer.getError()));
+      else if (answer.getError() != null)
+        // sin un rechazo definitivo el abono pudo quedar registrado: el despachador reintenta
+        batch.get(i).fail(new IllegalStateException(answer.getError()));
+      else
+        batch.get(i).complete(answer.getOperationNumber());
+    }
+  }
+
+  @Override
+  public void destroy() {
+    subscriptions.dispose();
+  }
+
+  private static final class PendingCredit {
+    private final CreateTransactionDTO dto;
+    private final String idempotencyKey;
+    private final Sinks.One<Integer> result = Sinks.one();
+
+    private PendingCredit(CreateTransactionDTO dto, String idempotencyKey) {
+      this.dto = dto;
+      this.idempotencyKey = idempotencyKey;
+    }
+
+    private void complete(Integer operationNumber) {
+      if (operationNumber == null)
+        result.tryEmitEmpty();
+      else
+        result.tryEmitValue(operationNumber);
+    }
+
+    private void fail(Throwable error) {
+      result.tryEmitError(error);
+    }
+  }
+}
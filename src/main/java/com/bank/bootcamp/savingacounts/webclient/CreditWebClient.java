@@ -8,17 +8,20 @@ import org.springframework.util.ObjectUtils;
 import org.springframework.web.reactive.function.client.WebClient;
 import com.bank.bootcamp.savingacounts.dto.BalanceDTO;
 import com.bank.bootcamp.savingacounts.exception.BankValidationException;
+import com.bank.bootcamp.savingacounts.service.OperationMetrics;
 import reactor.core.publisher.Flux;
 
 @Service
 public class CreditWebClient {
 
   private final ReactiveCircuitBreaker reactiveCircuitBreaker;
+  private final OperationMetrics metrics;
   private WebClient webClient;
   
   
-  public CreditWebClient(ReactiveResilience4JCircuitBreakerFactory reactiveCircuitBreakerFactory, Environment env) {
+  public CreditWebClient(ReactiveResilience4JCircuitBreakerFactory reactiveCircuitBreakerFactory, Environment env, OperationMetrics metrics) {
     this.reactiveCircuitBreaker = reactiveCircuitBreakerFactory.create("products");
+    this.metrics = metrics;
     webClient = WebClient.create(env.getProperty("gateway.url"));
   }
 
@@ -27,11 +30,20 @@ public class CreditWebClient {
       return Flux.error(new BankValidationException("Customer ID is required"));
     } else {
       
-      var credits = webClient.get()
-          .uri("/credits/balanceByCustomer/{customerId}/{creditType}", customerId, "PERSONAL")
-          .retrieve()
-          .bodyToFlux(BalanceDTO.class)
-          .transform(balance -> reactiveCircuitBreaker.run(balance, throwable -> Flux.empty()));
+      var credits = Flux.defer(() -> {
+        var call = metrics.remoteCall("credits", "getAllBalances");
+        return webClient.get()
+            .uri("/credits/balanceByCustomer/{customerId}/{creditType}", customerId, "PERSONAL")
+            .retrieve()
+            .bodyToFlux(BalanceDTO.class)
+            .doOnNext(balance -> call.succeeded())
+            .transform(balance -> reactiveCircuitBreaker.run(balance, throwable -> {
+              call.fallback(throwable);
+              // sin respuesta no se sabe si el cliente tiene créditos: no debe leerse como "no tiene"
+              return Flux.error(new BankValidationException("The credit service is not available, try again later"));
+            }))
+            .doFinally(call::stop);
+      });
       
       return Flux.merge(credits)
       .parallel()
@@ -0,0 +1,142 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
+import com.bank.bootcamp.savingacounts.dto.BalanceDTO;
+import com.bank.bootcamp.savingacounts.dto.BatchAccountResultDTO;
+import com.bank.bootcamp.savingacounts.dto.CreateAccountDTO;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.repository.AccountRepository;
+import com.bank.bootcamp.savingacounts.repository.MonthlyAccountSummaryRepository;
+import com.bank.bootcamp.savingacounts.repository.TransactionRepository;
+import com.bank.bootcamp.savingacounts.repository.TransferRepository;
+import com.bank.bootcamp.savingacounts.service.AccountBatchService;
+import com.bank.bootcamp.savingacounts.service.AccountCache;
+import com.bank.bootcamp.savingacounts.service.AccountExecutionLanes;
+import com.bank.bootcamp.savingacounts.service.AccountService;
+import com.bank.bootcamp.savingacounts.service.BalanceSnapshotService;
+import com.bank.bootcamp.savingacounts.service.CreditCheckCache;
+import com.bank.bootcamp.savingacounts.service.NextSequenceService;
+import com.bank.bootcamp.savingacounts.service.OperationMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class AccountBatchServiceTests {
+
+  private final AccountRepository accountRepository = mock(AccountRepository.class);
+  private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+  private final MonthlyAccountSummaryRepository monthlySummaryRepository = mock(MonthlyAccountSummaryRepository.class);
+  private final NextSequenceService nextSequenceService = mock(NextSequenceService.class);
+  private final CreditCheckCache creditCheckCache = mock(CreditCheckCache.class);
+  private final AccountBatchService batchService;
+
+  @SuppressWarnings("unchecked")
+  public AccountBatchServiceTests() {
+    var env = mock(Environment.class);
+    var accountCache = new AccountCache(accountRepository, env, new SimpleMeterRegistry());
+    var accountService = new AccountService(accountRepository, accountCache, transactionRepository, monthlySummaryRepository,
+        nextSequenceService, env, creditCheckCache, mock(TransferRepository.class), mock(BalanceSnapshotService.class),
+        new AccountExecutionLanes(env, new SimpleMeterRegistry()), new OperationMetrics(new SimpleMeterRegistry()));
+    batchService = new AccountBatchService(accountService, accountRepository, transactionRepository, monthlySummaryRepository,
+        nextSequenceService, creditCheckCache, env);
+    when(accountRepository.insert(Mockito.anyIterable())).thenAnswer(invocation -> Flux.fromIterable((Iterable<Account>) invocation.getArgument(0)));
+    when(transactionRepository.insert(Mockito.anyIterable())).thenAnswer(invocation -> Flux.fromIterable((Iterable<Transaction>) invocation.getArgument(0)));
+    when(monthlySummaryRepository.insert(Mockito.anyIterable())).thenAnswer(invocation -> Flux.fromIterable((Iterable<MonthlyAccountSummary>) invocation.getArgument(0)));
+  }
+
+  private CreateAccountDTO account(String customerId, Long openingAmount, String profile) {
+    var dto = new CreateAccountDTO();
+    dto.setCustomerId(customerId);
+    dto.setOpeningAmount(openingAmount);
+    dto.setProfile(profile);
+    return dto;
+  }
+
+  private Account stored(String id, String customerId) {
+    var account = new Account();
+    account.setId(id);
+    account.setCustomerId(customerId);
+    return account;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void createAccountsWritesEachCollectionOnceAndReportsEachRow() {
+    when(accountRepository.findByCustomerIdIn(List.of("C-1", "C-2", "C-3", "C-4"))).thenReturn(Flux.just(stored("SA-2", "C-2")));
+    when(creditCheckCache.getAllBalances("C-1")).thenReturn(Flux.just(new BalanceDTO()));
+    when(creditCheckCache.getAllBalances("C-3")).thenReturn(Flux.empty());
+    when(nextSequenceService.reserve("TransactionSequences", 2)).thenReturn(Mono.just(11));
+
+    var input = Flux.just(
+        account("C-1", 5000L, "VIP"),
+        account("C-2", 5000L, null),
+        account(null, 5000L, null),
+        account("C-3", 5000L, "VIP"),
+        account("C-4", 2000L, null),
+        account("C-4", 3000L, null));
+
+    StepVerifier.create(batchService.createAccounts(input).collectSortedList((a, b) -> a.getIndex().compareTo(b.getIndex())))
+      .assertNext(results -> {
+        assertThat(results).extracting(BatchAccountResultDTO::getOperationNumber).containsExactly(10, null, null, null, 11, null);
+        assertThat(results).extracting(BatchAccountResultDTO::getError).containsExactly(
+            null, "Customer already has an saving account", "Customer ID is required",
+            "Customer has not credit product for VIP account", null, "Customer already has an saving account");
+        assertThat(results.get(0).getAccountId()).isNotNull();
+      }).verifyComplete();
+
+    Mockito.verify(accountRepository).insert(Mockito.<List<Account>>argThat(list -> list.size() == 2
+        && list.get(1).getBalance() == 2000L && list.get(1).getMonthlyMovementLimit() == 5));
+    Mockito.verify(transactionRepository).insert(Mockito.<List<Transaction>>argThat(list -> list.size() == 2
+        && "Opening account".equals(list.get(0).getDescription())));
+    Mockito.verify(monthlySummaryRepository).insert(Mockito.<List<MonthlyAccountSummary>>argThat(list -> list.size() == 2
+        && list.get(1).getCredits() == 2000L && list.get(1).getCount() == 1L));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void customersOpenedMeanwhileAreRejectedOneByOne() {
+    when(accountRepository.findByCustomerIdIn(List.of("C-1", "C-2")))
+        .thenReturn(Flux.empty(), Flux.just(stored("SA-9", "C-1")));
+    when(accountRepository.insert(Mockito.anyIterable())).thenReturn(Flux.error(new DuplicateKeyException("E11000")));
+    when(accountRepository.insert(Mockito.any(Account.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+    when(nextSequenceService.reserve("TransactionSequences", 1)).thenReturn(Mono.just(20));
+
+    StepVerifier.create(batchService.createAccounts(Flux.just(account("C-1", 5000L, null), account("C-2", 5000L, null)))
+        .collectSortedList((a, b) -> a.getIndex().compareTo(b.getIndex())))
+      .assertNext(results -> {
+        assertThat(results).extracting(BatchAccountResultDTO::getError).containsExactly("Customer already has an saving account", null);
+        assertThat(results).extracting(BatchAccountResultDTO::getOperationNumber).containsExactly(null, 20);
+      }).verifyComplete();
+
+    Mockito.verify(accountRepository).insert(Mockito.<Account>argThat(account -> "C-2".equals(account.getCustomerId())));
+  }
+
+  @Test
+  public void failedOpeningTransactionsRollBackTheAccounts() {
+    when(accountRepository.findByCustomerIdIn(List.of("C-1"))).thenReturn(Flux.empty());
+    when(nextSequenceService.reserve("TransactionSequences", 1)).thenReturn(Mono.just(30));
+    when(transactionRepository.insert(Mockito.anyIterable())).thenReturn(Flux.error(new IllegalStateException("timeout")));
+    when(transactionRepository.findByAccountId(Mockito.anyString())).thenReturn(Flux.empty());
+    when(transactionRepository.deleteAllById(Mockito.anyIterable())).thenReturn(Mono.empty());
+    when(accountRepository.deleteAllById(Mockito.anyIterable())).thenReturn(Mono.empty());
+
+    StepVerifier.create(batchService.createAccounts(Flux.just(account("C-1", 5000L, null))))
+      .assertNext(result -> {
+        assertThat(result.getError()).isEqualTo("The operation could not be completed");
+        assertThat(result.getAccountId()).isNull();
+      }).verifyComplete();
+
+    Mockito.verify(accountRepository).deleteAllById(Mockito.<List<String>>argThat(ids -> ids.size() == 1));
+    Mockito.verifyNoInteractions(monthlySummaryRepository);
+  }
+}
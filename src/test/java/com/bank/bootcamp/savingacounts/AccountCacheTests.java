@@ -0,0 +1,65 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.Environment;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.repository.AccountRepository;
+import com.bank.bootcamp.savingacounts.service.AccountCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class AccountCacheTests {
+
+  private final AccountRepository accountRepository = mock(AccountRepository.class);
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AccountCache accountCache = new AccountCache(accountRepository, mock(Environment.class), meterRegistry);
+
+  private Account account(String id, Long balance) {
+    var account = new Account();
+    account.setId(id);
+    account.setMonthlyMovementLimit(5);
+    account.setBalance(balance);
+    return account;
+  }
+
+  @Test
+  public void repeatedLookupsHitMongoOnce() {
+    when(accountRepository.findById("SA-001")).thenReturn(Mono.just(account("SA-001", 1000L)));
+    
+    StepVerifier.create(accountCache.findById("SA-001")).expectNextCount(1).verifyComplete();
+    StepVerifier.create(accountCache.findById("SA-001")).expectNextCount(1).verifyComplete();
+    
+    verify(accountRepository, times(1)).findById("SA-001");
+    assertThat(meterRegistry.get("cache.gets").tag("cache", "accounts").tag("result", "hit").functionCounter().count()).isEqualTo(1d);
+  }
+
+  @Test
+  public void unknownAccountsAreCachedAsMissing() {
+    when(accountRepository.findById("SA-404")).thenReturn(Mono.empty());
+    
+    StepVerifier.create(accountCache.findById("SA-404")).verifyComplete();
+    StepVerifier.create(accountCache.findById("SA-404")).verifyComplete();
+    
+    verify(accountRepository, times(1)).findById("SA-404");
+  }
+
+  @Test
+  public void writesReplaceTheCachedAccount() {
+    when(accountRepository.findById("SA-002")).thenReturn(Mono.just(account("SA-002", 1000L)));
+    when(accountRepository.addToBalance("SA-002", 500L)).thenReturn(Mono.just(account("SA-002", 1500L)));
+    
+    StepVerifier.create(accountCache.findById("SA-002")).expectNextCount(1).verifyComplete();
+    StepVerifier.create(accountCache.addToBalance("SA-002", 500L)).expectNextCount(1).verifyComplete();
+    StepVerifier.create(accountCache.findById("SA-002"))
+      .assertNext(account -> assertThat(account.getBalance()).isEqualTo(1500L))
+      .verifyComplete();
+    
+    verify(accountRepository, times(1)).findById("SA-002");
+  }
+}
@@ -0,0 +1,95 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.Environment;
+import com.bank.bootcamp.savingacounts.exception.BankValidationException;
+import com.bank.bootcamp.savingacounts.service.AccountExecutionLanes;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class AccountExecutionLanesTests {
+
+  private AccountExecutionLanes lanes(int count) {
+    var env = mock(Environment.class);
+    when(env.getProperty("account.execution-lanes")).thenReturn(String.valueOf(count));
+    return new AccountExecutionLanes(env, new SimpleMeterRegistry());
+  }
+
+  @Test
+  public void operationsOnTheSameAccountRunOneAtATimeInOrder() {
+    var lanes = lanes(4);
+    var running = new AtomicInteger();
+    var maxRunning = new AtomicInteger();
+    List<Integer> order = new CopyOnWriteArrayList<>();
+    
+    var flux = Flux.range(0, 20).flatMap(i -> lanes.submit("SA-001", () -> Mono.fromRunnable(() -> maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max))
+        .then(Mono.delay(Duration.ofMillis(2)))
+        .doOnNext(tick -> {
+          order.add(i);
+          running.decrementAndGet();
+        })
+        .thenReturn(i)));
+    
+    StepVerifier.create(flux).expectNextCount(20).verifyComplete();
+    assertThat(maxRunning.get()).isEqualTo(1);
+    assertThat(order).isSorted();
+    assertThat(lanes.queued()).isZero();
+  }
+
+  @Test
+  public void failuresReachTheCallerWithoutStoppingTheLane() {
+    var lanes = lanes(1);
+    StepVerifier.create(lanes.submit("SA-001", () -> Mono.error(new IllegalStateException("boom"))))
+      .expectError(IllegalStateException.class).verify();
+    StepVerifier.create(lanes.submit("SA-002", () -> Mono.just("ok")))
+      .expectNext("ok").verifyComplete();
+  }
+
+  @Test
+  public void hungTaskTimesOutAndFullLaneRejects() {
+    var env = mock(Environment.class);
+    when(env.getProperty("account.execution-lanes")).thenReturn("1");
+    when(env.getProperty("account.execution-lanes.task-timeout-ms")).thenReturn("100");
+    when(env.getProperty("account.execution-lanes.max-depth")).thenReturn("2");
+    var lanes = new AccountExecutionLanes(env, new SimpleMeterRegistry());
+
+    var hung = lanes.submit("SA-001", () -> Mono.never()).toFuture();
+    var queued = lanes.submit("SA-002", () -> Mono.just("ok")).toFuture();
+    StepVerifier.create(lanes.submit("SA-003", () -> Mono.just("late")))
+      .expectError(BankValidationException.class).verify();
+
+    assertThat(hung).failsWithin(Duration.ofSeconds(5)).withThrowableOfType(ExecutionException.class).withCauseInstanceOf(TimeoutException.class);
+    assertThat(queued).succeedsWithin(Duration.ofSeconds(5)).isEqualTo("ok");
+    // el llamador recibe el resultado antes de que la tarea salga del carril
+    StepVerifier.create(Mono.fromCallable(lanes::queued).filter(depth -> depth == 0)
+        .repeatWhenEmpty(50, ticks -> ticks.delayElements(Duration.ofMillis(10))))
+      .expectNext(0).verifyComplete();
+  }
+
+  @Test
+  public void slowTaskIsNotCancelledWhenItsCallerTimesOut() throws InterruptedException {
+    var env = mock(Environment.class);
+    when(env.getProperty("account.execution-lanes")).thenReturn("1");
+    when(env.getProperty("account.execution-lanes.task-timeout-ms")).thenReturn("50");
+    var lanes = new AccountExecutionLanes(env, new SimpleMeterRegistry());
+    var finished = new CountDownLatch(1);
+
+    StepVerifier.create(lanes.submit("SA-001", () -> Mono.delay(Duration.ofMillis(200)).doOnNext(tick -> finished.countDown())))
+      .expectError(TimeoutException.class).verify();
+    assertThat(lanes.submit("SA-002", () -> Mono.just("next")).block(Duration.ofSeconds(5))).isEqualTo("next");
+    assertThat(finished.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+}
@@ -0,0 +1,173 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import com.bank.bootcamp.savingacounts.config.AdmissionControlFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public class AdmissionControlFilterTests {
+
+  private final AtomicLong now = new AtomicLong();
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final MockEnvironment env = new MockEnvironment()
+      .withProperty("admission.account.rate-per-second", "1")
+      .withProperty("admission.account.burst", "2")
+      .withProperty("admission.agent.rate-per-second", "1")
+      .withProperty("admission.agent.burst", "3")
+      .withProperty("admission.max-in-flight", "1");
+  private final AtomicReference<String> forwardedBody = new AtomicReference<>();
+  private final WebFilterChain chain = exchange -> DataBufferUtils.join(exchange.getRequest().getBody())
+      .doOnNext(body -> forwardedBody.set(body.toString(StandardCharsets.UTF_8)))
+      .doOnNext(DataBufferUtils::release)
+      .then();
+
+  private AdmissionControlFilter filter() {
+    return new AdmissionControlFilter(Jackson2ObjectMapperBuilder.json().build(), env, meterRegistry, now::get);
+  }
+
+  private static MockServerWebExchange transaction(String accountId, String agent) {
+    return MockServerWebExchange.from(MockServerHttpRequest.post("/savingAccounts/transaction")
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(String.format("{\"accountId\":\"%s\",\"agent\":\"%s\",\"amount\":10.0}", accountId, agent)));
+  }
+
+  private double rejections(String bucket) {
+    return meterRegistry.get("account.admission.rejections").tag("bucket", bucket).counter().count();
+  }
+
+  @Test
+  public void accountBucketAdmitsItsBurstAndThenItsRate() {
+    var filter = filter();
+    filter.filter(transaction("SA-1", "A-1"), chain).block();
+    filter.filter(transaction("SA-1", "A-2"), chain).block();
+    var rejected = transaction("SA-1", "A-3");
+    filter.filter(rejected, chain).block();
+
+    assertThat(rejected.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    assertThat(rejected.getResponse().getHeaders().getFirst("Retry-After")).isEqualTo("1");
+    assertThat(rejections("account")).isEqualTo(1d);
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    var refilled = transaction("SA-1", "A-4");
+    filter.filter(refilled, chain).block();
+    assertThat(refilled.getResponse().getStatusCode()).isNull();
+    assertThat(forwardedBody.get()).contains("\"accountId\":\"SA-1\"", "\"agent\":\"A-4\"");
+  }
+
+  @Test
+  public void agentBucketIsSharedByItsAccounts() {
+    var filter = filter();
+    for (var account = 1; account <= 3; account++)
+      filter.filter(transaction("SA-" + account, "A-1"), chain).block();
+    var rejected = transaction("SA-4", "A-1");
+    filter.filter(rejected, chain).block();
+
+    assertThat(rejected.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    assertThat(rejections("agent")).isEqualTo(1d);
+  }
+
+  @Test
+  public void requestsBeyondTheInFlightLimitAreShed() {
+    var filter = filter();
+    var running = filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/savingAccounts/balance/SA-1")), exchange -> Mono.never())
+        .subscribe();
+    var rejected = MockServerWebExchange.from(MockServerHttpRequest.get("/savingAccounts/balance/SA-2"));
+    filter.filter(rejected, chain).block();
+    assertThat(rejected.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    assertThat(rejections("concurrency")).isEqualTo(1d);
+
+    running.dispose();
+    var admitted = MockServerWebExchange.from(MockServerHttpRequest.get("/savingAccounts/balance/SA-2"));
+    filter.filter(admitted, chain).block();
+    assertThat(admitted.getResponse().getStatusCode()).isNull();
+  }
+
+  @Test
+  public void accountTokenIsGivenBackWhenTheAgentRejects() {
+    var filter = filter();
+    for (var account = 1; account <= 3; account++)
+      filter.filter(transaction("SA-" + account, "A-1"), chain).block();
+    filter.filter(transaction("SA-9", "A-1"), chain).block();
+    filter.filter(transaction("SA-9", "A-1"), chain).block();
+    assertThat(rejections("agent")).isEqualTo(2d);
+
+    var admitted = transaction("SA-9", "A-2");
+    filter.filter(admitted, chain).block();
+    assertThat(admitted.getResponse().getStatusCode()).isNull();
+  }
+
+  @Test
+  public void batchRowsAreChargedToTheirAgent() {
+    var filter = filter();
+    var batch = MockServerWebExchange.from(MockServerHttpRequest.post("/savingAccounts/transactions/batch")
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .body("{\"accountId\":\"SA-1\",\"agent\":\"A-1\",\"amount\":1.0}\n"
+            + "{\"accountId\":\"SA-2\",\"agent\":\"A-1\",\"amount\":1.0}\n"
+            + "{\"accountId\":\"SA-3\",\"agent\":\"A-1\",\"amount\":1.0}\n"));
+    filter.filter(batch, chain).block();
+    assertThat(batch.getResponse().getStatusCode()).isNull();
+    assertThat(forwardedBody.get()).contains("SA-3");
+
+    var rejected = transaction("SA-4", "A-1");
+    filter.filter(rejected, chain).block();
+    assertThat(rejected.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    assertThat(rejections("agent")).isEqualTo(1d);
+  }
+
+  @Test
+  public void batchStopsAtTheFirstRowItsBucketRejects() {
+    var filter = filter();
+    var rows = new DefaultDataBufferFactory();
+    var body = Flux.just("{\"accountId\":\"SA-1\",\"agent\":\"A-1\",\"amount\":1.0}\n{\"accountId\":\"SA-2\",",
+        "\"agent\":\"A-1\",\"amount\":1.0}\n{\"accountId\":\"SA-3\",\"agent\":\"A-1\",\"amount\":1.0}\n",
+        "{\"accountId\":\"SA-4\",\"agent\":\"A-1\",\"amount\":1.0}\n")
+        .map(chunk -> rows.wrap(chunk.getBytes(StandardCharsets.UTF_8)));
+    var batch = MockServerWebExchange.from(MockServerHttpRequest.post("/savingAccounts/transactions/batch")
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .body(body));
+    filter.filter(batch, chain).block();
+
+    assertThat(batch.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+    assertThat(rejections("agent")).isEqualTo(1d);
+    assertThat(forwardedBody.get()).isNull();
+  }
+
+  @Test
+  public void batchOverTheLimitIsRejectedByItsContentLengthWithoutReadingIt() {
+    env.setProperty("admission.batch.max-body-bytes", "64");
+    var read = new AtomicBoolean();
+    var batch = MockServerWebExchange.from(MockServerHttpRequest.post("/savingAccounts/transactions/batch")
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .contentLength(128)
+        .body(Flux.just(new DefaultDataBufferFactory().wrap(new byte[128])).doOnSubscribe(subscription -> read.set(true))));
+    filter().filter(batch, chain).block();
+
+    assertThat(batch.getResponse().getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+    assertThat(read).isFalse();
+  }
+
+  @Test
+  public void oversizedBodyIsRejectedAsTooLarge() {
+    var tooLarge = MockServerWebExchange.from(MockServerHttpRequest.post("/savingAccounts/transaction")
+        .contentType(MediaType.APPLICATION_JSON)
+        .body("{\"description\":\"" + "x".repeat(300 * 1024) + "\"}"));
+    filter().filter(tooLarge, chain).block();
+    assertThat(tooLarge.getResponse().getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+  }
+}
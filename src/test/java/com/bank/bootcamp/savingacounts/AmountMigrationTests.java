@@ -0,0 +1,42 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import com.bank.bootcamp.savingacounts.entity.Migration;
+import com.bank.bootcamp.savingacounts.service.AmountMigration;
+import com.mongodb.client.result.UpdateResult;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class AmountMigrationTests {
+
+  private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+  private final AmountMigration migration = new AmountMigration(mongoTemplate);
+
+  @Test
+  public void finishedMigrationIsNotRunAgain() {
+    var done = new Migration();
+    done.setCompletedAt(LocalDateTime.now());
+    when(mongoTemplate.findById("amounts-in-cents", Migration.class)).thenReturn(Mono.just(done));
+
+    StepVerifier.create(migration.migrateOnce()).verifyComplete();
+    Mockito.verify(mongoTemplate, Mockito.never()).updateMulti(Mockito.any(Query.class), Mockito.any(UpdateDefinition.class), Mockito.<Class<?>>any());
+  }
+
+  @Test
+  public void firstRunIsRecorded() {
+    when(mongoTemplate.findById("amounts-in-cents", Migration.class)).thenReturn(Mono.empty());
+    when(mongoTemplate.updateMulti(Mockito.any(Query.class), Mockito.any(UpdateDefinition.class), Mockito.<Class<?>>any()))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(2, 2L, null)));
+    when(mongoTemplate.save(Mockito.any(Migration.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+    StepVerifier.create(migration.migrateOnce()).expectNext(12L).verifyComplete();
+    Mockito.verify(mongoTemplate).save(Mockito.<Migration>argThat(done -> "amounts-in-cents".equals(done.getId()) && done.getConverted() == 12L));
+  }
+}
@@ -0,0 +1,193 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.time.YearMonth;
+import java.util.Date;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.core.env.Environment;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
+import com.bank.bootcamp.savingacounts.service.BalanceReadModel;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * The template stands in for a replica set: the collections are served from stubs and the change
+ * stream is a sink the tests emit into.
+ */
+public class BalanceReadModelTests {
+
+  private static final String ACCOUNT_ID = new ObjectId().toHexString();
+
+  private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+  private final Environment env = mock(Environment.class);
+  private final Sinks.Many<ChangeStreamEvent<Document>> changes = Sinks.many().multicast().onBackpressureBuffer();
+  private BalanceReadModel readModel;
+
+  public BalanceReadModelTests() {
+    when(env.getProperty("balance.read-model.enabled")).thenReturn("true");
+    when(mongoTemplate.getCollectionName(Account.class)).thenReturn("Accounts");
+    when(mongoTemplate.getCollectionName(MonthlyAccountSummary.class)).thenReturn("MonthlyAccountSummary");
+    when(mongoTemplate.findById("balanceReadModel", Document.class, BalanceReadModel.CHECKPOINTS)).thenReturn(Mono.empty());
+    when(mongoTemplate.executeCommand(Mockito.any(Document.class))).thenReturn(Mono.just(new Document("operationTime", new BsonTimestamp(100, 1))));
+    var account = new Account();
+    account.setId(ACCOUNT_ID);
+    account.setCustomerId("C-001");
+    account.setMonthlyMovementLimit(10);
+    account.setBalance(10000L);
+    var legacy = new Account();
+    legacy.setId("SA-LEGACY");
+    legacy.setCustomerId("C-002");
+    legacy.setMonthlyMovementLimit(10);
+    when(mongoTemplate.findAll(Account.class)).thenReturn(Flux.just(account, legacy));
+    var summary = new MonthlyAccountSummary();
+    summary.setAccountId(ACCOUNT_ID);
+    summary.setYearMonth(YearMonth.now().toString());
+    summary.setCount(3L);
+    when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(MonthlyAccountSummary.class))).thenReturn(Flux.just(summary));
+    when(mongoTemplate.changeStream(Mockito.isNull(), Mockito.isNull(), Mockito.any(ChangeStreamOptions.class), Mockito.eq(Document.class)))
+        .thenReturn(changes.asFlux());
+    when(mongoTemplate.upsert(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(BalanceReadModel.CHECKPOINTS)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+    var indexOps = mock(ReactiveIndexOperations.class);
+    when(indexOps.ensureIndex(Mockito.any(IndexDefinition.class))).thenReturn(Mono.just("expiresAt_1"));
+    when(mongoTemplate.indexOps(BalanceReadModel.CHECKPOINTS)).thenReturn(indexOps);
+  }
+
+  private String heartbeatId() {
+    var query = ArgumentCaptor.forClass(Query.class);
+    Mockito.verify(mongoTemplate, Mockito.atLeastOnce()).upsert(query.capture(), Mockito.any(Update.class), Mockito.eq(BalanceReadModel.CHECKPOINTS));
+    return query.getAllValues().stream().map(heartbeat -> heartbeat.getQueryObject().getString("_id"))
+        .filter(id -> id.startsWith("heartbeat:")).findFirst().orElseThrow();
+  }
+
+  @AfterEach
+  public void stop() {
+    readModel.destroy();
+  }
+
+  private static ChangeStreamEvent<Document> event(String collection, Document fullDocument, BsonValue id, String token) {
+    var raw = new ChangeStreamDocument<>(OperationType.UPDATE, new BsonDocument("_data", new BsonString(token)),
+        new BsonDocument("db", new BsonString("bank")).append("coll", new BsonString(collection)), null,
+        fullDocument, new BsonDocument("_id", id), new BsonTimestamp(101, 1), null, null, null);
+    return new ChangeStreamEvent<>(raw, Document.class, mock(MongoConverter.class));
+  }
+
+  @Test
+  public void servesBalancesLoadedAndStreamed() {
+    readModel = new BalanceReadModel(mongoTemplate, env, new SimpleMeterRegistry());
+    readModel.start();
+
+    var balance = readModel.getBalance(ACCOUNT_ID).orElseThrow();
+    assertThat(balance.getAmount()).isEqualTo(10000L);
+    assertThat(balance.getMonthlyMovementsAvailable()).isEqualTo(7L);
+    assertThat(balance.getStalenessMs()).isNotNegative();
+    assertThat(readModel.getBalance("SA-LEGACY")).isEmpty();
+    assertThat(readModel.getBalance("SA-UNKNOWN")).isEmpty();
+
+    var objectId = new ObjectId(ACCOUNT_ID);
+    changes.tryEmitNext(event("Accounts", new Document("_id", objectId).append("customerId", "C-001")
+        .append("monthlyMovementLimit", 10).append("balance", 8000L), new BsonObjectId(objectId), "T1"));
+    var summaryId = MonthlyAccountSummary.idOf(ACCOUNT_ID, YearMonth.now());
+    changes.tryEmitNext(event("MonthlyAccountSummary", new Document("_id", summaryId).append("accountId", ACCOUNT_ID)
+        .append("yearMonth", YearMonth.now().toString()).append("count", 4L), new BsonString(summaryId), "T2"));
+
+    var streamed = readModel.getBalanceByCustomerId("C-001").orElseThrow();
+    assertThat(streamed.getAmount()).isEqualTo(8000L);
+    assertThat(streamed.getMonthlyMovementsAvailable()).isEqualTo(6L);
+
+    readModel.heartbeat().block();
+    var update = ArgumentCaptor.forClass(Update.class);
+    Mockito.verify(mongoTemplate, Mockito.times(2)).upsert(Mockito.any(Query.class), update.capture(), Mockito.eq(BalanceReadModel.CHECKPOINTS));
+    assertThat(update.getAllValues().get(0).getUpdateObject().get("$set", Document.class).get("resumeToken")).isEqualTo("T2");
+  }
+
+  @Test
+  public void resumesFromTheSavedToken() {
+    when(mongoTemplate.findById("balanceReadModel", Document.class, BalanceReadModel.CHECKPOINTS))
+        .thenReturn(Mono.just(new Document("_id", "balanceReadModel").append("resumeToken", "T9")));
+    readModel = new BalanceReadModel(mongoTemplate, env, new SimpleMeterRegistry());
+    readModel.start();
+
+    var options = ArgumentCaptor.forClass(ChangeStreamOptions.class);
+    Mockito.verify(mongoTemplate).changeStream(Mockito.isNull(), Mockito.isNull(), options.capture(), Mockito.eq(Document.class));
+    assertThat(options.getValue().isResumeAfter()).isTrue();
+    assertThat(options.getValue().getResumeToken()).contains(new BsonDocument("_data", new BsonString("T9")));
+    Mockito.verify(mongoTemplate, Mockito.never()).executeCommand(Mockito.any(Document.class));
+    Mockito.verify(mongoTemplate, Mockito.never()).findAll(Account.class);
+
+    // sin recarga: la cuenta se lee la primera vez que se pide
+    var account = new Account();
+    account.setId(ACCOUNT_ID);
+    account.setCustomerId("C-001");
+    account.setMonthlyMovementLimit(10);
+    account.setBalance(10000L);
+    var summary = new MonthlyAccountSummary();
+    summary.setCount(3L);
+    when(mongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(Account.class))).thenReturn(Mono.just(account));
+    when(mongoTemplate.findById(MonthlyAccountSummary.idOf(ACCOUNT_ID, YearMonth.now()), MonthlyAccountSummary.class)).thenReturn(Mono.just(summary));
+    assertThat(readModel.getBalance(ACCOUNT_ID)).isEmpty();
+
+    readModel.heartbeat().block();
+    var heartbeatId = heartbeatId();
+    changes.tryEmitNext(event(BalanceReadModel.CHECKPOINTS, new Document("_id", heartbeatId).append("sentAt", System.currentTimeMillis()),
+        new BsonString(heartbeatId), "T10"));
+    var balance = readModel.getBalance(ACCOUNT_ID).orElseThrow();
+    assertThat(balance.getAmount()).isEqualTo(10000L);
+    assertThat(balance.getMonthlyMovementsAvailable()).isEqualTo(7L);
+  }
+
+  @Test
+  public void fallsBackUntilAHeartbeatBoundsTheStaleness() throws InterruptedException {
+    when(env.getProperty("balance.read-model.max-staleness-ms")).thenReturn("200");
+    readModel = new BalanceReadModel(mongoTemplate, env, new SimpleMeterRegistry());
+    readModel.start();
+    Thread.sleep(300);
+    assertThat(readModel.getBalance(ACCOUNT_ID)).isEmpty();
+
+    readModel.heartbeat().block();
+    var update = ArgumentCaptor.forClass(Update.class);
+    Mockito.verify(mongoTemplate).upsert(Mockito.any(Query.class), update.capture(), Mockito.eq(BalanceReadModel.CHECKPOINTS));
+    assertThat(update.getValue().getUpdateObject().get("$set", Document.class).get("expiresAt")).isInstanceOf(Date.class);
+    var heartbeatId = heartbeatId();
+    changes.tryEmitNext(event(BalanceReadModel.CHECKPOINTS, new Document("_id", heartbeatId).append("sentAt", System.currentTimeMillis()),
+        new BsonString(heartbeatId), "T3"));
+
+    assertThat(readModel.getBalance(ACCOUNT_ID)).isPresent();
+  }
+
+  @Test
+  public void disabledModelServesNothing() {
+    when(env.getProperty("balance.read-model.enabled")).thenReturn(null);
+    readModel = new BalanceReadModel(mongoTemplate, env, new SimpleMeterRegistry());
+    readModel.start();
+
+    assertThat(readModel.getBalance(ACCOUNT_ID)).isEmpty();
+    Mockito.verify(mongoTemplate, Mockito.never()).findAll(Account.class);
+  }
+}
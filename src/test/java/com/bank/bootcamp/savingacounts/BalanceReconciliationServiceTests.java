@@ -0,0 +1,53 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.Environment;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.repository.AccountRepository;
+import com.bank.bootcamp.savingacounts.service.AccountCache;
+import com.bank.bootcamp.savingacounts.service.AccountExecutionLanes;
+import com.bank.bootcamp.savingacounts.service.BalanceReconciliationService;
+import com.bank.bootcamp.savingacounts.service.BalanceSnapshotService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class BalanceReconciliationServiceTests {
+
+  private final AccountRepository accountRepository = mock(AccountRepository.class);
+  private final BalanceSnapshotService balanceSnapshotService = mock(BalanceSnapshotService.class);
+  private final Environment env = mock(Environment.class);
+  private final BalanceReconciliationService reconciliationService = new BalanceReconciliationService(accountRepository,
+      mock(AccountCache.class), balanceSnapshotService, new AccountExecutionLanes(env, new SimpleMeterRegistry()), env);
+
+  private static Account account(long balance) {
+    var account = new Account();
+    account.setId("SA-1");
+    account.setBalance(balance);
+    return account;
+  }
+
+  @Test
+  public void driftGoneOnTheSecondReadIsNotReported() {
+    // la primera lectura cae entre el movimiento y su saldo
+    when(accountRepository.findAll()).thenReturn(Flux.just(account(1000L)));
+    when(accountRepository.findById("SA-1")).thenReturn(Mono.just(account(1000L)), Mono.just(account(1500L)));
+    when(balanceSnapshotService.getBalance("SA-1")).thenReturn(Mono.just(1500L));
+
+    StepVerifier.create(reconciliationService.reconcile()).verifyComplete();
+  }
+
+  @Test
+  public void driftSeenTwiceIsReported() {
+    when(accountRepository.findAll()).thenReturn(Flux.just(account(1000L)));
+    when(accountRepository.findById("SA-1")).thenReturn(Mono.just(account(1000L)));
+    when(balanceSnapshotService.getBalance("SA-1")).thenReturn(Mono.just(1500L));
+
+    StepVerifier.create(reconciliationService.reconcile())
+        .expectNextMatches(drift -> drift.getDrift() == -500L && drift.getStoredBalance() == 1000L)
+        .verifyComplete();
+  }
+}
@@ -0,0 +1,115 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.core.env.Environment;
+import com.bank.bootcamp.savingacounts.dto.BalanceDelta;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.BalanceSnapshot;
+import com.bank.bootcamp.savingacounts.repository.AccountRepository;
+import com.bank.bootcamp.savingacounts.repository.BalanceSnapshotRepository;
+import com.bank.bootcamp.savingacounts.repository.TransactionRepository;
+import com.bank.bootcamp.savingacounts.service.BalanceSnapshotService;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class BalanceSnapshotServiceTests {
+
+  private final AccountRepository accountRepository = mock(AccountRepository.class);
+  private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+  private final BalanceSnapshotRepository balanceSnapshotRepository = mock(BalanceSnapshotRepository.class);
+  private final BalanceSnapshotService balanceSnapshotService = new BalanceSnapshotService(accountRepository, transactionRepository,
+      balanceSnapshotRepository, mock(Environment.class));
+
+  private static Account account(String id) {
+    var account = new Account();
+    account.setId(id);
+    return account;
+  }
+
+  private static BalanceSnapshot snapshot(String accountId, long balance) {
+    var snapshot = new BalanceSnapshot();
+    snapshot.setAccountId(accountId);
+    snapshot.setAsOfRegisterDate(LocalDateTime.now().minusDays(30));
+    snapshot.setAsOfOperationNumber(5);
+    snapshot.setBalance(balance);
+    snapshot.setTransactions(3L);
+    return snapshot;
+  }
+
+  private static BalanceDelta delta(long amount, long transactions, int lastOperationNumber) {
+    var delta = new BalanceDelta();
+    delta.setAmount(amount);
+    delta.setTransactions(transactions);
+    delta.setLastRegisterDate(LocalDateTime.now().minusDays(2));
+    delta.setLastOperationNumber(lastOperationNumber);
+    return delta;
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void compactionMovesEachSnapshotForwardFromThePreviousOne() {
+    var previous = snapshot("SA-1", 10000L);
+    when(accountRepository.findAll()).thenReturn(Flux.just(account("SA-1"), account("SA-2"), account("SA-3")));
+    when(balanceSnapshotRepository.findAllById(List.of("SA-1", "SA-2", "SA-3"))).thenReturn(Flux.just(previous));
+    when(transactionRepository.sumAfter(Mockito.eq("SA-1"), Mockito.eq(previous), Mockito.any(LocalDateTime.class))).thenReturn(Mono.just(delta(3000L, 2, 9)));
+    when(transactionRepository.sumAfter(Mockito.eq("SA-2"), Mockito.isNull(), Mockito.any(LocalDateTime.class))).thenReturn(Mono.just(delta(5000L, 1, 7)));
+    when(transactionRepository.sumAfter(Mockito.eq("SA-3"), Mockito.isNull(), Mockito.any(LocalDateTime.class))).thenReturn(Mono.empty());
+    when(balanceSnapshotRepository.saveAll(Mockito.<Iterable<BalanceSnapshot>>any())).thenAnswer(invocation -> Flux.fromIterable(invocation.getArgument(0)));
+
+    var before = LocalDateTime.now();
+    StepVerifier.create(balanceSnapshotService.compact()).expectNext(2L).verifyComplete();
+
+    var saved = ArgumentCaptor.forClass(Iterable.class);
+    Mockito.verify(balanceSnapshotRepository).saveAll(saved.capture());
+    assertThat((Iterable<BalanceSnapshot>) saved.getValue())
+      .extracting(BalanceSnapshot::getAccountId, BalanceSnapshot::getBalance, BalanceSnapshot::getTransactions, BalanceSnapshot::getAsOfOperationNumber)
+      .containsExactly(
+          tuple("SA-1", 13000L, 5L, 9),
+          tuple("SA-2", 5000L, 1L, 7));
+    var until = ArgumentCaptor.forClass(LocalDateTime.class);
+    Mockito.verify(transactionRepository).sumAfter(Mockito.eq("SA-1"), Mockito.eq(previous), until.capture());
+    assertThat(until.getValue()).isBefore(before.minusHours(23));
+  }
+
+  @Test
+  public void balanceIsSnapshotPlusLaterMovements() {
+    var snapshot = snapshot("SA-1", 10000L);
+    when(balanceSnapshotRepository.findById("SA-1")).thenReturn(Mono.just(snapshot));
+    when(transactionRepository.sumAfter("SA-1", snapshot, null)).thenReturn(Mono.just(delta(-2000L, 1, 6)));
+    when(balanceSnapshotRepository.findById("SA-2")).thenReturn(Mono.empty());
+    when(transactionRepository.sumAfter("SA-2", null, null)).thenReturn(Mono.empty());
+
+    StepVerifier.create(balanceSnapshotService.getBalance("SA-1")).expectNext(8000L).verifyComplete();
+    StepVerifier.create(balanceSnapshotService.getBalance("SA-2")).expectNext(0L).verifyComplete();
+  }
+
+  @Test
+  public void verificationReportsSnapshotsThatDoNotMatchTheHistory() {
+    var good = snapshot("SA-1", 10000L);
+    var bad = snapshot("SA-2", 10000L);
+    when(accountRepository.findAll()).thenReturn(Flux.just(account("SA-1"), account("SA-2")));
+    when(balanceSnapshotRepository.findById("SA-1")).thenReturn(Mono.just(good));
+    when(balanceSnapshotRepository.findById("SA-2")).thenReturn(Mono.just(bad));
+    when(transactionRepository.sumAfter("SA-1", good, null)).thenReturn(Mono.just(delta(1000L, 1, 6)));
+    when(transactionRepository.sumAfter("SA-2", bad, null)).thenReturn(Mono.empty());
+    when(transactionRepository.getBalanceByAccountId("SA-1")).thenReturn(Mono.just(11000L));
+    when(transactionRepository.getBalanceByAccountId("SA-2")).thenReturn(Mono.just(9000L));
+
+    StepVerifier.create(balanceSnapshotService.verify())
+      .assertNext(drift -> {
+        assertThat(drift.getAccountId()).isEqualTo("SA-2");
+        assertThat(drift.getStoredBalance()).isEqualTo(10000L);
+        assertThat(drift.getComputedBalance()).isEqualTo(9000L);
+      })
+      .verifyComplete();
+  }
+}
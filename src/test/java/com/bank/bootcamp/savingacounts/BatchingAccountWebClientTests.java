@@ -0,0 +1,120 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.circuitbreaker.resilience4j.ReactiveResilience4JCircuitBreakerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import com.bank.bootcamp.savingacounts.dto.AccountType;
+import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.exception.TransactionRejectedException;
+import com.bank.bootcamp.savingacounts.service.OperationMetrics;
+import com.bank.bootcamp.savingacounts.webclient.AccountWebClient;
+import com.bank.bootcamp.savingacounts.webclient.BatchingAccountWebClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class BatchingAccountWebClientTests {
+
+  private final List<ClientRequest> requests = new CopyOnWriteArrayList<>();
+
+  private BatchingAccountWebClient client(Function<ClientRequest, ClientResponse> peer) {
+    var env = mock(Environment.class);
+    when(env.getProperty("transfer.credit-batching.window-ms")).thenReturn("50");
+    var webClient = WebClient.builder()
+        .exchangeFunction(request -> {
+          requests.add(request);
+          return Mono.just(peer.apply(request));
+        })
+        .build();
+    return new BatchingAccountWebClient(new ReactiveResilience4JCircuitBreakerFactory(), webClient, env, new OperationMetrics(new SimpleMeterRegistry()));
+  }
+
+  private static CreateTransactionDTO credit(String accountId) {
+    var dto = new CreateTransactionDTO();
+    dto.setAccountId(accountId);
+    dto.setAgent("-");
+    dto.setDescription("Transfer incoming 1");
+    dto.setAmount(1000L);
+    return dto;
+  }
+
+  private static ClientResponse json(String body) {
+    return ClientResponse.create(HttpStatus.OK)
+        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+        .body(body)
+        .build();
+  }
+
+  @Test
+  public void creditsInOneWindowShareOneRequest() {
+    var client = client(request -> json("[{\"index\":1,\"operationNumber\":21},{\"index\":0,\"operationNumber\":20},{\"index\":2,\"status\":\"REJECTED\",\"error\":\"Account not found\"},"
+        + "{\"index\":3,\"status\":\"RETRY\",\"error\":\"The account was modified concurrently, retry the operation\"}]"));
+
+    StepVerifier.create(Flux.mergeSequential(
+          client.createTransaction(AccountType.FIXED_TERM, credit("FA-1"), "TR-1").map(String::valueOf).defaultIfEmpty("none"),
+          client.createTransaction(AccountType.FIXED_TERM, credit("FA-2"), "TR-2").map(String::valueOf).defaultIfEmpty("none"),
+          client.createTransaction(AccountType.FIXED_TERM, credit("FA-3"), "TR-3").map(String::valueOf)
+              .onErrorResume(TransactionRejectedException.class, e -> Mono.just(e.getMessage())),
+          client.createTransaction(AccountType.FIXED_TERM, credit("FA-4"), "TR-4").map(String::valueOf)
+              .onErrorResume(TransactionRejectedException.class, e -> Mono.just("rejected"))
+              .onErrorResume(IllegalStateException.class, e -> Mono.just("unknown"))))
+      .expectNext("20", "21", "Account not found", "unknown")
+      .verifyComplete();
+
+    assertThat(requests).hasSize(1);
+    assertThat(requests.get(0).url().getPath()).endsWith("/transactions/batch");
+    assertThat(requests.get(0).headers().getFirst(BatchingAccountWebClient.IDEMPOTENCY_KEYS)).isEqualTo("TR-1,TR-2,TR-3,TR-4");
+    client.destroy();
+  }
+
+  @Test
+  public void peerWithoutBatchesGetsSingleCalls() {
+    var client = client(request -> request.url().getPath().endsWith("/batch")
+        ? ClientResponse.create(HttpStatus.NOT_FOUND).build()
+        : json(request.headers().getFirst("Idempotency-Key").substring(3)));
+
+    StepVerifier.create(Flux.merge(
+          client.createTransaction(AccountType.FIXED_TERM, credit("FA-1"), "TR-1"),
+          client.createTransaction(AccountType.FIXED_TERM, credit("FA-2"), "TR-2")).sort())
+      .expectNext(1, 2)
+      .verifyComplete();
+    StepVerifier.create(client.createTransaction(AccountType.FIXED_TERM, credit("FA-3"), "TR-3"))
+      .expectNext(3)
+      .verifyComplete();
+
+    // solo el primer lote se intenta por lote; el resto va directo mientras dura la espera
+    assertThat(requests.stream().filter(request -> request.url().getPath().endsWith("/batch"))).hasSize(1);
+    assertThat(requests).hasSize(4);
+    client.destroy();
+  }
+
+  @Test
+  public void onlyClientErrorsAreRejections() {
+    var webClient = WebClient.builder()
+        .exchangeFunction(request -> Mono.just(ClientResponse.create(
+            "FA-1".equals(request.headers().getFirst("Idempotency-Key")) ? HttpStatus.BAD_REQUEST : HttpStatus.SERVICE_UNAVAILABLE).build()))
+        .build();
+    var client = new AccountWebClient(new ReactiveResilience4JCircuitBreakerFactory(), webClient, new OperationMetrics(new SimpleMeterRegistry()));
+
+    StepVerifier.create(client.createTransaction(AccountType.FIXED_TERM, credit("FA-1"), "FA-1"))
+      .expectError(TransactionRejectedException.class)
+      .verify();
+    StepVerifier.create(client.createTransaction(AccountType.FIXED_TERM, credit("FA-2"), "FA-2"))
+      .expectError(WebClientResponseException.ServiceUnavailable.class)
+      .verify();
+  }
+}
@@ -0,0 +1,160 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import com.bank.bootcamp.savingacounts.dto.MovementCursor;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.entity.TransactionBucket;
+import com.bank.bootcamp.savingacounts.repository.BucketedTransactionRepository;
+import com.mongodb.client.result.UpdateResult;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class BucketedTransactionRepositoryTests {
+
+  private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+  private final Environment env = mock(Environment.class);
+  private final BucketedTransactionRepository transactionRepository;
+
+  public BucketedTransactionRepositoryTests() {
+    when(env.getProperty("transaction.bucket.max-size")).thenReturn("3");
+    when(mongoTemplate.upsert(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(TransactionBucket.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(0, 1L, null)));
+    when(mongoTemplate.updateFirst(Mockito.any(Query.class), Mockito.any(Update.class), Mockito.eq(TransactionBucket.class)))
+        .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+    transactionRepository = new BucketedTransactionRepository(mongoTemplate, env);
+  }
+
+  private static Transaction transaction(String accountId, LocalDateTime registerDate, int operationNumber, long amount) {
+    var transaction = new Transaction();
+    transaction.setAccountId(accountId);
+    transaction.setRegisterDate(registerDate);
+    transaction.setOperationNumber(operationNumber);
+    transaction.setAmount(amount);
+    return transaction;
+  }
+
+  private static TransactionBucket bucket(String yearMonth, Transaction... transactions) {
+    var bucket = new TransactionBucket();
+    bucket.setId(new ObjectId().toHexString());
+    bucket.setAccountId("SA-1");
+    bucket.setYearMonth(yearMonth);
+    bucket.setCount(transactions.length);
+    bucket.setTransactions(new ArrayList<>(List.of(transactions)));
+    return bucket;
+  }
+
+  @Test
+  public void movementsArePushedToTheOpenBucketOfTheirMonthWithCountAndTotal() {
+    var march = LocalDateTime.of(2022, 3, 10, 12, 0);
+    var transactions = IntStream.rangeClosed(1, 4)
+        .mapToObj(operationNumber -> transaction("SA-1", march.plusHours(operationNumber), operationNumber, 1000L * operationNumber))
+        .collect(Collectors.toList());
+    transactions.add(transaction("SA-1", march.plusMonths(1), 5, -500L));
+
+    StepVerifier.create(transactionRepository.saveAll(transactions)).expectNextCount(5).verifyComplete();
+
+    assertThat(transactions).allMatch(transaction -> ObjectId.isValid(transaction.getId()));
+    var query = ArgumentCaptor.forClass(Query.class);
+    var update = ArgumentCaptor.forClass(Update.class);
+    Mockito.verify(mongoTemplate, Mockito.times(3)).upsert(query.capture(), update.capture(), Mockito.eq(TransactionBucket.class));
+    // marzo no entra en un bucket de 3: se divide en 3 + 1, y abril va aparte
+    assertThat(query.getAllValues()).extracting(Query::getQueryObject).containsExactly(
+        new Document("accountId", "SA-1").append("yearMonth", "2022-03").append("count", new Document("$lte", 0)),
+        new Document("accountId", "SA-1").append("yearMonth", "2022-03").append("count", new Document("$lte", 2)),
+        new Document("accountId", "SA-1").append("yearMonth", "2022-04").append("count", new Document("$lte", 2)));
+    var first = update.getAllValues().get(0).getUpdateObject();
+    assertThat(first.get("$inc", Document.class)).isEqualTo(new Document("count", 3).append("total", 6000L));
+    assertThat(first.get("$min", Document.class).get("firstRegisterDate")).isEqualTo(march.plusHours(1));
+    assertThat(first.get("$max", Document.class).get("lastRegisterDate")).isEqualTo(march.plusHours(3));
+  }
+
+  @Test
+  public void readsReturnTheMovementsOfEachMonthInRegisterOrder() {
+    var march = LocalDateTime.of(2022, 3, 10, 12, 0);
+    var late = transaction("SA-1", march.minusDays(5), 1, 1000L);
+    var early = transaction("SA-1", march, 2, 2000L);
+    var same = transaction("SA-1", march, 3, 3000L);
+    var april = transaction("SA-1", march.plusMonths(1), 4, 4000L);
+    when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(TransactionBucket.class)))
+        .thenReturn(Flux.just(bucket("2022-03", same, early), bucket("2022-03", late), bucket("2022-04", april)));
+
+    StepVerifier.create(transactionRepository.findByAccountIdAndRegisterDateBetween("SA-1", march.minusMonths(1), march.plusMonths(1)))
+      .expectNext(late, early, same)
+      .verifyComplete();
+  }
+
+  @Test
+  public void pageStartsAtTheMonthOfItsCursorAndIsLimitedByMongo() {
+    var after = new MovementCursor(LocalDateTime.of(2022, 3, 10, 12, 0), 7);
+    var next = transaction("SA-1", after.getRegisterDate(), 8, 1000L);
+    when(mongoTemplate.aggregate(Mockito.any(Aggregation.class), Mockito.eq(TransactionBucket.class), Mockito.eq(Transaction.class)))
+        .thenReturn(Flux.just(next));
+
+    StepVerifier.create(transactionRepository.findPageByAccountIdAndPeriod("SA-1",
+        LocalDateTime.of(2022, 1, 1, 0, 0), LocalDateTime.of(2022, 6, 1, 0, 0), after, 20))
+        .expectNext(next)
+        .verifyComplete();
+
+    var aggregation = ArgumentCaptor.forClass(Aggregation.class);
+    Mockito.verify(mongoTemplate).aggregate(aggregation.capture(), Mockito.eq(TransactionBucket.class), Mockito.eq(Transaction.class));
+    Mockito.verify(mongoTemplate, Mockito.never()).find(Mockito.any(Query.class), Mockito.eq(TransactionBucket.class));
+    var pipeline = aggregation.getValue().toPipeline(Aggregation.DEFAULT_CONTEXT);
+    assertThat(pipeline.get(0).get("$match", Document.class).get("yearMonth", Document.class))
+        .isEqualTo(new Document("$gte", "2022-03").append("$lte", "2022-06"));
+    assertThat(pipeline).extracting(stage -> stage.keySet().iterator().next())
+        .containsExactly("$match", "$unwind", "$match", "$sort", "$limit", "$replaceRoot");
+    assertThat(pipeline.get(4).get("$limit")).isEqualTo(20L);
+  }
+
+  @Test
+  public void findAllSortsByAnyProperty() {
+    var march = LocalDateTime.of(2022, 3, 10, 12, 0);
+    var small = transaction("SA-1", march, 1, 1000L);
+    var large = transaction("SA-1", march.plusDays(1), 2, 3000L);
+    var middle = transaction("SA-1", march.plusMonths(1), 3, 2000L);
+    when(mongoTemplate.find(Mockito.any(Query.class), Mockito.eq(TransactionBucket.class)))
+        .thenReturn(Flux.just(bucket("2022-03", large, small), bucket("2022-04", middle)));
+
+    StepVerifier.create(transactionRepository.findAll(Sort.by(Sort.Direction.DESC, "amount")))
+      .expectNext(large, middle, small)
+      .verifyComplete();
+    StepVerifier.create(transactionRepository.findAll(Sort.unsorted()))
+      .expectNext(small, large, middle)
+      .verifyComplete();
+  }
+
+  @Test
+  public void deletingAMovementTakesItOutOfTheBucketTotals() {
+    var transaction = transaction("SA-1", LocalDateTime.now(), 1, 2500L);
+    transaction.setId(new ObjectId().toHexString());
+    var bucket = bucket("2022-03", transaction);
+    when(mongoTemplate.findOne(Mockito.any(Query.class), Mockito.eq(TransactionBucket.class))).thenReturn(Mono.just(bucket));
+
+    StepVerifier.create(transactionRepository.deleteById(transaction.getId())).verifyComplete();
+
+    var query = ArgumentCaptor.forClass(Query.class);
+    var update = ArgumentCaptor.forClass(Update.class);
+    Mockito.verify(mongoTemplate).updateFirst(query.capture(), update.capture(), Mockito.eq(TransactionBucket.class));
+    assertThat(query.getValue().getQueryObject().get("transactions._id")).isEqualTo(new ObjectId(transaction.getId()));
+    assertThat(update.getValue().getUpdateObject().get("$inc", Document.class)).isEqualTo(new Document("count", -1).append("total", -2500L));
+  }
+}
@@ -0,0 +1,58 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.Environment;
+import com.bank.bootcamp.savingacounts.dto.BalanceDTO;
+import com.bank.bootcamp.savingacounts.exception.BankValidationException;
+import com.bank.bootcamp.savingacounts.service.CreditCheckCache;
+import com.bank.bootcamp.savingacounts.webclient.CreditWebClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+public class CreditCheckCacheTests {
+
+  private final CreditWebClient creditWebClient = mock(CreditWebClient.class);
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final CreditCheckCache creditCheckCache = new CreditCheckCache(creditWebClient, mock(Environment.class), meterRegistry);
+
+  @Test
+  public void concurrentChecksShareOneCall() {
+    when(creditWebClient.getAllBalances("C-001")).thenReturn(Flux.just(new BalanceDTO()).delayElements(Duration.ofMillis(100)));
+
+    StepVerifier.create(Flux.merge(creditCheckCache.getAllBalances("C-001"), creditCheckCache.getAllBalances("C-001"), creditCheckCache.getAllBalances("C-001")))
+      .expectNextCount(3)
+      .verifyComplete();
+    StepVerifier.create(creditCheckCache.getAllBalances("C-001")).expectNextCount(1).verifyComplete();
+
+    verify(creditWebClient, times(1)).getAllBalances("C-001");
+    assertThat(meterRegistry.get("cache.gets").tag("cache", "creditChecks").tag("result", "hit").functionCounter().count()).isEqualTo(3d);
+  }
+
+  @Test
+  public void customersWithoutCreditsAreCachedAsNegative() {
+    when(creditWebClient.getAllBalances("C-002")).thenReturn(Flux.empty());
+
+    StepVerifier.create(creditCheckCache.getAllBalances("C-002")).verifyComplete();
+    StepVerifier.create(creditCheckCache.getAllBalances("C-002")).verifyComplete();
+
+    verify(creditWebClient, times(1)).getAllBalances("C-002");
+  }
+
+  @Test
+  public void failedChecksAreNotCached() {
+    when(creditWebClient.getAllBalances("C-003"))
+      .thenReturn(Flux.error(new BankValidationException("The credit service is not available, try again later")), Flux.just(new BalanceDTO()));
+
+    StepVerifier.create(creditCheckCache.getAllBalances("C-003")).expectErrorMessage("The credit service is not available, try again later").verify();
+    StepVerifier.create(creditCheckCache.getAllBalances("C-003")).expectNextCount(1).verifyComplete();
+
+    verify(creditWebClient, times(2)).getAllBalances("C-003");
+  }
+}
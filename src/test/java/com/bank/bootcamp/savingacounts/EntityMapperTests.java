@@ -0,0 +1,60 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import com.bank.bootcamp.savingacounts.dto.CreateAccountDTO;
+import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.mapper.EntityMapper;
+
+/**
+ * Pins the hand written mappers to what ModelMapper produced, except for the ID that ModelMapper
+ * wrongly filled from customerId/accountId.
+ */
+public class EntityMapperTests {
+
+  private final ModelMapper modelMapper = new ModelMapper();
+
+  @Test
+  public void accountMatchesModelMapperExceptId() {
+    var dto = new CreateAccountDTO();
+    dto.setCustomerId("customer-1");
+    dto.setMonthlyMovementLimit(7);
+    dto.setOpeningAmount(15000L);
+    dto.setProfile("VIP");
+    
+    var expected = modelMapper.map(dto, Account.class);
+    var account = EntityMapper.toAccount(dto);
+    
+    assertThat(account).usingRecursiveComparison().ignoringFields("id").isEqualTo(expected);
+    assertThat(expected.getId()).isEqualTo("customer-1");
+    assertThat(account.getId()).isNull();
+  }
+
+  @Test
+  public void transactionMatchesModelMapperExceptId() {
+    var dto = new CreateTransactionDTO();
+    dto.setAccountId("account-1");
+    dto.setAgent("agent");
+    dto.setDescription("Deposit");
+    dto.setAmount(-2550L);
+    dto.setCreateByComission(Boolean.TRUE);
+    
+    var expected = modelMapper.map(dto, Transaction.class);
+    var transaction = EntityMapper.toTransaction(dto);
+    
+    assertThat(transaction).usingRecursiveComparison().ignoringFields("id").isEqualTo(expected);
+    assertThat(expected.getId()).isEqualTo("account-1");
+    assertThat(transaction.getId()).isNull();
+  }
+
+  @Test
+  public void emptyDTOsMapToEmptyEntities() {
+    assertThat(EntityMapper.toAccount(new CreateAccountDTO()))
+      .usingRecursiveComparison().isEqualTo(modelMapper.map(new CreateAccountDTO(), Account.class));
+    assertThat(EntityMapper.toTransaction(new CreateTransactionDTO()))
+      .usingRecursiveComparison().isEqualTo(modelMapper.map(new CreateTransactionDTO(), Transaction.class));
+  }
+}
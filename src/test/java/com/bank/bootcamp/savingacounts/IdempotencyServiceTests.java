@@ -0,0 +1,131 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.util.DigestUtils;
+import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.entity.IdempotencyRecord;
+import com.bank.bootcamp.savingacounts.exception.BankValidationException;
+import com.bank.bootcamp.savingacounts.repository.IdempotencyRecordRepository;
+import com.bank.bootcamp.savingacounts.service.IdempotencyService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+public class IdempotencyServiceTests {
+
+  private final IdempotencyRecordRepository idempotencyRecordRepository = mock(IdempotencyRecordRepository.class);
+  private final IdempotencyService idempotencyService = new IdempotencyService(idempotencyRecordRepository, mock(Environment.class), new SimpleMeterRegistry());
+
+  public IdempotencyServiceTests() {
+    when(idempotencyRecordRepository.insert(Mockito.any(IdempotencyRecord.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+    when(idempotencyRecordRepository.save(Mockito.any(IdempotencyRecord.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+    when(idempotencyRecordRepository.deleteById(Mockito.anyString())).thenReturn(Mono.empty());
+  }
+
+  private static CreateTransactionDTO deposit(long amount) {
+    var dto = new CreateTransactionDTO();
+    dto.setAccountId("SA-1");
+    dto.setAgent("-");
+    dto.setAmount(amount);
+    return dto;
+  }
+
+  @Test
+  public void concurrentAndLaterRepeatsShareTheFirstResult() {
+    var executions = new AtomicInteger();
+    var ledger = Sinks.<String>one();
+    var first = idempotencyService.execute("createTransaction", "K-1", deposit(1000L),
+        () -> Mono.defer(() -> { executions.incrementAndGet(); return ledger.asMono(); })).toFuture();
+    var concurrent = idempotencyService.execute("createTransaction", "K-1", deposit(1000L),
+        () -> Mono.defer(() -> { executions.incrementAndGet(); return Mono.just("99"); })).toFuture();
+    assertThat(concurrent).isNotDone();
+
+    ledger.tryEmitValue("41");
+    assertThat(first.join()).isEqualTo("41");
+    assertThat(concurrent.join()).isEqualTo("41");
+    StepVerifier.create(idempotencyService.execute("createTransaction", "K-1", deposit(1000L), () -> Mono.just("99")))
+      .expectNext("41")
+      .verifyComplete();
+
+    assertThat(executions.get()).isEqualTo(1);
+    var saved = ArgumentCaptor.forClass(IdempotencyRecord.class);
+    Mockito.verify(idempotencyRecordRepository).save(saved.capture());
+    assertThat(saved.getValue().getId()).isEqualTo("createTransaction:K-1");
+    assertThat(saved.getValue().getResult()).isEqualTo("41");
+    assertThat(saved.getValue().getExpiresAt()).isAfter(LocalDateTime.now().plusHours(23));
+  }
+
+  @Test
+  public void keyReusedForAnotherRequestIsRejected() {
+    idempotencyService.execute("createTransaction", "K-2", deposit(1000L), () -> Mono.just("7")).block();
+
+    StepVerifier.create(idempotencyService.execute("createTransaction", "K-2", deposit(2000L), () -> Mono.just("8")))
+      .expectError(BankValidationException.class)
+      .verify();
+  }
+
+  @Test
+  public void keyTakenByAnotherInstanceWaitsForItsResult() {
+    when(idempotencyRecordRepository.insert(Mockito.any(IdempotencyRecord.class))).thenReturn(Mono.error(new DuplicateKeyException("E11000")));
+    var pending = new IdempotencyRecord();
+    var completed = new IdempotencyRecord();
+    completed.setResult("15");
+    completed.setFingerprint(idempotencyFingerprintOf(deposit(1000L)));
+    var reads = new AtomicInteger();
+    when(idempotencyRecordRepository.findById("createTransaction:K-3"))
+        .thenReturn(Mono.defer(() -> Mono.just(reads.incrementAndGet() == 1 ? pending : completed)));
+
+    StepVerifier.create(idempotencyService.execute("createTransaction", "K-3", deposit(1000L), () -> Mono.error(new IllegalStateException())))
+      .expectNext("15")
+      .verifyComplete();
+  }
+
+  @Test
+  public void failedOperationFreesTheKey() {
+    StepVerifier.create(idempotencyService.execute("transfer", "K-4", deposit(1000L), () -> Mono.error(new BankValidationException("Insuficient balance"))))
+      .expectError(BankValidationException.class)
+      .verify();
+    Mockito.verify(idempotencyRecordRepository).deleteById("transfer:K-4");
+
+    StepVerifier.create(idempotencyService.execute("transfer", "K-4", deposit(1000L), () -> Mono.just("T-1")))
+      .expectNext("T-1")
+      .verifyComplete();
+  }
+
+  @Test
+  public void waiterTakesTheKeyFreedByAFailedOwner() {
+    var inserts = new AtomicInteger();
+    when(idempotencyRecordRepository.insert(Mockito.any(IdempotencyRecord.class))).thenAnswer(invocation -> inserts.incrementAndGet() == 1
+        ? Mono.error(new DuplicateKeyException("E11000"))
+        : Mono.just(invocation.getArgument(0)));
+    when(idempotencyRecordRepository.findById("transfer:K-5")).thenReturn(Mono.empty());
+
+    StepVerifier.create(idempotencyService.execute("transfer", "K-5", deposit(1000L), () -> Mono.just("T-5")))
+      .expectNext("T-5")
+      .verifyComplete();
+    Mockito.verify(idempotencyRecordRepository, Mockito.times(2)).insert(Mockito.any(IdempotencyRecord.class));
+  }
+
+  @Test
+  public void emptyResultFreesTheKey() {
+    StepVerifier.create(idempotencyService.execute("transfer", "K-6", deposit(1000L), Mono::empty))
+      .expectError(IllegalStateException.class)
+      .verify();
+    Mockito.verify(idempotencyRecordRepository).deleteById("transfer:K-6");
+  }
+
+  private static String idempotencyFingerprintOf(Object request) {
+    return DigestUtils.md5DigestAsHex(String.valueOf(request).getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,43 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import java.math.BigDecimal;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.mapper.MinorUnits;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+
+public class MinorUnitsTests {
+
+  private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+  @Test
+  public void decimalAmountsAreReadAsExactCents() throws Exception {
+    var dto = objectMapper.readValue("{\"accountId\":\"SA-1\",\"amount\":0.29}", CreateTransactionDTO.class);
+    assertThat(dto.getAmount()).isEqualTo(29L);
+    assertThat(objectMapper.readValue("{\"amount\":-150}", CreateTransactionDTO.class).getAmount()).isEqualTo(-15000L);
+
+    var sum = 0L;
+    for (var i = 0; i < 10; i++)
+      sum += objectMapper.readValue("{\"amount\":0.1}", CreateTransactionDTO.class).getAmount();
+    assertThat(sum).isEqualTo(MinorUnits.of(BigDecimal.ONE));
+  }
+
+  @Test
+  public void fractionsOfACentAreRejected() {
+    assertThatThrownBy(() -> objectMapper.readValue("{\"amount\":10.005}", CreateTransactionDTO.class))
+      .isInstanceOf(InvalidFormatException.class);
+  }
+
+  @Test
+  public void centsAreWrittenAsDecimals() throws Exception {
+    var transaction = new Transaction();
+    transaction.setAmount(-1005L);
+    assertThat(objectMapper.writeValueAsString(transaction)).contains("\"amount\":-10.05");
+    assertThat(MinorUnits.toDecimal(1000L)).isEqualByComparingTo("10");
+  }
+}
@@ -0,0 +1,104 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.env.Environment;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.exception.BankValidationException;
+import com.bank.bootcamp.savingacounts.repository.MonthlyAccountSummaryRepository;
+import com.bank.bootcamp.savingacounts.repository.TransactionRepository;
+import com.bank.bootcamp.savingacounts.service.AccountExecutionLanes;
+import com.bank.bootcamp.savingacounts.service.MonthlySummaryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+public class MonthlySummaryServiceTests {
+
+  private final MonthlyAccountSummaryRepository monthlySummaryRepository = mock(MonthlyAccountSummaryRepository.class);
+  private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+  private final AccountExecutionLanes executionLanes = new AccountExecutionLanes(mock(Environment.class), new SimpleMeterRegistry());
+  private final MonthlySummaryService service = new MonthlySummaryService(monthlySummaryRepository, transactionRepository, executionLanes);
+
+  private Transaction transaction(String accountId, LocalDateTime registerDate, String description, Long amount) {
+    var tx = new Transaction();
+    tx.setAccountId(accountId);
+    tx.setRegisterDate(registerDate);
+    tx.setDescription(description);
+    tx.setAmount(amount);
+    return tx;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void storeTransactions(Transaction... transactions) {
+    when(transactionRepository.findAllByOrderByAccountIdAscRegisterDateAscOperationNumberAsc()).thenReturn(Flux.just(transactions));
+    Stream.of(transactions).map(Transaction::getAccountId).distinct().forEach(accountId ->
+        when(transactionRepository.findByAccountIdOrderByRegisterDateAscOperationNumberAsc(accountId))
+            .thenReturn(Flux.just(transactions).filter(tx -> accountId.equals(tx.getAccountId()))));
+    when(monthlySummaryRepository.saveAll(Mockito.anyIterable())).thenAnswer(invocation -> Flux.fromIterable((Iterable<MonthlyAccountSummary>) invocation.getArgument(0)));
+    when(monthlySummaryRepository.deleteByAccountIdAndIdNotIn(Mockito.anyString(), Mockito.anyCollection())).thenReturn(Mono.just(0L));
+  }
+
+  @Test
+  public void rebuildSplitsAmountsAndCarriesClosingBalanceAcrossMonths() {
+    storeTransactions(
+        transaction("SA-001", LocalDateTime.of(2022, 4, 2, 10, 0), "Opening account", 10000L),
+        transaction("SA-001", LocalDateTime.of(2022, 4, 20, 10, 0), "Transfer sent", -3000L),
+        transaction("SA-001", LocalDateTime.of(2022, 4, 20, 10, 0), "Maintenance comission by limit transactions", -3015L),
+        transaction("SA-001", LocalDateTime.of(2022, 5, 1, 9, 0), "Deposit", 1000L),
+        transaction("SA-002", LocalDateTime.of(2022, 5, 3, 9, 0), "Opening account", 5000L));
+
+    StepVerifier.create(service.rebuild(null).collectList())
+      .assertNext(summaries -> {
+        assertThat(summaries).extracting(MonthlyAccountSummary::getId).containsExactly("SA-001:2022-04", "SA-001:2022-05", "SA-002:2022-05");
+        assertThat(summaries).extracting(MonthlyAccountSummary::getCount).containsExactly(3L, 1L, 1L);
+        assertThat(summaries).extracting(MonthlyAccountSummary::getCredits).containsExactly(10000L, 1000L, 5000L);
+        assertThat(summaries).extracting(MonthlyAccountSummary::getDebits).containsExactly(3000L, 0L, 0L);
+        assertThat(summaries).extracting(MonthlyAccountSummary::getComissions).containsExactly(3015L, 0L, 0L);
+        assertThat(summaries.get(0).getClosingBalance()).isEqualTo(3985L);
+        assertThat(summaries.get(1).getClosingBalance()).isEqualTo(4985L);
+        assertThat(summaries.get(2).getClosingBalance()).isEqualTo(5000L);
+      }).verifyComplete();
+
+    Mockito.verify(monthlySummaryRepository).deleteByAccountIdAndIdNotIn("SA-001", List.of("SA-001:2022-04", "SA-001:2022-05"));
+    Mockito.verify(monthlySummaryRepository).deleteByAccountIdAndIdNotIn("SA-002", List.of("SA-002:2022-05"));
+  }
+
+  @Test
+  public void rebuildWaitsForTheMovementsRunningOnTheAccount() {
+    storeTransactions(transaction("SA-001", LocalDateTime.of(2022, 5, 1, 9, 0), "Deposit", 1000L));
+    var movement = Sinks.<String>one();
+    executionLanes.submit("SA-001", movement::asMono).subscribe();
+
+    var rebuilt = service.rebuild("SA-001").collectList().toFuture();
+    Mockito.verifyNoInteractions(monthlySummaryRepository);
+    Mockito.verify(transactionRepository, Mockito.never()).findByAccountIdOrderByRegisterDateAscOperationNumberAsc("SA-001");
+
+    movement.tryEmitValue("registered");
+    assertThat(rebuilt.join()).extracting(MonthlyAccountSummary::getCount).containsExactly(1L);
+  }
+
+  @Test
+  public void summaryOfMonthWithoutMovementsIsEmpty() {
+    when(monthlySummaryRepository.findById("SA-001:2022-06")).thenReturn(Mono.empty());
+
+    StepVerifier.create(service.getSummary("SA-001", 2022, 6))
+      .assertNext(summary -> {
+        assertThat(summary.getYearMonth()).isEqualTo(YearMonth.of(2022, 6).toString());
+        assertThat(summary.getCount()).isZero();
+        assertThat(summary.getClosingBalance()).isNull();
+      }).verifyComplete();
+
+    StepVerifier.create(service.getSummary("SA-001", 2022, 13)).expectError(BankValidationException.class).verify();
+  }
+}
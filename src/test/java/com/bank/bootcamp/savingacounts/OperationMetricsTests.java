@@ -0,0 +1,56 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.Test;
+import com.bank.bootcamp.savingacounts.exception.BankValidationException;
+import com.bank.bootcamp.savingacounts.service.OperationMetrics;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.test.StepVerifier;
+
+public class OperationMetricsTests {
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final OperationMetrics metrics = new OperationMetrics(meterRegistry);
+
+  private long stageCount(String stage, String outcome) {
+    return meterRegistry.get("account.operation.stage")
+        .tag("operation", "createTransaction").tag("stage", stage).tag("outcome", outcome)
+        .timer().count();
+  }
+
+  @Test
+  public void stagesAreTimedByOutcome() {
+    StepVerifier.create(metrics.stage("createTransaction", "account-lookup", Mono.just(1))).expectNext(1).verifyComplete();
+    StepVerifier.create(metrics.stage("createTransaction", "account-lookup", Mono.empty())).verifyComplete();
+    StepVerifier.create(metrics.stage("createTransaction", "save", Mono.error(new IllegalStateException()))).verifyError();
+    
+    assertThat(stageCount("account-lookup", "success")).isEqualTo(1);
+    assertThat(stageCount("account-lookup", "empty")).isEqualTo(1);
+    assertThat(stageCount("save", "error")).isEqualTo(1);
+  }
+
+  @Test
+  public void rejectionsAreCountedByReasonWithoutNumbers() {
+    var operation = metrics.operation("createTransaction",
+        Mono.error(new BankValidationException("You can only register a maximum of 5 monthly movements")));
+    StepVerifier.create(operation).verifyError(BankValidationException.class);
+    
+    assertThat(meterRegistry.get("account.operation").tag("outcome", "rejected").timer().count()).isEqualTo(1);
+    assertThat(meterRegistry.get("account.operation.rejections")
+        .tag("reason", "You can only register a maximum of N monthly movements")
+        .counter().count()).isEqualTo(1d);
+  }
+
+  @Test
+  public void remoteCallsRecordTheCircuitBreakerOutcome() {
+    var call = metrics.remoteCall("credits", "getAllBalances");
+    call.fallback(CallNotPermittedException.createCallNotPermittedException(CircuitBreaker.ofDefaults("products")));
+    call.stop(SignalType.ON_COMPLETE);
+    
+    assertThat(meterRegistry.get("account.remote.call").tag("client", "credits").tag("outcome", "circuit_open").timer().count()).isEqualTo(1);
+  }
+}
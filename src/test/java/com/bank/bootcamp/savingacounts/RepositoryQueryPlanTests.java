@@ -0,0 +1,167 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import com.bank.bootcamp.savingacounts.config.MongoIndexInitializer;
+import com.bank.bootcamp.savingacounts.dto.MovementCursor;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.BalanceSnapshot;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.repository.AccountRepository;
+import com.bank.bootcamp.savingacounts.repository.AccountRepositoryCustomImpl;
+import com.bank.bootcamp.savingacounts.repository.TransactionRepository;
+import com.bank.bootcamp.savingacounts.repository.TransactionRepositoryCustomImpl;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.reactivestreams.client.MongoClient;
+import com.mongodb.reactivestreams.client.MongoClients;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Runs every repository query against a real MongoDB and fails when its winning plan is a
+ * collection scan. Needs a disposable local server: {@code mvn test -Dmongodb.test.uri=mongodb://localhost:27017}.
+ */
+@EnabledIfSystemProperty(named = "mongodb.test.uri", matches = ".+")
+public class RepositoryQueryPlanTests {
+
+  private static final String DATABASE = "saving-accounts-query-plans";
+  private static final Set<String> SESSION_FIELDS = Set.of("lsid", "$db", "$clusterTime", "$readPreference", "txnNumber");
+
+  private static final List<BsonDocument> commands = new CopyOnWriteArrayList<>();
+  private static MongoClient client;
+  private static ReactiveMongoTemplate mongoTemplate;
+  private static AccountRepository accountRepository;
+  private static TransactionRepository transactionRepository;
+
+  @BeforeAll
+  public static void setup() {
+    var settings = MongoClientSettings.builder()
+        .applyConnectionString(new ConnectionString(System.getProperty("mongodb.test.uri")))
+        .addCommandListener(new CommandListener() {
+          @Override
+          public void commandStarted(CommandStartedEvent event) {
+            if (DATABASE.equals(event.getDatabaseName()) && Set.of("find", "aggregate").contains(event.getCommandName()))
+              commands.add(event.getCommand().clone());
+          }
+        })
+        .build();
+    client = MongoClients.create(settings);
+    mongoTemplate = new ReactiveMongoTemplate(client, DATABASE);
+    mongoTemplate.getMongoDatabase().flatMap(db -> Mono.from(db.drop())).block();
+    new MongoIndexInitializer(mongoTemplate).ensureIndexes().block();
+    
+    var factory = new ReactiveMongoRepositoryFactory(mongoTemplate);
+    accountRepository = factory.getRepository(AccountRepository.class, new AccountRepositoryCustomImpl(mongoTemplate));
+    transactionRepository = factory.getRepository(TransactionRepository.class, new TransactionRepositoryCustomImpl(mongoTemplate));
+    seed();
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    client.close();
+  }
+
+  private static void seed() {
+    var accounts = new ArrayList<Account>();
+    var transactions = new ArrayList<Transaction>();
+    for (int i = 0; i < 50; i++) {
+      var account = new Account();
+      account.setCustomerId("customer-" + i);
+      account.setMonthlyMovementLimit(10);
+      account.setBalance(0L);
+      accounts.add(account);
+    }
+    Flux.fromIterable(accounts).concatMap(mongoTemplate::insert).collectList().block();
+    var operationNumber = 1;
+    for (var account : accounts) {
+      for (int i = 0; i < 20; i++) {
+        var transaction = new Transaction();
+        transaction.setAccountId(account.getId());
+        transaction.setOperationNumber(operationNumber++);
+        transaction.setRegisterDate(LocalDateTime.now().minusDays(i));
+        transaction.setAmount(1000L);
+        transaction.setAgent("-");
+        transaction.setDescription("Seed");
+        transactions.add(transaction);
+      }
+    }
+    mongoTemplate.insertAll(transactions).collectList().block();
+    commands.clear();
+  }
+
+  @Test
+  public void repositoryQueriesUseIndexes() {
+    var account = accountRepository.findByCustomerId("customer-7").block();
+    accountRepository.findByCustomerIdIn(List.of("customer-7", "customer-8")).collectList().block();
+    var yearMonth = YearMonth.now();
+    accountRepository.findById(account.getId()).block();
+    transactionRepository.findByAccountId(account.getId()).collectList().block();
+    transactionRepository.findByAccountIdAndRegisterDateBetween(account.getId(),
+        yearMonth.atDay(1).atStartOfDay(), yearMonth.atEndOfMonth().atTime(23, 59, 59)).collectList().block();
+    transactionRepository.getBalanceByAccountId(account.getId()).block();
+    var settled = transactionRepository.sumAfter(account.getId(), null, LocalDateTime.now().minusDays(10)).block();
+    var snapshot = new BalanceSnapshot();
+    snapshot.setAsOfRegisterDate(settled.getLastRegisterDate());
+    snapshot.setAsOfOperationNumber(settled.getLastOperationNumber());
+    transactionRepository.sumAfter(account.getId(), snapshot, null).block();
+    accountRepository.findBalancesByCustomerId("customer-7", yearMonth).collectList().block();
+    var firstPage = transactionRepository.findPageByAccountIdAndPeriod(account.getId(),
+        yearMonth.atDay(1).atStartOfDay(), yearMonth.plusMonths(1).atDay(1).atStartOfDay(), null, 5).collectList().block();
+    transactionRepository.findPageByAccountIdAndPeriod(account.getId(),
+        yearMonth.atDay(1).atStartOfDay(), yearMonth.plusMonths(1).atDay(1).atStartOfDay(), MovementCursor.of(firstPage.get(firstPage.size() - 1)), 5).collectList().block();
+    transactionRepository.streamByPeriod(LocalDateTime.now().minusDays(2), LocalDateTime.now(), 100).collectList().block();
+    
+    assertThat(commands).isNotEmpty();
+    for (var command : commands) {
+      var explain = explain(command);
+      assertThat(winningPlanStages(explain))
+        .as("plan for %s", command.toJson())
+        .isNotEmpty()
+        .doesNotContain("COLLSCAN");
+    }
+  }
+
+  private Document explain(BsonDocument command) {
+    var explained = command.clone();
+    SESSION_FIELDS.forEach(explained::remove);
+    var explain = new BsonDocument("explain", explained).append("verbosity", new BsonString("queryPlanner"));
+    return mongoTemplate.getMongoDatabase().flatMap(db -> Mono.from(db.runCommand(explain))).block();
+  }
+
+  private List<String> winningPlanStages(Object node) {
+    var stages = new ArrayList<String>();
+    collectStages(node, false, stages);
+    return stages;
+  }
+
+  private void collectStages(Object node, boolean inWinningPlan, List<String> stages) {
+    if (node instanceof Document) {
+      var document = (Document) node;
+      if (inWinningPlan && document.get("stage") instanceof String)
+        stages.add(document.getString("stage"));
+      document.forEach((key, value) -> {
+        if (!"rejectedPlans".equals(key))
+          collectStages(value, inWinningPlan || "winningPlan".equals(key), stages);
+      });
+    } else if (node instanceof List) {
+      ((List<?>) node).forEach(item -> collectStages(item, inWinningPlan, stages));
+    }
+  }
+}
@@ -5,26 +5,40 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.util.UUID;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.modelmapper.ModelMapper;
 import org.springframework.core.env.Environment;
+import com.bank.bootcamp.savingacounts.dto.AccountBalanceView;
 import com.bank.bootcamp.savingacounts.dto.AccountType;
 import com.bank.bootcamp.savingacounts.dto.BalanceDTO;
 import com.bank.bootcamp.savingacounts.dto.CreateAccountDTO;
 import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.dto.MovementCursor;
 import com.bank.bootcamp.savingacounts.dto.TransferDTO;
+import com.bank.bootcamp.savingacounts.dto.TransferStatus;
 import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
 import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.entity.Transfer;
 import com.bank.bootcamp.savingacounts.exception.BankValidationException;
 import com.bank.bootcamp.savingacounts.repository.AccountRepository;
+import com.bank.bootcamp.savingacounts.repository.MonthlyAccountSummaryRepository;
 import com.bank.bootcamp.savingacounts.repository.TransactionRepository;
+import com.bank.bootcamp.savingacounts.repository.TransferRepository;
+import com.bank.bootcamp.savingacounts.service.AccountCache;
+import com.bank.bootcamp.savingacounts.service.AccountExecutionLanes;
 import com.bank.bootcamp.savingacounts.service.AccountService;
+import com.bank.bootcamp.savingacounts.service.BalanceSnapshotService;
+import com.bank.bootcamp.savingacounts.service.CreditCheckCache;
 import com.bank.bootcamp.savingacounts.service.NextSequenceService;
-import com.bank.bootcamp.savingacounts.webclient.AccountWebClient;
+import com.bank.bootcamp.savingacounts.service.OperationMetrics;
 import com.bank.bootcamp.savingacounts.webclient.CreditWebClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -33,23 +47,46 @@ public class SavingAcountsApplicationTests {
 
   private static AccountService accountService;
   private static AccountRepository accountRepository;
+  private static AccountCache accountCache;
   private static TransactionRepository transactionRepository;
+  private static MonthlyAccountSummaryRepository monthlySummaryRepository;
   private static NextSequenceService nextSequenceService;
   private ModelMapper mapper = new ModelMapper();
   private static Environment env;
   private static CreditWebClient creditWebClient;
-  private static AccountWebClient accountWebClient;
+  private static CreditCheckCache creditCheckCache;
+  private static TransferRepository transferRepository;
   
   @BeforeAll
   public static void setup() {
     accountRepository = mock(AccountRepository.class);
     transactionRepository = mock(TransactionRepository.class);
+    monthlySummaryRepository = mock(MonthlyAccountSummaryRepository.class);
     nextSequenceService = mock(NextSequenceService.class);
     env = mock(Environment.class);
     creditWebClient = mock(CreditWebClient.class);
-    accountWebClient = mock(AccountWebClient.class);
-    accountService = new AccountService(accountRepository, transactionRepository, nextSequenceService, env, creditWebClient, accountWebClient);
+    creditCheckCache = new CreditCheckCache(creditWebClient, env, new SimpleMeterRegistry());
+    transferRepository = mock(TransferRepository.class);
+    accountCache = new AccountCache(accountRepository, env, new SimpleMeterRegistry());
+    accountService = new AccountService(accountRepository, accountCache, transactionRepository, monthlySummaryRepository, nextSequenceService, env, creditCheckCache, transferRepository, mock(BalanceSnapshotService.class),
+        new AccountExecutionLanes(env, new SimpleMeterRegistry()), new OperationMetrics(new SimpleMeterRegistry()));
     when(nextSequenceService.getNextSequence("TransactionSequences")).thenReturn(Mono.just(1));
+    when(monthlySummaryRepository.existsById(Mockito.anyString())).thenReturn(Mono.just(true));
+    when(monthlySummaryRepository.increment(Mockito.anyString(), Mockito.any(YearMonth.class), Mockito.anyInt())).thenReturn(Mono.just(new MonthlyAccountSummary()));
+    when(monthlySummaryRepository.record(Mockito.anyString(), Mockito.any(YearMonth.class), Mockito.anyInt(), Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong(), Mockito.any()))
+        .thenReturn(Mono.just(new MonthlyAccountSummary()));
+  }
+  
+  @BeforeEach
+  public void clearAccountCache() {
+    accountCache.invalidateAll();
+    creditCheckCache.invalidateAll();
+  }
+  
+  private MonthlyAccountSummary getMonthlySummary(long count) {
+    var movements = new MonthlyAccountSummary();
+    movements.setCount(count);
+    return movements;
   }
   
   private Account getAccount() {
@@ -64,7 +101,7 @@ public class SavingAcountsApplicationTests {
     
     var account = getAccount();
     var accountDTO = mapper.map(account, CreateAccountDTO.class);
-    accountDTO.setOpeningAmount(100d);
+    accountDTO.setOpeningAmount(10000L);
     
     var savedAccount = mapper.map(account, Account.class);
     savedAccount.setId(UUID.randomUUID().toString());
@@ -80,12 +117,33 @@ public class SavingAcountsApplicationTests {
     
   }
   
+  @Test
+  public void createAccountWithoutLimitSavesTheDefaultLimit() throws Exception {
+    
+    var accountDTO = new CreateAccountDTO();
+    accountDTO.setCustomerId("id654321");
+    accountDTO.setOpeningAmount(10000L);
+    
+    when(accountRepository.findByCustomerId("id654321")).thenReturn(Mono.empty());
+    when(accountRepository.save(Mockito.any(Account.class))).thenAnswer(invocation -> {
+      Account saved = invocation.getArgument(0);
+      saved.setId(UUID.randomUUID().toString());
+      return Mono.just(saved);
+    });
+    when(transactionRepository.save(Mockito.any(Transaction.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+    
+    StepVerifier.create(accountService.createAccount(accountDTO)).assertNext(acc -> {
+      assertThat(acc.getMonthlyMovementLimit()).isEqualTo(5);
+    }).verifyComplete();
+    Mockito.verify(accountRepository).save(Mockito.argThat(saved -> "id654321".equals(saved.getCustomerId()) && saved.getMonthlyMovementLimit() == 5));
+  }
+  
   @Test
   public void createVIPAccount() throws Exception {
     
     var account = getAccount();
     var accountDTO = mapper.map(account, CreateAccountDTO.class);
-    accountDTO.setOpeningAmount(100d);
+    accountDTO.setOpeningAmount(10000L);
     accountDTO.setProfile("VIP");
     
     var savedAccount = mapper.map(account, Account.class);
@@ -107,7 +165,7 @@ public class SavingAcountsApplicationTests {
     
     var account = getAccount();
     var accountDTO = mapper.map(account, CreateAccountDTO.class);
-    accountDTO.setOpeningAmount(100d);
+    accountDTO.setOpeningAmount(10000L);
     accountDTO.setProfile("VIP");
     
     var savedAccount = mapper.map(account, Account.class);
@@ -128,10 +186,11 @@ public class SavingAcountsApplicationTests {
     var account = new Account();
     account.setId(accountId);
     account.setMonthlyMovementLimit(1);
+    account.setBalance(0L);
     
     var createTransactionDTO = new CreateTransactionDTO();
     createTransactionDTO.setAgent("BCP Huacho - Cajero 021");
-    createTransactionDTO.setAmount(100d);
+    createTransactionDTO.setAmount(10000L);
     createTransactionDTO.setAccountId(accountId);
     createTransactionDTO.setDescription("Deposito cajero");
     
@@ -141,9 +200,9 @@ public class SavingAcountsApplicationTests {
     transactionSaved.setRegisterDate(LocalDateTime.now());
     
     when(nextSequenceService.getNextSequence("TransactionSequences")).thenReturn(Mono.just(1));
-    when(transactionRepository.getBalanceByAccountId(accountId)).thenReturn(Mono.just(0d));
     when(accountRepository.findById(accountId)).thenReturn(Mono.just(account));
-    Mockito.doReturn(Flux.empty()).when(transactionRepository).findByAccountIdAndRegisterDateBetween(Mockito.anyString(), Mockito.any(LocalDateTime.class), Mockito.any(LocalDateTime.class));
+    when(accountRepository.addToBalance(accountId, 10000L)).thenReturn(Mono.just(account));
+    when(monthlySummaryRepository.incrementIfBelow(Mockito.eq(accountId), Mockito.any(YearMonth.class), Mockito.eq(1))).thenReturn(Mono.just(getMonthlySummary(1)));
     Mockito.doReturn(Mono.just(transactionSaved)).when(transactionRepository).save(Mockito.any());
     
     var mono = accountService.createTransaction(createTransactionDTO);
@@ -157,7 +216,7 @@ public class SavingAcountsApplicationTests {
     var accountId = "acc123";
     var createTransactionDTO = new CreateTransactionDTO();
     createTransactionDTO.setAgent("BCP Huacho - Cajero 021");
-    createTransactionDTO.setAmount(-100d); // negative tx with balance 0
+    createTransactionDTO.setAmount(-10000L); // negative tx with balance 0
     createTransactionDTO.setAccountId(accountId);
     createTransactionDTO.setDescription("Deposito cajero");
     
@@ -167,12 +226,77 @@ public class SavingAcountsApplicationTests {
     transactionSaved.setRegisterDate(LocalDateTime.now());
     
     when(nextSequenceService.getNextSequence("TransactionSequences")).thenReturn(Mono.just(1));
-    when(transactionRepository.getBalanceByAccountId(accountId)).thenReturn(Mono.just(0d));
-    when(accountRepository.findById(accountId)).thenReturn(Mono.just(new Account()));
+    var account = new Account();
+    account.setId(accountId);
+    account.setMonthlyMovementLimit(10);
+    account.setBalance(0L);
+    when(accountRepository.findById(accountId)).thenReturn(Mono.just(account));
+    when(monthlySummaryRepository.incrementIfBelow(Mockito.eq(accountId), Mockito.any(YearMonth.class), Mockito.eq(10))).thenReturn(Mono.just(getMonthlySummary(1)));
     Mockito.doReturn(Mono.just(transactionSaved)).when(transactionRepository).save(Mockito.any());
     
     var mono = accountService.createTransaction(createTransactionDTO);
-    StepVerifier.create(mono).expectError().verify();
+    StepVerifier.create(mono).expectError(BankValidationException.class).verify();
+  }
+  
+  @Test
+  public void debitIsRejectedBeforeAnyWriteWhenItsComissionDoesNotFit() throws Exception {
+    var accountId = "acc-comission";
+    var account = new Account();
+    account.setId(accountId);
+    account.setMonthlyMovementLimit(200);
+    account.setBalance(15000L);
+    
+    var createTransactionDTO = new CreateTransactionDTO();
+    createTransactionDTO.setAgent("BCP Huacho - Cajero 021");
+    createTransactionDTO.setAmount(-10000L); // con la comisión se descuentan 20050
+    createTransactionDTO.setAccountId(accountId);
+    createTransactionDTO.setDescription("Retiro cajero");
+    
+    when(accountRepository.findById(accountId)).thenReturn(Mono.just(account));
+    when(monthlySummaryRepository.incrementIfBelow(Mockito.eq(accountId), Mockito.any(YearMonth.class), Mockito.eq(200))).thenReturn(Mono.just(getMonthlySummary(100)));
+    
+    StepVerifier.create(accountService.createTransaction(createTransactionDTO))
+      .expectErrorMessage("Insuficient balance, can not apply the comission")
+      .verify();
+    Mockito.verify(accountRepository, Mockito.never()).addToBalance(Mockito.eq(accountId), Mockito.anyLong());
+    Mockito.verify(monthlySummaryRepository).increment(Mockito.eq(accountId), Mockito.any(YearMonth.class), Mockito.eq(-1));
+  }
+  
+  @Test
+  public void monthWithoutSummaryIsSeededFromTheLedgerBeforeTheLimitGate() throws Exception {
+    var accountId = "acc-seed";
+    var account = new Account();
+    account.setId(accountId);
+    account.setMonthlyMovementLimit(2);
+    account.setBalance(20000L);
+    
+    var yearMonth = YearMonth.from(LocalDateTime.now());
+    var deposit = new Transaction();
+    deposit.setAccountId(accountId);
+    deposit.setAmount(15000L);
+    var withdrawal = new Transaction();
+    withdrawal.setAccountId(accountId);
+    withdrawal.setAmount(-5000L);
+    
+    var createTransactionDTO = new CreateTransactionDTO();
+    createTransactionDTO.setAgent("BCP Huacho - Cajero 021");
+    createTransactionDTO.setAmount(1000L);
+    createTransactionDTO.setAccountId(accountId);
+    createTransactionDTO.setDescription("Deposito cajero");
+    
+    when(accountRepository.findById(accountId)).thenReturn(Mono.just(account));
+    when(monthlySummaryRepository.existsById(MonthlyAccountSummary.idOf(accountId, yearMonth))).thenReturn(Mono.just(false));
+    when(transactionRepository.findByAccountIdAndRegisterDateBetween(Mockito.eq(accountId), Mockito.any(LocalDateTime.class), Mockito.any(LocalDateTime.class)))
+        .thenReturn(Flux.just(deposit, withdrawal));
+    when(monthlySummaryRepository.insert(Mockito.any(MonthlyAccountSummary.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+    // el contador sembrado ya está en el límite
+    when(monthlySummaryRepository.incrementIfBelow(Mockito.eq(accountId), Mockito.eq(yearMonth), Mockito.eq(2))).thenReturn(Mono.empty());
+    
+    StepVerifier.create(accountService.createTransaction(createTransactionDTO))
+      .expectErrorMessage("You can only register a maximum of 2 monthly movements")
+      .verify();
+    Mockito.verify(monthlySummaryRepository).insert(Mockito.<MonthlyAccountSummary>argThat(summary -> summary.getCount() == 2L
+        && summary.getCredits() == 15000L && summary.getDebits() == 5000L && MonthlyAccountSummary.idOf(accountId, yearMonth).equals(summary.getId())));
   }
   
   @Test
@@ -180,7 +304,7 @@ public class SavingAcountsApplicationTests {
     var accountId = "acc123";
     var createTransactionDTO = new CreateTransactionDTO();
     createTransactionDTO.setAgent("BCP Huacho - Cajero 021");
-    createTransactionDTO.setAmount(100d);
+    createTransactionDTO.setAmount(10000L);
     createTransactionDTO.setAccountId(accountId);
     createTransactionDTO.setDescription("Deposito cajero");
     
@@ -190,7 +314,7 @@ public class SavingAcountsApplicationTests {
     transactionSaved.setRegisterDate(LocalDateTime.now());
     
     when(nextSequenceService.getNextSequence("TransactionSequences")).thenReturn(Mono.just(1));
-    when(transactionRepository.getBalanceByAccountId(accountId)).thenReturn(Mono.just(0d));
+    when(transactionRepository.getBalanceByAccountId(accountId)).thenReturn(Mono.just(0L));
     when(accountRepository.findById(accountId)).thenReturn(Mono.empty()); // inexistent account
     Mockito.doReturn(Mono.just(transactionSaved)).when(transactionRepository).save(Mockito.any());
     
@@ -204,18 +328,36 @@ public class SavingAcountsApplicationTests {
     var account = new Account();
     account.setId(accountId);
     account.setMonthlyMovementLimit(5);
+    account.setBalance(10000L);
     
-    when(transactionRepository.getBalanceByAccountId(accountId)).thenReturn(Mono.just(100d));
     when(accountRepository.findById(accountId)).thenReturn(Mono.just(account));
-    var transaction = new Transaction();
-    transaction.setAmount(100d);
-    when(transactionRepository.findByAccountIdAndRegisterDateBetween(Mockito.any(), Mockito.any(), Mockito.any())).thenReturn(Flux.just(transaction));
+    when(monthlySummaryRepository.findById(MonthlyAccountSummary.idOf(accountId, YearMonth.now()))).thenReturn(Mono.just(getMonthlySummary(1)));
     var mono = accountService.getBalanceByAccountId(accountId);
     StepVerifier.create(mono).assertNext(balance -> {
-      assertThat(balance.getAmount()).isEqualTo(100d);
+      assertThat(balance.getAmount()).isEqualTo(10000L);
+      assertThat(balance.getMonthlyMovementsAvailable()).isEqualTo(4L);
     }).verifyComplete();
   }
   
+  @Test
+  public void getBalancesByCustomerUsesSingleQuery() {
+    var customerId = "customer_123";
+    var view = new AccountBalanceView();
+    view.setAccountId("account_456");
+    view.setMonthlyMovementLimit(5);
+    view.setBalance(8000L);
+    view.setMonthlyMovements(2L);
+    
+    when(accountRepository.findBalancesByCustomerId(customerId, YearMonth.now())).thenReturn(Flux.just(view));
+    var flux = accountService.getBalancesByCustomerId(customerId);
+    StepVerifier.create(flux).assertNext(balance -> {
+      assertThat(balance.getAccountId()).isEqualTo("account_456");
+      assertThat(balance.getAmount()).isEqualTo(8000L);
+      assertThat(balance.getMonthlyMovementsAvailable()).isEqualTo(3L);
+    }).verifyComplete();
+    Mockito.verify(accountRepository, Mockito.never()).findById("account_456");
+  }
+  
   @Test
   public void getTransactionsByAccountAndPeriod() {
     
@@ -229,25 +371,55 @@ public class SavingAcountsApplicationTests {
   }
   
   @Test
-  public void transfer() {
+  public void getTransactionPageResumesFromCursor() {
+    var accountId = "ACC-PAGE";
+    var last = new Transaction();
+    last.setAccountId(accountId);
+    last.setOperationNumber(15);
+    last.setRegisterDate(LocalDateTime.of(2022, 4, 10, 8, 30));
+    var cursor = MovementCursor.of(last);
+    
+    var next = new Transaction();
+    next.setAccountId(accountId);
+    next.setOperationNumber(16);
+    next.setRegisterDate(LocalDateTime.of(2022, 4, 10, 9, 0));
+    when(transactionRepository.findPageByAccountIdAndPeriod(accountId, LocalDateTime.of(2022, 4, 1, 0, 0), LocalDateTime.of(2022, 5, 1, 0, 0), cursor, 2))
+      .thenReturn(Flux.just(next));
+    
+    var flux = accountService.getTransactionPageByAccountIdAndPeriod(accountId, LocalDate.of(2022, 4, 1), cursor.encode(), 2);
+    StepVerifier.create(flux).assertNext(item -> {
+      assertThat(item.getTransaction()).isEqualTo(next);
+      assertThat(item.getCursor()).isEqualTo(MovementCursor.of(next).encode());
+    }).verifyComplete();
+    
+    StepVerifier.create(accountService.getTransactionPageByAccountIdAndPeriod(accountId, LocalDate.of(2022, 4, 1), "not-a-cursor", 2))
+      .expectErrorMessage("Invalid cursor").verify();
+  }
+  
+  private TransferDTO getTransferDTO(String sourceAccountId, Long amount) {
     var transferDTO = new TransferDTO();
-    transferDTO.setAmount(100d);
-    transferDTO.setSourceAccountId("CA-001");
+    transferDTO.setAmount(amount);
+    transferDTO.setSourceAccountId(sourceAccountId);
     transferDTO.setTargetAccountType(AccountType.SAVING);
     transferDTO.setTargetAccountId("SA-001");
-    var amount = 100d;
+    return transferDTO;
+  }
+  
+  @Test
+  public void transfer() {
+    var transferDTO = getTransferDTO("CA-001", 10000L);
+    var amount = 10000L;
     //  /transfer
     when(nextSequenceService.getNextSequence("TransactionSequences")).thenReturn(Mono.just(1));
-    when(transactionRepository.getBalanceByAccountId(transferDTO.getSourceAccountId())).thenReturn(Mono.just(amount));
     
     var account = new Account();
+    account.setId(transferDTO.getSourceAccountId());
     account.setMonthlyMovementLimit(10);
+    account.setBalance(amount);
     when(accountRepository.findById(transferDTO.getSourceAccountId())).thenReturn(Mono.just(account));
+    when(accountRepository.addToBalance(Mockito.eq(transferDTO.getSourceAccountId()), Mockito.anyLong())).thenReturn(Mono.just(account));
     
-    var existentTransaction = new Transaction();
-    existentTransaction.setAmount(100d);
-    
-    when(transactionRepository.findByAccountIdAndRegisterDateBetween(Mockito.anyString(), Mockito.any(LocalDateTime.class), Mockito.any(LocalDateTime.class))).thenReturn(Flux.just(existentTransaction));
+    when(monthlySummaryRepository.incrementIfBelow(Mockito.eq(transferDTO.getSourceAccountId()), Mockito.any(YearMonth.class), Mockito.eq(10))).thenReturn(Mono.just(getMonthlySummary(2)));
     
     var tx = new Transaction();
     tx.setAccountId(transferDTO.getSourceAccountId());
@@ -257,13 +429,71 @@ public class SavingAcountsApplicationTests {
     tx.setId(UUID.randomUUID().toString());
     tx.setRegisterDate(LocalDateTime.now());
     
+    when(transferRepository.save(Mockito.any(Transfer.class))).thenAnswer(invocation -> {
+      Transfer transfer = invocation.getArgument(0);
+      transfer.setId("TR-001");
+      return Mono.just(transfer);
+    });
     when(transactionRepository.save(Mockito.any(Transaction.class))).thenReturn(Mono.just(tx));
-    when(accountWebClient.createTransaction(Mockito.any(AccountType.class), Mockito.any(CreateTransactionDTO.class))).thenReturn(Mono.just(4));
+    var pending = new Transfer();
+    pending.setId("TR-001");
+    pending.setStatus(TransferStatus.PENDING);
+    pending.setSourceOperationNumber(1);
+    when(transferRepository.markDebited(Mockito.eq("TR-001"), Mockito.eq(tx.getId()), Mockito.eq(1), Mockito.any(LocalDateTime.class))).thenReturn(Mono.just(pending));
+    
     var mono = accountService.transfer(transferDTO);
-    StepVerifier.create(mono).assertNext(operationNumber -> {
-      assertThat(operationNumber).isNotNull();
+    StepVerifier.create(mono).assertNext(transfer -> {
+      assertThat(transfer.getStatus()).isEqualTo(TransferStatus.PENDING);
+      assertThat(transfer.getSourceOperationNumber()).isEqualTo(1);
     }).verifyComplete();
+    Mockito.verify(transferRepository).save(Mockito.argThat(transfer -> transfer.getStatus() == TransferStatus.DEBITING && transfer.getAmount() == 10000L));
+    Mockito.verify(transactionRepository).save(Mockito.argThat((Transaction debit) -> "TR-001".equals(debit.getTransferId()) && debit.getAmount() == -10000L));
   }
   
+  @Test
+  public void transferIsRejectedWhenDebitFails() {
+    var transferDTO = getTransferDTO("CA-003", 50000L);
+    
+    var account = new Account();
+    account.setId(transferDTO.getSourceAccountId());
+    account.setMonthlyMovementLimit(10);
+    account.setBalance(10000L);
+    when(accountRepository.findById(transferDTO.getSourceAccountId())).thenReturn(Mono.just(account));
+    when(monthlySummaryRepository.incrementIfBelow(Mockito.eq(transferDTO.getSourceAccountId()), Mockito.any(YearMonth.class), Mockito.eq(10))).thenReturn(Mono.just(getMonthlySummary(1)));
+    when(transferRepository.save(Mockito.any(Transfer.class))).thenAnswer(invocation -> {
+      Transfer transfer = invocation.getArgument(0);
+      transfer.setId("TR-003");
+      return Mono.just(transfer);
+    });
+    when(transferRepository.close(Mockito.eq("TR-003"), Mockito.eq(TransferStatus.DEBITING), Mockito.eq(TransferStatus.REJECTED), Mockito.anyString(), Mockito.any(LocalDateTime.class)))
+      .thenReturn(Mono.just(new Transfer()));
+    
+    var mono = accountService.transfer(transferDTO);
+    StepVerifier.create(mono).expectErrorMessage("Insuficient balance").verify();
+    Mockito.verify(transferRepository).close(Mockito.eq("TR-003"), Mockito.eq(TransferStatus.DEBITING), Mockito.eq(TransferStatus.REJECTED),
+        Mockito.eq("Insuficient balance"), Mockito.any(LocalDateTime.class));
+  }
+  
+  @Test
+  public void createTransactionOverMonthlyLimit() {
+    var accountId = "acc-limit";
+    var account = new Account();
+    account.setId(accountId);
+    account.setMonthlyMovementLimit(3);
+    account.setBalance(50000L);
+    
+    var createTransactionDTO = new CreateTransactionDTO();
+    createTransactionDTO.setAgent("BCP Huacho - Cajero 021");
+    createTransactionDTO.setAmount(-1000L);
+    createTransactionDTO.setAccountId(accountId);
+    createTransactionDTO.setDescription("Retiro cajero");
+    
+    when(accountRepository.findById(accountId)).thenReturn(Mono.just(account));
+    when(monthlySummaryRepository.incrementIfBelow(Mockito.eq(accountId), Mockito.any(YearMonth.class), Mockito.eq(3))).thenReturn(Mono.empty());
+    
+    var mono = accountService.createTransaction(createTransactionDTO);
+    StepVerifier.create(mono).expectErrorMessage("You can only register a maximum of 3 monthly movements").verify();
+    Mockito.verify(accountRepository, Mockito.never()).addToBalance(Mockito.eq(accountId), Mockito.anyLong());
+  }
 
 }
@@ -0,0 +1,59 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import com.bank.bootcamp.savingacounts.service.SequenceBlockAllocator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+public class SequenceBlockAllocatorTests {
+
+  @Test
+  public void numbersAreConsecutiveWithinOneInstance() {
+    var sequence = new AtomicInteger();
+    var reserveCalls = new AtomicInteger();
+    var allocator = new SequenceBlockAllocator(size -> {
+      reserveCalls.incrementAndGet();
+      return Mono.fromSupplier(() -> sequence.addAndGet(size));
+    }, 10);
+    
+    var flux = Flux.range(0, 25).concatMap(i -> allocator.next());
+    StepVerifier.create(flux.collectList()).assertNext(numbers -> {
+      assertThat(numbers).containsExactlyElementsOf(Flux.range(1, 25).collectList().block());
+    }).verifyComplete();
+    assertThat(reserveCalls.get()).isEqualTo(3);
+  }
+  
+  @Test
+  public void numbersAreUniqueAcrossInstances() {
+    var sequence = new AtomicInteger();
+    var firstInstance = new SequenceBlockAllocator(size -> Mono.fromSupplier(() -> sequence.addAndGet(size)).subscribeOn(Schedulers.parallel()), 16);
+    var secondInstance = new SequenceBlockAllocator(size -> Mono.fromSupplier(() -> sequence.addAndGet(size)).subscribeOn(Schedulers.parallel()), 16);
+    
+    var flux = Flux.range(0, 2000)
+        .parallel(8)
+        .runOn(Schedulers.parallel())
+        .flatMap(i -> i % 2 == 0 ? firstInstance.next() : secondInstance.next())
+        .sequential();
+    StepVerifier.create(flux.collectList()).assertNext(numbers -> {
+      assertThat(numbers).hasSize(2000).doesNotHaveDuplicates();
+    }).verifyComplete();
+  }
+  
+  @Test
+  public void failedReservationIsRetriedOnNextCall() {
+    var sequence = new AtomicInteger();
+    var attempts = new AtomicInteger();
+    var allocator = new SequenceBlockAllocator(size -> {
+      if (attempts.incrementAndGet() == 1)
+        return Mono.error(new IllegalStateException("mongo down"));
+      return Mono.fromSupplier(() -> sequence.addAndGet(size));
+    }, 4);
+    
+    StepVerifier.create(allocator.next()).expectError(IllegalStateException.class).verify();
+    StepVerifier.create(allocator.next()).expectNext(1).verifyComplete();
+  }
+}
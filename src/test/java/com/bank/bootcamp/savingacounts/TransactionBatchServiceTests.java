@@ -0,0 +1,146 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.env.Environment;
+import com.bank.bootcamp.savingacounts.dto.BatchResultStatus;
+import com.bank.bootcamp.savingacounts.dto.BatchTransactionResultDTO;
+import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.repository.AccountRepository;
+import com.bank.bootcamp.savingacounts.repository.MonthlyAccountSummaryRepository;
+import com.bank.bootcamp.savingacounts.repository.TransactionRepository;
+import com.bank.bootcamp.savingacounts.repository.TransferRepository;
+import com.bank.bootcamp.savingacounts.service.AccountCache;
+import com.bank.bootcamp.savingacounts.service.AccountExecutionLanes;
+import com.bank.bootcamp.savingacounts.service.AccountService;
+import com.bank.bootcamp.savingacounts.service.BalanceSnapshotService;
+import com.bank.bootcamp.savingacounts.service.CreditCheckCache;
+import com.bank.bootcamp.savingacounts.service.NextSequenceService;
+import com.bank.bootcamp.savingacounts.service.OperationMetrics;
+import com.bank.bootcamp.savingacounts.service.TransactionBatchService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class TransactionBatchServiceTests {
+
+  private CreateTransactionDTO transaction(String accountId, Long amount) {
+    var dto = new CreateTransactionDTO();
+    dto.setAccountId(accountId);
+    dto.setAgent("Nightly feed");
+    dto.setDescription("Batch movement");
+    dto.setAmount(amount);
+    return dto;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void createTransactionsGroupsByAccountAndReportsEachItem() {
+    var accountRepository = mock(AccountRepository.class);
+    var transactionRepository = mock(TransactionRepository.class);
+    var monthlySummaryRepository = mock(MonthlyAccountSummaryRepository.class);
+    when(monthlySummaryRepository.existsById(Mockito.anyString())).thenReturn(Mono.just(true));
+    var nextSequenceService = mock(NextSequenceService.class);
+    var env = mock(Environment.class);
+    var executionLanes = new AccountExecutionLanes(env, new SimpleMeterRegistry());
+    var accountCache = new AccountCache(accountRepository, env, new SimpleMeterRegistry());
+    var accountService = new AccountService(accountRepository, accountCache, transactionRepository, monthlySummaryRepository,
+        nextSequenceService, env, mock(CreditCheckCache.class), mock(TransferRepository.class), mock(BalanceSnapshotService.class), executionLanes,
+        new OperationMetrics(new SimpleMeterRegistry()));
+    var batchService = new TransactionBatchService(accountService, accountCache, transactionRepository,
+        monthlySummaryRepository, nextSequenceService, executionLanes, env);
+    
+    var account = new Account();
+    account.setId("SA-001");
+    account.setMonthlyMovementLimit(10);
+    account.setBalance(10000L);
+    when(accountRepository.findById("SA-001")).thenReturn(Mono.just(account));
+    when(accountRepository.findById("SA-404")).thenReturn(Mono.empty());
+    when(accountRepository.addToBalance("SA-001", 3000L)).thenReturn(Mono.just(account));
+    when(monthlySummaryRepository.findById(MonthlyAccountSummary.idOf("SA-001", YearMonth.now()))).thenReturn(Mono.empty());
+    when(monthlySummaryRepository.compareAndIncrement("SA-001", YearMonth.now(), 0L, 2)).thenReturn(Mono.just(new MonthlyAccountSummary()));
+    when(nextSequenceService.reserve("TransactionSequences", 2)).thenReturn(Mono.just(42));
+    when(monthlySummaryRepository.record("SA-001", YearMonth.now(), 0, 5000L, 2000L, 0L, 10000L)).thenReturn(Mono.just(new MonthlyAccountSummary()));
+    when(transactionRepository.saveAll(Mockito.anyIterable())).thenAnswer(invocation -> Flux.fromIterable((Iterable<Transaction>) invocation.getArgument(0)));
+    
+    var input = Flux.just(
+        transaction("SA-001", 5000L),
+        transaction("SA-001", -50000L),
+        transaction("SA-404", 1000L),
+        transaction("SA-001", -2000L),
+        transaction(null, 1000L));
+    
+    StepVerifier.create(batchService.createTransactions(input).collectSortedList((a, b) -> a.getIndex().compareTo(b.getIndex())))
+      .assertNext(results -> {
+        assertThat(results).extracting(BatchTransactionResultDTO::getOperationNumber).containsExactly(41, null, null, 42, null);
+        assertThat(results).extracting(BatchTransactionResultDTO::getError).containsExactly(
+            null, "Insuficient balance", "Account not found", null, "Account ID is required");
+        assertThat(results).extracting(BatchTransactionResultDTO::getStatus).containsExactly(BatchResultStatus.REGISTERED,
+            BatchResultStatus.REJECTED, BatchResultStatus.REJECTED, BatchResultStatus.REGISTERED, BatchResultStatus.REJECTED);
+      }).verifyComplete();
+    
+    Mockito.verify(transactionRepository).saveAll(Mockito.<List<Transaction>>argThat(list -> list.size() == 2));
+    Mockito.verify(monthlySummaryRepository).record("SA-001", YearMonth.now(), 0, 5000L, 2000L, 0L, 10000L);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void partiallyWrittenBatchOnlyCompensatesTheMissingRows() {
+    var accountRepository = mock(AccountRepository.class);
+    var transactionRepository = mock(TransactionRepository.class);
+    var monthlySummaryRepository = mock(MonthlyAccountSummaryRepository.class);
+    when(monthlySummaryRepository.existsById(Mockito.anyString())).thenReturn(Mono.just(true));
+    var nextSequenceService = mock(NextSequenceService.class);
+    var env = mock(Environment.class);
+    var executionLanes = new AccountExecutionLanes(env, new SimpleMeterRegistry());
+    var accountCache = new AccountCache(accountRepository, env, new SimpleMeterRegistry());
+    var accountService = new AccountService(accountRepository, accountCache, transactionRepository, monthlySummaryRepository,
+        nextSequenceService, env, mock(CreditCheckCache.class), mock(TransferRepository.class), mock(BalanceSnapshotService.class), executionLanes,
+        new OperationMetrics(new SimpleMeterRegistry()));
+    var batchService = new TransactionBatchService(accountService, accountCache, transactionRepository,
+        monthlySummaryRepository, nextSequenceService, executionLanes, env);
+
+    var account = new Account();
+    account.setId("SA-001");
+    account.setMonthlyMovementLimit(10);
+    account.setBalance(10000L);
+    when(accountRepository.findById("SA-001")).thenReturn(Mono.just(account));
+    when(accountRepository.addToBalance("SA-001", 3000L)).thenReturn(Mono.just(account));
+    when(accountRepository.addToBalance("SA-001", 2000L)).thenReturn(Mono.just(account));
+    when(monthlySummaryRepository.findById(MonthlyAccountSummary.idOf("SA-001", YearMonth.now()))).thenReturn(Mono.empty());
+    when(monthlySummaryRepository.compareAndIncrement("SA-001", YearMonth.now(), 0L, 2)).thenReturn(Mono.just(new MonthlyAccountSummary()));
+    when(monthlySummaryRepository.increment("SA-001", YearMonth.now(), -1)).thenReturn(Mono.just(new MonthlyAccountSummary()));
+    when(monthlySummaryRepository.record(Mockito.anyString(), Mockito.any(YearMonth.class), Mockito.anyInt(), Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong(), Mockito.any()))
+        .thenReturn(Mono.just(new MonthlyAccountSummary()));
+    when(nextSequenceService.reserve("TransactionSequences", 2)).thenReturn(Mono.just(42));
+    // el insert ordenado guarda la primera fila y falla en la segunda
+    when(transactionRepository.saveAll(Mockito.anyIterable())).thenAnswer(invocation -> {
+      var first = ((List<Transaction>) invocation.getArgument(0)).get(0);
+      when(transactionRepository.findByAccountIdAndRegisterDateBetween(Mockito.eq("SA-001"), Mockito.any(LocalDateTime.class), Mockito.any(LocalDateTime.class)))
+          .thenReturn(Flux.just(first));
+      return Flux.concat(Flux.just(first), Flux.error(new IllegalStateException("connection reset")));
+    });
+
+    StepVerifier.create(batchService.createTransactions(Flux.just(transaction("SA-001", 5000L), transaction("SA-001", -2000L)))
+        .collectSortedList((a, b) -> a.getIndex().compareTo(b.getIndex())))
+      .assertNext(results -> {
+        assertThat(results).extracting(BatchTransactionResultDTO::getOperationNumber).containsExactly(41, null);
+        assertThat(results).extracting(BatchTransactionResultDTO::getError).containsExactly(null, "The operation could not be completed");
+        assertThat(results).extracting(BatchTransactionResultDTO::getStatus).containsExactly(BatchResultStatus.REGISTERED, BatchResultStatus.RETRY);
+      }).verifyComplete();
+
+    Mockito.verify(accountRepository).addToBalance("SA-001", 2000L);
+    Mockito.verify(monthlySummaryRepository).increment("SA-001", YearMonth.now(), -1);
+    Mockito.verify(monthlySummaryRepository).record("SA-001", YearMonth.now(), 0, 5000L, 0L, 0L, 12000L);
+  }
+}
@@ -0,0 +1,108 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import com.bank.bootcamp.savingacounts.dto.ExportFormat;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.exception.BankValidationException;
+import com.bank.bootcamp.savingacounts.repository.TransactionRepository;
+import com.bank.bootcamp.savingacounts.service.TransactionExportService;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+public class TransactionExportServiceTests {
+
+  private static final LocalDateTime FROM = LocalDateTime.of(2022, 5, 1, 0, 0);
+  private static final LocalDateTime TO = FROM.plusDays(1);
+
+  private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+  private final Environment env = mock(Environment.class);
+  private final TransactionExportService exportService = new TransactionExportService(transactionRepository,
+      Jackson2ObjectMapperBuilder.json().featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build(), env);
+
+  private static Transaction transaction(int operationNumber, String description) {
+    var transaction = new Transaction();
+    transaction.setId("T-" + operationNumber);
+    transaction.setAccountId("SA-1");
+    transaction.setOperationNumber(operationNumber);
+    transaction.setRegisterDate(FROM.plusMinutes(operationNumber));
+    transaction.setAmount(1000L);
+    transaction.setAgent("-");
+    transaction.setDescription(description);
+    return transaction;
+  }
+
+  private String read(Flux<DataBuffer> buffers) {
+    return DataBufferUtils.join(buffers)
+        .map(buffer -> buffer.toString(StandardCharsets.UTF_8))
+        .block();
+  }
+
+  @Test
+  public void csvQuotesFieldsThatNeedIt() {
+    when(transactionRepository.streamByPeriod(Mockito.eq(FROM), Mockito.eq(TO), Mockito.anyInt()))
+        .thenReturn(Flux.just(transaction(1, "Deposit"), transaction(2, "Rent, \"May\"")));
+
+    var csv = read(exportService.export(FROM, TO, ExportFormat.CSV, false, DefaultDataBufferFactory.sharedInstance));
+
+    assertThat(csv.split("\n")).containsExactly(
+        "id,accountId,operationNumber,registerDate,amount,agent,description,transferId",
+        "T-1,SA-1,1,2022-05-01T00:01,10.00,-,Deposit,",
+        "T-2,SA-1,2,2022-05-01T00:02,10.00,-,\"Rent, \"\"May\"\"\",");
+  }
+
+  @Test
+  public void gzippedNdjsonIsOneMovementPerLine(@TempDir Path directory) throws IOException {
+    when(env.getProperty("export.rows-per-buffer")).thenReturn("2");
+    when(transactionRepository.streamByPeriod(Mockito.eq(FROM), Mockito.eq(TO), Mockito.anyInt()))
+        .thenAnswer(invocation -> Flux.range(1, 5).map(operationNumber -> transaction(operationNumber, "Deposit")));
+    var file = directory.resolve("transactions.ndjson.gz");
+
+    StepVerifier.create(exportService.exportTo(file, FROM, TO, ExportFormat.NDJSON, true)).expectNext(5L).verifyComplete();
+
+    try (var gzip = new GZIPInputStream(new ByteArrayInputStream(Files.readAllBytes(file)))) {
+      var lines = new String(gzip.readAllBytes(), StandardCharsets.UTF_8).split("\n");
+      assertThat(lines).hasSize(5);
+      assertThat(lines[0]).contains("\"operationNumber\":1", "\"registerDate\":\"2022-05-01T00:01:00\"");
+    }
+  }
+
+  @Test
+  public void rowsAreOnlyReadAsBuffersAreRequested() {
+    var requested = new AtomicLong();
+    when(transactionRepository.streamByPeriod(Mockito.eq(FROM), Mockito.eq(TO), Mockito.anyInt()))
+        .thenReturn(Flux.range(1, 10_000_000).doOnRequest(requested::addAndGet).map(operationNumber -> transaction(operationNumber, "Deposit")));
+
+    StepVerifier.create(exportService.export(FROM, TO, ExportFormat.NDJSON, false, DefaultDataBufferFactory.sharedInstance), 2)
+      .expectNextCount(2)
+      .thenCancel()
+      .verify();
+
+    assertThat(requested.get()).isLessThanOrEqualTo(1000);
+  }
+
+  @Test
+  public void emptyPeriodIsRejected() {
+    StepVerifier.create(exportService.export(TO, FROM, ExportFormat.CSV, false, DefaultDataBufferFactory.sharedInstance))
+      .expectError(BankValidationException.class)
+      .verify();
+  }
+}
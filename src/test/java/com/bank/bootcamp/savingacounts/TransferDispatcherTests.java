@@ -0,0 +1,197 @@
+package com.bank.bootcamp.savingacounts;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.env.Environment;
+import com.bank.bootcamp.savingacounts.dto.AccountType;
+import com.bank.bootcamp.savingacounts.dto.CreateTransactionDTO;
+import com.bank.bootcamp.savingacounts.dto.TransferStatus;
+import com.bank.bootcamp.savingacounts.entity.Account;
+import com.bank.bootcamp.savingacounts.entity.MonthlyAccountSummary;
+import com.bank.bootcamp.savingacounts.entity.Transaction;
+import com.bank.bootcamp.savingacounts.entity.Transfer;
+import com.bank.bootcamp.savingacounts.exception.TransactionRejectedException;
+import com.bank.bootcamp.savingacounts.repository.AccountRepository;
+import com.bank.bootcamp.savingacounts.repository.MonthlyAccountSummaryRepository;
+import com.bank.bootcamp.savingacounts.repository.TransactionRepository;
+import com.bank.bootcamp.savingacounts.repository.TransferRepository;
+import com.bank.bootcamp.savingacounts.service.AccountCache;
+import com.bank.bootcamp.savingacounts.service.AccountExecutionLanes;
+import com.bank.bootcamp.savingacounts.service.AccountService;
+import com.bank.bootcamp.savingacounts.service.BalanceSnapshotService;
+import com.bank.bootcamp.savingacounts.service.CreditCheckCache;
+import com.bank.bootcamp.savingacounts.service.NextSequenceService;
+import com.bank.bootcamp.savingacounts.service.OperationMetrics;
+import com.bank.bootcamp.savingacounts.service.TransferDispatcher;
+import com.bank.bootcamp.savingacounts.webclient.AccountWebClient;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+public class TransferDispatcherTests {
+
+  private final AccountRepository accountRepository = mock(AccountRepository.class);
+  private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+  private final MonthlyAccountSummaryRepository monthlySummaryRepository = mock(MonthlyAccountSummaryRepository.class);
+  private final TransferRepository transferRepository = mock(TransferRepository.class);
+  private final AccountWebClient accountWebClient = mock(AccountWebClient.class);
+  private final TransferDispatcher dispatcher;
+
+  public TransferDispatcherTests() {
+    var env = mock(Environment.class);
+    var metrics = new OperationMetrics(new SimpleMeterRegistry());
+    var executionLanes = new AccountExecutionLanes(env, new SimpleMeterRegistry());
+    var accountCache = new AccountCache(accountRepository, env, new SimpleMeterRegistry());
+    var accountService = new AccountService(accountRepository, accountCache, transactionRepository, monthlySummaryRepository,
+        mock(NextSequenceService.class), env, mock(CreditCheckCache.class), transferRepository, mock(BalanceSnapshotService.class), executionLanes, metrics);
+    dispatcher = new TransferDispatcher(transferRepository, transactionRepository, accountService, accountWebClient, executionLanes, metrics, env);
+  }
+
+  private Transfer transfer(String id, TransferStatus status, int attempts) {
+    var transfer = new Transfer();
+    transfer.setId(id);
+    transfer.setStatus(status);
+    transfer.setAttempts(attempts);
+    transfer.setSourceAccountId("SA-001");
+    transfer.setTargetAccountType(AccountType.FIXED_TERM);
+    transfer.setTargetAccountId("FA-001");
+    transfer.setAmount(5000L);
+    if (status == TransferStatus.PENDING) {
+      transfer.setSourceTransactionId("TX-" + id);
+      transfer.setSourceOperationNumber(11);
+    }
+    return transfer;
+  }
+
+  private void claims(Transfer transfer) {
+    when(transferRepository.claimNext(Mockito.any(LocalDateTime.class), Mockito.any(LocalDateTime.class)))
+        .thenReturn(Mono.just(transfer), Mono.empty());
+  }
+
+  @Test
+  public void settlesPendingTransferWithItsIdAsIdempotencyKey() {
+    claims(transfer("TR-1", TransferStatus.PENDING, 1));
+    when(accountWebClient.createTransaction(Mockito.eq(AccountType.FIXED_TERM), Mockito.any(CreateTransactionDTO.class), Mockito.eq("TR-1"))).thenReturn(Mono.just(7));
+    when(transferRepository.markSettled(Mockito.eq("TR-1"), Mockito.eq(7), Mockito.any(LocalDateTime.class))).thenReturn(Mono.just(new Transfer()));
+
+    StepVerifier.create(dispatcher.dispatch()).expectNext(1L).verifyComplete();
+
+    Mockito.verify(accountWebClient).createTransaction(Mockito.eq(AccountType.FIXED_TERM),
+        Mockito.argThat(dto -> "FA-001".equals(dto.getAccountId()) && dto.getAmount() == 5000L && "Transfer incoming 11".equals(dto.getDescription())),
+        Mockito.eq("TR-1"));
+    Mockito.verify(transferRepository).markSettled(Mockito.eq("TR-1"), Mockito.eq(7), Mockito.any(LocalDateTime.class));
+  }
+
+  @Test
+  public void schedulesRetryWithBackoffWhileAttemptsRemain() {
+    claims(transfer("TR-2", TransferStatus.PENDING, 3));
+    when(accountWebClient.createTransaction(Mockito.any(AccountType.class), Mockito.any(CreateTransactionDTO.class), Mockito.eq("TR-2"))).thenReturn(Mono.empty());
+    when(transferRepository.scheduleRetry(Mockito.eq("TR-2"), Mockito.eq(TransferStatus.PENDING), Mockito.anyString(), Mockito.any(LocalDateTime.class)))
+        .thenReturn(Mono.just(new Transfer()));
+
+    var before = LocalDateTime.now();
+    StepVerifier.create(dispatcher.dispatch()).expectNext(1L).verifyComplete();
+
+    Mockito.verify(transferRepository).scheduleRetry(Mockito.eq("TR-2"), Mockito.eq(TransferStatus.PENDING),
+        Mockito.eq("Target account did not register the transaction"),
+        Mockito.argThat(next -> !next.isBefore(before.plus(Duration.ofSeconds(4)))));
+    Mockito.verify(transferRepository, Mockito.never()).close(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+  }
+
+  @Test
+  public void reversesDebitRejectedByTheTarget() {
+    claims(transfer("TR-3", TransferStatus.PENDING, 1));
+    when(accountWebClient.createTransaction(Mockito.any(AccountType.class), Mockito.any(CreateTransactionDTO.class), Mockito.eq("TR-3")))
+        .thenReturn(Mono.error(new TransactionRejectedException("400 Account not found")));
+    var debit = new Transaction();
+    debit.setId("TX-TR-3");
+    debit.setAccountId("SA-001");
+    debit.setAmount(-5000L);
+    debit.setDescription("Transfer sent");
+    debit.setRegisterDate(LocalDateTime.now());
+    var account = new Account();
+    account.setId("SA-001");
+    account.setBalance(15000L);
+    when(transactionRepository.findById("TX-TR-3")).thenReturn(Mono.just(debit));
+    when(transactionRepository.removeById("TX-TR-3")).thenReturn(Mono.just(true));
+    when(accountRepository.addToBalance("SA-001", 5000L)).thenReturn(Mono.just(account));
+    when(monthlySummaryRepository.record(Mockito.anyString(), Mockito.any(YearMonth.class), Mockito.anyInt(), Mockito.anyLong(), Mockito.anyLong(), Mockito.anyLong(), Mockito.any()))
+        .thenReturn(Mono.just(new MonthlyAccountSummary()));
+    when(transferRepository.close(Mockito.eq("TR-3"), Mockito.eq(TransferStatus.PENDING), Mockito.eq(TransferStatus.REVERSED), Mockito.anyString(), Mockito.any(LocalDateTime.class)))
+        .thenReturn(Mono.just(new Transfer()));
+
+    StepVerifier.create(dispatcher.dispatch()).expectNext(1L).verifyComplete();
+
+    Mockito.verify(transactionRepository).removeById("TX-TR-3");
+    Mockito.verify(accountRepository).addToBalance("SA-001", 5000L);
+    Mockito.verify(monthlySummaryRepository).record("SA-001", YearMonth.from(debit.getRegisterDate()), -1, 0L, -5000L, 0L, 15000L);
+    Mockito.verify(transferRepository).close(Mockito.eq("TR-3"), Mockito.eq(TransferStatus.PENDING), Mockito.eq(TransferStatus.REVERSED), Mockito.anyString(), Mockito.any(LocalDateTime.class));
+  }
+
+  @Test
+  public void debitAlreadyReversedByAnotherDispatcherIsNotRefundedAgain() {
+    claims(transfer("TR-5", TransferStatus.PENDING, 1));
+    when(accountWebClient.createTransaction(Mockito.any(AccountType.class), Mockito.any(CreateTransactionDTO.class), Mockito.eq("TR-5")))
+        .thenReturn(Mono.error(new TransactionRejectedException("400 Account not found")));
+    var debit = new Transaction();
+    debit.setId("TX-TR-5");
+    debit.setAccountId("SA-001");
+    debit.setAmount(-5000L);
+    debit.setRegisterDate(LocalDateTime.now());
+    when(transactionRepository.findById("TX-TR-5")).thenReturn(Mono.just(debit));
+    when(transactionRepository.removeById("TX-TR-5")).thenReturn(Mono.just(false));
+    when(transferRepository.close(Mockito.eq("TR-5"), Mockito.eq(TransferStatus.PENDING), Mockito.eq(TransferStatus.REVERSED), Mockito.anyString(), Mockito.any(LocalDateTime.class)))
+        .thenReturn(Mono.empty());
+
+    StepVerifier.create(dispatcher.dispatch()).expectNext(1L).verifyComplete();
+
+    Mockito.verify(accountRepository, Mockito.never()).addToBalance(Mockito.anyString(), Mockito.anyLong());
+    Mockito.verifyNoInteractions(monthlySummaryRepository);
+  }
+
+  @Test
+  public void parksTransferWhoseCreditIsStillUnknownAfterLastAttempt() {
+    claims(transfer("TR-6", TransferStatus.PENDING, 8));
+    when(accountWebClient.createTransaction(Mockito.any(AccountType.class), Mockito.any(CreateTransactionDTO.class), Mockito.eq("TR-6")))
+        .thenReturn(Mono.error(new TimeoutException("Did not observe any item or terminal signal within 1000ms")));
+    when(transferRepository.close(Mockito.eq("TR-6"), Mockito.eq(TransferStatus.PENDING), Mockito.eq(TransferStatus.FAILED), Mockito.anyString(), Mockito.any(LocalDateTime.class)))
+        .thenReturn(Mono.just(new Transfer()));
+
+    StepVerifier.create(dispatcher.dispatch()).expectNext(1L).verifyComplete();
+
+    Mockito.verify(transferRepository).close(Mockito.eq("TR-6"), Mockito.eq(TransferStatus.PENDING), Mockito.eq(TransferStatus.FAILED), Mockito.anyString(), Mockito.any(LocalDateTime.class));
+    Mockito.verifyNoInteractions(accountRepository);
+    Mockito.verify(transactionRepository, Mockito.never()).findById(Mockito.anyString());
+  }
+
+  @Test
+  public void recoversTransferWhoseDebitWasNotConfirmed() {
+    var debiting = transfer("TR-4", TransferStatus.DEBITING, 1);
+    var orphan = transfer("TR-5", TransferStatus.DEBITING, 1);
+    when(transferRepository.claimNext(Mockito.any(LocalDateTime.class), Mockito.any(LocalDateTime.class)))
+        .thenReturn(Mono.just(debiting), Mono.just(orphan), Mono.empty());
+    var debit = new Transaction();
+    debit.setId("TX-TR-4");
+    debit.setOperationNumber(11);
+    when(transactionRepository.findByTransferId("TR-4")).thenReturn(Mono.just(debit));
+    when(transactionRepository.findByTransferId("TR-5")).thenReturn(Mono.empty());
+    when(transferRepository.markDebited(Mockito.eq("TR-4"), Mockito.eq("TX-TR-4"), Mockito.eq(11), Mockito.any(LocalDateTime.class)))
+        .thenReturn(Mono.just(transfer("TR-4", TransferStatus.PENDING, 1)));
+    when(accountWebClient.createTransaction(Mockito.any(AccountType.class), Mockito.any(CreateTransactionDTO.class), Mockito.eq("TR-4"))).thenReturn(Mono.just(8));
+    when(transferRepository.markSettled(Mockito.eq("TR-4"), Mockito.eq(8), Mockito.any(LocalDateTime.class))).thenReturn(Mono.just(new Transfer()));
+    when(transferRepository.close(Mockito.eq("TR-5"), Mockito.eq(TransferStatus.DEBITING), Mockito.eq(TransferStatus.REJECTED), Mockito.anyString(), Mockito.any(LocalDateTime.class)))
+        .thenReturn(Mono.just(new Transfer()));
+
+    StepVerifier.create(dispatcher.dispatch()).expectNext(2L).verifyComplete();
+
+    Mockito.verify(transferRepository).markSettled(Mockito.eq("TR-4"), Mockito.eq(8), Mockito.any(LocalDateTime.class));
+    Mockito.verify(transferRepository).close(Mockito.eq("TR-5"), Mockito.eq(TransferStatus.DEBITING), Mockito.eq(TransferStatus.REJECTED),
+        Mockito.eq("The debit was not registered"), Mockito.any(LocalDateTime.class));
+  }
+}